@@ -108,6 +108,88 @@ public interface FriendTrackerConfig extends Config
 	}
 
 
+	@ConfigItem
+	(
+		position = 5,
+		keyName = "storageMode",
+		name = "Data storage",
+		description = "Where tracked data is saved. Local file appends new snapshots to a journal in the RuneLite folder instead of rewriting the profile config on every save.<br>" +
+			"Switching copies the saved data of every account to the selected storage."
+	)
+	default ConfigValues.StorageOptions storageMode()
+	{
+		return ConfigValues.StorageOptions.CONFIG;
+	}
+
+	@ConfigItem
+	(
+		position = 6,
+		keyName = "retentionPolicy",
+		name = "Snapshot retention",
+		description = "Thin older snapshots keeps every snapshot from the last 48 hours, then one per hour for 14 days, " +
+			"one per day for a year and one per week after that.<br>" +
+			"Snapshots used by the activity ranges are always kept."
+	)
+	default ConfigValues.RetentionOptions retentionPolicy()
+	{
+		return ConfigValues.RetentionOptions.KEEP_ALL;
+	}
+
+	@ConfigItem
+	(
+		position = 7,
+		keyName = "archiveAfterDays",
+		name = "Archive after (days)",
+		description = "Local file storage only. Snapshots older than this are moved out of memory into an archive file that is read on demand.<br>" +
+			"Set to 0 to keep every snapshot in memory."
+	)
+	default int archiveAfterDays()
+	{
+		return 180;
+	}
+
+	@ConfigItem
+	(
+		position = 8,
+		keyName = "accountCacheSize",
+		name = "Account cache (MB)",
+		description = "Memory used to keep the friends of recently played accounts loaded, so switching back to them is instant.<br>" +
+			"Set to 0 to reload an account's data every time it is logged in to."
+	)
+	default int accountCacheSize()
+	{
+		return 64;
+	}
+
+	@ConfigItem
+	(
+		position = 9,
+		keyName = "shareLookups",
+		name = "Share lookups between accounts",
+		description = "When the same player is tracked from several accounts, a lookup from one account is added to every recently played account tracking them.<br>" +
+			"Refreshing a player looked up from another account within the last few minutes reuses that lookup.<br>" +
+			"Each account still saves its own history of the player."
+	)
+	default boolean shareLookups()
+	{
+		return false;
+	}
+
+	@ConfigItem
+	(
+		position = 10,
+		keyName = "rateWindowDays",
+		name = "Rate window (days)",
+		description = "XP and KC per hour, and the projected date of each skill's next level, are shown in skill tooltips. " +
+			"They are measured over each friend's snapshots from this many days before their newest.<br>" +
+			"Set to 0 to hide rates."
+	)
+	default int rateWindowDays()
+	{
+		return 7;
+	}
+
+
 	@ConfigItem
 	(
 		position = 101,
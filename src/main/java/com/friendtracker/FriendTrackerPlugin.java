@@ -1,27 +1,50 @@
 package com.friendtracker;
 
+import com.friendtracker.config.ConfigValues;
 import com.friendtracker.data.FriendDataClient;
+import com.friendtracker.data.FriendManagerCache;
+import com.friendtracker.data.TrackerDataBackup;
+import com.friendtracker.data.SharedLookupPool;
+import com.friendtracker.data.SnapshotRetention;
 import com.friendtracker.data.TrackerDataStore;
+import com.friendtracker.data.TrackerDataWriter;
 import com.friendtracker.friends.Friend;
 import com.friendtracker.friends.FriendManager;
+import com.friendtracker.friends.FriendSummary;
+import com.friendtracker.friends.GainsTable;
 import com.friendtracker.panel.FriendTrackerPanel;
 import com.friendtracker.panel.MergePanel;
 import com.google.inject.Provides;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
 import javax.inject.Inject;
+import javax.swing.JFileChooser;
 import javax.swing.SwingUtilities;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
 import net.runelite.api.GameState;
 import net.runelite.api.MenuAction;
+import net.runelite.api.events.CommandExecuted;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.MenuEntryAdded;
 import net.runelite.api.events.RemovedFriend;
 import net.runelite.api.widgets.WidgetInfo;
+import net.runelite.client.RuneLite;
+import net.runelite.client.chat.ChatMessageManager;
+import net.runelite.client.chat.QueuedMessage;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
@@ -45,12 +68,27 @@ public class FriendTrackerPlugin extends Plugin
 	@Getter @Inject private FriendTrackerConfig config;
 	@Inject private FriendDataClient friendDataClient;
 	@Inject private TrackerDataStore trackerDataStore;
+	@Inject private TrackerDataWriter trackerDataWriter;
+	@Inject private SnapshotRetention snapshotRetention;
 	@Inject private ClientToolbar clientToolbar;
+	@Inject private ScheduledExecutorService executor;
+	@Inject private TrackerDataBackup trackerDataBackup;
+	@Inject private ChatMessageManager chatMessageManager;
+	@Inject private FriendManagerCache friendManagerCache;
+	@Inject private SharedLookupPool sharedLookupPool;
+	@Getter @Inject private Clock clock;
+	// Reads the end of the current minute of the clock, for the end of the displayed range
+	@Getter private Clock gainsClock;
 
 	private FriendTrackerPanel panel;
 	private NavigationButton navButton;
-	@Getter private FriendManager friendManager;
-	private long lastAccount;
+	// Only published once its save data has been applied
+	@Getter private volatile FriendManager friendManager;
+	private volatile long lastAccount;
+
+	// Actions requested while an account's data is loading, run once it has loaded
+	private final List<Runnable> pendingActions = new ArrayList<>();
+	private boolean loading = false;
 
 	@Getter @Setter
 	private String friendTextFilter;
@@ -58,6 +96,7 @@ public class FriendTrackerPlugin extends Plugin
 	@Override
 	protected void startUp() throws Exception
 	{
+		gainsClock = GainsTable.endOfMinute(clock);
 		panel = new FriendTrackerPanel(client, this, config, configManager);
 
 		final BufferedImage icon = ImageUtil.loadImageResource(getClass(), "panel_icon.png");
@@ -76,6 +115,15 @@ public class FriendTrackerPlugin extends Plugin
 	protected void shutDown() throws Exception
 	{
 		clientToolbar.removeNavigation(navButton);
+		snapshotRetention.stop();
+
+		if (friendManager != null)
+		{
+			trackerDataWriter.flushAndSummarize(friendManager);
+		}
+
+		friendManagerCache.clear();
+		sharedLookupPool.clear();
 	}
 
 	@Subscribe
@@ -91,18 +139,139 @@ public class FriendTrackerPlugin extends Plugin
 				log.debug("Account change: {} -> {}",
 						lastAccount, client.getAccountHash());
 
-				friendManager = new FriendManager(client.getAccountHash());
-
-				trackerDataStore.getFriendDataFromConfig(client.getAccountHash())
-						.ifPresent(friendManager::applySaveData);
-
 				lastAccount = client.getAccountHash();
+				loadAccountAsync(lastAccount);
 			}
 		}
 
 		SwingUtilities.invokeLater(() -> panel.setLoggedIn(isLoggedInState(state)));
 	}
 
+	/**
+	 * Loads the saved data of the given account on the executor, publishing its FriendManager once loaded.
+	 * Actions requested while loading are queued by {@link #runWhenLoaded} and run after the FriendManager is published.
+	 * The FriendManager of the previous account is kept in the {@link FriendManagerCache}, and an account found in
+	 * the cache is published without reloading its data. An account that is not cached is drawn from its summary
+	 * index until its data has loaded.
+	 *
+	 * If the data fails to load, the account is left without a FriendManager and the queued actions are dropped,
+	 * so that nothing is saved over the data that could not be read.
+	 *
+	 * @param accountHash the account to load
+	 */
+	private void loadAccountAsync(long accountHash)
+	{
+		FriendManager previousFriendManager;
+		synchronized (pendingActions)
+		{
+			previousFriendManager = friendManager;
+			friendManager = null;
+			loading = true;
+		}
+
+		snapshotRetention.stop();
+		SwingUtilities.invokeLater(() -> panel.setLoading(true));
+
+		executor.execute(() ->
+		{
+			FriendManager loadedFriendManager;
+			try
+			{
+				loadedFriendManager = loadFriendManager(previousFriendManager, accountHash);
+			}
+			catch (IOException | RuntimeException e)
+			{
+				log.warn("Failed to load friend data for {}.", accountHash, e);
+				loadedFriendManager = null;
+			}
+
+			List<Runnable> actions = null;
+			synchronized (pendingActions)
+			{
+				// Another account was logged in to while loading
+				if (accountHash == lastAccount)
+				{
+					friendManager = loadedFriendManager;
+					loading = false;
+					actions = new ArrayList<>(pendingActions);
+					pendingActions.clear();
+				}
+			}
+
+			if (actions == null)
+			{
+				if (loadedFriendManager != null) friendManagerCache.put(loadedFriendManager);
+				return;
+			}
+
+			SwingUtilities.invokeLater(() -> panel.setLoading(false));
+
+			if (loadedFriendManager == null)
+			{
+				log.warn("Dropping {} actions queued while loading {}.", actions.size(), accountHash);
+				sendChatMessage("Friend Tracker could not load the saved data of this account. Tracking is paused for this account.");
+				return;
+			}
+
+			snapshotRetention.start(loadedFriendManager);
+
+			actions.forEach(Runnable::run);
+
+			// Bring the gains of every summary up to date for the next login
+			trackerDataStore.saveSummaries(loadedFriendManager);
+		});
+	}
+
+	/**
+	 * Caches the FriendManager of the previous account and returns that of the given account, taken from the
+	 * cache or loaded from storage. The list is drawn from the account's summary index while its data loads.
+	 */
+	private FriendManager loadFriendManager(FriendManager previousFriendManager, long accountHash) throws IOException
+	{
+		if (previousFriendManager != null)
+		{
+			friendManagerCache.put(previousFriendManager);
+		}
+
+		FriendManager loadedFriendManager = friendManagerCache.take(accountHash);
+		if (loadedFriendManager != null) return loadedFriendManager;
+
+		// Draw the list from the summary index while the full data loads
+		trackerDataStore.loadSummaries(accountHash).ifPresent(summaries ->
+		{
+			List<FriendSummary> summaryList = new ArrayList<>(summaries.values());
+			SwingUtilities.invokeLater(() ->
+			{
+				if (accountHash == lastAccount) panel.setSummaries(summaryList);
+			});
+		});
+
+		loadedFriendManager = new FriendManager(accountHash);
+		trackerDataStore.loadFriendData(accountHash)
+				.ifPresent(loadedFriendManager::applySaveData);
+
+		return loadedFriendManager;
+	}
+
+	/**
+	 * Runs the given action now, or once the current account has loaded if it is still loading.
+	 *
+	 * @param action the action to run
+	 */
+	private void runWhenLoaded(Runnable action)
+	{
+		synchronized (pendingActions)
+		{
+			if (loading)
+			{
+				pendingActions.add(action);
+				return;
+			}
+		}
+
+		action.run();
+	}
+
 	@Subscribe
 	public void onConfigChanged(ConfigChanged event)
 	{
@@ -113,6 +282,9 @@ public class FriendTrackerPlugin extends Plugin
 				case "wrapMergeCandidates":
 					panel.refresh();
 					break;
+				case "storageMode":
+					switchStorage(config.storageMode());
+					break;
 				case "secondarySort":
 				case "tertiarySort":
 				case "quaternarySort":
@@ -122,6 +294,31 @@ public class FriendTrackerPlugin extends Plugin
 		}
 	}
 
+	/**
+	 * Copies the saved data to the newly selected storage. Unsaved changes, including those of cached accounts, are
+	 * first written to the storage in use. If the data cannot be copied the previous storage mode is selected again.
+	 */
+	private void switchStorage(ConfigValues.StorageOptions storageMode)
+	{
+		executor.execute(() ->
+		{
+			FriendManager currentFriendManager = friendManager;
+			if (currentFriendManager != null) trackerDataWriter.flush(currentFriendManager);
+			friendManagerCache.clear();
+
+			try
+			{
+				trackerDataStore.switchStorage(storageMode);
+			}
+			catch (IOException | RuntimeException e)
+			{
+				log.warn("Failed to copy friend data to {}.", storageMode, e);
+				sendChatMessage("Friend data could not be copied to the selected storage, so it was not changed: " + e.getMessage());
+				configManager.setConfiguration(CONFIG_GROUP_NAME, "storageMode", trackerDataStore.getStorageMode());
+			}
+		});
+	}
+
 	@Subscribe
 	public void onRemovedFriend(RemovedFriend event)
 	{
@@ -140,6 +337,13 @@ public class FriendTrackerPlugin extends Plugin
 
 	public void removeFriend(String displayName, String previousName)
 	{
+		runWhenLoaded(() -> removeFriendNow(displayName, previousName));
+	}
+
+	private void removeFriendNow(String displayName, String previousName)
+	{
+		if (friendManager == null) return;
+
 		if (!navButton.isSelected())
 		{
 			navButton.getOnSelect().run();
@@ -151,6 +355,13 @@ public class FriendTrackerPlugin extends Plugin
 
 	public void removeFriend(Friend friend)
 	{
+		runWhenLoaded(() -> removeFriendNow(friend));
+	}
+
+	private void removeFriendNow(Friend friend)
+	{
+		if (friendManager == null) return;
+
 		if (!navButton.isSelected())
 		{
 			navButton.getOnSelect().run();
@@ -162,6 +373,125 @@ public class FriendTrackerPlugin extends Plugin
 
 	private static final String REFRESH = "Refresh Tracker";
 	private static final String DELETE = "Delete Tracker Data";
+	private static final String EXPORT_COMMAND = "ftexport";
+	private static final String IMPORT_COMMAND = "ftimport";
+
+	@Subscribe
+	public void onCommandExecuted(CommandExecuted event)
+	{
+		switch (event.getCommand().toLowerCase())
+		{
+			case EXPORT_COMMAND:
+				String[] arguments = event.getArguments();
+				exportData(arguments.length > 0 && arguments[0].equalsIgnoreCase("all"));
+				break;
+			case IMPORT_COMMAND:
+				importData();
+				break;
+		}
+	}
+
+	/**
+	 * Asks for a file and exports the saved data of the current account, or of every account, to it.
+	 *
+	 * @param allAccounts whether to export every account with saved data
+	 */
+	private void exportData(boolean allAccounts)
+	{
+		long accountHash = lastAccount;
+
+		SwingUtilities.invokeLater(() ->
+		{
+			JFileChooser fileChooser = new JFileChooser();
+			fileChooser.setSelectedFile(new File(RuneLite.RUNELITE_DIR, "friend-tracker-" + LocalDate.now() + ".gz"));
+			if (fileChooser.showSaveDialog(panel) != JFileChooser.APPROVE_OPTION) return;
+
+			File file = fileChooser.getSelectedFile();
+
+			executor.execute(() ->
+			{
+				FriendManager currentFriendManager = friendManager;
+				if (currentFriendManager != null)
+				{
+					trackerDataWriter.flush(currentFriendManager);
+				}
+
+				Collection<Long> accountHashes = allAccounts ? trackerDataStore.getSavedAccountHashes() : Collections.singleton(accountHash);
+
+				try
+				{
+					int friends = trackerDataBackup.export(file, accountHashes);
+					sendChatMessage("Exported " + friends + " friends to " + file.getName() + ".");
+				}
+				catch (IOException | RuntimeException e)
+				{
+					log.warn("Failed to export friend data to \"{}\".", file, e);
+					sendChatMessage("Friend data could not be exported: " + e.getMessage());
+				}
+			});
+		});
+	}
+
+	/**
+	 * Asks for a backup file and merges it into the saved data. Friends of the current account go through the
+	 * same merge as a refreshed friend, so ambiguous merges are shown in the panel.
+	 */
+	private void importData()
+	{
+		long accountHash = lastAccount;
+
+		SwingUtilities.invokeLater(() ->
+		{
+			JFileChooser fileChooser = new JFileChooser(RuneLite.RUNELITE_DIR);
+			if (fileChooser.showOpenDialog(panel) != JFileChooser.APPROVE_OPTION) return;
+
+			File file = fileChooser.getSelectedFile();
+
+			executor.execute(() ->
+			{
+				// Other accounts are merged into their saved data, which cached FriendManagers would not see
+				friendManagerCache.clear();
+
+				try
+				{
+					TrackerDataBackup.ImportSummary summary = trackerDataBackup.importFrom(file, accountHash, this::importFriend);
+					String skipped = summary.getSkipped() > 0 ? " Skipped " + summary.getSkipped() + " friends that could not be merged." : "";
+					sendChatMessage("Imported " + summary.getFriends() + " friends from " + summary.getAccounts() + " accounts." + skipped);
+				}
+				catch (IOException | RuntimeException e)
+				{
+					log.warn("Failed to import friend data from \"{}\".", file, e);
+					sendChatMessage("Friend data could not be imported: " + e.getMessage());
+				}
+			});
+		});
+	}
+
+	private void importFriend(Friend friend)
+	{
+		runWhenLoaded(() ->
+		{
+			FriendManager currentFriendManager = friendManager;
+			if (currentFriendManager == null) return;
+
+			if (currentFriendManager.getFriends().containsKey(friend.getID()))
+			{
+				resolveMerge(friend, friend.getID());
+			}
+			else
+			{
+				mergeNewSnapshot(friend, false);
+			}
+		});
+	}
+
+	private void sendChatMessage(String message)
+	{
+		chatMessageManager.queue(QueuedMessage.builder()
+				.type(ChatMessageType.CONSOLE)
+				.runeLiteFormattedMessage(message)
+				.build());
+	}
 
 	@Subscribe
 	public void onMenuEntryAdded(MenuEntryAdded event)
@@ -213,6 +543,13 @@ public class FriendTrackerPlugin extends Plugin
 
 	public void refreshList()
 	{
+		runWhenLoaded(this::refreshListNow);
+	}
+
+	private void refreshListNow()
+	{
+		if (friendManager == null) return;
+
 		net.runelite.api.Friend[] friendNames = this.client.getFriendContainer().getMembers();
 
 		boolean emptyList = friendManager.getFriends().values().isEmpty();
@@ -227,11 +564,29 @@ public class FriendTrackerPlugin extends Plugin
 
 	public void lookupAndMergeAsync(String name, String previousName, boolean emptyList)
 	{
+		runWhenLoaded(() -> lookupAndMerge(name, previousName, emptyList));
+	}
+
+	private void lookupAndMerge(String name, String previousName, boolean emptyList)
+	{
+		FriendManager currentFriendManager = friendManager;
+		if (currentFriendManager == null) return;
+
 		if (!navButton.isSelected())
 		{
 			navButton.getOnSelect().run();
 		}
 		Friend friend = new Friend(UUID.randomUUID().toString(), name, previousName);
+		long accountHash = currentFriendManager.getAccountHash();
+
+		SharedLookupPool.PooledLookup pooled = sharedLookupPool.getRecent(name, accountHash);
+		if (pooled != null)
+		{
+			log.info("Using HiscoreResult for {} fetched from another account", name);
+			friend.addSnapshot(pooled.getInstant(), pooled.getResult());
+			mergeNewSnapshot(friend, emptyList);
+			return;
+		}
 
 		log.info("Fetching HiscoreResult for " + name);
 		friendDataClient.lookupAsync(name).whenCompleteAsync((result, exception) ->
@@ -245,14 +600,18 @@ public class FriendTrackerPlugin extends Plugin
 				return;
 			}
 
-			friend.addSnapshotNow(result);
+			Instant fetched = clock.instant();
+			friend.addSnapshot(fetched, result);
+			sharedLookupPool.record(name, accountHash, fetched, result);
 
-			mergeNewSnapshot(friend, emptyList);
+			runWhenLoaded(() -> mergeNewSnapshot(friend, emptyList));
 		});
 	}
 
 	private void mergeNewSnapshot(Friend friend, boolean emptyList)
 	{
+		if (friendManager == null) return;
+
 		List<Friend> mergeCandidates = friendManager.getValidMergeCandidates(friend);
 
 		if(emptyList || mergeCandidates.isEmpty())
@@ -300,6 +659,13 @@ public class FriendTrackerPlugin extends Plugin
 	 */
 	public void resolveMerge(Friend newFriend, String mergeTargetID)
 	{
+		runWhenLoaded(() -> resolveMergeNow(newFriend, mergeTargetID));
+	}
+
+	private void resolveMergeNow(Friend newFriend, String mergeTargetID)
+	{
+		if (friendManager == null) return;
+
 		if(mergeTargetID.equals(""))
 		{
 			friendManager.add(newFriend);
@@ -321,7 +687,10 @@ public class FriendTrackerPlugin extends Plugin
 
 	public void saveCurrentFriendData()
 	{
-		trackerDataStore.saveFriendDataToConfig(friendManager.getAccountHash(), friendManager.getFriends());
+		FriendManager currentFriendManager = friendManager;
+		if (currentFriendManager == null) return;
+
+		trackerDataWriter.requestSave(currentFriendManager);
 	}
 
 	public void refresh()
@@ -346,4 +715,11 @@ public class FriendTrackerPlugin extends Plugin
 	{
 		return configManager.getConfig(FriendTrackerConfig.class);
 	}
+
+	@Provides
+	Clock provideClock()
+	{
+		// Timestamps snapshots, so it must not lag behind the time they are fetched at
+		return Clock.systemUTC();
+	}
 }
@@ -26,8 +26,12 @@ package com.friendtracker.config;
 
 import com.friendtracker.FriendTrackerConfig;
 import com.friendtracker.friends.Friend;
-import java.time.Period;
+import com.friendtracker.friends.FriendSummary;
+import com.friendtracker.friends.GainsTable;
 import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 
 public class ComparatorFactory
 {
@@ -39,58 +43,73 @@ public class ComparatorFactory
         this.config = config;
     }
 
-    public Comparator<Friend> createFriendComparatorFromConfig()
+    /**
+     * Creates a comparator that reads the gains of each Friend from the given table rather than measuring them.
+     *
+     * @param gains the gains of the Friends to compare
+     * @return the comparator configured by the sort options
+     */
+    public Comparator<Friend> createFriendComparatorFromConfig(GainsTable gains)
     {
-        Comparator<Friend> comparator = null;
+        return createComparatorFromConfig(Friend::getName, gains::getXpGained, gains::getKcGained);
+    }
+
+    public Comparator<FriendSummary> createSummaryComparatorFromConfig()
+    {
+        final ConfigValues.RangeOptions range = config.selectedRange();
+        final int rangeNumber = config.rangeNumber();
+
+        return createComparatorFromConfig(FriendSummary::getName,
+                summary -> summary.getXpGained(range, rangeNumber),
+                summary -> summary.getKcGained(range, rangeNumber));
+    }
+
+    private <T> Comparator<T> createComparatorFromConfig(Function<T, String> name, ToLongFunction<T> xpGained, ToIntFunction<T> kcGained)
+    {
+        Comparator<T> comparator = null;
 
         ConfigValues.SortOptions sortCriteria = config.sortCriteria();
         ConfigValues.OrderOptions sortOrder = config.sortOrder();
-        Period range = config.selectedRange().getPeriod();
-        final Period finalRange = range.multipliedBy(config.rangeNumber());
-        final Period tolerance = config.rangeTolerance().getPeriod();
 
         switch(sortCriteria.getComparator())
         {
             case "ALPHANUMERIC":
-                comparator = Comparator.comparing(Friend::getName, String.CASE_INSENSITIVE_ORDER);
+                comparator = Comparator.comparing(name, String.CASE_INSENSITIVE_ORDER);
                 break;
             case "TOTAL_XP":
-                comparator = Comparator.comparingLong(friend -> friend.xpGainedInTheLast(finalRange, tolerance));
+                comparator = Comparator.comparingLong(xpGained);
                 break;
             case "TOTAL_KC":
-                comparator = Comparator.comparingInt(friend -> friend.kcGainedInTheLast(finalRange, tolerance));
+                comparator = Comparator.comparingInt(kcGained);
                 break;
             default:
-                comparator = (friend1, friend2) -> Comparator.comparing(Friend::getName, String.CASE_INSENSITIVE_ORDER).compare(friend1, friend2);
+                comparator = Comparator.comparing(name, String.CASE_INSENSITIVE_ORDER);
         }
 
         if(sortOrder.equals(ConfigValues.OrderOptions.DESCENDING) && comparator != null) comparator = comparator.reversed();
 
-        comparator = thenComparing(comparator, config.secondarySort());
-        comparator = thenComparing(comparator, config.tertiarySort());
-        comparator = thenComparing(comparator, config.quaternarySort());
+        comparator = thenComparing(comparator, config.secondarySort(), name, xpGained, kcGained);
+        comparator = thenComparing(comparator, config.tertiarySort(), name, xpGained, kcGained);
+        comparator = thenComparing(comparator, config.quaternarySort(), name, xpGained, kcGained);
 
         return comparator;
     }
 
-    private Comparator<Friend> thenComparing(Comparator<Friend> comparator, ConfigValues.SortOptions sortCriteria)
+    private <T> Comparator<T> thenComparing(Comparator<T> comparator, ConfigValues.SortOptions sortCriteria,
+                                            Function<T, String> name, ToLongFunction<T> xpGained, ToIntFunction<T> kcGained)
     {
         if(sortCriteria.equals(config.sortCriteria())) return comparator;
 
-        Period range = config.selectedRange().getPeriod();
-        final Period finalRange = range.multipliedBy(config.rangeNumber());
-        final Period tolerance = config.rangeTolerance().getPeriod();
-
         switch(sortCriteria.getComparator())
         {
             case "ALPHANUMERIC":
-                return comparator.thenComparing(Friend::getName, String.CASE_INSENSITIVE_ORDER);
+                return comparator.thenComparing(name, String.CASE_INSENSITIVE_ORDER);
             case "TOTAL_XP":
-                return comparator.thenComparingLong(friend -> friend.xpGainedInTheLast(finalRange, tolerance));
+                return comparator.thenComparingLong(xpGained);
             case "TOTAL_KC":
-                return comparator.thenComparingInt(friend -> friend.kcGainedInTheLast(finalRange, tolerance));
+                return comparator.thenComparingInt(kcGained);
             default:
                 return comparator;
         }
     }
-}
\ No newline at end of file
+}
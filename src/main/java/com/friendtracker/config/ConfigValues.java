@@ -87,4 +87,36 @@ public class ConfigValues
             return displayName;
         }
     }
+
+    @Getter
+    @AllArgsConstructor
+    public enum StorageOptions
+    {
+        CONFIG("Profile config"),
+        FILE("Local file");
+
+        private String displayName;
+
+        @Override
+        public String toString()
+        {
+            return displayName;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public enum RetentionOptions
+    {
+        KEEP_ALL("Keep all"),
+        TIERED("Thin older snapshots");
+
+        private String displayName;
+
+        @Override
+        public String toString()
+        {
+            return displayName;
+        }
+    }
 }
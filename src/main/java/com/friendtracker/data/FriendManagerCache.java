@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.FriendTrackerConfig;
+import com.friendtracker.friends.FriendManager;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the FriendManagers of recently played accounts loaded so that switching back to an account does not
+ * reload its data.
+ *
+ * Managers are evicted least recently used first once their estimated heap exceeds
+ * {@link FriendTrackerConfig#accountCacheSize()}. A manager is flushed to storage and its summary index rewritten
+ * before it is cached and again when it is evicted or cleared, so evicting never loses changes.
+ */
+@Slf4j
+@Singleton
+public class FriendManagerCache
+{
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    private final TrackerDataWriter trackerDataWriter;
+    private final FriendTrackerConfig config;
+
+    // Account hash -> FriendManager, least recently used first
+    private final Map<Long, FriendManager> friendManagers = new LinkedHashMap<>();
+
+    @Inject
+    public FriendManagerCache(TrackerDataWriter trackerDataWriter, FriendTrackerConfig config)
+    {
+        this.trackerDataWriter = trackerDataWriter;
+        this.config = config;
+    }
+
+    /**
+     * Removes and returns the cached FriendManager of the given account.
+     *
+     * @param accountHash the account to look up
+     * @return the FriendManager of the account, or null if it is not cached
+     */
+    public synchronized FriendManager take(long accountHash)
+    {
+        return friendManagers.remove(accountHash);
+    }
+
+    /**
+     * Flushes the given FriendManager and caches it as the most recently used, evicting older managers to stay
+     * within the memory budget.
+     *
+     * @param friendManager the FriendManager of an account that is no longer logged in
+     */
+    public void put(FriendManager friendManager)
+    {
+        trackerDataWriter.flushAndSummarize(friendManager);
+
+        List<FriendManager> evicted = new ArrayList<>();
+        synchronized(this)
+        {
+            friendManagers.remove(friendManager.getAccountHash());
+            friendManagers.put(friendManager.getAccountHash(), friendManager);
+
+            long budget = config.accountCacheSize() * BYTES_PER_MB;
+            long total = friendManagers.values().stream().mapToLong(FriendManager::estimateHeapBytes).sum();
+
+            Iterator<FriendManager> iterator = friendManagers.values().iterator();
+            while(total > budget && iterator.hasNext())
+            {
+                FriendManager eldest = iterator.next();
+                total -= eldest.estimateHeapBytes();
+                iterator.remove();
+                evicted.add(eldest);
+            }
+        }
+
+        for(FriendManager eldest : evicted)
+        {
+            trackerDataWriter.flushAndSummarize(eldest);
+            log.debug("Evicted friend data of {} from the account cache.", eldest.getAccountHash());
+        }
+    }
+
+    /**
+     * Runs the given action on every cached FriendManager.
+     *
+     * @param action the action to run
+     */
+    public synchronized void forEach(Consumer<FriendManager> action)
+    {
+        friendManagers.values().forEach(action);
+    }
+
+    /**
+     * Flushes and removes every cached FriendManager, so that the next login to any account reloads its data
+     * from storage.
+     */
+    public void clear()
+    {
+        List<FriendManager> cleared;
+        synchronized(this)
+        {
+            cleared = new ArrayList<>(friendManagers.values());
+            friendManagers.clear();
+        }
+
+        cleared.forEach(trackerDataWriter::flushAndSummarize);
+    }
+}
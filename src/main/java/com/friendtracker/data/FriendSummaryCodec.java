@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.config.ConfigValues;
+import com.friendtracker.friends.FriendSummary;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the {@link FriendSummary} of every Friend of an account.
+ *
+ * <pre>
+ * index   := version:byte rangeCount:varint range:utf* count:varint summary*
+ * summary := id:utf name:utf previousNameCount:varint previousName:utf* rangeNumber:varint
+ *            overallXp:varlong totalKc:varint (xpGained:varlong kcGained:varlong)*rangeCount
+ * </pre>
+ *
+ * Ranges are identified by the name of their {@link ConfigValues.RangeOptions}, so ranges that are added later
+ * read as no gain and ranges that no longer exist are skipped. Gains are written as zigzag varints.
+ */
+public class FriendSummaryCodec
+{
+    public static final byte FORMAT_VERSION = 1;
+
+    private FriendSummaryCodec()
+    {
+    }
+
+    /**
+     * Encodes the summaries of an account.
+     *
+     * @param summaries the summaries to encode
+     * @return the encoded summaries
+     */
+    public static byte[] encode(Collection<FriendSummary> summaries)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ConfigValues.RangeOptions[] ranges = ConfigValues.RangeOptions.values();
+
+        try(DataOutputStream out = new DataOutputStream(bytes))
+        {
+            out.writeByte(FORMAT_VERSION);
+
+            SnapshotCodec.writeVarLong(out, ranges.length);
+            for(ConfigValues.RangeOptions range : ranges)
+            {
+                out.writeUTF(range.name());
+            }
+
+            SnapshotCodec.writeVarLong(out, summaries.size());
+            for(FriendSummary summary : summaries)
+            {
+                out.writeUTF(summary.getID());
+                out.writeUTF(summary.getName());
+                SnapshotCodec.writeVarLong(out, summary.getPreviousNames().size());
+                for(String previousName : summary.getPreviousNames())
+                {
+                    out.writeUTF(previousName);
+                }
+
+                SnapshotCodec.writeVarLong(out, summary.getRangeNumber());
+                SnapshotCodec.writeVarLong(out, summary.getOverallXp());
+                SnapshotCodec.writeVarLong(out, summary.getTotalKc());
+
+                for(ConfigValues.RangeOptions range : ranges)
+                {
+                    SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(summary.getXpGained(range, summary.getRangeNumber())));
+                    SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(summary.getKcGained(range, summary.getRangeNumber())));
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            // Writing to a byte array cannot fail
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes summaries encoded by {@link #encode}.
+     *
+     * @param data the encoded summaries
+     * @return the summaries keyed by Friend ID, in the order they were written
+     * @throws IOException if the data is malformed or was written by a newer version
+     */
+    public static Map<String, FriendSummary> decode(byte[] data) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        byte version = in.readByte();
+        if(version != FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported summary format version " + version);
+        }
+
+        // Stored range position -> RangeOptions ordinal, or -1 if the range no longer exists
+        int rangeCount = (int) SnapshotCodec.readVarLong(in);
+        int[] rangeOrdinals = new int[rangeCount];
+        for(int i = 0; i < rangeCount; i++)
+        {
+            rangeOrdinals[i] = rangeOrdinal(in.readUTF());
+        }
+
+        int count = (int) SnapshotCodec.readVarLong(in);
+        Map<String, FriendSummary> summaries = new LinkedHashMap<>();
+        ConfigValues.RangeOptions[] ranges = ConfigValues.RangeOptions.values();
+
+        for(int i = 0; i < count; i++)
+        {
+            String id = in.readUTF();
+            String name = in.readUTF();
+            int previousNameCount = (int) SnapshotCodec.readVarLong(in);
+            List<String> previousNames = new ArrayList<>(previousNameCount);
+            for(int j = 0; j < previousNameCount; j++)
+            {
+                previousNames.add(in.readUTF());
+            }
+
+            int rangeNumber = (int) SnapshotCodec.readVarLong(in);
+            long overallXp = SnapshotCodec.readVarLong(in);
+            int totalKc = (int) SnapshotCodec.readVarLong(in);
+
+            long[] xpGained = new long[ranges.length];
+            int[] kcGained = new int[ranges.length];
+            for(int ordinal : rangeOrdinals)
+            {
+                long xp = SnapshotCodec.unzigzag(SnapshotCodec.readVarLong(in));
+                int kc = (int) SnapshotCodec.unzigzag(SnapshotCodec.readVarLong(in));
+                if(ordinal < 0) continue;
+
+                xpGained[ordinal] = xp;
+                kcGained[ordinal] = kc;
+            }
+
+            summaries.put(id, new FriendSummary(id, name, previousNames, rangeNumber, overallXp, totalKc, xpGained, kcGained));
+        }
+
+        return summaries;
+    }
+
+    private static int rangeOrdinal(String name)
+    {
+        for(ConfigValues.RangeOptions range : ConfigValues.RangeOptions.values())
+        {
+            if(range.name().equals(name)) return range.ordinal();
+        }
+
+        return -1;
+    }
+}
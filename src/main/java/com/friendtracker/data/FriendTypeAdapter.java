@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.SkillPool;
+import com.friendtracker.friends.SnapshotHistory;
+import com.google.common.base.Strings;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import net.runelite.client.hiscore.HiscoreResult;
+
+/**
+ * Reads and writes Friends with the same field names as reflective serialization, with snapshots written as a map
+ * from ISO-8601 instants to HiscoreResults. Snapshot validity intervals are written as a separate map from the
+ * instant of each snapshot to the end of its interval. Snapshots taken under the Friend's current name are
+ * written without a player name.
+ */
+public class FriendTypeAdapter extends TypeAdapter<Friend>
+{
+    private final HiscoreResultTypeAdapter hiscoreResultTypeAdapter = new HiscoreResultTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, Friend friend) throws IOException
+    {
+        if(friend == null)
+        {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("ID").value(friend.getID());
+        out.name("name").value(friend.getName());
+
+        out.name("previousNames");
+        out.beginArray();
+        for(String previousName : friend.getPreviousNames())
+        {
+            out.value(previousName);
+        }
+        out.endArray();
+
+        out.name("hiscoreSnapshots");
+        out.beginObject();
+        for(Map.Entry<Instant, HiscoreResult> entry : friend.getHiscoreSnapshots().toMap().entrySet())
+        {
+            out.name(entry.getKey().toString());
+            hiscoreResultTypeAdapter.write(out, entry.getValue(), friend.getName());
+        }
+        out.endObject();
+
+        out.name("snapshotsValidUntil");
+        out.beginObject();
+        for(Map.Entry<Instant, Instant> entry : friend.getHiscoreSnapshots().validityIntervals().entrySet())
+        {
+            out.name(entry.getKey().toString()).value(entry.getValue().toString());
+        }
+        out.endObject();
+
+        out.endObject();
+    }
+
+    @Override
+    public Friend read(JsonReader in) throws IOException
+    {
+        if(in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+
+        String id = null;
+        String name = null;
+        List<String> previousNames = new ArrayList<>();
+        TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+        TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+        // Whether snapshots were read before the name, so those without a player name still need it
+        boolean snapshotsBeforeName = false;
+
+        in.beginObject();
+        while(in.hasNext())
+        {
+            String field = in.nextName();
+
+            if(in.peek() == JsonToken.NULL)
+            {
+                in.nextNull();
+                continue;
+            }
+
+            switch(field)
+            {
+                case "ID":
+                    id = in.nextString();
+                    break;
+                case "name":
+                    name = SnapshotCodec.intern(in.nextString());
+                    break;
+                case "previousNames":
+                    in.beginArray();
+                    while(in.hasNext())
+                    {
+                        previousNames.add(SnapshotCodec.intern(in.nextString()));
+                    }
+                    in.endArray();
+                    break;
+                case "hiscoreSnapshots":
+                    snapshotsBeforeName = name == null;
+                    in.beginObject();
+                    HiscoreResult previous = null;
+                    while(in.hasNext())
+                    {
+                        Instant instant = Instant.parse(in.nextName());
+                        // Snapshots are written in order, so share unchanged skills with the one read before
+                        previous = SkillPool.share(previous, hiscoreResultTypeAdapter.read(in, name));
+                        snapshots.put(instant, previous);
+                    }
+                    in.endObject();
+                    break;
+                case "snapshotsValidUntil":
+                    in.beginObject();
+                    while(in.hasNext())
+                    {
+                        Instant instant = Instant.parse(in.nextName());
+                        validUntil.put(instant, Instant.parse(in.nextString()));
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if(snapshotsBeforeName && name != null)
+        {
+            String player = name;
+            snapshots.replaceAll((instant, result) -> result.getPlayer() == null ? new HiscoreResult(player, result.getSkills()) : result);
+        }
+
+        Friend friend = new Friend(id, Strings.nullToEmpty(name));
+        friend.getPreviousNames().addAll(previousNames);
+        friend.setHiscoreSnapshots(new SnapshotHistory(snapshots, validUntil));
+
+        return friend;
+    }
+}
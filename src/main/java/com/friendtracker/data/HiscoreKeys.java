@@ -99,4 +99,30 @@ public class HiscoreKeys
             HUNTER,
             CONSTRUCTION
     );
+
+    /**
+     * Names of every HiscoreSkill in the order used to identify them in saved data.
+     *
+     * The position of a name in this list is written to storage in place of the HiscoreSkill itself, so entries
+     * must never be reordered or removed. HiscoreSkills added to RuneLite in future must be appended to the end.
+     * Names are used rather than HiscoreSkill constants so that data keeps decoding if a constant is removed.
+     */
+    public static final List<String> STORAGE_ORDER = ImmutableList.of(
+            "OVERALL", "ATTACK", "DEFENCE", "STRENGTH", "HITPOINTS", "RANGED", "PRAYER", "MAGIC", "COOKING",
+            "WOODCUTTING", "FLETCHING", "FISHING", "FIREMAKING", "CRAFTING", "SMITHING", "MINING",
+            "HERBLORE", "AGILITY", "THIEVING", "SLAYER", "FARMING", "RUNECRAFT", "HUNTER", "CONSTRUCTION",
+            "LEAGUE_POINTS", "BOUNTY_HUNTER_HUNTER", "BOUNTY_HUNTER_ROGUE", "CLUE_SCROLL_ALL",
+            "CLUE_SCROLL_BEGINNER", "CLUE_SCROLL_EASY", "CLUE_SCROLL_MEDIUM", "CLUE_SCROLL_HARD",
+            "CLUE_SCROLL_ELITE", "CLUE_SCROLL_MASTER", "LAST_MAN_STANDING", "PVP_ARENA_RANK",
+            "SOUL_WARS_ZEAL", "RIFTS_CLOSED", "ABYSSAL_SIRE", "ALCHEMICAL_HYDRA", "BARROWS_CHESTS",
+            "BRYOPHYTA", "CALLISTO", "CERBERUS", "CHAMBERS_OF_XERIC", "CHAMBERS_OF_XERIC_CHALLENGE_MODE",
+            "CHAOS_ELEMENTAL", "CHAOS_FANATIC", "COMMANDER_ZILYANA", "CORPOREAL_BEAST",
+            "CRAZY_ARCHAEOLOGIST", "DAGANNOTH_PRIME", "DAGANNOTH_REX", "DAGANNOTH_SUPREME",
+            "DERANGED_ARCHAEOLOGIST", "GENERAL_GRAARDOR", "GIANT_MOLE", "GROTESQUE_GUARDIANS", "HESPORI",
+            "KALPHITE_QUEEN", "KING_BLACK_DRAGON", "KRAKEN", "KREEARRA", "KRIL_TSUTSAROTH", "MIMIC", "NEX",
+            "NIGHTMARE", "PHOSANIS_NIGHTMARE", "OBOR", "SARACHNIS", "SCORPIA", "SKOTIZO", "TEMPOROSS",
+            "THE_GAUNTLET", "THE_CORRUPTED_GAUNTLET", "THEATRE_OF_BLOOD", "THEATRE_OF_BLOOD_HARD_MODE",
+            "THERMONUCLEAR_SMOKE_DEVIL", "TOMBS_OF_AMASCUT", "TOMBS_OF_AMASCUT_EXPERT", "TZKAL_ZUK",
+            "TZTOK_JAD", "VENENATIS", "VETION", "VORKATH", "WINTERTODT", "ZALCANO", "ZULRAH"
+    );
 }
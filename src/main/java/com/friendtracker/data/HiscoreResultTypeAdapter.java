@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.SkillPool;
+import com.friendtracker.panel.components.HiscoreUtil;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.HiscoreSkillType;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Reads and writes HiscoreResults as a player name and a map of ranked skills.
+ *
+ * Unranked skills are left out when writing and filled in when reading. Results saved in the legacy format, which
+ * has a field per skill named after the HiscoreResult getter, are also read.
+ *
+ * When written as a snapshot of a Friend, the player name is left out if it matches the Friend's name and filled
+ * back in when reading. Player names read are interned.
+ */
+@Slf4j
+public class HiscoreResultTypeAdapter extends TypeAdapter<HiscoreResult>
+{
+    private static final Map<String, HiscoreSkill> SKILLS_BY_NAME = new HashMap<>();
+    private static final Map<String, HiscoreSkill> SKILLS_BY_LEGACY_NAME = new HashMap<>();
+
+    static
+    {
+        for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+        {
+            SKILLS_BY_NAME.put(hiscoreSkill.name(), hiscoreSkill);
+            SKILLS_BY_LEGACY_NAME.put(HiscoreUtil.hiscoreSkillToHiscoreResultSkill(hiscoreSkill.name()), hiscoreSkill);
+        }
+    }
+
+    private final SkillTypeAdapter skillTypeAdapter = new SkillTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, HiscoreResult result) throws IOException
+    {
+        write(out, result, null);
+    }
+
+    /**
+     * Writes a HiscoreResult, leaving out the player name if it matches the given default.
+     *
+     * @param out the writer
+     * @param result the result to write
+     * @param defaultPlayer the player name to leave out, or null
+     * @throws IOException if the result could not be written
+     */
+    public void write(JsonWriter out, HiscoreResult result, String defaultPlayer) throws IOException
+    {
+        if(result == null)
+        {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+
+        if(result.getPlayer() != null && !result.getPlayer().equals(defaultPlayer))
+        {
+            out.name("player").value(result.getPlayer());
+        }
+
+        out.name("skills");
+        out.beginObject();
+        for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+        {
+            Skill skill = result.getSkill(hiscoreSkill);
+            // @todo change to test only rank if that is valid
+            if(skill == null ||
+                    (hiscoreSkill.getType() == HiscoreSkillType.SKILL && skill.getExperience() == -1L) ||
+                    (hiscoreSkill.getType() != HiscoreSkillType.SKILL && skill.getLevel() == -1)) continue;
+
+            out.name(hiscoreSkill.name());
+            skillTypeAdapter.write(out, skill);
+        }
+        out.endObject();
+
+        out.endObject();
+    }
+
+    @Override
+    public HiscoreResult read(JsonReader in) throws IOException
+    {
+        return read(in, null);
+    }
+
+    /**
+     * Reads a HiscoreResult, using the given default if it has no player name.
+     *
+     * @param in the reader
+     * @param defaultPlayer the player name of a result written without one, or null
+     * @return the result read
+     * @throws IOException if the result could not be read
+     */
+    public HiscoreResult read(JsonReader in, String defaultPlayer) throws IOException
+    {
+        if(in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+
+        String player = defaultPlayer;
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        boolean legacyFormat = true;
+
+        in.beginObject();
+        while(in.hasNext())
+        {
+            String name = in.nextName();
+
+            if(name.equals("player"))
+            {
+                player = readNullableString(in);
+            }
+            else if(name.equals("skills") && in.peek() == JsonToken.BEGIN_OBJECT)
+            {
+                legacyFormat = false;
+                readSkills(in, skills);
+            }
+            else if(SKILLS_BY_LEGACY_NAME.containsKey(name) && in.peek() == JsonToken.BEGIN_OBJECT)
+            {
+                skills.put(SKILLS_BY_LEGACY_NAME.get(name), skillTypeAdapter.read(in));
+            }
+            else
+            {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if(legacyFormat)
+        {
+            log.info("Deserializing legacy HiscoreResult data.");
+        }
+
+        for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+        {
+            if(skills.get(hiscoreSkill) == null)
+            {
+                skills.put(hiscoreSkill, SkillPool.UNRANKED);
+            }
+        }
+
+        return new HiscoreResult(SnapshotCodec.intern(player), skills);
+    }
+
+    private void readSkills(JsonReader in, Map<HiscoreSkill, Skill> skills) throws IOException
+    {
+        in.beginObject();
+        while(in.hasNext())
+        {
+            HiscoreSkill hiscoreSkill = SKILLS_BY_NAME.get(in.nextName());
+
+            // Skip skills unknown to this version of RuneLite
+            if(hiscoreSkill == null)
+            {
+                in.skipValue();
+                continue;
+            }
+
+            skills.put(hiscoreSkill, skillTypeAdapter.read(in));
+        }
+        in.endObject();
+    }
+
+    private static String readNullableString(JsonReader in) throws IOException
+    {
+        if(in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+
+        return in.nextString();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.Friend;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import net.runelite.client.hiscore.HiscoreResult;
+
+/**
+ * A single change to the tracked data of an account, as written to a {@link SnapshotJournal}.
+ */
+@Data
+@AllArgsConstructor
+public class JournalRecord
+{
+    public enum Type
+    {
+        FRIEND,
+        SNAPSHOT,
+        DISCARD,
+        REMOVE
+    }
+
+    private final Type type;
+    private final String id;
+    private final String name;
+    private final List<String> previousNames;
+    private final Instant time;
+    private final HiscoreResult result;
+
+    public static JournalRecord friend(Friend friend)
+    {
+        return new JournalRecord(Type.FRIEND, friend.getID(), friend.getName(), new ArrayList<>(friend.getPreviousNames()), null, null);
+    }
+
+    public static JournalRecord snapshot(String friendID, Instant time, HiscoreResult result)
+    {
+        return new JournalRecord(Type.SNAPSHOT, friendID, null, null, time, result);
+    }
+
+    public static JournalRecord discard(String friendID, Instant time)
+    {
+        return new JournalRecord(Type.DISCARD, friendID, null, null, time, null);
+    }
+
+    public static JournalRecord remove(String friendID)
+    {
+        return new JournalRecord(Type.REMOVE, friendID, null, null, null, null);
+    }
+
+    /**
+     * Applies this record to the given map of Friends.
+     *
+     * @param friends the Friends to update, keyed by ID
+     */
+    public void applyTo(Map<String, Friend> friends)
+    {
+        Friend friend = friends.get(id);
+
+        switch(type)
+        {
+            case FRIEND:
+                if(friend == null)
+                {
+                    friend = new Friend(id, name);
+                    friends.put(id, friend);
+                }
+                friend.setName(name);
+                friend.getPreviousNames().clear();
+                friend.getPreviousNames().addAll(previousNames);
+                break;
+            case SNAPSHOT:
+                if(friend != null) friend.addSnapshot(time, result);
+                break;
+            case DISCARD:
+                if(friend != null) friend.getHiscoreSnapshots().remove(time);
+                break;
+            case REMOVE:
+                friends.remove(id);
+                break;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.FriendTrackerConfig;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.util.Text;
+
+/**
+ * Shares hiscore lookups between the accounts that have the same player on their friends lists.
+ *
+ * The newest result of every recently looked up player is kept by name, so that refreshing the player from a
+ * different account within {@link #REUSE_WINDOW} reuses it instead of looking the player up again. A new result is
+ * also added to the same player on every other account held by the {@link FriendManagerCache}, if it is valid to
+ * merge into that account's Friend, and a save of each account changed is requested.
+ *
+ * Only lookups are shared. Each account still stores its own history of the player, as players are identified by
+ * name, which each account tracks changes to separately, and each account keeps or discards snapshots by its own
+ * retention.
+ */
+@Slf4j
+@Singleton
+public class SharedLookupPool
+{
+    public static final Duration REUSE_WINDOW = Duration.ofMinutes(5);
+    private static final int MAX_PLAYERS = 1024;
+
+    private final FriendManagerCache friendManagerCache;
+    private final TrackerDataWriter trackerDataWriter;
+    private final FriendTrackerConfig config;
+    private final Clock clock;
+
+    // Player name -> newest result, least recently used first
+    private final Map<String, PooledLookup> lookups = new LinkedHashMap<String, PooledLookup>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PooledLookup> eldest)
+        {
+            return size() > MAX_PLAYERS;
+        }
+    };
+
+    @Value
+    public static class PooledLookup
+    {
+        long accountHash;
+        Instant instant;
+        HiscoreResult result;
+    }
+
+    @Inject
+    public SharedLookupPool(FriendManagerCache friendManagerCache, TrackerDataWriter trackerDataWriter, FriendTrackerConfig config, Clock clock)
+    {
+        this.friendManagerCache = friendManagerCache;
+        this.trackerDataWriter = trackerDataWriter;
+        this.config = config;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the newest result of the given player if another account fetched it within {@link #REUSE_WINDOW}.
+     *
+     * @param name the name of the player
+     * @param accountHash the account refreshing the player
+     * @return the pooled lookup, or null if sharing is disabled or there is no recent result from another account
+     */
+    @Nullable
+    public synchronized PooledLookup getRecent(String name, long accountHash)
+    {
+        if(!config.shareLookups()) return null;
+
+        PooledLookup lookup = lookups.get(key(name));
+        if(lookup == null || lookup.getAccountHash() == accountHash) return null;
+        if(lookup.getInstant().plus(REUSE_WINDOW).isBefore(clock.instant())) return null;
+
+        return lookup;
+    }
+
+    /**
+     * Pools a freshly fetched result and adds it to the player on every other cached account.
+     *
+     * @param name the name the result was looked up by
+     * @param accountHash the account the result was looked up from
+     * @param instant the instant the result was fetched
+     * @param result the fetched result
+     */
+    public void record(String name, long accountHash, Instant instant, HiscoreResult result)
+    {
+        if(!config.shareLookups()) return;
+
+        synchronized(this)
+        {
+            lookups.put(key(name), new PooledLookup(accountHash, instant, result));
+        }
+
+        friendManagerCache.forEach(friendManager ->
+        {
+            if(friendManager.getAccountHash() == accountHash) return;
+
+            int added = friendManager.addSnapshot(Text.toJagexName(name), instant, result);
+            if(added == 0) return;
+
+            log.debug("Shared lookup of {} with account {}.", name, friendManager.getAccountHash());
+            trackerDataWriter.requestSave(friendManager);
+        });
+    }
+
+    /**
+     * Forgets every pooled result.
+     */
+    public synchronized void clear()
+    {
+        lookups.clear();
+    }
+
+    private static String key(String name)
+    {
+        return Text.toJagexName(name).toLowerCase(Locale.ROOT);
+    }
+}
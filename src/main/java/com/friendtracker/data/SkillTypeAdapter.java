@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.friendtracker.friends.SkillPool;
+import java.io.IOException;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Reads and writes Skills as objects with rank, level and experience fields. Unranked skills are read as the
+ * shared {@link SkillPool#UNRANKED} instance.
+ */
+public class SkillTypeAdapter extends TypeAdapter<Skill>
+{
+    @Override
+    public void write(JsonWriter out, Skill skill) throws IOException
+    {
+        if(skill == null)
+        {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("rank").value(skill.getRank());
+        out.name("level").value(skill.getLevel());
+        out.name("experience").value(skill.getExperience());
+        out.endObject();
+    }
+
+    @Override
+    public Skill read(JsonReader in) throws IOException
+    {
+        if(in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return null;
+        }
+
+        int rank = -1;
+        int level = -1;
+        long experience = -1;
+
+        in.beginObject();
+        while(in.hasNext())
+        {
+            switch(in.nextName())
+            {
+                case "rank":
+                    rank = in.nextInt();
+                    break;
+                case "level":
+                    level = in.nextInt();
+                    break;
+                case "experience":
+                    experience = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return SkillPool.of(rank, level, experience);
+    }
+}
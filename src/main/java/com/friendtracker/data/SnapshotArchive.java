@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.ArchivedSnapshots;
+import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.SnapshotHistory;
+import com.google.common.base.Strings;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.hiscore.HiscoreResult;
+
+/**
+ * A read-only, memory-mapped file holding the oldest snapshots of every Friend of an account, so that years of
+ * history take no heap until a snapshot is requested.
+ *
+ * <pre>
+ * archive := magic:int version:int friendCount:int friend* entry* payload* names*
+ * friend  := id:utf firstEntry:int entryCount:int namesOffset:long
+ * entry   := seconds:long nanos:int untilSeconds:long untilNanos:int payloadOffset:long
+ * payload := playerRef:varint changedCount:varint skill*
+ * names   := nameCount:varint name:utf*
+ * </pre>
+ *
+ * Entries have a fixed size and are sorted by instant within each Friend, so a snapshot is found by binary search
+ * without reading any payloads. A snapshot without a validity interval stores its own instant as the end of it.
+ * Payloads use the skill blocks of {@link SnapshotCodec}. Every {@link #KEYFRAME_INTERVAL}th snapshot of a Friend
+ * is stored against an unranked result and the others against the snapshot before them, so decoding a snapshot
+ * reads at most {@link #KEYFRAME_INTERVAL} payloads straight from the mapped file. The player name of a payload
+ * is a position in the Friend's name dictionary, where an empty name stands for no player name. Version 1
+ * archives write the player name in every payload instead.
+ *
+ * An archive is never modified once written. Rewriting it creates a new generation,
+ * {@code archive.<generation>.dat}, leaving the files mapped by previously loaded Friends intact. The highest
+ * generation is the current archive.
+ */
+@Slf4j
+public class SnapshotArchive
+{
+    static final int KEYFRAME_INTERVAL = 16;
+
+    private static final int MAGIC = 0x46544152;
+    private static final int VERSION = 2;
+    // Version 1 writes the player name of every payload
+    private static final int FIRST_VERSION = 1;
+    private static final int ENTRY_SIZE = 32;
+    private static final String TEMP_FILE = "archive.tmp";
+    private static final Pattern FILE_PATTERN = Pattern.compile("archive\\.(\\d+)\\.dat");
+
+    private final Map<String, ArchivedSnapshots> friends;
+
+    private SnapshotArchive(Map<String, ArchivedSnapshots> friends)
+    {
+        this.friends = friends;
+    }
+
+    /**
+     * Maps the given archive file.
+     *
+     * @param file the archive to open
+     * @return the opened archive
+     * @throws IOException if the file could not be mapped or is not a valid archive
+     */
+    static SnapshotArchive open(File file) throws IOException
+    {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        ByteBuffer header = buffer.duplicate();
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(header));
+
+        if(in.readInt() != MAGIC)
+        {
+            throw new IOException("\"" + file + "\" is not a snapshot archive");
+        }
+
+        int version = in.readInt();
+        if(version < FIRST_VERSION || version > VERSION)
+        {
+            throw new IOException("Unsupported snapshot archive version " + version);
+        }
+
+        int friendCount = in.readInt();
+        Map<String, long[]> ranges = new LinkedHashMap<>();
+        for(int i = 0; i < friendCount; i++)
+        {
+            ranges.put(in.readUTF(), new long[]{in.readInt(), in.readInt(), version > FIRST_VERSION ? in.readLong() : -1});
+        }
+
+        int entriesOffset = header.position();
+        Map<String, ArchivedSnapshots> friends = new HashMap<>();
+
+        for(Map.Entry<String, long[]> range : ranges.entrySet())
+        {
+            long firstEntry = range.getValue()[0];
+            int entryCount = (int) range.getValue()[1];
+            long namesOffset = range.getValue()[2];
+
+            if(entriesOffset + (firstEntry + entryCount) * ENTRY_SIZE > buffer.capacity() || namesOffset >= buffer.capacity())
+            {
+                throw new IOException("\"" + file + "\" is truncated");
+            }
+
+            String[] names = null;
+            if(namesOffset >= 0)
+            {
+                ByteBuffer namesBuffer = buffer.duplicate();
+                namesBuffer.position((int) namesOffset);
+                DataInputStream namesIn = new DataInputStream(new ByteBufferInputStream(namesBuffer));
+
+                names = new String[(int) SnapshotCodec.readVarLong(namesIn)];
+                for(int i = 0; i < names.length; i++)
+                {
+                    names[i] = SnapshotCodec.intern(Strings.emptyToNull(namesIn.readUTF()));
+                }
+            }
+
+            int offset = (int) (entriesOffset + firstEntry * ENTRY_SIZE);
+            friends.put(range.getKey(), new MappedSnapshots(buffer, offset, entryCount, names));
+        }
+
+        return new SnapshotArchive(friends);
+    }
+
+    /**
+     * Opens the current archive of an account.
+     *
+     * @param accountDir the directory holding the account's data
+     * @return the current archive, or null if the account has none
+     * @throws IOException if the current archive could not be opened
+     */
+    static SnapshotArchive openCurrent(File accountDir) throws IOException
+    {
+        Map.Entry<Long, File> current = generations(accountDir).lastEntry();
+
+        return current == null ? null : open(current.getValue());
+    }
+
+    /**
+     * Replaces the archived snapshots of each of the given Friends with those in this archive.
+     *
+     * @param friends the Friends to attach the archive to
+     */
+    void attachTo(Collection<Friend> friends)
+    {
+        for(Friend friend : friends)
+        {
+            friend.getHiscoreSnapshots().setArchive(this.friends.get(friend.getID()));
+        }
+    }
+
+    /**
+     * Writes a new archive holding every archived snapshot of the given Friends and every other snapshot taken
+     * before the cutoff, apart from each Friend's newest.
+     *
+     * @param accountDir the directory holding the account's data
+     * @param friends the Friends to archive
+     * @param cutoff the instant before which snapshots are archived
+     * @return the written file, to be moved to {@link #nextFile}, or null if there was nothing to archive
+     * @throws IOException if the archive could not be written
+     */
+    static File write(File accountDir, Collection<Friend> friends, Instant cutoff) throws IOException
+    {
+        Map<Friend, NavigableSet<Instant>> archived = new LinkedHashMap<>();
+        int total = 0;
+
+        for(Friend friend : friends)
+        {
+            NavigableSet<Instant> instants = friend.getHiscoreSnapshots().archivableInstants(cutoff);
+            if(instants.isEmpty()) continue;
+
+            archived.put(friend, instants);
+            total += instants.size();
+        }
+
+        if(archived.isEmpty()) return null;
+
+        // The header is the same size once the offsets of the name dictionaries are known
+        long entriesOffset = writeHeader(archived, new long[archived.size()]).length;
+        long payloadsOffset = entriesOffset + (long) total * ENTRY_SIZE;
+        ByteBuffer entries = ByteBuffer.allocate(total * ENTRY_SIZE);
+        File temp = new File(accountDir, TEMP_FILE);
+
+        try(FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            channel.position(payloadsOffset);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            List<Map<String, Integer>> names = new ArrayList<>();
+
+            for(Map.Entry<Friend, NavigableSet<Instant>> entry : archived.entrySet())
+            {
+                SnapshotHistory history = entry.getKey().getHiscoreSnapshots();
+                SnapshotCodec.SkillDeltas skills = new SnapshotCodec.SkillDeltas();
+                Map<String, Integer> friendNames = new LinkedHashMap<>();
+                names.add(friendNames);
+                int index = 0;
+
+                for(Instant instant : entry.getValue())
+                {
+                    if(index++ % KEYFRAME_INTERVAL == 0) skills.reset();
+
+                    Instant until = history.getValidUntil(instant);
+                    if(until == null) until = instant;
+
+                    entries.putLong(instant.getEpochSecond());
+                    entries.putInt(instant.getNano());
+                    entries.putLong(until.getEpochSecond());
+                    entries.putInt(until.getNano());
+                    entries.putLong(payloadsOffset + out.size());
+
+                    HiscoreResult result = history.get(instant);
+                    String player = Strings.nullToEmpty(result.getPlayer());
+                    SnapshotCodec.writeVarLong(out, friendNames.computeIfAbsent(player, name -> friendNames.size()));
+                    skills.write(out, result);
+                }
+            }
+
+            long[] namesOffsets = new long[names.size()];
+            for(int i = 0; i < names.size(); i++)
+            {
+                namesOffsets[i] = payloadsOffset + out.size();
+                SnapshotCodec.writeVarLong(out, names.get(i).size());
+                for(String name : names.get(i).keySet())
+                {
+                    out.writeUTF(name);
+                }
+            }
+
+            out.flush();
+
+            entries.flip();
+            writeFully(channel, entries, entriesOffset);
+            writeFully(channel, ByteBuffer.wrap(writeHeader(archived, namesOffsets)), 0);
+            channel.force(true);
+        }
+
+        return temp;
+    }
+
+    private static byte[] writeHeader(Map<Friend, NavigableSet<Instant>> archived, long[] namesOffsets) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(archived.size());
+
+        int firstEntry = 0;
+        int friend = 0;
+        for(Map.Entry<Friend, NavigableSet<Instant>> entry : archived.entrySet())
+        {
+            header.writeUTF(entry.getKey().getID());
+            header.writeInt(firstEntry);
+            header.writeInt(entry.getValue().size());
+            header.writeLong(namesOffsets[friend++]);
+            firstEntry += entry.getValue().size();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while(buffer.hasRemaining())
+        {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Returns the file for the next generation of an account's archive.
+     *
+     * @param accountDir the directory holding the account's data
+     * @return a file one generation after the current archive
+     */
+    static File nextFile(File accountDir)
+    {
+        Map.Entry<Long, File> current = generations(accountDir).lastEntry();
+        long generation = current == null ? 1 : current.getKey() + 1;
+
+        return new File(accountDir, "archive." + generation + ".dat");
+    }
+
+    /**
+     * Deletes every generation of an account's archive other than the given file. Files that cannot be deleted,
+     * such as one still mapped on Windows, are left for a later call.
+     *
+     * @param accountDir the directory holding the account's data
+     * @param current the archive to keep, or null to delete every archive
+     */
+    static void deleteStale(File accountDir, File current)
+    {
+        for(File file : generations(accountDir).values())
+        {
+            if(file.equals(current)) continue;
+
+            try
+            {
+                Files.deleteIfExists(file.toPath());
+            }
+            catch(IOException e)
+            {
+                log.debug("Stale archive \"{}\" could not be deleted yet.", file);
+            }
+        }
+    }
+
+    private static TreeMap<Long, File> generations(File accountDir)
+    {
+        TreeMap<Long, File> generations = new TreeMap<>();
+        File[] files = accountDir.listFiles();
+        if(files == null) return generations;
+
+        for(File file : files)
+        {
+            Matcher matcher = FILE_PATTERN.matcher(file.getName());
+            if(matcher.matches())
+            {
+                generations.put(Long.parseLong(matcher.group(1)), file);
+            }
+        }
+
+        return generations;
+    }
+
+    /**
+     * The archived snapshots of a single Friend, read directly from the mapped file.
+     */
+    private static class MappedSnapshots implements ArchivedSnapshots
+    {
+        private final ByteBuffer buffer;
+        private final int entriesOffset;
+        private final int size;
+        // Name dictionary, or null if player names are written in each payload
+        private final String[] names;
+
+        MappedSnapshots(ByteBuffer buffer, int entriesOffset, int size, String[] names)
+        {
+            this.buffer = buffer;
+            this.entriesOffset = entriesOffset;
+            this.size = size;
+            this.names = names;
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public Instant getInstant(int index)
+        {
+            int entry = entriesOffset + index * ENTRY_SIZE;
+            return Instant.ofEpochSecond(buffer.getLong(entry), buffer.getInt(entry + 8));
+        }
+
+        @Override
+        public Instant getValidUntil(int index)
+        {
+            int entry = entriesOffset + index * ENTRY_SIZE;
+            long seconds = buffer.getLong(entry);
+            int nanos = buffer.getInt(entry + 8);
+            long untilSeconds = buffer.getLong(entry + 12);
+            int untilNanos = buffer.getInt(entry + 20);
+
+            return seconds == untilSeconds && nanos == untilNanos ? null : Instant.ofEpochSecond(untilSeconds, untilNanos);
+        }
+
+        @Override
+        public HiscoreResult decode(int index)
+        {
+            int keyframe = index - index % KEYFRAME_INTERVAL;
+
+            try
+            {
+                DataInputStream in = openPayload(keyframe);
+                SnapshotCodec.SkillDeltas skills = new SnapshotCodec.SkillDeltas();
+                String player = null;
+
+                for(int i = keyframe; i <= index; i++)
+                {
+                    player = readPlayer(in);
+                    skills.read(in);
+                }
+
+                return skills.toResult(player);
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public TreeMap<Instant, HiscoreResult> decodeAll()
+        {
+            TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+            if(size == 0) return snapshots;
+
+            try
+            {
+                DataInputStream in = openPayload(0);
+                SnapshotCodec.SkillDeltas skills = new SnapshotCodec.SkillDeltas();
+
+                for(int i = 0; i < size; i++)
+                {
+                    if(i % KEYFRAME_INTERVAL == 0) skills.reset();
+
+                    String player = readPlayer(in);
+                    skills.read(in);
+                    snapshots.put(getInstant(i), skills.toResult(player));
+                }
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+
+            return snapshots;
+        }
+
+        private String readPlayer(DataInputStream in) throws IOException
+        {
+            if(names == null) return SnapshotCodec.intern(Strings.emptyToNull(in.readUTF()));
+
+            int reference = (int) SnapshotCodec.readVarLong(in);
+            if(reference >= names.length) throw new IOException("Unknown player name reference " + reference);
+
+            return names[reference];
+        }
+
+        private DataInputStream openPayload(int index)
+        {
+            ByteBuffer payload = buffer.duplicate();
+            payload.position((int) buffer.getLong(entriesOffset + index * ENTRY_SIZE + 24));
+
+            return new DataInputStream(new ByteBufferInputStream(payload));
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if(!buffer.hasRemaining()) return -1;
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,571 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.SkillPool;
+import com.friendtracker.friends.SnapshotHistory;
+import com.friendtracker.friends.SnapshotSource;
+import com.google.common.base.Strings;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Compact binary encoding of a Friend and its hiscore snapshots.
+ *
+ * The first snapshot of a Friend is stored as a delta against an unranked result and every later snapshot as a
+ * delta against the one before it, so a snapshot only costs bytes for the skills that changed. Skills are
+ * identified by their position in {@link HiscoreKeys#STORAGE_ORDER} and all numbers are written as zigzag
+ * varints.
+ *
+ * <pre>
+ * friend   := version:byte id:utf name:utf previousNameCount:varint previousName:utf* snapshots
+ * snapshots := nameCount:varint name:utf* count:varint snapshot*
+ * snapshot := secondsDelta:varlong nanos:varint playerRef:varint validUntil changedCount:varint skill*
+ * validUntil := 0:varint | untilSecondsDelta+1:varlong untilNanos:varint
+ * skill    := key:varint [name:utf if key == 0] rankDelta:varlong levelDelta:varlong xpDelta:varlong
+ * </pre>
+ *
+ * The player name of each snapshot is a reference into a dictionary of the names the Friend has been seen
+ * with. A reference of zero is the Friend's own name and any other reference is a position in the dictionary,
+ * counting from one. An empty name stands for no player name. Versions before 3 write the name in every
+ * snapshot instead. Decoded names are interned, so every snapshot of every Friend shares one copy of each name.
+ *
+ * A snapshot that was fetched again unchanged records the last time it was seen, as seconds after the snapshot
+ * plus one, in place of a zero. A skill key is its storage index plus one. A key of zero is followed by the skill name and is used for
+ * HiscoreSkills missing from the storage order. Skills that this version of the plugin does not recognise are
+ * skipped when decoding.
+ *
+ * Decoding a Friend only builds a HiscoreResult for its newest snapshot. Older snapshots are decoded from the
+ * retained data when they are first requested from the Friend's {@link SnapshotHistory}.
+ */
+public class SnapshotCodec
+{
+    public static final byte FORMAT_VERSION = 3;
+    // Version 1 has no validity intervals
+    private static final byte FIRST_FORMAT_VERSION = 1;
+    // Versions before 3 write the player name of every snapshot
+    private static final byte NAME_DICTIONARY_VERSION = 3;
+
+    private static final Interner<String> NAMES = Interners.newWeakInterner();
+
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+    // Storage index -> HiscoreSkill, or null if the HiscoreSkill no longer exists
+    private static final HiscoreSkill[] STORAGE_SKILLS = new HiscoreSkill[HiscoreKeys.STORAGE_ORDER.size()];
+    // HiscoreSkill ordinal -> storage key
+    private static final int[] STORAGE_KEYS = new int[SKILLS.length];
+
+    static
+    {
+        for(int i = 0; i < STORAGE_SKILLS.length; i++)
+        {
+            STORAGE_SKILLS[i] = skillByName(HiscoreKeys.STORAGE_ORDER.get(i));
+        }
+
+        for(HiscoreSkill hiscoreSkill : SKILLS)
+        {
+            STORAGE_KEYS[hiscoreSkill.ordinal()] = HiscoreKeys.STORAGE_ORDER.indexOf(hiscoreSkill.name()) + 1;
+        }
+    }
+
+    private SnapshotCodec()
+    {
+    }
+
+    public static byte[] encode(Friend friend)
+    {
+        return encode(friend, true);
+    }
+
+    /**
+     * Encodes a Friend.
+     *
+     * @param friend the Friend to encode
+     * @param includeArchived whether to include the snapshots held in the Friend's archive
+     * @return the encoded Friend
+     */
+    public static byte[] encode(Friend friend, boolean includeArchived)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try(DataOutputStream out = new DataOutputStream(bytes))
+        {
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(friend.getID());
+            out.writeUTF(friend.getName());
+            writeVarLong(out, friend.getPreviousNames().size());
+            for(String previousName : friend.getPreviousNames())
+            {
+                out.writeUTF(previousName);
+            }
+
+            SnapshotHistory history = friend.getHiscoreSnapshots();
+            writeSnapshots(out, friend.getName(), history.toMap(includeArchived), history.validityIntervals(includeArchived));
+        }
+        catch(IOException e)
+        {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a Friend, leaving every snapshot other than the newest encoded until it is requested.
+     *
+     * @param data the encoded Friend
+     * @return the decoded Friend
+     * @throws IOException if the data is malformed
+     */
+    public static Friend decode(byte[] data) throws IOException
+    {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+
+        int version = in.readByte();
+        if(version < FIRST_FORMAT_VERSION || version > FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported snapshot format version " + version);
+        }
+
+        Friend friend = new Friend(in.readUTF(), intern(in.readUTF()));
+        long previousNameCount = readVarLong(in);
+        for(long i = 0; i < previousNameCount; i++)
+        {
+            friend.getPreviousNames().add(intern(in.readUTF()));
+        }
+
+        String[] names = {friend.getName()};
+        if(version >= NAME_DICTIONARY_VERSION)
+        {
+            names = new String[(int) readVarLong(in) + 1];
+            names[0] = friend.getName();
+            for(int i = 1; i < names.length; i++)
+            {
+                names[i] = intern(Strings.emptyToNull(in.readUTF()));
+            }
+        }
+
+        int snapshotsOffset = data.length - bytes.available();
+
+        // Index every snapshot, only building a HiscoreResult for the newest
+        TreeMap<Instant, Integer> index = new TreeMap<>();
+        TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+        SnapshotReader reader = new SnapshotReader(version, names);
+        int count = (int) readVarLong(in);
+
+        for(int i = 0; i < count; i++)
+        {
+            reader.readNext(in);
+            index.put(reader.instant, i);
+            if(reader.validUntil != null) validUntil.put(reader.instant, reader.validUntil);
+        }
+
+        if(count > 0)
+        {
+            EncodedSnapshots source = new EncodedSnapshots(data, snapshotsOffset, version, names);
+            friend.setHiscoreSnapshots(new SnapshotHistory(source, index, validUntil, reader.instant, reader.toResult()));
+        }
+
+        return friend;
+    }
+
+    static void writeSnapshots(DataOutput out, String name, NavigableMap<Instant, HiscoreResult> snapshots, Map<Instant, Instant> validUntil) throws IOException
+    {
+        // Name -> reference, for every name other than the Friend's own
+        Map<String, Integer> names = new LinkedHashMap<>();
+        for(HiscoreResult result : snapshots.values())
+        {
+            String player = Strings.nullToEmpty(result.getPlayer());
+            if(!player.equals(name)) names.putIfAbsent(player, names.size() + 1);
+        }
+
+        writeVarLong(out, names.size());
+        for(String player : names.keySet())
+        {
+            out.writeUTF(player);
+        }
+
+        SkillDeltas skills = new SkillDeltas();
+        long previousSeconds = 0;
+
+        writeVarLong(out, snapshots.size());
+
+        for(Map.Entry<Instant, HiscoreResult> entry : snapshots.entrySet())
+        {
+            Instant instant = entry.getKey();
+            HiscoreResult result = entry.getValue();
+
+            writeVarLong(out, zigzag(instant.getEpochSecond() - previousSeconds));
+            writeVarLong(out, instant.getNano());
+            writeVarLong(out, names.getOrDefault(Strings.nullToEmpty(result.getPlayer()), 0));
+            previousSeconds = instant.getEpochSecond();
+
+            Instant until = validUntil.get(instant);
+            if(until == null)
+            {
+                writeVarLong(out, 0);
+            }
+            else
+            {
+                writeVarLong(out, until.getEpochSecond() - instant.getEpochSecond() + 1);
+                writeVarLong(out, until.getNano());
+            }
+
+            skills.write(out, result);
+        }
+    }
+
+    /**
+     * The skills of the current snapshot in a series, held as primitives, and the changed skill blocks that move
+     * the series from one snapshot to the next.
+     */
+    static class SkillDeltas
+    {
+        private final long[] ranks = new long[SKILLS.length];
+        private final long[] levels = new long[SKILLS.length];
+        private final long[] experiences = new long[SKILLS.length];
+        private final int[] changed = new int[SKILLS.length];
+        // Shares unchanged skills between the results built for consecutive snapshots of the series
+        private final SkillPool skillPool = new SkillPool();
+
+        SkillDeltas()
+        {
+            reset();
+        }
+
+        /**
+         * Resets every skill to unranked, so the next snapshot is written or read in full.
+         */
+        void reset()
+        {
+            Arrays.fill(ranks, -1);
+            Arrays.fill(levels, -1);
+            Arrays.fill(experiences, -1);
+        }
+
+        void write(DataOutput out, HiscoreResult result) throws IOException
+        {
+            int changedCount = 0;
+            for(HiscoreSkill hiscoreSkill : SKILLS)
+            {
+                int i = hiscoreSkill.ordinal();
+                Skill skill = result.getSkill(hiscoreSkill);
+
+                long rank = skill != null ? skill.getRank() : -1;
+                long level = skill != null ? skill.getLevel() : -1;
+                long experience = skill != null ? skill.getExperience() : -1;
+
+                if(rank != ranks[i] || level != levels[i] || experience != experiences[i])
+                {
+                    changed[changedCount++] = i;
+                }
+            }
+
+            writeVarLong(out, changedCount);
+
+            for(int c = 0; c < changedCount; c++)
+            {
+                int i = changed[c];
+                HiscoreSkill hiscoreSkill = SKILLS[i];
+                Skill skill = result.getSkill(hiscoreSkill);
+
+                writeVarLong(out, STORAGE_KEYS[i]);
+                if(STORAGE_KEYS[i] == 0)
+                {
+                    out.writeUTF(hiscoreSkill.name());
+                }
+
+                long rank = skill != null ? skill.getRank() : -1;
+                long level = skill != null ? skill.getLevel() : -1;
+                long experience = skill != null ? skill.getExperience() : -1;
+
+                writeVarLong(out, zigzag(rank - ranks[i]));
+                writeVarLong(out, zigzag(level - levels[i]));
+                writeVarLong(out, zigzag(experience - experiences[i]));
+
+                ranks[i] = rank;
+                levels[i] = level;
+                experiences[i] = experience;
+            }
+        }
+
+        void read(DataInput in) throws IOException
+        {
+            long changedCount = readVarLong(in);
+            for(long c = 0; c < changedCount; c++)
+            {
+                HiscoreSkill hiscoreSkill = readSkillKey(in);
+
+                long rankDelta = unzigzag(readVarLong(in));
+                long levelDelta = unzigzag(readVarLong(in));
+                long experienceDelta = unzigzag(readVarLong(in));
+
+                // Skip skills unknown to this version of RuneLite
+                if(hiscoreSkill == null) continue;
+
+                int i = hiscoreSkill.ordinal();
+                ranks[i] += rankDelta;
+                levels[i] += levelDelta;
+                experiences[i] += experienceDelta;
+            }
+        }
+
+        HiscoreResult toResult(String player)
+        {
+            Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+            for(HiscoreSkill hiscoreSkill : SKILLS)
+            {
+                int i = hiscoreSkill.ordinal();
+                skills.put(hiscoreSkill, skillPool.get(hiscoreSkill, (int) ranks[i], (int) levels[i], experiences[i]));
+            }
+
+            return new HiscoreResult(player, skills);
+        }
+    }
+
+    /**
+     * Reads a series of snapshots one at a time, holding the skills of the current snapshot as primitives so
+     * that a HiscoreResult is only built for the snapshots that are needed.
+     */
+    static class SnapshotReader
+    {
+        private final SkillDeltas skills = new SkillDeltas();
+        private final int version;
+        private final String[] names;
+        private long seconds = 0;
+        Instant instant;
+        String player;
+        Instant validUntil;
+
+        /**
+         * @param version the format version of the snapshots
+         * @param names the Friend's name followed by its name dictionary
+         */
+        SnapshotReader(int version, String[] names)
+        {
+            this.version = version;
+            this.names = names;
+        }
+
+        void readNext(DataInput in) throws IOException
+        {
+            seconds += unzigzag(readVarLong(in));
+            instant = Instant.ofEpochSecond(seconds, readVarLong(in));
+            if(version >= NAME_DICTIONARY_VERSION)
+            {
+                int reference = (int) readVarLong(in);
+                if(reference >= names.length) throw new IOException("Unknown player name reference " + reference);
+                player = names[reference];
+            }
+            else
+            {
+                player = intern(Strings.emptyToNull(in.readUTF()));
+            }
+
+            validUntil = null;
+            if(version > FIRST_FORMAT_VERSION)
+            {
+                long untilDelta = readVarLong(in);
+                if(untilDelta > 0) validUntil = Instant.ofEpochSecond(seconds + untilDelta - 1, readVarLong(in));
+            }
+
+            skills.read(in);
+        }
+
+        HiscoreResult toResult()
+        {
+            return skills.toResult(player);
+        }
+    }
+
+    /**
+     * The encoded snapshots of a Friend, decoded by replaying the deltas from the first snapshot.
+     *
+     * The reader is kept at the last snapshot decoded, so decoding snapshots in order of age replays each delta
+     * once. Only a snapshot older than the last one decoded replays from the first snapshot again.
+     */
+    static class EncodedSnapshots implements SnapshotSource
+    {
+        private final byte[] data;
+        private final int offset;
+        private final int version;
+        private final String[] names;
+        // Positioned after the snapshot at readerIndex, or null until a snapshot is first decoded
+        private DataInputStream in;
+        private SnapshotReader reader;
+        private int readerIndex;
+
+        EncodedSnapshots(byte[] data, int offset, int version, String[] names)
+        {
+            this.data = data;
+            this.offset = offset;
+            this.version = version;
+            this.names = names;
+        }
+
+        @Override
+        public synchronized HiscoreResult decode(int index)
+        {
+            try
+            {
+                if(reader == null || index < readerIndex)
+                {
+                    in = open();
+                    reader = new SnapshotReader(version, names);
+                    readerIndex = -1;
+                    readVarLong(in);
+                }
+
+                for(; readerIndex < index; readerIndex++)
+                {
+                    reader.readNext(in);
+                }
+
+                return reader.toResult();
+            }
+            catch(IOException e)
+            {
+                reader = null;
+                // The data was fully read once when it was indexed
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public TreeMap<Instant, HiscoreResult> decodeAll()
+        {
+            try
+            {
+                DataInputStream in = open();
+                SnapshotReader reader = new SnapshotReader(version, names);
+                TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+                long count = readVarLong(in);
+
+                for(long i = 0; i < count; i++)
+                {
+                    reader.readNext(in);
+                    snapshots.put(reader.instant, reader.toResult());
+                }
+
+                return snapshots;
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private DataInputStream open()
+        {
+            return new DataInputStream(new ByteArrayInputStream(data, offset, data.length - offset));
+        }
+    }
+
+    /**
+     * Returns the shared copy of the given player name.
+     *
+     * @param name the name to intern, or null
+     * @return an equal name shared by every caller, or null
+     */
+    static String intern(String name)
+    {
+        return name == null ? null : NAMES.intern(name);
+    }
+
+    private static HiscoreSkill readSkillKey(DataInput in) throws IOException
+    {
+        long key = readVarLong(in);
+
+        if(key == 0)
+        {
+            return skillByName(in.readUTF());
+        }
+
+        return key <= STORAGE_SKILLS.length ? STORAGE_SKILLS[(int) key - 1] : null;
+    }
+
+    private static HiscoreSkill skillByName(String name)
+    {
+        try
+        {
+            return HiscoreSkill.valueOf(name);
+        }
+        catch(IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    static long zigzag(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException
+    {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7)
+        {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
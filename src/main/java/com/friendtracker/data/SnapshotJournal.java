@@ -0,0 +1,632 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.FriendTrackerConfig;
+import com.friendtracker.friends.Friend;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+
+/**
+ * Stores the tracked data of each account as a base file plus an append-only journal of changes, under
+ * {@code .runelite/friend-tracker/<accountHash>/}. The base file holds every Friend encoded with
+ * {@link SnapshotCodec} and the journal holds one JSON {@link JournalRecord} per line.
+ *
+ * Saving appends one line per changed Friend, new snapshot or removal to the journal so the cost of a save
+ * depends only on what changed. Loading reads the base file then replays the journal over it. Once the journal
+ * grows past {@link #COMPACTION_THRESHOLD_BYTES} it is folded into a new base file on a background thread.
+ *
+ * Compaction also moves snapshots older than {@link FriendTrackerConfig#archiveAfterDays()} out of the base file
+ * into a {@link SnapshotArchive}, which is mapped rather than read into memory when loading.
+ *
+ * The account's {@link FriendSummaryCodec summary index} is kept alongside, in {@code summary.bin}.
+ */
+@Slf4j
+@Singleton
+public class SnapshotJournal
+{
+    private static final File JOURNAL_DIR = new File(RuneLite.RUNELITE_DIR, "friend-tracker");
+    private static final String BASE_FILE = "base.bin";
+    private static final String BASE_TEMP_FILE = "base.bin.tmp";
+    private static final String JSON_BASE_FILE = "base.json";
+    private static final String JOURNAL_FILE = "journal.log";
+    private static final String SUMMARY_FILE = "summary.bin";
+    private static final String SUMMARY_TEMP_FILE = "summary.bin.tmp";
+    // Journal being folded into the base file. Replayed between the base file and the journal if present.
+    private static final String COMPACTING_FILE = "journal.compacting";
+    private static final long COMPACTION_THRESHOLD_BYTES = 512 * 1024;
+
+    private final ScheduledExecutorService executor;
+    private final FriendTrackerConfig config;
+    // Read for the instant snapshots are archived before
+    private final Clock clock;
+    private final File journalDir;
+    private final Set<Long> compactionsInProgress = new HashSet<>();
+    // accountHash -> number of full base writes, so a compaction can tell its base file has been replaced
+    private final Map<Long, Integer> baseGenerations = new HashMap<>();
+
+    @Inject
+    public SnapshotJournal(ScheduledExecutorService executor, FriendTrackerConfig config, Clock clock)
+    {
+        this(executor, config, clock, JOURNAL_DIR);
+    }
+
+    SnapshotJournal(ScheduledExecutorService executor, FriendTrackerConfig config, Clock clock, File journalDir)
+    {
+        this.executor = executor;
+        this.config = config;
+        this.clock = clock;
+        this.journalDir = journalDir;
+    }
+
+    private File getAccountDir(long accountHash)
+    {
+        return new File(journalDir, Long.toString(accountHash));
+    }
+
+    /**
+     * Returns true if journal data has previously been written for the given account.
+     *
+     * @param accountHash the account to check
+     * @return whether a base file or journal exists for the account
+     */
+    public boolean exists(long accountHash)
+    {
+        File accountDir = getAccountDir(accountHash);
+
+        return new File(accountDir, BASE_FILE).exists() ||
+                new File(accountDir, JSON_BASE_FILE).exists() ||
+                new File(accountDir, JOURNAL_FILE).exists() ||
+                new File(accountDir, COMPACTING_FILE).exists();
+    }
+
+    /**
+     * Finds every account that journal data has been written for.
+     *
+     * @return the hashes of the accounts with journal data
+     */
+    public Set<Long> getAccountHashes()
+    {
+        Set<Long> accountHashes = new HashSet<>();
+        File[] accountDirs = journalDir.listFiles(File::isDirectory);
+        if(accountDirs == null) return accountHashes;
+
+        for(File accountDir : accountDirs)
+        {
+            try
+            {
+                long accountHash = Long.parseLong(accountDir.getName());
+                if(exists(accountHash)) accountHashes.add(accountHash);
+            }
+            catch(NumberFormatException e)
+            {
+                // Not an account directory
+            }
+        }
+
+        return accountHashes;
+    }
+
+    /**
+     * Loads the base file of the given account, attaches its archive and replays its journal over it.
+     *
+     * @param gson the Gson instance used to read the data
+     * @param accountHash the account to load
+     * @return the Friends of the account
+     * @throws IOException if the data could not be read
+     */
+    public synchronized Map<String, Friend> load(Gson gson, long accountHash) throws IOException
+    {
+        File accountDir = getAccountDir(accountHash);
+
+        try
+        {
+            Map<String, Friend> friends = readBase(gson, accountDir);
+            SnapshotArchive archive = SnapshotArchive.openCurrent(accountDir);
+            if(archive != null) archive.attachTo(friends.values());
+
+            int records = replay(gson, new File(accountDir, COMPACTING_FILE), friends);
+            records += replay(gson, new File(accountDir, JOURNAL_FILE), friends);
+
+            log.debug("Loaded {} friends and replayed {} journal records for {}.", friends.size(), records, accountHash);
+
+            if(new File(accountDir, JOURNAL_FILE).length() > COMPACTION_THRESHOLD_BYTES || needsArchiving(friends.values()))
+            {
+                scheduleCompaction(gson, accountHash);
+            }
+
+            return friends;
+        }
+        catch(JsonParseException e)
+        {
+            throw new IOException("Friend data in \"" + accountDir + "\" could not be loaded", e);
+        }
+    }
+
+    /**
+     * Passes each Friend of the given account to the given visitor in turn, with its archive attached and its
+     * journal records replayed over it.
+     *
+     * The journal, which compaction keeps small, is read first and its records grouped by Friend. The base file
+     * is then read one Friend at a time, so only the Friend being visited is held in memory.
+     *
+     * @param gson the Gson instance used to read the data
+     * @param accountHash the account to read
+     * @param visitor receives each Friend
+     * @throws IOException if the data could not be read, or is thrown by the visitor
+     */
+    public synchronized void forEach(Gson gson, long accountHash, TrackerDataStore.FriendVisitor visitor) throws IOException
+    {
+        File accountDir = getAccountDir(accountHash);
+
+        try
+        {
+            // Friend ID -> the records of that Friend, in the order they were written
+            Map<String, List<JournalRecord>> records = new LinkedHashMap<>();
+            readRecords(gson, new File(accountDir, COMPACTING_FILE), record -> records.computeIfAbsent(record.getId(), id -> new ArrayList<>()).add(record));
+            readRecords(gson, new File(accountDir, JOURNAL_FILE), record -> records.computeIfAbsent(record.getId(), id -> new ArrayList<>()).add(record));
+
+            SnapshotArchive archive = SnapshotArchive.openCurrent(accountDir);
+
+            readBase(gson, accountDir, friend ->
+            {
+                if(archive != null) archive.attachTo(Collections.singleton(friend));
+                visitReplayed(friend.getID(), friend, records.remove(friend.getID()), visitor);
+            });
+
+            // Friends added since the base file was written
+            for(Map.Entry<String, List<JournalRecord>> entry : records.entrySet())
+            {
+                visitReplayed(entry.getKey(), null, entry.getValue(), visitor);
+            }
+        }
+        catch(JsonParseException e)
+        {
+            throw new IOException("Friend data in \"" + accountDir + "\" could not be loaded", e);
+        }
+    }
+
+    private static void visitReplayed(String friendID, Friend friend, List<JournalRecord> records, TrackerDataStore.FriendVisitor visitor) throws IOException
+    {
+        Map<String, Friend> friends = new HashMap<>();
+        if(friend != null) friends.put(friendID, friend);
+
+        if(records != null)
+        {
+            for(JournalRecord record : records)
+            {
+                record.applyTo(friends);
+            }
+        }
+
+        Friend replayed = friends.get(friendID);
+        if(replayed != null) visitor.visit(replayed);
+    }
+
+    /**
+     * Appends the given records to the journal of the given account.
+     *
+     * @param gson the Gson instance used to write the records
+     * @param accountHash the account the records belong to
+     * @param records the records to append
+     * @throws IOException if the journal could not be written
+     */
+    public synchronized void append(Gson gson, long accountHash, List<JournalRecord> records) throws IOException
+    {
+        if(records.isEmpty()) return;
+
+        File accountDir = getAccountDir(accountHash);
+        File journal = new File(accountDir, JOURNAL_FILE);
+
+        accountDir.mkdirs();
+
+        try(Writer writer = Files.newBufferedWriter(journal.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+        {
+            for(JournalRecord record : records)
+            {
+                writer.write(gson.toJson(record));
+                writer.write('\n');
+            }
+        }
+
+        if(journal.length() > COMPACTION_THRESHOLD_BYTES)
+        {
+            scheduleCompaction(gson, accountHash);
+        }
+    }
+
+    /**
+     * Replaces all journal data of the given account with a base file containing the given Friends.
+     *
+     * @param gson the Gson instance used to write the data
+     * @param accountHash the account to write
+     * @param friends the complete set of Friends for the account
+     */
+    public synchronized void writeBase(Gson gson, long accountHash, Map<String, Friend> friends)
+    {
+        File accountDir = getAccountDir(accountHash);
+
+        try
+        {
+            accountDir.mkdirs();
+            baseGenerations.merge(accountHash, 1, Integer::sum);
+            File baseTemp = writeBaseTemp(new File(accountDir, BASE_TEMP_FILE), friends, true);
+            Files.move(baseTemp.toPath(), new File(accountDir, BASE_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(new File(accountDir, JSON_BASE_FILE).toPath());
+            Files.deleteIfExists(new File(accountDir, COMPACTING_FILE).toPath());
+            Files.deleteIfExists(new File(accountDir, JOURNAL_FILE).toPath());
+            SnapshotArchive.deleteStale(accountDir, null);
+        }
+        catch(IOException e)
+        {
+            log.warn("Failed to write friend data to \"{}\".", accountDir);
+            log.warn(e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the summary index of the given account.
+     *
+     * @param accountHash the account to read the summary index of
+     * @return the encoded summaries, or empty if none have been written
+     */
+    public Optional<byte[]> readSummaries(long accountHash)
+    {
+        File summaryFile = new File(getAccountDir(accountHash), SUMMARY_FILE);
+        if(!summaryFile.exists()) return Optional.empty();
+
+        try
+        {
+            return Optional.of(Files.readAllBytes(summaryFile.toPath()));
+        }
+        catch(IOException e)
+        {
+            log.warn("Failed to read friend summaries from \"{}\".", summaryFile);
+            log.warn(e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the summary index of the given account.
+     *
+     * @param accountHash the account to write the summary index of
+     * @param data the encoded summaries
+     */
+    public void writeSummaries(long accountHash, byte[] data)
+    {
+        File accountDir = getAccountDir(accountHash);
+
+        try
+        {
+            accountDir.mkdirs();
+            File summaryTemp = new File(accountDir, SUMMARY_TEMP_FILE);
+            Files.write(summaryTemp.toPath(), data);
+            Files.move(summaryTemp.toPath(), new File(accountDir, SUMMARY_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException e)
+        {
+            log.warn("Failed to write friend summaries to \"{}\".", accountDir);
+            log.warn(e.getMessage());
+        }
+    }
+
+    private boolean needsArchiving(Collection<Friend> friends)
+    {
+        Instant cutoff = getArchiveCutoff();
+        if(cutoff == null) return false;
+
+        return friends.stream().anyMatch(friend -> friend.getHiscoreSnapshots().hasUnarchivedBefore(cutoff));
+    }
+
+    /**
+     * @return the instant before which snapshots are archived, or null if archiving is disabled
+     */
+    private Instant getArchiveCutoff()
+    {
+        int archiveAfterDays = config.archiveAfterDays();
+
+        return archiveAfterDays > 0 ? clock.instant().minus(Duration.ofDays(archiveAfterDays)) : null;
+    }
+
+    private synchronized void scheduleCompaction(Gson gson, long accountHash)
+    {
+        if(!compactionsInProgress.add(accountHash)) return;
+
+        executor.execute(() ->
+        {
+            try
+            {
+                compact(gson, accountHash);
+            }
+            finally
+            {
+                synchronized(this)
+                {
+                    compactionsInProgress.remove(accountHash);
+                }
+            }
+        });
+    }
+
+    /**
+     * Folds the journal of the given account into its base file.
+     *
+     * The journal is first renamed so that appends made while compacting start a new journal. The base file and
+     * renamed journal are then replayed and written out as a new base file without holding the lock, so saves
+     * are only blocked while the files are swapped. The new base file is written to a temporary file of its own,
+     * and is discarded if {@link #writeBase} replaces the base file while compacting, as the compacted data is
+     * then older than the data written.
+     *
+     * If archiving is enabled, snapshots older than the cutoff are written to a new archive generation, which is
+     * installed before the base file. A base file left behind by an interrupted compaction may still hold some of
+     * the archived snapshots, which are dropped from memory when the archive is attached. If archiving is
+     * disabled, archived snapshots are folded back into the base file.
+     *
+     * @param gson the Gson instance used to read and write the data
+     * @param accountHash the account to compact
+     */
+    void compact(Gson gson, long accountHash)
+    {
+        File accountDir = getAccountDir(accountHash);
+        File journal = new File(accountDir, JOURNAL_FILE);
+        File compacting = new File(accountDir, COMPACTING_FILE);
+        File archiveFile = null;
+        File baseTemp = null;
+
+        try
+        {
+            int generation;
+            synchronized(this)
+            {
+                generation = baseGenerations.getOrDefault(accountHash, 0);
+
+                // A compacting journal left by an interrupted compaction is folded in first
+                if(!compacting.exists() && journal.exists())
+                {
+                    Files.move(journal.toPath(), compacting.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+
+            long start = System.currentTimeMillis();
+
+            Map<String, Friend> friends = readBase(gson, accountDir);
+            SnapshotArchive archive = SnapshotArchive.openCurrent(accountDir);
+            if(archive != null) archive.attachTo(friends.values());
+
+            int records = replay(gson, compacting, friends);
+
+            Instant cutoff = getArchiveCutoff();
+
+            if(cutoff != null)
+            {
+                File archiveTemp = SnapshotArchive.write(accountDir, friends.values(), cutoff);
+                if(archiveTemp != null)
+                {
+                    synchronized(this)
+                    {
+                        if(isReplaced(accountHash, generation))
+                        {
+                            Files.deleteIfExists(archiveTemp.toPath());
+                            return;
+                        }
+
+                        archiveFile = SnapshotArchive.nextFile(accountDir);
+                        Files.move(archiveTemp.toPath(), archiveFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    }
+
+                    // Drops the newly archived snapshots from memory so they are left out of the base file
+                    SnapshotArchive.open(archiveFile).attachTo(friends.values());
+                }
+            }
+
+            baseTemp = writeBaseTemp(File.createTempFile(BASE_FILE, ".compacting.tmp", accountDir), friends, cutoff == null);
+
+            synchronized(this)
+            {
+                if(isReplaced(accountHash, generation))
+                {
+                    // The base file written holds every snapshot, so the archive written here is not needed
+                    if(archiveFile != null) Files.deleteIfExists(archiveFile.toPath());
+                    return;
+                }
+
+                Files.move(baseTemp.toPath(), new File(accountDir, BASE_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(new File(accountDir, JSON_BASE_FILE).toPath());
+                Files.deleteIfExists(compacting.toPath());
+
+                // Any snapshots not in the new archive, if there is one, are now in the base file
+                SnapshotArchive.deleteStale(accountDir, archiveFile);
+                baseTemp = null;
+            }
+
+            log.debug("Compacted {} journal records for {} in {}ms.", records, accountHash, System.currentTimeMillis() - start);
+        }
+        catch(IOException | JsonParseException e)
+        {
+            log.warn("Failed to compact friend data in \"{}\".", accountDir);
+            log.warn(e.getMessage());
+        }
+        finally
+        {
+            if(baseTemp != null && !baseTemp.delete() && baseTemp.exists())
+            {
+                log.warn("Failed to delete \"{}\".", baseTemp);
+            }
+        }
+    }
+
+    private synchronized boolean isReplaced(long accountHash, int generation)
+    {
+        if(baseGenerations.getOrDefault(accountHash, 0) == generation) return false;
+
+        log.debug("Discarding compaction of {} as its base file was replaced.", accountHash);
+        return true;
+    }
+
+    private File writeBaseTemp(File baseTemp, Map<String, Friend> friends, boolean includeArchived) throws IOException
+    {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(baseTemp.toPath()))))
+        {
+            SnapshotCodec.writeVarLong(out, friends.size());
+            for(Friend friend : friends.values())
+            {
+                byte[] data = SnapshotCodec.encode(friend, includeArchived);
+                SnapshotCodec.writeVarLong(out, data.length);
+                out.write(data);
+            }
+        }
+
+        return baseTemp;
+    }
+
+    private Map<String, Friend> readBase(Gson gson, File accountDir) throws IOException
+    {
+        Map<String, Friend> friends = new HashMap<>();
+        readBase(gson, accountDir, friend -> friends.put(friend.getID(), friend));
+
+        return friends;
+    }
+
+    /**
+     * Passes each Friend in the base file to the given visitor as it is read.
+     */
+    private void readBase(Gson gson, File accountDir, TrackerDataStore.FriendVisitor visitor) throws IOException
+    {
+        File base = new File(accountDir, BASE_FILE);
+        File jsonBase = new File(accountDir, JSON_BASE_FILE);
+
+        if(base.exists())
+        {
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(base.toPath()))))
+            {
+                long count = SnapshotCodec.readVarLong(in);
+                for(long i = 0; i < count; i++)
+                {
+                    byte[] data = new byte[(int) SnapshotCodec.readVarLong(in)];
+                    in.readFully(data);
+
+                    visitor.visit(SnapshotCodec.decode(data));
+                }
+            }
+        }
+        else if(jsonBase.exists())
+        {
+            Map<String, Friend> jsonFriends;
+            try(Reader reader = Files.newBufferedReader(jsonBase.toPath(), StandardCharsets.UTF_8))
+            {
+                jsonFriends = gson.fromJson(reader, TrackerDataStore.MAP_TYPE);
+            }
+
+            if(jsonFriends == null) return;
+
+            for(Friend friend : jsonFriends.values())
+            {
+                visitor.visit(friend);
+            }
+        }
+    }
+
+    /**
+     * Applies every record in the given journal file to the given Friends.
+     *
+     * @return the number of records applied
+     */
+    private int replay(Gson gson, File journal, Map<String, Friend> friends) throws IOException
+    {
+        return readRecords(gson, journal, record -> record.applyTo(friends));
+    }
+
+    /**
+     * Passes every record in the given journal file to the given consumer.
+     * Lines that cannot be parsed, such as one left partially written by a crash, are skipped.
+     *
+     * @return the number of records read
+     */
+    private int readRecords(Gson gson, File journal, Consumer<JournalRecord> consumer) throws IOException
+    {
+        if(!journal.exists()) return 0;
+
+        int records = 0;
+
+        try(BufferedReader reader = Files.newBufferedReader(journal.toPath(), StandardCharsets.UTF_8))
+        {
+            String line;
+            while((line = reader.readLine()) != null)
+            {
+                if(line.isEmpty()) continue;
+
+                JournalRecord record;
+                try
+                {
+                    record = gson.fromJson(line, JournalRecord.class);
+                }
+                catch(JsonParseException e)
+                {
+                    log.warn("Skipping unreadable record in \"{}\".", journal);
+                    continue;
+                }
+
+                consumer.accept(record);
+                records++;
+            }
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.FriendTrackerConfig;
+import com.friendtracker.config.ConfigValues;
+import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.FriendManager;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thins out old hiscore snapshots according to the configured {@link ConfigValues.RetentionOptions}.
+ *
+ * Snapshots are grouped into tiers by the number of UTC days since the day they were taken, so a snapshot only moves
+ * to an older tier at midnight. Every snapshot in the first tier is kept and older tiers keep only the earliest
+ * snapshot in each interval, counted from the epoch so that repeated runs keep the same snapshots. The oldest and
+ * newest snapshots of each Friend are always kept, as is the snapshot each activity range measures from, both now and
+ * from the start of the day. Each tier includes the day its age is reached on, so the day a range starts on is in a
+ * tier with intervals no longer than the shortest range that reaches it, and the ranges keep finding snapshots close
+ * to their boundaries as time passes.
+ *
+ * A run is started every {@link #RUN_INTERVAL_MINUTES} and handles {@link #FRIENDS_PER_BATCH} Friends at a time so
+ * that saves queued on the same executor are not held up.
+ */
+@Slf4j
+@Singleton
+public class SnapshotRetention
+{
+    static final long RUN_INTERVAL_MINUTES = 60;
+    static final long FIRST_RUN_DELAY_MINUTES = 1;
+    static final int FRIENDS_PER_BATCH = 20;
+
+    private static final List<Tier> TIERS = Arrays.asList(
+            new Tier(Duration.ofDays(2), Duration.ZERO),
+            new Tier(Duration.ofDays(14), Duration.ofHours(1)),
+            new Tier(Duration.ofDays(365), Duration.ofDays(1)));
+    private static final Duration OLDEST_INTERVAL = Duration.ofDays(7);
+
+    private final FriendTrackerConfig config;
+    private final TrackerDataWriter trackerDataWriter;
+    private final ScheduledExecutorService executor;
+    private final Clock clock;
+
+    private ScheduledFuture<?> scheduledRun;
+
+    @Value
+    private static class Tier
+    {
+        // Snapshots taken on the day this long before today, or later, belong to this tier
+        Duration maxAge;
+        // At most one snapshot is kept per interval, or every snapshot if zero
+        Duration interval;
+    }
+
+    @Inject
+    public SnapshotRetention(FriendTrackerConfig config, TrackerDataWriter trackerDataWriter, ScheduledExecutorService executor, Clock clock)
+    {
+        this.config = config;
+        this.trackerDataWriter = trackerDataWriter;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts applying the retention policy to the given FriendManager, replacing any FriendManager previously started.
+     *
+     * @param friendManager the FriendManager to thin
+     */
+    public synchronized void start(FriendManager friendManager)
+    {
+        stop();
+        scheduledRun = executor.scheduleWithFixedDelay(() -> run(friendManager),
+                FIRST_RUN_DELAY_MINUTES, RUN_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stop()
+    {
+        if(scheduledRun != null)
+        {
+            scheduledRun.cancel(false);
+            scheduledRun = null;
+        }
+    }
+
+    private void run(FriendManager friendManager)
+    {
+        if(config.retentionPolicy() != ConfigValues.RetentionOptions.TIERED) return;
+
+        List<String> friendIDs;
+        synchronized(friendManager)
+        {
+            friendIDs = new ArrayList<>(friendManager.getFriends().keySet());
+        }
+
+        runBatch(friendManager, friendIDs, 0, clock.instant(), new RetentionReport());
+    }
+
+    private void runBatch(FriendManager friendManager, List<String> friendIDs, int start, Instant now, RetentionReport report)
+    {
+        int end = Math.min(start + FRIENDS_PER_BATCH, friendIDs.size());
+
+        for(int i = start; i < end; i++)
+        {
+            Friend friend;
+            synchronized(friendManager)
+            {
+                friend = friendManager.getFriends().get(friendIDs.get(i));
+            }
+
+            if(friend != null) thin(friendManager, friend, now, report);
+        }
+
+        if(end < friendIDs.size())
+        {
+            executor.execute(() -> runBatch(friendManager, friendIDs, end, now, report));
+            return;
+        }
+
+        if(report.snapshots > 0)
+        {
+            log.info("Snapshot retention discarded {} snapshots from {} friends.", report.snapshots, report.friends);
+            trackerDataWriter.requestSave(friendManager);
+        }
+        else
+        {
+            log.debug("Snapshot retention found no snapshots to discard.");
+        }
+    }
+
+    private void thin(FriendManager friendManager, Friend friend, Instant now, RetentionReport report)
+    {
+        Set<Instant> discard = findDiscardable(friend, now);
+        if(discard.isEmpty()) return;
+
+        int discarded = friendManager.discardSnapshots(friend.getID(), discard);
+        if(discarded == 0) return;
+
+        report.snapshots += discarded;
+        report.friends++;
+    }
+
+    /**
+     * Finds the snapshots of the given Friend that the retention policy does not keep.
+     *
+     * @param friend the Friend to check
+     * @param now the time the retention run started
+     * @return the instants of the snapshots to discard
+     */
+    Set<Instant> findDiscardable(Friend friend, Instant now)
+    {
+        NavigableSet<Instant> instants = friend.getHiscoreSnapshots().instants();
+        Set<Instant> discard = new HashSet<>();
+        if(instants.size() < 3) return discard;
+
+        Instant today = now.truncatedTo(ChronoUnit.DAYS);
+        Set<Instant> protectedInstants = findProtected(friend, now);
+        protectedInstants.addAll(findProtected(friend, today));
+        protectedInstants.add(instants.first());
+        protectedInstants.add(instants.last());
+
+        Duration previousInterval = null;
+        long previousBucket = 0;
+
+        for(Instant instant : instants)
+        {
+            Duration interval = intervalFor(Duration.between(instant.truncatedTo(ChronoUnit.DAYS), today));
+            if(interval.isZero()) break;
+
+            long bucket = Math.floorDiv(instant.getEpochSecond(), interval.getSeconds());
+
+            if(interval.equals(previousInterval) && bucket == previousBucket && !protectedInstants.contains(instant))
+            {
+                discard.add(instant);
+                continue;
+            }
+
+            previousInterval = interval;
+            previousBucket = bucket;
+        }
+
+        return discard;
+    }
+
+    /**
+     * Finds the snapshots each activity range measures from at the given instant with the configured tolerance.
+     */
+    private Set<Instant> findProtected(Friend friend, Instant now)
+    {
+        Set<Instant> protectedInstants = new HashSet<>();
+        Period tolerance = config.rangeTolerance().getPeriod();
+
+        for(ConfigValues.RangeOptions range : ConfigValues.RangeOptions.values())
+        {
+            if(range.getPeriod().isZero()) continue;
+
+            friend.getSnapshotInstantAt(now.minus(range.getPeriod()), tolerance).ifPresent(protectedInstants::add);
+            friend.getSnapshotInstantAt(now.minus(range.getPeriod().multipliedBy(config.rangeNumber())), tolerance)
+                    .ifPresent(protectedInstants::add);
+        }
+
+        return protectedInstants;
+    }
+
+    /**
+     * @param age the time between the start of the day a snapshot was taken and the start of today
+     */
+    private static Duration intervalFor(Duration age)
+    {
+        for(Tier tier : TIERS)
+        {
+            if(age.compareTo(tier.getMaxAge()) <= 0) return tier.getInterval();
+        }
+
+        return OLDEST_INTERVAL;
+    }
+
+    private static class RetentionReport
+    {
+        private int snapshots;
+        private int friends;
+    }
+}
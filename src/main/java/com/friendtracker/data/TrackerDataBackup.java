@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.FriendManager;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.hiscore.HiscoreResult;
+
+/**
+ * Exports the saved data of one or more accounts to a gzip compressed backup file, and imports it back.
+ *
+ * <pre>
+ * backup := magic:int version:byte frame* END:byte
+ * frame  := ACCOUNT:byte accountHash:long | FRIEND:byte length:varint friend
+ * </pre>
+ *
+ * Each Friend is written with {@link SnapshotCodec}, including any archived snapshots, after the account it
+ * belongs to. Friends are written and read one at a time through the compressed stream. Exporting only holds the
+ * Friend being written in memory. Importing holds the name and newest snapshot of each saved Friend of the account
+ * being merged into, which is all that is needed to find where each imported Friend merges, and reads and writes
+ * only the saved Friend it merges into.
+ */
+@Slf4j
+@Singleton
+public class TrackerDataBackup
+{
+    private static final int MAGIC = 0x46544242;
+    private static final byte VERSION = 1;
+    private static final byte END = 0;
+    private static final byte ACCOUNT = 1;
+    private static final byte FRIEND = 2;
+    // Far larger than any encoded Friend, so a corrupt length fails before allocating
+    private static final long MAX_FRIEND_BYTES = 64 * 1024 * 1024;
+
+    private final TrackerDataStore trackerDataStore;
+
+    @Value
+    public static class ImportSummary
+    {
+        int accounts;
+        int friends;
+        // Friends of accounts whose saved data could not be loaded, or with more than one valid merge candidate
+        int skipped;
+    }
+
+    @Inject
+    public TrackerDataBackup(TrackerDataStore trackerDataStore)
+    {
+        this.trackerDataStore = trackerDataStore;
+    }
+
+    /**
+     * Writes the saved data of the given accounts to a backup file.
+     * Unsaved changes should be flushed before exporting.
+     *
+     * @param file the file to write
+     * @param accountHashes the accounts to export
+     * @return the number of Friends exported
+     * @throws IOException if the file could not be written
+     */
+    public int export(File file, Collection<Long> accountHashes) throws IOException
+    {
+        int exported = 0;
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file.toPath())))))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+
+            for(long accountHash : accountHashes)
+            {
+                exported += exportAccount(out, accountHash);
+            }
+
+            out.writeByte(END);
+        }
+
+        log.debug("Exported {} friends from {} accounts to \"{}\".", exported, accountHashes.size(), file);
+
+        return exported;
+    }
+
+    /**
+     * Writes the saved Friends of the given account, one at a time as they are read, after its account frame.
+     * Nothing is written for an account with no saved data.
+     *
+     * @return the number of Friends exported
+     */
+    private int exportAccount(DataOutputStream out, long accountHash) throws IOException
+    {
+        int[] exported = {0};
+
+        trackerDataStore.forEachSavedFriend(accountHash, friend ->
+        {
+            if(exported[0] == 0)
+            {
+                out.writeByte(ACCOUNT);
+                out.writeLong(accountHash);
+            }
+
+            byte[] data = SnapshotCodec.encode(friend);
+            out.writeByte(FRIEND);
+            SnapshotCodec.writeVarLong(out, data.length);
+            out.write(data);
+            exported[0]++;
+        });
+
+        return exported[0];
+    }
+
+    /**
+     * Reads a backup file, merging each Friend into the saved data of its account.
+     *
+     * Friends of the current account are passed to the given consumer so they can be merged into the loaded
+     * FriendManager. Friends of any other account are merged into its saved data one at a time, see
+     * {@link #merge}. An account whose saved data cannot be loaded is skipped, so that nothing is saved over it.
+     *
+     * @param file the file to read
+     * @param currentAccountHash the account that is logged in
+     * @param currentAccountFriends receives each Friend of the current account
+     * @return the number of accounts and Friends imported
+     * @throws IOException if the file could not be read or is not a backup, or a Friend could not be saved
+     */
+    public ImportSummary importFrom(File file, long currentAccountHash, Consumer<Friend> currentAccountFriends) throws IOException
+    {
+        int accounts = 0;
+        int friends = 0;
+        int skipped = 0;
+        // Stand-ins for the saved Friends of the other account being imported into, or null if it was skipped
+        FriendManager savedFriends = null;
+        boolean currentAccount = false;
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath())))))
+        {
+            if(in.readInt() != MAGIC)
+            {
+                throw new IOException("\"" + file.getName() + "\" is not a Friend Tracker backup");
+            }
+
+            int version = in.readByte();
+            if(version != VERSION)
+            {
+                throw new IOException("Unsupported backup version " + version);
+            }
+
+            for(byte frame = in.readByte(); frame != END; frame = in.readByte())
+            {
+                switch(frame)
+                {
+                    case ACCOUNT:
+                        long accountHash = in.readLong();
+                        accounts++;
+
+                        currentAccount = accountHash == currentAccountHash;
+                        savedFriends = currentAccount ? null : readSavedFriends(accountHash);
+                        break;
+                    case FRIEND:
+                        Friend friend = readFriend(in);
+
+                        if(currentAccount)
+                        {
+                            currentAccountFriends.accept(friend);
+                            friends++;
+                        }
+                        else if(savedFriends != null && merge(savedFriends, friend))
+                        {
+                            friends++;
+                        }
+                        else
+                        {
+                            skipped++;
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unknown backup frame " + frame);
+                }
+            }
+        }
+
+        log.debug("Imported {} friends from {} accounts from \"{}\", skipped {}.", friends, accounts, file, skipped);
+
+        return new ImportSummary(accounts, friends, skipped);
+    }
+
+    /**
+     * Reads a stand-in for each saved Friend of the given account.
+     *
+     * @return the stand-ins keyed by ID, or null if the saved data could not be loaded
+     */
+    private FriendManager readSavedFriends(long accountHash)
+    {
+        FriendManager savedFriends = new FriendManager(accountHash);
+
+        try
+        {
+            trackerDataStore.forEachSavedFriend(accountHash, friend -> savedFriends.getFriends().put(friend.getID(), standIn(friend)));
+        }
+        catch(IOException | RuntimeException e)
+        {
+            log.warn("Skipping the friends of {} as its saved data could not be loaded.", accountHash, e);
+            return null;
+        }
+
+        return savedFriends;
+    }
+
+    /**
+     * Returns a Friend holding only the name, previous names and newest snapshot of the given Friend.
+     */
+    private static Friend standIn(Friend friend)
+    {
+        Friend standIn = new Friend(friend.getID(), friend.getName());
+        standIn.getPreviousNames().addAll(friend.getPreviousNames());
+
+        Map.Entry<Instant, HiscoreResult> newest = friend.getHiscoreSnapshots().lastEntry();
+        if(newest != null) standIn.getHiscoreSnapshots().put(newest.getKey(), newest.getValue());
+
+        return standIn;
+    }
+
+    private static Friend readFriend(DataInputStream in) throws IOException
+    {
+        long length = SnapshotCodec.readVarLong(in);
+        if(length < 0 || length > MAX_FRIEND_BYTES)
+        {
+            throw new IOException("Invalid friend length " + length);
+        }
+
+        byte[] data = new byte[(int) length];
+        in.readFully(data);
+
+        try
+        {
+            return SnapshotCodec.decode(data);
+        }
+        catch(RuntimeException e)
+        {
+            throw new IOException("Malformed friend data", e);
+        }
+    }
+
+    /**
+     * Merges a Friend into the saved data of another account, following the same rules as a refreshed Friend of
+     * the current account: into the saved Friend with the same ID if there is one, otherwise added if the account
+     * has no Friends or no valid merge candidates, otherwise into the only valid merge candidate. A Friend with
+     * more than one valid merge candidate is skipped, as there is no one to choose between them.
+     *
+     * @param savedFriends stand-ins for the saved Friends of the account
+     * @param friend the Friend to merge
+     * @return false if the Friend was skipped
+     * @throws IOException if the Friend could not be saved
+     */
+    private boolean merge(FriendManager savedFriends, Friend friend) throws IOException
+    {
+        long accountHash = savedFriends.getAccountHash();
+        Friend target = savedFriends.getFriends().get(friend.getID());
+
+        if(target == null && !savedFriends.getFriends().isEmpty())
+        {
+            List<Friend> mergeCandidates = savedFriends.getValidMergeCandidates(friend);
+            if(mergeCandidates.size() > 1)
+            {
+                log.info("Skipping {} as it has {} valid merge candidates.", friend.getName(), mergeCandidates.size());
+                return false;
+            }
+
+            if(mergeCandidates.size() == 1) target = mergeCandidates.get(0);
+        }
+
+        if(target == null)
+        {
+            savedFriends.getFriends().put(friend.getID(), standIn(friend));
+            trackerDataStore.addSavedFriend(accountHash, friend, new ArrayList<>(savedFriends.getFriends().keySet()));
+            return true;
+        }
+
+        trackerDataStore.mergeIntoSavedFriend(accountHash, target, friend);
+
+        // Later Friends of the backup are merged against the merged name and newest snapshot
+        target.merge(standIn(friend));
+        savedFriends.getFriends().put(target.getID(), standIn(target));
+
+        return true;
+    }
+}
@@ -24,74 +24,813 @@
  */
 package com.friendtracker.data;
 
+import com.friendtracker.FriendTrackerConfig;
 import com.friendtracker.FriendTrackerPlugin;
+import com.friendtracker.config.ConfigValues;
 import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.FriendChanges;
+import com.friendtracker.friends.FriendManager;
+import com.friendtracker.friends.FriendSummary;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.Skill;
 
+/**
+ * Persists Friend data to the RuneLite config.
+ *
+ * Each Friend is stored under its own key, {@code <accountHash>_Friend_<ID>}, alongside a manifest key,
+ * {@code <accountHash>_FriendManifest}, listing the IDs of every Friend stored for that account.
+ * This allows a save to write only the Friends that have changed since the last save.
+ * Friends are stored as Base64 encoded {@link SnapshotCodec} data.
+ *
+ * The schema version of each account's data is stored under {@code <accountHash>_SchemaVersion}. Data saved by an
+ * older version is upgraded once, by running each migration from its version onwards, and rewritten so that
+ * loading current data never has to check for older formats:
+ * <ol>
+ *     <li>Version 0 stores every Friend as JSON under the legacy single key, {@code <accountHash>_FriendData}.</li>
+ *     <li>Version 1 stores each Friend under its own key, as either JSON or codec data.</li>
+ *     <li>Version 2 stores each Friend under its own key as codec data.</li>
+ * </ol>
+ *
+ * When the {@link ConfigValues.StorageOptions#FILE} storage mode is selected data is instead saved to a
+ * {@link SnapshotJournal}, seeded from the config the first time it is used for an account. Switching the storage
+ * mode while running copies every account's data to the newly selected storage, see {@link #switchStorage}.
+ *
+ * Every save also updates the account's summary index, the {@link FriendSummary} of each Friend, stored under
+ * {@code <accountHash>_FriendSummary} or in the journal directory. The friend list is drawn from it while the
+ * full data is loading.
+ */
 @Slf4j
+@Singleton
 public class TrackerDataStore
 {
     public static final Type MAP_TYPE = new TypeToken<Map<String, Friend>>() {}.getType();
+    public static final Type MANIFEST_TYPE = new TypeToken<List<String>>() {}.getType();
+    static final int SCHEMA_VERSION = 2;
+    // Keys that exist for every account with data saved to the config
+    private static final Pattern ACCOUNT_KEY_PATTERN = Pattern.compile("(-?\\d+)_(FriendManifest|FriendData)");
+    // Gson is thread safe, so a single instance is shared by every load and save
+    static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Instant.class, new InstantTypeAdapter())
+            .registerTypeAdapter(Skill.class, new SkillTypeAdapter())
+            .registerTypeAdapter(HiscoreResult.class, new HiscoreResultTypeAdapter())
+            .registerTypeAdapter(Friend.class, new FriendTypeAdapter())
+            .create();
     private final ConfigManager configManager;
+    private final FriendTrackerConfig config;
+    private final SnapshotJournal snapshotJournal;
+    // Read for the instant summaries measure gains back from
+    private final Clock clock;
+    // The storage data is read from and saved to, which only changes once data has been copied to the new storage
+    private ConfigValues.StorageOptions storageMode;
+    // The migration at index n upgrades data from schema version n to n + 1
+    private final List<SchemaMigration> migrations = Arrays.asList(
+            this::migrateLegacyFriendData,
+            this::migrateJsonFriendShards);
+
+    @FunctionalInterface
+    private interface SchemaMigration
+    {
+        void migrate(long accountHash) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface FriendVisitor
+    {
+        void visit(Friend friend) throws IOException;
+    }
 
     @Inject
-    public TrackerDataStore(ConfigManager configManager)
+    public TrackerDataStore(ConfigManager configManager, FriendTrackerConfig config, SnapshotJournal snapshotJournal, Clock clock)
     {
         this.configManager = configManager;
+        this.config = config;
+        this.snapshotJournal = snapshotJournal;
+        this.clock = clock;
+    }
+
+    // Every key is read and written through these, in the plugin's config group
+
+    String getConfiguration(String key)
+    {
+        return configManager.getConfiguration(FriendTrackerPlugin.CONFIG_GROUP_NAME, key);
+    }
+
+    void setConfiguration(String key, Object value)
+    {
+        configManager.setConfiguration(FriendTrackerPlugin.CONFIG_GROUP_NAME, key, value);
+    }
+
+    void unsetConfiguration(String key)
+    {
+        configManager.unsetConfiguration(FriendTrackerPlugin.CONFIG_GROUP_NAME, key);
+    }
+
+    List<String> getConfigurationKeys(String prefix)
+    {
+        return configManager.getConfigurationKeys(prefix);
     }
 
-    private Gson buildGson()
+    private String serializeFriend(Friend friend)
     {
-        return new GsonBuilder().registerTypeAdapter(Instant.class, new InstantDeserializer())
-                .registerTypeAdapter(HiscoreResult.class, new HiscoreResultSerializer())
-                .registerTypeAdapter(HiscoreResult.class, new HiscoreResultDeserializer())
-                .create();
+        return Base64.getEncoder().encodeToString(SnapshotCodec.encode(friend));
     }
 
-    private String buildConfigKey(long accountHash)
+    private Friend deserializeFriend(String friendData) throws IOException
+    {
+        return SnapshotCodec.decode(Base64.getDecoder().decode(friendData));
+    }
+
+    private String buildLegacyConfigKey(long accountHash)
     {
         return accountHash + "_FriendData";
     }
 
-    public Optional<Map<String, Friend>> getFriendDataFromConfig(long accountHash)
+    private String buildSchemaVersionConfigKey(long accountHash)
+    {
+        return accountHash + "_SchemaVersion";
+    }
+
+    private String buildManifestConfigKey(long accountHash)
+    {
+        return accountHash + "_FriendManifest";
+    }
+
+    private String buildFriendConfigKey(long accountHash, String friendID)
+    {
+        return accountHash + "_Friend_" + friendID;
+    }
+
+    private String buildSummaryConfigKey(long accountHash)
+    {
+        return accountHash + "_FriendSummary";
+    }
+
+    /**
+     * Returns the storage data is read from and saved to. This is the configured storage mode when first read,
+     * and then only changes through {@link #switchStorage}.
+     *
+     * @return the storage in use
+     */
+    public synchronized ConfigValues.StorageOptions getStorageMode()
+    {
+        if(storageMode == null)
+        {
+            storageMode = config.storageMode();
+        }
+
+        return storageMode;
+    }
+
+    /**
+     * Copies the saved data and summary index of every account from the storage in use to the given storage, then
+     * uses it from then on. The data in the given storage is replaced, so that data left there from when it was
+     * last in use is never read. Unsaved changes should be flushed before switching.
+     *
+     * If the data of any account cannot be read the switch is abandoned, leaving the storage in use unchanged.
+     *
+     * @param storageMode the storage to switch to
+     * @throws IOException if the data of an account could not be read
+     */
+    public synchronized void switchStorage(ConfigValues.StorageOptions storageMode) throws IOException
+    {
+        if(storageMode == getStorageMode()) return;
+
+        boolean toJournal = storageMode == ConfigValues.StorageOptions.FILE;
+        Set<Long> accountHashes = toJournal ? getConfigAccountHashes() : snapshotJournal.getAccountHashes();
+
+        // Every account is read before any is written, so a failure leaves the new storage untouched
+        for(long accountHash : accountHashes)
+        {
+            loadFriendData(accountHash);
+        }
+
+        for(long accountHash : accountHashes)
+        {
+            Map<String, Friend> friends = loadFriendData(accountHash).orElse(null);
+            if(friends == null) continue;
+
+            Optional<Map<String, FriendSummary>> summaries = loadSummaries(accountHash);
+
+            if(toJournal)
+            {
+                snapshotJournal.writeBase(GSON, accountHash, friends);
+            }
+            else
+            {
+                replaceFriendDataInConfig(accountHash, friends);
+            }
+
+            if(summaries.isPresent())
+            {
+                writeSummaries(accountHash, summaries.get().values(), storageMode);
+            }
+        }
+
+        log.info("Copied the friend data of {} accounts from {} to {}.", accountHashes.size(), this.storageMode, storageMode);
+        this.storageMode = storageMode;
+    }
+
+    /**
+     * Loads the saved Friends of the given account from the configured storage.
+     *
+     * @param accountHash the account to load data for
+     * @return the saved Friends keyed by ID, or empty if no data has been saved for the account
+     * @throws IOException if data has been saved for the account but could not be loaded
+     */
+    public synchronized Optional<Map<String, Friend>> loadFriendData(long accountHash) throws IOException
+    {
+        if(getStorageMode() != ConfigValues.StorageOptions.FILE)
+        {
+            return getFriendDataFromConfig(accountHash);
+        }
+
+        if(snapshotJournal.exists(accountHash))
+        {
+            return Optional.of(snapshotJournal.load(GSON, accountHash));
+        }
+
+        // Seed the journal from any data previously saved to the config
+        Optional<Map<String, Friend>> friends = getFriendDataFromConfig(accountHash);
+        friends.ifPresent(data -> snapshotJournal.writeBase(GSON, accountHash, data));
+
+        return friends;
+    }
+
+    /**
+     * Finds every account with saved data in the config or in a journal.
+     *
+     * @return the hashes of the accounts with saved data
+     */
+    public Set<Long> getSavedAccountHashes()
+    {
+        Set<Long> accountHashes = getConfigAccountHashes();
+        accountHashes.addAll(snapshotJournal.getAccountHashes());
+
+        return accountHashes;
+    }
+
+    private Set<Long> getConfigAccountHashes()
     {
-        Gson gson = buildGson();
+        Set<Long> accountHashes = new TreeSet<>();
+        String groupPrefix = FriendTrackerPlugin.CONFIG_GROUP_NAME + ".";
+
+        List<String> keys = getConfigurationKeys(groupPrefix);
+        if(keys == null) return accountHashes;
+
+        for(String key : keys)
+        {
+            Matcher matcher = ACCOUNT_KEY_PATTERN.matcher(key.startsWith(groupPrefix) ? key.substring(groupPrefix.length()) : key);
+            if(matcher.matches())
+            {
+                accountHashes.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+
+        return accountHashes;
+    }
 
-        String friendsJson;
+    /**
+     * Saves the given changes to the configured storage.
+     *
+     * @param changes the changes taken from a FriendManager
+     * @throws IOException if the changes could not be written
+     */
+    public synchronized void saveFriendData(FriendChanges changes) throws IOException
+    {
+        if(getStorageMode() != ConfigValues.StorageOptions.FILE)
+        {
+            saveFriendDataToConfig(changes);
+        }
+        else
+        {
+            saveFriendDataToJournal(changes);
+        }
+    }
 
+    /**
+     * Loads the summary index of the given account from the configured storage.
+     *
+     * @param accountHash the account to load summaries for
+     * @return the saved summaries keyed by Friend ID, or empty if none could be loaded
+     */
+    public Optional<Map<String, FriendSummary>> loadSummaries(long accountHash)
+    {
+        // The summary index is only a cache of the full data, so it is never allowed to fail a load or save
         try
         {
-            friendsJson = configManager.getConfiguration(FriendTrackerPlugin.CONFIG_GROUP_NAME, buildConfigKey(accountHash));
+            byte[] data;
+            if(getStorageMode() != ConfigValues.StorageOptions.FILE)
+            {
+                String summaryData = getConfiguration(buildSummaryConfigKey(accountHash));
+                if(summaryData == null) return Optional.empty();
+
+                data = Base64.getDecoder().decode(summaryData);
+            }
+            else
+            {
+                Optional<byte[]> summaryData = snapshotJournal.readSummaries(accountHash);
+                if(!summaryData.isPresent()) return Optional.empty();
 
-            Map<String, Friend> friends = gson.fromJson(friendsJson, MAP_TYPE);
+                data = summaryData.get();
+            }
 
-            return Optional.of(friends);
+            return Optional.of(FriendSummaryCodec.decode(data));
         }
         catch(Exception e)
         {
-            log.warn(String.format("Configuration \"%s.%s\" not found.", FriendTrackerPlugin.CONFIG_GROUP_NAME, buildConfigKey(accountHash)));
+            log.warn("Friend summaries for {} could not be loaded.", accountHash);
             log.warn(e.getMessage());
             return Optional.empty();
         }
     }
 
+    /**
+     * Replaces the summary index of the given account.
+     *
+     * @param accountHash the account to save summaries for
+     * @param summaries the summary of every Friend of the account
+     */
+    public void saveSummaries(long accountHash, Collection<FriendSummary> summaries)
+    {
+        writeSummaries(accountHash, summaries, getStorageMode());
+    }
+
+    /**
+     * Replaces the summary index of the given FriendManager's account with a summary of each of its Friends.
+     *
+     * The index is only read while an account that is not cached loads, so it is written when an account is
+     * loaded, logged out of or the plugin stops, rather than on every save.
+     *
+     * @param friendManager the FriendManager to summarise
+     */
+    public void saveSummaries(FriendManager friendManager)
+    {
+        // The summary index is only a cache of the full data, so it is never allowed to fail a load or save
+        try
+        {
+            saveSummaries(friendManager.getAccountHash(),
+                    friendManager.summarize(config.rangeNumber(), config.rangeTolerance().getPeriod(), clock.instant()));
+        }
+        catch(RuntimeException e)
+        {
+            log.warn("Friend summaries for {} could not be saved.", friendManager.getAccountHash());
+            log.warn(e.getMessage());
+        }
+    }
+
+    private void writeSummaries(long accountHash, Collection<FriendSummary> summaries, ConfigValues.StorageOptions storageMode)
+    {
+        byte[] data = FriendSummaryCodec.encode(summaries);
+
+        if(storageMode != ConfigValues.StorageOptions.FILE)
+        {
+            setConfiguration(buildSummaryConfigKey(accountHash),
+                    Base64.getEncoder().encodeToString(data));
+            return;
+        }
+
+        snapshotJournal.writeSummaries(accountHash, data);
+    }
+
+    /**
+     * Loads the Friends of the given account saved to the config.
+     *
+     * @param accountHash the account to load data for
+     * @return the saved Friends keyed by ID, or empty if no data has been saved to the config for the account
+     * @throws IOException if data has been saved for the account but could not be migrated or read
+     */
+    public Optional<Map<String, Friend>> getFriendDataFromConfig(long accountHash) throws IOException
+    {
+        List<String> friendIDs = getConfigFriendIDs(accountHash).orElse(null);
+        if(friendIDs == null) return Optional.empty();
+
+        Map<String, Friend> friends = new HashMap<>();
+
+        for(String friendID : friendIDs)
+        {
+            Friend friend = getFriendFromConfig(accountHash, friendID);
+            if(friend != null) friends.put(friendID, friend);
+        }
+
+        return Optional.of(friends);
+    }
+
+    /**
+     * Passes each saved Friend of the given account to the given visitor in turn.
+     *
+     * Friends saved to the config are read one key at a time and Friends saved to a journal are read one at a
+     * time from its base file, so only the Friend being visited is held in memory. Data saved to the config
+     * before the journal was first used is loaded together once, to seed the journal.
+     *
+     * @param accountHash the account to read
+     * @param visitor receives each saved Friend
+     * @return false if no data has been saved for the account
+     * @throws IOException if the saved data could not be read, or is thrown by the visitor
+     */
+    public boolean forEachSavedFriend(long accountHash, FriendVisitor visitor) throws IOException
+    {
+        if(getStorageMode() == ConfigValues.StorageOptions.FILE)
+        {
+            if(snapshotJournal.exists(accountHash))
+            {
+                snapshotJournal.forEach(GSON, accountHash, visitor);
+                return true;
+            }
+
+            Map<String, Friend> friends = loadFriendData(accountHash).orElse(null);
+            if(friends == null) return false;
+
+            for(Friend friend : friends.values())
+            {
+                visitor.visit(friend);
+            }
+
+            return true;
+        }
+
+        List<String> friendIDs = getConfigFriendIDs(accountHash).orElse(null);
+        if(friendIDs == null) return false;
+
+        for(String friendID : friendIDs)
+        {
+            Friend friend = getFriendFromConfig(accountHash, friendID);
+            if(friend != null) visitor.visit(friend);
+        }
+
+        return true;
+    }
+
+    /**
+     * Migrates the data saved to the config for the given account to the current schema and reads its manifest.
+     *
+     * @param accountHash the account to read the manifest of
+     * @return the IDs of the saved Friends, or empty if no data has been saved
+     * @throws IOException if the saved data could not be migrated or its manifest could not be read
+     */
+    private Optional<List<String>> getConfigFriendIDs(long accountHash) throws IOException
+    {
+        int version = getSchemaVersion(accountHash);
+
+        try
+        {
+            for(; version < SCHEMA_VERSION; version++)
+            {
+                log.info("Migrating saved data from schema version {} to {}.", version, version + 1);
+                migrations.get(version).migrate(accountHash);
+                setSchemaVersion(accountHash, version + 1);
+            }
+        }
+        catch(IOException | RuntimeException e)
+        {
+            throw new IOException("Saved data could not be migrated from schema version " + version, e);
+        }
+
+        String manifestJson = getConfiguration(buildManifestConfigKey(accountHash));
+
+        if(manifestJson == null)
+        {
+            return Optional.empty();
+        }
+
+        try
+        {
+            return Optional.ofNullable(GSON.fromJson(manifestJson, MANIFEST_TYPE));
+        }
+        catch(JsonParseException e)
+        {
+            throw new IOException("Configuration \"" + buildManifestConfigKey(accountHash) + "\" is malformed", e);
+        }
+    }
+
+    /**
+     * Reads a Friend saved to the config.
+     *
+     * @return the Friend, or null if it is listed in the manifest but not saved
+     * @throws IOException if the saved data is malformed
+     */
+    private Friend getFriendFromConfig(long accountHash, String friendID) throws IOException
+    {
+        String friendData = getConfiguration(buildFriendConfigKey(accountHash, friendID));
+
+        if(friendData == null)
+        {
+            log.warn("Configuration \"{}.{}\" listed in manifest but not found.", FriendTrackerPlugin.CONFIG_GROUP_NAME, buildFriendConfigKey(accountHash, friendID));
+            return null;
+        }
+
+        try
+        {
+            return deserializeFriend(friendData);
+        }
+        catch(RuntimeException e)
+        {
+            // Not Base64, or not codec data
+            throw new IOException("Configuration \"" + buildFriendConfigKey(accountHash, friendID) + "\" is malformed", e);
+        }
+    }
+
+    /**
+     * Returns the schema version of the data saved for the given account.
+     * Data saved before the version was recorded, or with a version that cannot be read, is identified by the
+     * keys it uses.
+     *
+     * @param accountHash the account to check
+     * @return the schema version of the saved data
+     */
+    private int getSchemaVersion(long accountHash)
+    {
+        String version = getConfiguration(buildSchemaVersionConfigKey(accountHash));
+
+        if(version != null)
+        {
+            try
+            {
+                int parsed = Integer.parseInt(version.trim());
+                if(parsed >= 0) return parsed;
+            }
+            catch(NumberFormatException e)
+            {
+                // Detected from the saved keys below
+            }
+
+            log.warn("Schema version \"{}\" of {} is not valid, detecting it from the saved data.", version, accountHash);
+        }
+
+        if(getConfiguration(buildManifestConfigKey(accountHash)) != null)
+        {
+            return 1;
+        }
+
+        if(getConfiguration(buildLegacyConfigKey(accountHash)) != null)
+        {
+            return 0;
+        }
+
+        // Nothing has been saved for this account yet
+        return SCHEMA_VERSION;
+    }
+
+    private void setSchemaVersion(long accountHash, int version)
+    {
+        setConfiguration(buildSchemaVersionConfigKey(accountHash), version);
+    }
+
+    /**
+     * Migrates Friend data saved in the legacy single key format to the sharded format.
+     * The legacy key is removed once the sharded data has been written.
+     *
+     * @param accountHash the account to migrate data for
+     */
+    private void migrateLegacyFriendData(long accountHash)
+    {
+        String friendsJson = getConfiguration(buildLegacyConfigKey(accountHash));
+        Map<String, Friend> friends = GSON.fromJson(friendsJson, MAP_TYPE);
+
+        if(friends == null)
+        {
+            log.warn(String.format("Configuration \"%s.%s\" not found.", FriendTrackerPlugin.CONFIG_GROUP_NAME, buildLegacyConfigKey(accountHash)));
+            return;
+        }
+
+        log.info("Migrating {} friends to sharded save data.", friends.size());
+
+        saveFriendDataToConfig(accountHash, friends);
+        unsetConfiguration(buildLegacyConfigKey(accountHash));
+    }
+
+    /**
+     * Rewrites every Friend stored as JSON as codec data.
+     *
+     * @param accountHash the account to migrate data for
+     */
+    private void migrateJsonFriendShards(long accountHash)
+    {
+        String manifestJson = getConfiguration(buildManifestConfigKey(accountHash));
+        if(manifestJson == null) return;
+
+        List<String> friendIDs = GSON.fromJson(manifestJson, MANIFEST_TYPE);
+        int migrated = 0;
+
+        for(String friendID : friendIDs)
+        {
+            String key = buildFriendConfigKey(accountHash, friendID);
+            String friendData = getConfiguration(key);
+
+            if(friendData == null || !friendData.startsWith("{")) continue;
+
+            Friend friend = GSON.fromJson(friendData, Friend.class);
+            setConfiguration(key, serializeFriend(friend));
+            migrated++;
+        }
+
+        log.info("Migrated {} friends from JSON to codec data.", migrated);
+    }
+
+    /**
+     * Merges the given Friend into one saved Friend of an account that is not loaded, without reading its other
+     * Friends.
+     *
+     * Saved to the config, the saved Friend is read from its own key, merged into and written back. Saved to a
+     * journal, the snapshots of the given Friend are appended as snapshots of the saved Friend, which replaying
+     * the journal merges. The saved Friend's summary is then brought up to date the next time the account loads.
+     *
+     * @param accountHash the account the saved Friend belongs to
+     * @param savedFriend the saved Friend, or a copy of it holding at least its name and newest snapshot
+     * @param friend the Friend to merge into it
+     * @throws IOException if the saved Friend could not be read or the merge could not be written
+     */
+    public void mergeIntoSavedFriend(long accountHash, Friend savedFriend, Friend friend) throws IOException
+    {
+        boolean journal = getStorageMode() == ConfigValues.StorageOptions.FILE;
+
+        Friend target = journal ? savedFriend.copy() : getFriendFromConfig(accountHash, savedFriend.getID());
+        if(target == null)
+        {
+            throw new IOException("Configuration \"" + buildFriendConfigKey(accountHash, savedFriend.getID()) + "\" not found");
+        }
+
+        FriendManager friendManager = new FriendManager(accountHash);
+        friendManager.getFriends().put(target.getID(), target);
+        friendManager.merge(friend, target.getID());
+        FriendChanges changes = friendManager.takeChanges();
+
+        if(journal)
+        {
+            saveFriendDataToJournal(changes);
+            return;
+        }
+
+        saveFriendData(changes);
+    }
+
+    /**
+     * Adds the given Friend to the saved data of an account that is not loaded, without reading its other Friends.
+     *
+     * @param accountHash the account to add the Friend to
+     * @param friend the Friend to add
+     * @param friendIDs the IDs of every saved Friend of the account, including the given Friend
+     * @throws IOException if the Friend could not be written
+     */
+    public void addSavedFriend(long accountHash, Friend friend, List<String> friendIDs) throws IOException
+    {
+        FriendManager friendManager = new FriendManager(accountHash);
+        friendManager.add(friend);
+        FriendChanges changes = friendManager.takeChanges();
+
+        saveFriendData(new FriendChanges(accountHash,
+                changes.getChangedFriends(),
+                changes.getRemovedFriendIDs(),
+                friendIDs,
+                changes.getUnsavedSnapshots(),
+                changes.getDiscardedSnapshots()));
+    }
+
+    /**
+     * Saves every given Friend and rewrites the manifest for the given account.
+     *
+     * @param accountHash the account to save data for
+     * @param friends the complete set of Friends for the account
+     */
     public void saveFriendDataToConfig(long accountHash, Map<String, Friend> friends)
     {
-        Gson gson = buildGson();
+        for(Map.Entry<String, Friend> entry : friends.entrySet())
+        {
+            setConfiguration(buildFriendConfigKey(accountHash, entry.getKey()),
+                    serializeFriend(entry.getValue()));
+        }
+
+        setConfiguration(buildManifestConfigKey(accountHash),
+                GSON.toJson(friends.keySet(), MANIFEST_TYPE));
+    }
+
+    /**
+     * Replaces the data saved to the config for the given account with the given Friends, removing the keys of any
+     * Friend saved there that is not given.
+     *
+     * @param accountHash the account to save data for
+     * @param friends the complete set of Friends for the account
+     */
+    private void replaceFriendDataInConfig(long accountHash, Map<String, Friend> friends)
+    {
+        String manifestJson = getConfiguration(buildManifestConfigKey(accountHash));
+        List<String> staleFriendIDs = null;
+
+        try
+        {
+            staleFriendIDs = manifestJson != null ? GSON.fromJson(manifestJson, MANIFEST_TYPE) : null;
+        }
+        catch(JsonParseException e)
+        {
+            log.warn("Configuration \"{}.{}\" is malformed, its friends are left in place.", FriendTrackerPlugin.CONFIG_GROUP_NAME, buildManifestConfigKey(accountHash));
+        }
+
+        if(staleFriendIDs != null)
+        {
+            for(String friendID : staleFriendIDs)
+            {
+                if(friends.containsKey(friendID)) continue;
+
+                unsetConfiguration(buildFriendConfigKey(accountHash, friendID));
+            }
+        }
+
+        saveFriendDataToConfig(accountHash, friends);
+        unsetConfiguration(buildLegacyConfigKey(accountHash));
+        setSchemaVersion(accountHash, SCHEMA_VERSION);
+    }
+
+    /**
+     * Saves only the Friends that have changed since the last save.
+     * Removed Friends are deleted and the manifest is only rewritten if Friends were added or removed.
+     *
+     * @param changes the changes taken from a FriendManager
+     */
+    public void saveFriendDataToConfig(FriendChanges changes)
+    {
+        long accountHash = changes.getAccountHash();
+
+        for(Map.Entry<String, Friend> entry : changes.getChangedFriends().entrySet())
+        {
+            setConfiguration(buildFriendConfigKey(accountHash, entry.getKey()),
+                    serializeFriend(entry.getValue()));
+        }
 
-        configManager.setConfiguration(FriendTrackerPlugin.CONFIG_GROUP_NAME,
-                buildConfigKey(accountHash),
-                gson.toJson(friends, MAP_TYPE));
+        for(String friendID : changes.getRemovedFriendIDs())
+        {
+            unsetConfiguration(buildFriendConfigKey(accountHash, friendID));
+        }
+
+        if(changes.getFriendIDs() != null)
+        {
+            setConfiguration(buildManifestConfigKey(accountHash),
+                    GSON.toJson(changes.getFriendIDs(), MANIFEST_TYPE));
+            setSchemaVersion(accountHash, SCHEMA_VERSION);
+        }
+
+        log.debug("Saved {} changed and {} removed friends.", changes.getChangedFriends().size(), changes.getRemovedFriendIDs().size());
     }
 
+    /**
+     * Appends the given changes to the journal of their account.
+     * Each changed Friend writes its name record and only the snapshots added or discarded since the last save.
+     *
+     * @param changes the changes taken from a FriendManager
+     * @throws IOException if the journal could not be written
+     */
+    public void saveFriendDataToJournal(FriendChanges changes) throws IOException
+    {
+        List<JournalRecord> records = new ArrayList<>();
+
+        for(String friendID : changes.getRemovedFriendIDs())
+        {
+            records.add(JournalRecord.remove(friendID));
+        }
+
+        for(Friend friend : changes.getChangedFriends().values())
+        {
+            records.add(JournalRecord.friend(friend));
+
+            for(Instant instant : changes.getDiscardedSnapshots(friend.getID()))
+            {
+                records.add(JournalRecord.discard(friend.getID(), instant));
+            }
+
+            for(Instant instant : changes.getUnsavedSnapshots(friend.getID()))
+            {
+                // An unchanged result is written again so that replaying it extends the newest snapshot
+                Instant validAt = friend.getHiscoreSnapshots().findValidAt(instant);
+                HiscoreResult result = validAt != null ? friend.getHiscoreSnapshots().get(validAt) : null;
+
+                if(result == null) continue;
+
+                records.add(JournalRecord.snapshot(friend.getID(), instant, result));
+            }
+        }
+
+        snapshotJournal.append(GSON, changes.getAccountHash(), records);
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.FriendChanges;
+import com.friendtracker.friends.FriendManager;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Saves FriendManagers in the background, merging bursts of changes into a single write.
+ *
+ * A save is written once no further save has been requested for {@link #QUIET_PERIOD_MS}, or once
+ * {@link #MAX_DELAY_MS} has passed since the first unsaved request, whichever is sooner. Changes are copied
+ * out of the FriendManager and serialized on the executor so the calling thread never waits on storage.
+ *
+ * Changes that fail to be written are restored to their FriendManager and written again after
+ * {@link #RETRY_DELAY_MS}, along with any made in the meantime.
+ */
+@Slf4j
+@Singleton
+public class TrackerDataWriter
+{
+    static final long QUIET_PERIOD_MS = 2_000;
+    static final long MAX_DELAY_MS = 15_000;
+    static final long RETRY_DELAY_MS = 30_000;
+
+    private final TrackerDataStore trackerDataStore;
+    private final ScheduledExecutorService executor;
+
+    // Held while taking and writing changes so that saves are written in the order they were taken
+    private final Object saveLock = new Object();
+
+    private FriendManager pendingFriendManager;
+    private ScheduledFuture<?> pendingSave;
+    private long firstRequestTime;
+
+    @Inject
+    public TrackerDataWriter(TrackerDataStore trackerDataStore, ScheduledExecutorService executor)
+    {
+        this.trackerDataStore = trackerDataStore;
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules the unsaved changes of the given FriendManager to be written.
+     *
+     * @param friendManager the FriendManager that has changed
+     */
+    public synchronized void requestSave(FriendManager friendManager)
+    {
+        long now = System.currentTimeMillis();
+
+        if(pendingFriendManager != null && pendingFriendManager != friendManager)
+        {
+            // Changes for a different account are written straight away
+            FriendManager previousFriendManager = pendingFriendManager;
+            pendingSave.cancel(false);
+            pendingSave = null;
+            executor.execute(() -> save(previousFriendManager));
+        }
+
+        if(pendingSave == null)
+        {
+            firstRequestTime = now;
+        }
+        else
+        {
+            pendingSave.cancel(false);
+        }
+
+        long delay = Math.min(QUIET_PERIOD_MS, Math.max(0, firstRequestTime + MAX_DELAY_MS - now));
+
+        pendingFriendManager = friendManager;
+        pendingSave = executor.schedule(this::savePending, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels any scheduled save and writes the unsaved changes of the given FriendManager on the calling thread.
+     *
+     * @param friendManager the FriendManager to save
+     */
+    public void flush(FriendManager friendManager)
+    {
+        FriendManager previousFriendManager = null;
+
+        synchronized(this)
+        {
+            if(pendingSave != null)
+            {
+                pendingSave.cancel(false);
+            }
+
+            if(pendingFriendManager != friendManager)
+            {
+                previousFriendManager = pendingFriendManager;
+            }
+
+            pendingSave = null;
+            pendingFriendManager = null;
+        }
+
+        if(previousFriendManager != null)
+        {
+            save(previousFriendManager);
+        }
+
+        save(friendManager);
+    }
+
+    /**
+     * Flushes the given FriendManager and rewrites the summary index of its account, for an account that is no
+     * longer logged in or a plugin that is stopping.
+     *
+     * @param friendManager the FriendManager to save
+     */
+    public void flushAndSummarize(FriendManager friendManager)
+    {
+        flush(friendManager);
+        trackerDataStore.saveSummaries(friendManager);
+    }
+
+    private void savePending()
+    {
+        FriendManager friendManager;
+
+        synchronized(this)
+        {
+            friendManager = pendingFriendManager;
+            pendingFriendManager = null;
+            pendingSave = null;
+        }
+
+        if(friendManager != null)
+        {
+            save(friendManager);
+        }
+    }
+
+    /**
+     * Schedules the restored changes of the given FriendManager to be written again, unless a save of it is
+     * already pending.
+     */
+    private void scheduleRetry(FriendManager friendManager)
+    {
+        synchronized(this)
+        {
+            if(pendingFriendManager == friendManager) return;
+
+            if(pendingFriendManager == null)
+            {
+                firstRequestTime = System.currentTimeMillis();
+                pendingFriendManager = friendManager;
+                pendingSave = executor.schedule(this::savePending, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+
+        executor.schedule(() -> save(friendManager), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void save(FriendManager friendManager)
+    {
+        synchronized(saveLock)
+        {
+            FriendChanges changes = friendManager.takeChanges();
+
+            if(changes.isEmpty()) return;
+
+            long start = System.currentTimeMillis();
+
+            try
+            {
+                trackerDataStore.saveFriendData(changes);
+            }
+            catch(Exception e)
+            {
+                log.warn("Failed to save friend data for {}, retrying in {}ms: {}", changes.getAccountHash(), RETRY_DELAY_MS, e.getMessage());
+                friendManager.restoreChanges(changes);
+                scheduleRetry(friendManager);
+                return;
+            }
+
+            log.debug("Saved friend data for {} in {}ms.", changes.getAccountHash(), System.currentTimeMillis() - start);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import com.friendtracker.panel.components.HiscoreUtil;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import lombok.Getter;
+import net.runelite.client.hiscore.HiscoreSkill;
+
+/**
+ * The overall xp and total KC a Friend gained on each day, in a given time zone.
+ *
+ * The gains between two consecutive snapshots were made some time after the earlier snapshot was last fetched
+ * unchanged and before the later snapshot was taken, so they are spread across the days of that interval in
+ * proportion to the time spent in each. The gains over every day between two snapshots add up to the gains
+ * measured by {@link Friend#xpGainedSince} and {@link Friend#kcGainedSince}.
+ *
+ * Appending a snapshot newer than every other updates the histogram in place.
+ */
+public class ActivityHistogram extends SnapshotAggregate
+{
+    private static final int MIN_CAPACITY = 8;
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+    private static final int OVERALL = HiscoreSkill.OVERALL.ordinal();
+
+    @Getter
+    private final ZoneId zone;
+    // Epoch day of the first bucket
+    private long firstDay;
+    private int size;
+    private long[] xpGained = new long[0];
+    private int[] kcGained = new int[0];
+
+    // The end of the validity of the newest snapshot counted, and its overall xp and total KC
+    private Instant latestEnd;
+    private long latestXp;
+    private int latestKc;
+
+    public ActivityHistogram(ZoneId zone)
+    {
+        this.zone = zone;
+    }
+
+    /**
+     * Returns the first day with gains counted, or null if there is none.
+     *
+     * @return the first day of the histogram
+     */
+    public synchronized LocalDate getFirstDay()
+    {
+        return size > 0 ? LocalDate.ofEpochDay(firstDay) : null;
+    }
+
+    /**
+     * Returns the last day with gains counted, or null if there is none.
+     *
+     * @return the last day of the histogram
+     */
+    public synchronized LocalDate getLastDay()
+    {
+        return size > 0 ? LocalDate.ofEpochDay(firstDay + size - 1) : null;
+    }
+
+    public long getXpGained(LocalDate day)
+    {
+        return getXpGained(day, day.plusDays(1));
+    }
+
+    public int getKcGained(LocalDate day)
+    {
+        return getKcGained(day, day.plusDays(1));
+    }
+
+    /**
+     * Returns the overall xp gained from the start of one day until the start of another, such as over a week.
+     *
+     * @param from the first day to count
+     * @param until the day after the last day to count
+     * @return the overall xp gained over the days
+     */
+    public synchronized long getXpGained(LocalDate from, LocalDate until)
+    {
+        long xp = 0;
+        for(int i = index(from.toEpochDay()); i < index(until.toEpochDay()); i++)
+        {
+            xp += xpGained[i];
+        }
+
+        return xp;
+    }
+
+    /**
+     * Returns the total KC gained from the start of one day until the start of another, such as over a week.
+     *
+     * @param from the first day to count
+     * @param until the day after the last day to count
+     * @return the total KC gained over the days
+     */
+    public synchronized int getKcGained(LocalDate from, LocalDate until)
+    {
+        int kc = 0;
+        for(int i = index(from.toEpochDay()); i < index(until.toEpochDay()); i++)
+        {
+            kc += kcGained[i];
+        }
+
+        return kc;
+    }
+
+    @Override
+    protected void reset()
+    {
+        size = 0;
+        latestEnd = null;
+    }
+
+    @Override
+    protected void count(SnapshotHistory history, Instant instant, Instant end, int[] levels, long[] experiences)
+    {
+        long xp = experiences[OVERALL];
+        int kc = 0;
+        for(HiscoreSkill hiscoreSkill : SKILLS)
+        {
+            int level = levels[hiscoreSkill.ordinal()];
+            if(HiscoreUtil.isCountedAsKc(hiscoreSkill) && level != -1) kc += level;
+        }
+
+        // Gains since the newest snapshot counted were made after it was last fetched unchanged
+        if(latestEnd != null)
+        {
+            spread(latestEnd, instant, xp - latestXp, kc - latestKc);
+        }
+
+        latestEnd = end;
+        latestXp = xp;
+        latestKc = kc;
+    }
+
+    @Override
+    protected void extend(Instant instant, Instant previousEnd, Instant end)
+    {
+        latestEnd = end;
+    }
+
+    /**
+     * Spreads gains made after one instant and up to another across the days between them, in proportion to the
+     * time spent in each day.
+     */
+    private void spread(Instant start, Instant end, long xp, int kc)
+    {
+        if(xp == 0 && kc == 0) return;
+
+        long startDay = epochDay(start);
+        long endDay = epochDay(end);
+        long seconds = Duration.between(start, end).getSeconds();
+
+        long countedXp = 0;
+        int countedKc = 0;
+        for(long day = startDay; day <= endDay; day++)
+        {
+            long xpUntil = xp;
+            int kcUntil = kc;
+
+            if(day < endDay && seconds > 0)
+            {
+                long elapsed = Duration.between(start, LocalDate.ofEpochDay(day + 1).atStartOfDay(zone).toInstant()).getSeconds();
+                xpUntil = xp * elapsed / seconds;
+                kcUntil = (int) ((long) kc * elapsed / seconds);
+            }
+
+            add(day, xpUntil - countedXp, kcUntil - countedKc);
+            countedXp = xpUntil;
+            countedKc = kcUntil;
+        }
+    }
+
+    private void add(long day, long xp, int kc)
+    {
+        if(xp == 0 && kc == 0) return;
+
+        if(size == 0)
+        {
+            firstDay = day;
+        }
+        else if(day < firstDay)
+        {
+            int shift = (int) (firstDay - day);
+            grow(size + shift);
+            System.arraycopy(xpGained, 0, xpGained, shift, size);
+            System.arraycopy(kcGained, 0, kcGained, shift, size);
+            Arrays.fill(xpGained, 0, shift, 0L);
+            Arrays.fill(kcGained, 0, shift, 0);
+            firstDay = day;
+            size += shift;
+        }
+
+        int i = (int) (day - firstDay);
+        if(i >= size)
+        {
+            grow(i + 1);
+            Arrays.fill(xpGained, size, i + 1, 0L);
+            Arrays.fill(kcGained, size, i + 1, 0);
+            size = i + 1;
+        }
+
+        xpGained[i] += xp;
+        kcGained[i] += kc;
+    }
+
+    private void grow(int capacity)
+    {
+        if(capacity <= xpGained.length) return;
+
+        int newCapacity = Math.max(Math.max(MIN_CAPACITY, capacity), xpGained.length * 2);
+        xpGained = Arrays.copyOf(xpGained, newCapacity);
+        kcGained = Arrays.copyOf(kcGained, newCapacity);
+    }
+
+    /**
+     * Returns the index of the bucket of the given day, clamped to the buckets held.
+     */
+    private int index(long day)
+    {
+        return (int) Math.max(0, Math.min(size, day - firstDay));
+    }
+
+    private long epochDay(Instant instant)
+    {
+        return instant.atZone(zone).toLocalDate().toEpochDay();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import javax.annotation.Nullable;
+
+/**
+ * Snapshots of a Friend held outside of memory, sorted oldest first. Every archived snapshot is older than the
+ * snapshots the Friend's {@link SnapshotHistory} holds in memory.
+ */
+public interface ArchivedSnapshots extends SnapshotSource
+{
+    int size();
+
+    /**
+     * Returns the instant the snapshot at the given position was taken, without decoding it.
+     *
+     * @param index the position of the snapshot, oldest first
+     * @return the instant of the snapshot
+     */
+    Instant getInstant(int index);
+
+    /**
+     * Returns the last instant the snapshot at the given position was fetched unchanged.
+     *
+     * @param index the position of the snapshot, oldest first
+     * @return the end of the snapshot's validity interval, or null if it has none
+     */
+    @Nullable
+    Instant getValidUntil(int index);
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * The instants of the snapshots of a Friend that are still encoded, each with the position of its snapshot in
+ * the {@link SnapshotSource}.
+ */
+class EncodedSnapshotIndex extends InstantColumns
+{
+    private int[] sourceIndices = new int[0];
+
+    EncodedSnapshotIndex()
+    {
+    }
+
+    EncodedSnapshotIndex(EncodedSnapshotIndex index)
+    {
+        super(index);
+        this.sourceIndices = Arrays.copyOf(index.sourceIndices, index.size());
+    }
+
+    @Override
+    protected void resize(int capacity)
+    {
+        sourceIndices = Arrays.copyOf(sourceIndices, capacity);
+    }
+
+    @Override
+    protected void move(int from, int to, int length)
+    {
+        System.arraycopy(sourceIndices, from, sourceIndices, to, length);
+    }
+
+    void put(Instant instant, int sourceIndex)
+    {
+        int row = indexOf(instant);
+        if(row < 0) row = insertRow(instant);
+
+        sourceIndices[row] = sourceIndex;
+    }
+
+    int getSourceIndex(int row)
+    {
+        return sourceIndices[row];
+    }
+
+    boolean remove(Instant instant)
+    {
+        int row = indexOf(instant);
+        if(row < 0) return false;
+
+        removeRow(row);
+        return true;
+    }
+}
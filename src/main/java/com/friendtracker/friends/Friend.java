@@ -28,17 +28,26 @@ import com.friendtracker.FriendTrackerConfig;
 import com.friendtracker.FriendTrackerPlugin;
 import com.friendtracker.panel.FriendPanel;
 import com.friendtracker.panel.components.HiscoreUtil;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.hiscore.HiscoreResult;
 import net.runelite.client.hiscore.HiscoreSkill;
@@ -51,7 +60,21 @@ public class Friend {
     private final String ID;
     private String name;
     private final List<String> previousNames = new ArrayList<>();
-    private TreeMap<Instant, HiscoreResult> hiscoreSnapshots = new TreeMap<>();
+    private SnapshotHistory hiscoreSnapshots = new SnapshotHistory();
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final GainsCache gainsCache = new GainsCache();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private ActivityHistogram activityHistogram = new ActivityHistogram(ZoneOffset.UTC);
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private RateTracker rateTracker;
 
     public Friend(String ID, String name)
     {
@@ -69,21 +92,133 @@ public class Friend {
     }
 
     public FriendPanel generatePanel(FriendTrackerPlugin plugin, FriendTrackerConfig config)
+    {
+        return generatePanel(plugin, config, gainsInTheLast(config.selectedRange().getPeriod().multipliedBy(config.rangeNumber()),
+                config.rangeTolerance().getPeriod(), plugin.getGainsClock().instant()));
+    }
+
+    /**
+     * Generates a panel showing the given gains of this Friend, such as those evaluated for a whole redraw.
+     */
+    public FriendPanel generatePanel(FriendTrackerPlugin plugin, FriendTrackerConfig config, FriendGains gains)
     {
         FriendPanel friendPanel = new FriendPanel(plugin, config, this);
-        friendPanel.applyHiscoreResult(hiscoreChangeInTheLast(config.selectedRange().getPeriod().multipliedBy(config.rangeNumber()), config.rangeTolerance().getPeriod()));
+        friendPanel.applyGains(gains);
 
         return friendPanel;
     }
 
-    public void addSnapshotNow(HiscoreResult result)
+    public void addSnapshotNow(Clock clock, HiscoreResult result)
     {
-        addSnapshot(Instant.now(), result);
+        addSnapshot(clock.instant(), result);
     }
 
+    /**
+     * Adds a snapshot taken at the given instant. A result unchanged from the newest snapshot extends the interval
+     * the newest snapshot is valid for instead of being stored again.
+     *
+     * @param instant the instant the result was fetched
+     * @param result the fetched result
+     */
     public void addSnapshot(Instant instant, HiscoreResult result)
     {
-        hiscoreSnapshots.put(instant, result);
+        int modificationCount = hiscoreSnapshots.getModificationCount();
+
+        addToHistory(instant, result);
+
+        activityHistogram.appended(hiscoreSnapshots, modificationCount, instant, result);
+        if(rateTracker != null) rateTracker.appended(hiscoreSnapshots, modificationCount, instant, result);
+    }
+
+    private void addToHistory(Instant instant, HiscoreResult result)
+    {
+        Map.Entry<Instant, HiscoreResult> latest = hiscoreSnapshots.lastEntry();
+
+        if(latest != null && instant.isAfter(latest.getKey()) && isUnchanged(latest.getValue(), result))
+        {
+            hiscoreSnapshots.extendLatest(instant);
+            return;
+        }
+
+        // Share skills unchanged since the newest snapshot with it
+        hiscoreSnapshots.put(instant, SkillPool.share(latest != null ? latest.getValue() : null, result));
+    }
+
+    /**
+     * Returns the overall xp and total KC gained on each UTC day.
+     *
+     * @return the daily gains of this Friend
+     */
+    public ActivityHistogram getActivityHistogram()
+    {
+        return getActivityHistogram(ZoneOffset.UTC);
+    }
+
+    /**
+     * Returns the overall xp and total KC gained on each day in the given time zone. The histogram is kept up to
+     * date as snapshots are added, and counted again from the whole history if it is requested in a different time
+     * zone or after older snapshots have changed.
+     *
+     * @param zone the time zone days start and end in
+     * @return the daily gains of this Friend
+     */
+    public ActivityHistogram getActivityHistogram(ZoneId zone)
+    {
+        if(!activityHistogram.getZone().equals(zone))
+        {
+            activityHistogram = new ActivityHistogram(zone);
+        }
+
+        activityHistogram.update(hiscoreSnapshots);
+        return activityHistogram;
+    }
+
+    /**
+     * Returns the rate each skill grew at over the snapshots taken within the given window before the newest, and
+     * projections from it. The rates are kept up to date as snapshots are added, and fitted again from the history
+     * if they are requested for a different window or after older snapshots have changed.
+     *
+     * @param window the length of time before the newest snapshot to measure rates over
+     * @return the rates of this Friend
+     */
+    public SkillRates getSkillRates(Duration window)
+    {
+        if(rateTracker == null || !rateTracker.getWindow().equals(window))
+        {
+            rateTracker = new RateTracker(window);
+        }
+
+        rateTracker.update(hiscoreSnapshots);
+        return rateTracker.getRates();
+    }
+
+    private static boolean isUnchanged(HiscoreResult previous, HiscoreResult result)
+    {
+        // Compare overall xp and total kc before comparing every skill
+        return fingerprint(previous) == fingerprint(result) && previous.equals(result);
+    }
+
+    private static long fingerprint(HiscoreResult result)
+    {
+        Skill overall = result.getSkill(HiscoreSkill.OVERALL);
+        long overallXp = overall != null ? overall.getExperience() : -1L;
+
+        return overallXp * 31 + HiscoreUtil.sumNonSkillKc(result);
+    }
+
+    /**
+     * Returns a copy of this Friend that can be read while this Friend continues to be modified.
+     * Snapshots are shared between the copies.
+     *
+     * @return a copy of this Friend
+     */
+    public Friend copy()
+    {
+        Friend copy = new Friend(ID, name);
+        copy.previousNames.addAll(previousNames);
+        copy.hiscoreSnapshots = hiscoreSnapshots.copy();
+
+        return copy;
     }
 
     public HiscoreResult getMostRecentResult()
@@ -100,11 +235,20 @@ public class Friend {
             name = friend.getName();
         }
 
-        hiscoreSnapshots.putAll(friend.getHiscoreSnapshots());
+        if(hiscoreSnapshots.isEmpty())
+        {
+            hiscoreSnapshots.putAll(friend.getHiscoreSnapshots());
+            return;
+        }
+
+        friend.getHiscoreSnapshots().toMap().forEach(this::addSnapshot);
     }
 
     public boolean isValidToMerge(Friend friend)
     {
+        // Without a snapshot on both sides there is nothing to compare
+        if(hiscoreSnapshots.isEmpty() || friend.getHiscoreSnapshots().isEmpty()) return false;
+
         HiscoreResult baseHiscoreResult = this.getMostRecentResult();
         HiscoreResult newHiscoreResult = friend.getMostRecentResult();
         Skill baseSkill, newSkill;
@@ -165,35 +309,33 @@ public class Friend {
      */
     public Optional<HiscoreResult> getSnapshotAt(Instant instant, Period tolerance)
     {
-        Optional<Instant> target;
-
-        // The snapshot at the given instant
-        if(hiscoreSnapshots.containsKey(instant)) return Optional.of(hiscoreSnapshots.get(instant));
+        return getSnapshotInstantAt(instant, tolerance).map(hiscoreSnapshots::get);
+    }
 
-        TreeSet<Instant> hiscoreSet = hiscoreSnapshots.keySet().stream()
-                .filter(inst -> inst.compareTo(instant.minus(tolerance)) >= 0)
-                .collect(Collectors.toCollection(TreeSet::new));
+    /**
+     * Finds the instant of the snapshot that {@link Friend#getSnapshotAt} would return, without decoding any snapshots.
+     *
+     * @param instant the point in time to measure gained xp from
+     * @param tolerance the tolerance period to prioritise
+     * @return the instant of the closest snapshot found to the target instant
+     */
+    public Optional<Instant> getSnapshotInstantAt(Instant instant, Period tolerance)
+    {
+        // The snapshot at the given instant, or unchanged across it
+        Instant validAt = hiscoreSnapshots.findValidAt(instant);
+        if(validAt != null) return Optional.of(validAt);
 
         // The snapshot closest to the given Instant greater than it within the configured tolerance
-        target = hiscoreSet.stream()
-                .filter(inst -> inst.compareTo(instant) >= 0 && inst.compareTo(instant.plus(tolerance)) <= 0)
-                .min(Comparator.naturalOrder());
-
-        if(target.isPresent()) return Optional.of(hiscoreSnapshots.get(target.get()));
-
-        // The snapshot closest to the given Instant less than it within the configured tolerance
-        target = hiscoreSet.stream()
-                .filter(inst -> inst.compareTo(instant) <= 0)
-                .max(Comparator.naturalOrder());
+        Instant after = hiscoreSnapshots.ceilingInstant(instant);
+        if(after != null && !after.isAfter(instant.plus(tolerance))) return Optional.of(after);
 
-        if(target.isPresent()) return Optional.of(hiscoreSnapshots.get(target.get()));
+        // The snapshot closest to the given Instant less than it within the configured tolerance, measured from the
+        // last instant it was valid
+        Instant before = hiscoreSnapshots.floorInstant(instant);
+        if(before != null && !hiscoreSnapshots.getValidityEnd(before).isBefore(instant.minus(tolerance))) return Optional.of(before);
 
         // The snapshot closest to the given Instant greater than it
-        target = hiscoreSet.stream()
-                .filter(inst -> inst.compareTo(instant) >= 0)
-                .min(Comparator.naturalOrder());
-
-        return target.map(value -> hiscoreSnapshots.get(value));
+        return Optional.ofNullable(after);
     }
 
     /**
@@ -221,20 +363,20 @@ public class Friend {
     }
 
     /**
-     * Returns the total xp gained in the specified period before now within the specified tolerance.
+     * Returns the total xp gained in the specified period before the given instant within the specified tolerance.
      *
      * If period is equal to {@link Period#ZERO} then the most recent snapshot's overall xp is returned.
-     * Otherwise, this method calls {@link Friend#xpGainedSince} with parameter {@code Instant.now().minus(period)}.
+     * Otherwise, the xp is measured as by {@link Friend#xpGainedSince} from the period before the given instant, and
+     * reused for the same instant unless the snapshots change.
      *
-     * @param period the time period before now to measure gained xp from
+     * @param period the time period before the given instant to measure gained xp from
      * @param tolerance the tolerance period to prioritise
-     * @return the total xp gained in the specified period before now
+     * @param now the instant to measure gained xp up to
+     * @return the total xp gained in the specified period before the given instant
      */
-    public long xpGainedInTheLast(Period period, Period tolerance)
+    public long xpGainedInTheLast(Period period, Period tolerance, Instant now)
     {
-        if(period.isZero()) return getMostRecentResult().getSkill(HiscoreSkill.OVERALL).getExperience();
-
-        return xpGainedSince(Instant.now().minus(period), tolerance);
+        return gainsInTheLast(period, tolerance, now).getXpGained();
     }
 
     /**
@@ -261,19 +403,19 @@ public class Friend {
     }
 
     /**
-     * Returns the total kc gained in the specified period before now within the specified tolerance.
+     * Returns the total kc gained in the specified period before the given instant within the specified tolerance.
      *
      * If period is equal to {@link Period#ZERO} then the most recent snapshot's total kc is returned.
-     * Otherwise, this method calls {@link Friend#kcGainedSince} with parameter {@code Instant.now().minus(period)}.
+     * Otherwise, the kc is measured as by {@link Friend#kcGainedSince} from the period before the given instant, and
+     * reused for the same instant unless the snapshots change.
      *
-     * @param period the time period before now to measure gained kc from
-     * @return the total kc gained in the specified period before now
+     * @param period the time period before the given instant to measure gained kc from
+     * @param now the instant to measure gained kc up to
+     * @return the total kc gained in the specified period before the given instant
      */
-    public int kcGainedInTheLast(Period period, Period tolerance)
+    public int kcGainedInTheLast(Period period, Period tolerance, Instant now)
     {
-        if(period.isZero()) return HiscoreUtil.sumNonSkillKc(getMostRecentResult());
-
-        return kcGainedSince(Instant.now().minus(period), tolerance);
+        return gainsInTheLast(period, tolerance, now).getKcGained();
     }
 
 
@@ -284,15 +426,96 @@ public class Friend {
 
         Optional<HiscoreResult> baseSnapshot = getSnapshotAt(instant, tolerance);
 
-        return baseSnapshot.map(result -> HiscoreUtil.getDifference(currentResult, result))
-                .orElseGet(() -> HiscoreUtil.getDifference(currentResult, currentResult));
+        return baseSnapshot.map(result -> new HiscoreDifference(currentResult, result))
+                .orElseGet(() -> new HiscoreDifference(currentResult, currentResult));
     }
 
-    public HiscoreResult hiscoreChangeInTheLast(Period period, Period tolerance)
+    public HiscoreResult hiscoreChangeInTheLast(Period period, Period tolerance, Instant now)
+    {
+        return gainsInTheLast(period, tolerance, now).getChange();
+    }
+
+    /**
+     * Returns the change in every skill between the snapshots at the start and end of the given window.
+     *
+     * Both snapshots are found as by {@link Friend#getSnapshotAt}, except that the newest snapshot before the end is
+     * used if there is none at or after it. No HiscoreResults are built for snapshots held in memory.
+     *
+     * @param from the start of the window
+     * @param to the end of the window
+     * @param tolerance the tolerance period to prioritise
+     * @return the gains over the window, or empty if there are no snapshots within tolerance of it
+     */
+    public Optional<SkillGains> gainsBetween(Instant from, Instant to, Period tolerance)
     {
-        if(period.isZero()) return getMostRecentResult();
+        TimeWindow window = new TimeWindow(from, to);
+
+        return Optional.ofNullable(gainsBetween(Collections.singletonList(window), tolerance).get(window));
+    }
+
+    /**
+     * Returns the change in every skill over each of the given windows, as by {@link Friend#gainsBetween(Instant, Instant, Period)}.
+     * A snapshot shared by windows, such as the end of one week and the start of the next, is only read once.
+     *
+     * @param windows the windows to measure gains over
+     * @param tolerance the tolerance period to prioritise
+     * @return the gains over each window that has snapshots within tolerance of it, in the order given
+     */
+    public Map<TimeWindow, SkillGains> gainsBetween(List<TimeWindow> windows, Period tolerance)
+    {
+        Map<TimeWindow, SkillGains> gains = new LinkedHashMap<>();
+        Map<Instant, SkillGains.SnapshotSkills> snapshots = new HashMap<>();
+
+        for(TimeWindow window : windows)
+        {
+            Instant from = getSnapshotInstantAt(window.getFrom(), tolerance).orElse(null);
+            Instant to = getSnapshotInstantAt(window.getTo(), tolerance).orElseGet(() -> hiscoreSnapshots.floorInstant(window.getTo()));
+            // No gains are known for a window the history only starts after
+            if(from == null || to == null || from.isAfter(to) || from.isAfter(window.getTo().plus(tolerance))) continue;
+
+            SkillGains.SnapshotSkills fromSkills = snapshots.computeIfAbsent(from, instant -> SkillGains.SnapshotSkills.read(hiscoreSnapshots, instant));
+            SkillGains.SnapshotSkills toSkills = snapshots.computeIfAbsent(to, instant -> SkillGains.SnapshotSkills.read(hiscoreSnapshots, instant));
+            if(fromSkills == null || toSkills == null) continue;
+
+            gains.put(window, SkillGains.between(fromSkills, toSkills));
+        }
+
+        return gains;
+    }
+
+    /**
+     * Returns the gains in the specified period before the given instant, measuring them only if they are not cached
+     * for that instant. The cache is shared by sorting and drawing, and forgets the gains whenever the snapshots change.
+     *
+     * If period is equal to {@link Period#ZERO} then the gains are the most recent snapshot's totals.
+     *
+     * @param period the time period before the given instant to measure gains from
+     * @param tolerance the tolerance period to prioritise
+     * @param now the instant to measure gains up to
+     * @return the gains in the specified period before the given instant
+     */
+    public FriendGains gainsInTheLast(Period period, Period tolerance, Instant now)
+    {
+        return gainsCache.get(hiscoreSnapshots, period, tolerance, now, () -> measureGains(now, period, tolerance));
+    }
+
+    private FriendGains measureGains(Instant now, Period period, Period tolerance)
+    {
+        HiscoreResult currentResult = getMostRecentResult();
+        long currentTotalXp = currentResult.getSkill(HiscoreSkill.OVERALL).getExperience();
+        int currentTotalKc = HiscoreUtil.sumNonSkillKc(currentResult);
+
+        if(period.isZero()) return new FriendGains(currentTotalXp, currentTotalKc, currentResult);
+
+        HiscoreResult baseResult = getSnapshotAt(now.minus(period), tolerance).orElse(null);
+        if(baseResult == null)
+        {
+            return new FriendGains(0L, 0, new HiscoreDifference(currentResult, currentResult));
+        }
 
-        return hiscoreChangeSince(Instant.now().minus(period), tolerance);
+        return new FriendGains(currentTotalXp - baseResult.getSkill(HiscoreSkill.OVERALL).getExperience(),
+                currentTotalKc - HiscoreUtil.sumNonSkillKc(baseResult),
+                new HiscoreDifference(currentResult, baseResult));
     }
 
     /**
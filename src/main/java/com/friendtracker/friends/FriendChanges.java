@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import lombok.Value;
+
+/**
+ * The changes made to a {@link FriendManager} between two saves.
+ */
+@Value
+public class FriendChanges
+{
+    long accountHash;
+    // Copies of every Friend added or merged into, keyed by ID
+    Map<String, Friend> changedFriends;
+    Set<String> removedFriendIDs;
+    // The IDs of every Friend, or null if no Friends were added or removed
+    @Nullable
+    List<String> friendIDs;
+    Map<String, List<Instant>> unsavedSnapshots;
+    Map<String, List<Instant>> discardedSnapshots;
+
+    /**
+     * Returns the instants of the snapshots added to the given Friend since the last save.
+     *
+     * @param friendID the ID of the Friend
+     * @return the instants of the unsaved snapshots
+     */
+    public List<Instant> getUnsavedSnapshots(String friendID)
+    {
+        return unsavedSnapshots.getOrDefault(friendID, Collections.emptyList());
+    }
+
+    /**
+     * Returns the instants of the snapshots discarded from the given Friend since the last save.
+     *
+     * @param friendID the ID of the Friend
+     * @return the instants of the discarded snapshots
+     */
+    public List<Instant> getDiscardedSnapshots(String friendID)
+    {
+        return discardedSnapshots.getOrDefault(friendID, Collections.emptyList());
+    }
+
+    public boolean isEmpty()
+    {
+        return changedFriends.isEmpty() && removedFriendIDs.isEmpty() && friendIDs == null;
+    }
+}
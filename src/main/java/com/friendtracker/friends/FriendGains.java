@@ -22,20 +22,22 @@
  * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
-package com.friendtracker.data;
+package com.friendtracker.friends;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import java.lang.reflect.Type;
-import java.time.Instant;
+import lombok.Value;
+import net.runelite.client.hiscore.HiscoreResult;
 
-public class InstantDeserializer implements JsonDeserializer<Instant>
+/**
+ * The overall xp and total KC a Friend gained over a range, and the change in every skill over it, as a
+ * {@link HiscoreDifference} that only computes a skill when it is read.
+ */
+@Value
+public class FriendGains
 {
-    @Override
-    public Instant deserialize(JsonElement json, Type type, JsonDeserializationContext jsonDeserializationContext) throws JsonParseException
-    {
-        return Instant.parse(json.getAsJsonPrimitive().getAsString());
-    }
+    long xpGained;
+    int kcGained;
+    /**
+     * The change in every skill over the range, or the newest snapshot if the range is all time.
+     */
+    HiscoreResult change;
 }
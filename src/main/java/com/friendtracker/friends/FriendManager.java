@@ -24,14 +24,24 @@
  */
 package com.friendtracker.friends;
 
+import java.time.Instant;
+import java.time.Period;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.hiscore.HiscoreResult;
 
 @Data
 @Slf4j
@@ -40,6 +50,19 @@ public class FriendManager {
     private final long accountHash;
     private Map<String, Friend> friends = new HashMap<>(); //Key: UUID.randomUUID().toString();
 
+    // Changes since the last save
+    @Getter(AccessLevel.NONE)
+    private final Set<String> dirtyFriendIDs = new HashSet<>();
+    @Getter(AccessLevel.NONE)
+    private final Set<String> removedFriendIDs = new HashSet<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<String, List<Instant>> unsavedSnapshots = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<String, List<Instant>> discardedSnapshots = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean membershipChanged = false;
+
     public FriendManager(long accountHash)
     {
         this.accountHash = accountHash;
@@ -51,7 +74,7 @@ public class FriendManager {
      *
      * @param friends the Friend objects to populate this FriendManager
      */
-    public void applySaveData(Map<String, Friend> friends)
+    public synchronized void applySaveData(Map<String, Friend> friends)
     {
         // Only apply save data if friends list is empty
         if(!this.friends.isEmpty())
@@ -65,21 +88,30 @@ public class FriendManager {
         log.info("Save data applied. Friend list: {}", this.friends.values().stream().map(Friend::getName).collect(Collectors.joining(", ")));
     }
 
-    public void add(Friend friend)
+    public synchronized void add(Friend friend)
     {
         friends.put(friend.getID(), friend);
+        dirtyFriendIDs.add(friend.getID());
+        removedFriendIDs.remove(friend.getID());
+        unsavedSnapshots.put(friend.getID(), snapshotInstants(friend));
+        membershipChanged = true;
 
         log.info("Added {} to friend list.", friend.getName());
     }
 
-    public void remove(Friend friend)
+    public synchronized void remove(Friend friend)
     {
         friends.remove(friend.getID());
+        dirtyFriendIDs.remove(friend.getID());
+        removedFriendIDs.add(friend.getID());
+        unsavedSnapshots.remove(friend.getID());
+        discardedSnapshots.remove(friend.getID());
+        membershipChanged = true;
 
         log.info("Removed {} from friend list.", friend.getName());
     }
 
-    public void removeFriend(String name, String previousName)
+    public synchronized void removeFriend(String name, String previousName)
     {
         Optional<Friend> friend = friends.values().stream()
                 .filter(friend1 -> name.equals(friend1.getName()))
@@ -103,14 +135,195 @@ public class FriendManager {
         });
     }
 
-    public void merge(Friend newFriend, String mergeTargetID)
+    public synchronized void merge(Friend newFriend, String mergeTargetID)
     {
         friends.get(mergeTargetID).merge(newFriend);
+        dirtyFriendIDs.add(mergeTargetID);
+        unsavedSnapshots.computeIfAbsent(mergeTargetID, id -> new ArrayList<>()).addAll(snapshotInstants(newFriend));
 
         log.info("Merged {} into {}.", newFriend.getName(), friends.get(mergeTargetID).getName());
     }
 
-    public List<Friend> getValidMergeCandidates(Friend newFriend)
+    /**
+     * Returns the instant of every snapshot of the given Friend and the end of every validity interval, in order,
+     * so that saving a snapshot at each of them also saves the intervals.
+     */
+    private static List<Instant> snapshotInstants(Friend friend)
+    {
+        TreeSet<Instant> instants = new TreeSet<>(friend.getHiscoreSnapshots().instants());
+        instants.addAll(friend.getHiscoreSnapshots().validityIntervals().values());
+
+        return new ArrayList<>(instants);
+    }
+
+    /**
+     * Removes the given snapshots from a Friend.
+     *
+     * @param friendID the ID of the Friend
+     * @param instants the instants of the snapshots to remove
+     * @return the number of snapshots removed
+     */
+    public synchronized int discardSnapshots(String friendID, Collection<Instant> instants)
+    {
+        Friend friend = friends.get(friendID);
+        if(friend == null) return 0;
+
+        List<Instant> discarded = new ArrayList<>();
+        for(Instant instant : instants)
+        {
+            if(friend.getHiscoreSnapshots().remove(instant)) discarded.add(instant);
+        }
+
+        if(discarded.isEmpty()) return 0;
+
+        dirtyFriendIDs.add(friendID);
+        List<Instant> unsaved = unsavedSnapshots.get(friendID);
+        if(unsaved != null) unsaved.removeAll(discarded);
+        discardedSnapshots.computeIfAbsent(friendID, id -> new ArrayList<>()).addAll(discarded);
+
+        return discarded.size();
+    }
+
+    /**
+     * Adds a snapshot fetched for another account to every Friend with the given name that it is valid to merge
+     * into, as by {@link #getValidMergeCandidates}. A Friend whose name now belongs to a different player is left
+     * unchanged.
+     *
+     * @param name the name the snapshot was looked up by
+     * @param instant the instant the snapshot was fetched
+     * @param result the fetched result
+     * @return the number of Friends the snapshot was added to
+     */
+    public synchronized int addSnapshot(String name, Instant instant, HiscoreResult result)
+    {
+        Friend lookedUp = new Friend(name, name);
+        lookedUp.addSnapshot(instant, result);
+
+        int added = 0;
+        for(Friend friend : friends.values())
+        {
+            if(!name.equalsIgnoreCase(friend.getName()) || !friend.isValidToMerge(lookedUp)) continue;
+
+            friend.addSnapshot(instant, result);
+            dirtyFriendIDs.add(friend.getID());
+            unsavedSnapshots.computeIfAbsent(friend.getID(), id -> new ArrayList<>()).add(instant);
+            added++;
+        }
+
+        return added;
+    }
+
+    /**
+     * Returns true if any Friend has been added, merged into or removed since the last save.
+     *
+     * @return whether this FriendManager has unsaved changes
+     */
+    public synchronized boolean isDirty()
+    {
+        return membershipChanged || !dirtyFriendIDs.isEmpty() || !removedFriendIDs.isEmpty();
+    }
+
+    /**
+     * Returns the changes made since the last call and clears the record of them.
+     *
+     * Changed Friends are copied so that the returned changes can be saved on another thread while this
+     * FriendManager continues to be modified.
+     *
+     * @return the changes made since the last save
+     */
+    public synchronized FriendChanges takeChanges()
+    {
+        Map<String, Friend> changedFriends = new HashMap<>();
+        for(String friendID : dirtyFriendIDs)
+        {
+            Friend friend = friends.get(friendID);
+            if(friend != null) changedFriends.put(friendID, friend.copy());
+        }
+
+        FriendChanges changes = new FriendChanges(accountHash,
+                changedFriends,
+                new HashSet<>(removedFriendIDs),
+                membershipChanged ? new ArrayList<>(friends.keySet()) : null,
+                new HashMap<>(unsavedSnapshots),
+                new HashMap<>(discardedSnapshots));
+
+        dirtyFriendIDs.clear();
+        removedFriendIDs.clear();
+        unsavedSnapshots.clear();
+        discardedSnapshots.clear();
+        membershipChanged = false;
+
+        return changes;
+    }
+
+    /**
+     * Records the given changes as unsaved again, such as after they failed to be written, so that they are
+     * included in the next changes taken. Changes to Friends that have since been removed are dropped, as are
+     * snapshots that have since been discarded.
+     *
+     * @param changes changes taken from this FriendManager that were not saved
+     */
+    public synchronized void restoreChanges(FriendChanges changes)
+    {
+        for(String friendID : changes.getRemovedFriendIDs())
+        {
+            if(!friends.containsKey(friendID)) removedFriendIDs.add(friendID);
+        }
+
+        for(String friendID : changes.getChangedFriends().keySet())
+        {
+            if(!friends.containsKey(friendID)) continue;
+
+            dirtyFriendIDs.add(friendID);
+
+            List<Instant> unsaved = new ArrayList<>(changes.getUnsavedSnapshots(friendID));
+            List<Instant> discarded = new ArrayList<>(changes.getDiscardedSnapshots(friendID));
+
+            List<Instant> discardedSince = discardedSnapshots.get(friendID);
+            if(discardedSince != null)
+            {
+                unsaved.removeAll(discardedSince);
+                discarded.addAll(discardedSince);
+            }
+
+            List<Instant> unsavedSince = unsavedSnapshots.get(friendID);
+            if(unsavedSince != null) unsaved.addAll(unsavedSince);
+
+            if(!unsaved.isEmpty()) unsavedSnapshots.put(friendID, unsaved);
+            if(!discarded.isEmpty()) discardedSnapshots.put(friendID, discarded);
+        }
+
+        membershipChanged |= changes.getFriendIDs() != null;
+    }
+
+    /**
+     * Estimates the heap held by the snapshots of every Friend.
+     *
+     * @return the approximate number of bytes held
+     */
+    public synchronized long estimateHeapBytes()
+    {
+        return friends.values().stream()
+                .mapToLong(friend -> friend.getHiscoreSnapshots().estimateHeapBytes())
+                .sum();
+    }
+
+    /**
+     * Summarises every Friend for the summary index.
+     *
+     * @param rangeNumber the number each range is multiplied by
+     * @param tolerance the tolerance used to find the snapshot at the start of each range
+     * @param now the instant to measure gains back from
+     * @return the summary of every Friend
+     */
+    public synchronized List<FriendSummary> summarize(int rangeNumber, Period tolerance, Instant now)
+    {
+        return friends.values().stream()
+                .map(friend -> FriendSummary.of(friend, rangeNumber, tolerance, now))
+                .collect(Collectors.toList());
+    }
+
+    public synchronized List<Friend> getValidMergeCandidates(Friend newFriend)
     {
         List<Friend> mergeCandidates = new ArrayList<>();
 
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import com.friendtracker.config.ConfigValues;
+import com.friendtracker.panel.components.HiscoreUtil;
+import java.time.Instant;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+
+/**
+ * The values the friend list needs to show a Friend without its snapshot history: its name, its newest overall
+ * xp and total KC, and the xp and KC gained over each {@link ConfigValues.RangeOptions}.
+ *
+ * Gains are measured back from when the summary was made, over each range multiplied by {@link #rangeNumber}.
+ */
+@Value
+public class FriendSummary
+{
+    String ID;
+    String name;
+    List<String> previousNames;
+    int rangeNumber;
+    long overallXp;
+    int totalKc;
+    // Indexed by RangeOptions ordinal
+    @Getter(AccessLevel.NONE)
+    long[] xpGained;
+    @Getter(AccessLevel.NONE)
+    int[] kcGained;
+
+    /**
+     * Summarises the given Friend.
+     *
+     * @param friend the Friend to summarise
+     * @param rangeNumber the number each range is multiplied by
+     * @param tolerance the tolerance used to find the snapshot at the start of each range
+     * @param now the instant to measure gains back from
+     * @return the summary of the Friend
+     */
+    public static FriendSummary of(Friend friend, int rangeNumber, Period tolerance, Instant now)
+    {
+        ConfigValues.RangeOptions[] ranges = ConfigValues.RangeOptions.values();
+        long[] xpGained = new long[ranges.length];
+        int[] kcGained = new int[ranges.length];
+        long overallXp = 0;
+        int totalKc = 0;
+
+        if(!friend.getHiscoreSnapshots().isEmpty())
+        {
+            HiscoreResult latest = friend.getMostRecentResult();
+            overallXp = latest.getSkill(HiscoreSkill.OVERALL).getExperience();
+            totalKc = HiscoreUtil.sumNonSkillKc(latest);
+
+            for(ConfigValues.RangeOptions range : ranges)
+            {
+                Period period = range.getPeriod().multipliedBy(rangeNumber);
+                xpGained[range.ordinal()] = friend.xpGainedInTheLast(period, tolerance, now);
+                kcGained[range.ordinal()] = friend.kcGainedInTheLast(period, tolerance, now);
+            }
+        }
+
+        return new FriendSummary(friend.getID(), friend.getName(), new ArrayList<>(friend.getPreviousNames()),
+                rangeNumber, overallXp, totalKc, xpGained, kcGained);
+    }
+
+    /**
+     * Returns the xp gained over the given range, or 0 if the summary was made with a different range number.
+     *
+     * @param range the selected range
+     * @param rangeNumber the selected range number
+     * @return the xp gained over the range
+     */
+    public long getXpGained(ConfigValues.RangeOptions range, int rangeNumber)
+    {
+        if(range.getPeriod().isZero()) return overallXp;
+
+        return rangeNumber == this.rangeNumber ? xpGained[range.ordinal()] : 0;
+    }
+
+    /**
+     * Returns the KC gained over the given range, or 0 if the summary was made with a different range number.
+     *
+     * @param range the selected range
+     * @param rangeNumber the selected range number
+     * @return the KC gained over the range
+     */
+    public int getKcGained(ConfigValues.RangeOptions range, int rangeNumber)
+    {
+        if(range.getPeriod().isZero()) return totalKc;
+
+        return rangeNumber == this.rangeNumber ? kcGained[range.ordinal()] : 0;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.time.Period;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import lombok.Value;
+
+/**
+ * Remembers the gains of a Friend over recent ranges, so that sorting, drawing and the tooltips of a redraw
+ * measure them once rather than on every comparison.
+ *
+ * Gains are remembered for the instant they were measured back from, and forgotten as soon as the snapshot
+ * history they were measured from is modified or replaced.
+ */
+class GainsCache
+{
+    private static final int MAX_ENTRIES = 8;
+
+    private SnapshotHistory history;
+    private int modificationCount;
+    private final Map<Key, FriendGains> gains = new LinkedHashMap<Key, FriendGains>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, FriendGains> eldest)
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Returns the gains over the given range, measuring them if they are not remembered.
+     *
+     * @param history the snapshot history the gains are measured from
+     * @param period the length of the range
+     * @param tolerance the tolerance of the range
+     * @param now the instant the range ends at
+     * @param measure measures the gains
+     * @return the gains over the given range
+     */
+    synchronized FriendGains get(SnapshotHistory history, Period period, Period tolerance, Instant now, Supplier<FriendGains> measure)
+    {
+        int modificationCount = history.getModificationCount();
+        if(history != this.history || modificationCount != this.modificationCount)
+        {
+            gains.clear();
+            this.history = history;
+            this.modificationCount = modificationCount;
+        }
+
+        return gains.computeIfAbsent(new Key(period, tolerance, now), key -> measure.get());
+    }
+
+    @Value
+    private static class Key
+    {
+        Period period;
+        Period tolerance;
+        Instant now;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * The gains of a collection of Friends over one range, all measured back from a single instant read from a clock.
+ * Sorting, filtering and drawing a redraw read their gains from one table, so they agree with each other and each
+ * Friend is only measured once.
+ */
+@Value
+public class GainsTable
+{
+    Instant instant;
+    Period range;
+    Period tolerance;
+    // The Friends measured, in the order given
+    List<Friend> friends;
+    // Friend ID -> gains
+    @Getter(AccessLevel.NONE)
+    Map<String, FriendGains> gains;
+
+    /**
+     * Measures the gains of every given Friend over the given range, ending at the current instant of the given clock.
+     *
+     * @param friends the Friends to measure
+     * @param clock the clock to read the end of the range from once
+     * @param range the length of the range, or {@link Period#ZERO} for all time
+     * @param tolerance the tolerance period to prioritise
+     * @return the gains of every given Friend
+     */
+    public static GainsTable evaluate(Collection<Friend> friends, Clock clock, Period range, Period tolerance)
+    {
+        Instant instant = clock.instant();
+
+        List<Friend> measured = new ArrayList<>(friends);
+        Map<String, FriendGains> gains = new HashMap<>();
+        for(Friend friend : measured)
+        {
+            gains.put(friend.getID(), friend.gainsInTheLast(range, tolerance, instant));
+        }
+
+        return new GainsTable(instant, range, tolerance, Collections.unmodifiableList(measured), Collections.unmodifiableMap(gains));
+    }
+
+    /**
+     * Returns a clock that reads the end of the current minute of the given clock. Gains measured within the same
+     * minute end at the same instant, so they share each Friend's cached gains, and that instant is never before a
+     * snapshot taken during the minute.
+     *
+     * @param clock the clock snapshots are taken with
+     * @return a clock ticking at the end of each minute
+     */
+    public static Clock endOfMinute(Clock clock)
+    {
+        return Clock.offset(Clock.tick(clock, Duration.ofMinutes(1)), Duration.ofMinutes(1));
+    }
+
+    /**
+     * Returns the gains of the given Friend.
+     *
+     * @param friend the Friend
+     * @return the gains of the Friend, or null if it was not measured
+     */
+    public FriendGains get(Friend friend)
+    {
+        return gains.get(friend.getID());
+    }
+
+    public long getXpGained(Friend friend)
+    {
+        FriendGains friendGains = get(friend);
+        return friendGains != null ? friendGains.getXpGained() : 0L;
+    }
+
+    public int getKcGained(Friend friend)
+    {
+        FriendGains friendGains = get(friend);
+        return friendGains != null ? friendGains.getKcGained() : 0;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * A view of the per-skill difference between two HiscoreResults. No skills are copied, the difference of a skill
+ * is computed from the two results each time it is requested, so a difference costs the same to build however
+ * many of its skills are read. Reading a skill allocates a new Skill unless its difference is unranked or
+ * unchanged, which share the canonical {@link SkillPool} instances.
+ *
+ * Both results are immutable snapshots, so a difference can be kept and shown again for as long as they are the
+ * snapshots it measures between.
+ */
+public class HiscoreDifference extends HiscoreResult
+{
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+
+    /**
+     * Creates a view of the difference between the given results, named after the high result's player.
+     *
+     * @param highResult the result to use as the base
+     * @param lowResult the result to subtract from the base result
+     */
+    public HiscoreDifference(HiscoreResult highResult, HiscoreResult lowResult)
+    {
+        super(highResult.getPlayer(), new SkillView(highResult, lowResult));
+    }
+
+    /**
+     * Computes the per-parameter difference between two Hiscore Skills.
+     *
+     * @param highSkill the skill to use as the base
+     * @param lowSkill the skill to subtract from the base skill
+     * @return a skill that is the difference between the parameter skills
+     */
+    public static Skill of(Skill highSkill, Skill lowSkill)
+    {
+        int rank = (int) skillPropDiff(highSkill.getRank(), lowSkill.getRank());
+        long experience = skillPropDiff(highSkill.getExperience(), lowSkill.getExperience());
+        int level = (int) skillPropDiff(highSkill.getLevel(), lowSkill.getLevel());
+
+        return SkillPool.of(rank, level, experience);
+    }
+
+    /**
+     * Computes the difference between high and low. Returns high if low equals minus one.
+     *
+     * @param high the number to use as the base
+     * @param low the number to be subtracted from high
+     * @return the difference between low and high, or high if low is minus one
+     */
+    public static long skillPropDiff(long high, long low)
+    {
+        return low == -1 ? high : high - low;
+    }
+
+    /**
+     * The skills of a difference as a map that computes the difference of each skill when it is requested. Holds
+     * every HiscoreSkill, mapped to null where either result lacks it.
+     */
+    private static class SkillView extends AbstractMap<HiscoreSkill, Skill>
+    {
+        private final HiscoreResult highResult;
+        private final HiscoreResult lowResult;
+
+        SkillView(HiscoreResult highResult, HiscoreResult lowResult)
+        {
+            this.highResult = highResult;
+            this.lowResult = lowResult;
+        }
+
+        @Override
+        public Skill get(Object key)
+        {
+            return key instanceof HiscoreSkill ? getDifference((HiscoreSkill) key) : null;
+        }
+
+        private Skill getDifference(HiscoreSkill hiscoreSkill)
+        {
+            Skill highSkill = highResult.getSkill(hiscoreSkill);
+            Skill lowSkill = lowResult.getSkill(hiscoreSkill);
+
+            if(highSkill == null || lowSkill == null) return null;
+
+            return of(highSkill, lowSkill);
+        }
+
+        @Override
+        public boolean containsKey(Object key)
+        {
+            return key instanceof HiscoreSkill;
+        }
+
+        @Override
+        public int size()
+        {
+            return SKILLS.length;
+        }
+
+        @Override
+        public Set<Map.Entry<HiscoreSkill, Skill>> entrySet()
+        {
+            return new AbstractSet<Map.Entry<HiscoreSkill, Skill>>()
+            {
+                @Override
+                public Iterator<Map.Entry<HiscoreSkill, Skill>> iterator()
+                {
+                    return new Iterator<Map.Entry<HiscoreSkill, Skill>>()
+                    {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return next < SKILLS.length;
+                        }
+
+                        @Override
+                        public Map.Entry<HiscoreSkill, Skill> next()
+                        {
+                            if(!hasNext()) throw new NoSuchElementException();
+
+                            HiscoreSkill hiscoreSkill = SKILLS[next++];
+                            return new SimpleImmutableEntry<>(hiscoreSkill, getDifference(hiscoreSkill));
+                        }
+                    };
+                }
+
+                @Override
+                public int size()
+                {
+                    return SKILLS.length;
+                }
+            };
+        }
+    }
+}
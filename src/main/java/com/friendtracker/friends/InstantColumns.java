@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Rows sorted by instant, with the instant of each row held as primitive epoch seconds and nanos so that a row
+ * costs no objects. Rows are found by binary search and the backing arrays grow by doubling.
+ *
+ * Subclasses hold their own columns in parallel arrays and keep them in step through {@link #resize} and
+ * {@link #move}.
+ */
+abstract class InstantColumns
+{
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] seconds;
+    private int[] nanos;
+    private int size;
+
+    protected InstantColumns()
+    {
+        this.seconds = new long[0];
+        this.nanos = new int[0];
+    }
+
+    /**
+     * Copies the rows of the given columns, trimmed to their size.
+     */
+    protected InstantColumns(InstantColumns columns)
+    {
+        this.seconds = Arrays.copyOf(columns.seconds, columns.size);
+        this.nanos = Arrays.copyOf(columns.nanos, columns.size);
+        this.size = columns.size;
+    }
+
+    /**
+     * Resizes every subclass column to the given capacity, keeping the existing rows.
+     */
+    protected abstract void resize(int capacity);
+
+    /**
+     * Moves a range of rows in every subclass column, as {@link System#arraycopy} would.
+     */
+    protected abstract void move(int from, int to, int length);
+
+    int size()
+    {
+        return size;
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    Instant getInstant(int row)
+    {
+        return Instant.ofEpochSecond(seconds[row], nanos[row]);
+    }
+
+    /**
+     * @return the instant of the last row, or null if there are no rows
+     */
+    Instant lastInstant()
+    {
+        return size > 0 ? getInstant(size - 1) : null;
+    }
+
+    /**
+     * Binary searches the rows for the given instant.
+     *
+     * @return the row of the instant if present, otherwise (-(insertion point) - 1)
+     */
+    int search(Instant instant)
+    {
+        long targetSeconds = instant.getEpochSecond();
+        int targetNanos = instant.getNano();
+
+        int low = 0;
+        int high = size - 1;
+
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int comparison = seconds[mid] != targetSeconds
+                    ? Long.compare(seconds[mid], targetSeconds)
+                    : Integer.compare(nanos[mid], targetNanos);
+
+            if(comparison < 0) low = mid + 1;
+            else if(comparison > 0) high = mid - 1;
+            else return mid;
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * @return the row of the given instant, or -1 if there is none
+     */
+    int indexOf(Instant instant)
+    {
+        int row = search(instant);
+        return row >= 0 ? row : -1;
+    }
+
+    /**
+     * @return the last row at or before the given instant, or -1 if there is none
+     */
+    int floorIndex(Instant instant)
+    {
+        int row = search(instant);
+        return row >= 0 ? row : -row - 2;
+    }
+
+    /**
+     * @return the first row at or after the given instant, or -1 if there is none
+     */
+    int ceilingIndex(Instant instant)
+    {
+        int row = search(instant);
+        if(row < 0) row = -row - 1;
+
+        return row < size ? row : -1;
+    }
+
+    /**
+     * @return the number of rows before the given instant
+     */
+    int countBefore(Instant instant)
+    {
+        int row = search(instant);
+        return row >= 0 ? row : -row - 1;
+    }
+
+    /**
+     * Inserts an empty row for the given instant, which must not already have a row.
+     *
+     * @return the new row
+     */
+    protected int insertRow(Instant instant)
+    {
+        int row = -search(instant) - 1;
+
+        if(size == seconds.length)
+        {
+            int capacity = Math.max(MIN_CAPACITY, seconds.length * 2);
+            seconds = Arrays.copyOf(seconds, capacity);
+            nanos = Arrays.copyOf(nanos, capacity);
+            resize(capacity);
+        }
+
+        System.arraycopy(seconds, row, seconds, row + 1, size - row);
+        System.arraycopy(nanos, row, nanos, row + 1, size - row);
+        move(row, row + 1, size - row);
+
+        seconds[row] = instant.getEpochSecond();
+        nanos[row] = instant.getNano();
+        size++;
+
+        return row;
+    }
+
+    protected void removeRow(int row)
+    {
+        System.arraycopy(seconds, row + 1, seconds, row, size - row - 1);
+        System.arraycopy(nanos, row + 1, nanos, row, size - row - 1);
+        move(row + 1, row, size - row - 1);
+        size--;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import lombok.Getter;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.HiscoreSkillType;
+
+/**
+ * Fits a line through the experience of each skill, or the score of each activity and boss, against time, over the
+ * snapshots of a Friend taken within a window before its newest snapshot. The slope of the line is the rate.
+ *
+ * Each fit is held as running least-squares sums, so a snapshot is added to them as it is appended and subtracted
+ * once it falls out of the window, without fitting the window again. A snapshot fetched again unchanged is observed
+ * both when it was taken and at the end of its validity, so an idle player's rate falls.
+ */
+class RateTracker extends SnapshotAggregate
+{
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+    private static final double SECONDS_PER_HOUR = 3600;
+    // Sums are counted again with a later origin once the window has moved this many windows past it, so that
+    // the times summed stay small
+    private static final int MAX_ORIGIN_WINDOWS = 4;
+
+    @Getter
+    private final Duration window;
+    // The instant times are measured from, in hours
+    private Instant origin;
+    // The oldest snapshot counted and the newest, with the value of each skill in the newest
+    private Instant oldest;
+    private Instant latestInstant;
+    private final long[] latestValues = new long[SKILLS.length];
+    // Per skill sums over the observations: their count, time, value, time squared and time times value
+    private final double[] count = new double[SKILLS.length];
+    private final double[] sumTime = new double[SKILLS.length];
+    private final double[] sumValue = new double[SKILLS.length];
+    private final double[] sumTimeSquared = new double[SKILLS.length];
+    private final double[] sumTimeValue = new double[SKILLS.length];
+    // The skills of a snapshot falling out of the window
+    private final int[] expiredRanks = new int[SKILLS.length];
+    private final int[] expiredLevels = new int[SKILLS.length];
+    private final long[] expiredExperiences = new long[SKILLS.length];
+
+    RateTracker(Duration window)
+    {
+        this.window = window;
+    }
+
+    /**
+     * Returns the rate of every skill fitted over the window before the newest snapshot counted.
+     *
+     * @return the rates and the newest values they project from
+     */
+    synchronized SkillRates getRates()
+    {
+        double[] ratesPerHour = new double[SKILLS.length];
+        for(int i = 0; i < SKILLS.length; i++)
+        {
+            double denominator = count[i] * sumTimeSquared[i] - sumTime[i] * sumTime[i];
+            ratesPerHour[i] = count[i] >= 2 && denominator > 0
+                    ? (count[i] * sumTimeValue[i] - sumTime[i] * sumValue[i]) / denominator
+                    : Double.NaN;
+        }
+
+        return new SkillRates(latestInstant, latestValues.clone(), ratesPerHour);
+    }
+
+    @Override
+    protected Instant countFrom(SnapshotHistory history)
+    {
+        Instant newest = history.lastInstant();
+        return newest != null ? newest.minus(window) : Instant.MIN;
+    }
+
+    @Override
+    protected void reset()
+    {
+        origin = null;
+        oldest = null;
+        latestInstant = null;
+        Arrays.fill(count, 0);
+        Arrays.fill(sumTime, 0);
+        Arrays.fill(sumValue, 0);
+        Arrays.fill(sumTimeSquared, 0);
+        Arrays.fill(sumTimeValue, 0);
+    }
+
+    @Override
+    protected void count(SnapshotHistory history, Instant instant, Instant end, int[] levels, long[] experiences)
+    {
+        if(origin == null)
+        {
+            origin = instant;
+            oldest = instant;
+        }
+        else if(Duration.between(origin, instant).compareTo(window.multipliedBy(MAX_ORIGIN_WINDOWS)) > 0)
+        {
+            invalidate();
+        }
+
+        observe(instant, end, levels, experiences, 1);
+
+        latestInstant = instant;
+        for(int i = 0; i < SKILLS.length; i++)
+        {
+            latestValues[i] = value(i, levels, experiences);
+        }
+
+        // Subtract the snapshots that have fallen out of the window
+        Instant windowStart = instant.minus(window);
+        while(oldest != null && oldest.isBefore(windowStart))
+        {
+            if(history.readSkills(oldest, expiredRanks, expiredLevels, expiredExperiences))
+            {
+                observe(oldest, history.getValidityEnd(oldest), expiredLevels, expiredExperiences, -1);
+            }
+
+            oldest = history.ceilingInstant(oldest.plusNanos(1));
+        }
+    }
+
+    @Override
+    protected void extend(Instant instant, Instant previousEnd, Instant end)
+    {
+        for(int i = 0; i < SKILLS.length; i++)
+        {
+            if(latestValues[i] == -1) continue;
+
+            if(!previousEnd.equals(instant)) add(i, hours(previousEnd), latestValues[i], -1);
+            add(i, hours(end), latestValues[i], 1);
+        }
+    }
+
+    /**
+     * Adds or subtracts the observations of a snapshot, taken at the given instant and valid until the given end.
+     */
+    private void observe(Instant instant, Instant end, int[] levels, long[] experiences, int sign)
+    {
+        double start = hours(instant);
+        double last = hours(end);
+
+        for(int i = 0; i < SKILLS.length; i++)
+        {
+            long value = value(i, levels, experiences);
+            if(value == -1) continue;
+
+            add(i, start, value, sign);
+            if(!end.equals(instant)) add(i, last, value, sign);
+        }
+    }
+
+    private void add(int skill, double time, double value, int sign)
+    {
+        count[skill] += sign;
+        sumTime[skill] += sign * time;
+        sumValue[skill] += sign * value;
+        sumTimeSquared[skill] += sign * time * time;
+        sumTimeValue[skill] += sign * time * value;
+    }
+
+    private double hours(Instant instant)
+    {
+        return Duration.between(origin, instant).getSeconds() / SECONDS_PER_HOUR;
+    }
+
+    /**
+     * Returns the experience of a skill, or the score of an activity or boss.
+     */
+    private static long value(int skill, int[] levels, long[] experiences)
+    {
+        HiscoreSkillType type = SKILLS[skill].getType();
+        return type == HiscoreSkillType.SKILL || type == HiscoreSkillType.OVERALL ? experiences[skill] : levels[skill];
+    }
+}
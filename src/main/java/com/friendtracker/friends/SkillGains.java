@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import com.friendtracker.panel.components.HiscoreUtil;
+import java.time.Instant;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+import net.runelite.client.hiscore.HiscoreSkill;
+
+/**
+ * The change in every {@link HiscoreSkill} between two snapshots of a Friend. For activities and bosses the level
+ * is the score or kill count.
+ *
+ * Each skill changes as in {@link HiscoreUtil#getDifference}, so a skill unranked in the earlier snapshot gains
+ * everything it holds in the later one. The overall xp and total KC gained are measured as by
+ * {@link Friend#xpGainedSince} and {@link Friend#kcGainedSince}.
+ */
+@Value
+public class SkillGains
+{
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+
+    // Instants of the snapshots the gains are measured between
+    Instant from;
+    Instant to;
+    long xpGained;
+    int kcGained;
+    // Indexed by HiscoreSkill ordinal
+    @Getter(AccessLevel.NONE)
+    int[] ranks;
+    @Getter(AccessLevel.NONE)
+    int[] levels;
+    @Getter(AccessLevel.NONE)
+    long[] experiences;
+
+    /**
+     * Measures the gains between the skills of two snapshots.
+     *
+     * @param from the earlier snapshot
+     * @param to the later snapshot
+     * @return the gains from the earlier snapshot to the later one
+     */
+    static SkillGains between(SnapshotSkills from, SnapshotSkills to)
+    {
+        int[] ranks = new int[SKILLS.length];
+        int[] levels = new int[SKILLS.length];
+        long[] experiences = new long[SKILLS.length];
+
+        for(int i = 0; i < SKILLS.length; i++)
+        {
+            ranks[i] = (int) HiscoreDifference.skillPropDiff(to.ranks[i], from.ranks[i]);
+            levels[i] = (int) HiscoreDifference.skillPropDiff(to.levels[i], from.levels[i]);
+            experiences[i] = HiscoreDifference.skillPropDiff(to.experiences[i], from.experiences[i]);
+        }
+
+        int overall = HiscoreSkill.OVERALL.ordinal();
+        return new SkillGains(from.instant, to.instant, to.experiences[overall] - from.experiences[overall],
+                to.totalKc() - from.totalKc(), ranks, levels, experiences);
+    }
+
+    public int getRank(HiscoreSkill hiscoreSkill)
+    {
+        return ranks[hiscoreSkill.ordinal()];
+    }
+
+    public int getLevel(HiscoreSkill hiscoreSkill)
+    {
+        return levels[hiscoreSkill.ordinal()];
+    }
+
+    public long getExperience(HiscoreSkill hiscoreSkill)
+    {
+        return experiences[hiscoreSkill.ordinal()];
+    }
+
+    /**
+     * The rank, level and experience of every skill of a snapshot, read from its history as primitives.
+     */
+    static class SnapshotSkills
+    {
+        private final Instant instant;
+        private final int[] ranks = new int[SKILLS.length];
+        private final int[] levels = new int[SKILLS.length];
+        private final long[] experiences = new long[SKILLS.length];
+
+        private SnapshotSkills(Instant instant)
+        {
+            this.instant = instant;
+        }
+
+        /**
+         * Reads the skills of the snapshot taken at the given instant.
+         *
+         * @param history the history holding the snapshot
+         * @param instant the instant of the snapshot
+         * @return the skills of the snapshot, or null if there is no snapshot at the given instant
+         */
+        static SnapshotSkills read(SnapshotHistory history, Instant instant)
+        {
+            SnapshotSkills skills = new SnapshotSkills(instant);
+
+            return history.readSkills(instant, skills.ranks, skills.levels, skills.experiences) ? skills : null;
+        }
+
+        private int totalKc()
+        {
+            int totalKc = 0;
+            for(int i = 0; i < SKILLS.length; i++)
+            {
+                if(HiscoreUtil.isCountedAsKc(SKILLS[i]) && levels[i] != -1) totalKc += levels[i];
+            }
+
+            return totalKc;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.util.EnumMap;
+import java.util.Map;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Shares Skill instances between the hiscore snapshots of a series. Skill is immutable, so consecutive snapshots
+ * can share the instance of every skill unchanged between them, and only a changed skill needs a new one.
+ *
+ * Most skills are unranked for most players, and most skills are unchanged between two snapshots, so the
+ * unranked skill and the skill of a zero difference are canonical instances shared by every snapshot.
+ */
+public class SkillPool
+{
+    public static final Skill UNRANKED = new Skill(-1, -1, -1);
+    public static final Skill UNCHANGED = new Skill(0, 0, 0);
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+
+    // HiscoreSkill ordinal -> skill of the previous snapshot built
+    private final Skill[] previous = new Skill[SKILLS.length];
+
+    /**
+     * Returns the skill of the previous snapshot built by this pool if it holds the given values, otherwise a
+     * skill holding them that the next snapshot can share.
+     *
+     * @param hiscoreSkill the skill the values are of
+     * @param rank the rank of the skill
+     * @param level the level of the skill
+     * @param experience the experience of the skill
+     * @return a skill holding the given values
+     */
+    public Skill get(HiscoreSkill hiscoreSkill, int rank, int level, long experience)
+    {
+        int i = hiscoreSkill.ordinal();
+        Skill skill = previous[i];
+
+        if(skill == null || !holds(skill, rank, level, experience))
+        {
+            skill = of(rank, level, experience);
+            previous[i] = skill;
+        }
+
+        return skill;
+    }
+
+    /**
+     * Returns a skill holding the given values, the canonical instance if there is one.
+     *
+     * @param rank the rank of the skill
+     * @param level the level of the skill
+     * @param experience the experience of the skill
+     * @return a skill holding the given values
+     */
+    public static Skill of(int rank, int level, long experience)
+    {
+        if(holds(UNRANKED, rank, level, experience)) return UNRANKED;
+        if(holds(UNCHANGED, rank, level, experience)) return UNCHANGED;
+
+        return new Skill(rank, level, experience);
+    }
+
+    /**
+     * Returns a HiscoreResult equal to the given result that shares the skills unchanged since the previous
+     * snapshot with it.
+     *
+     * @param previous the previous snapshot, or null
+     * @param result the result to share skills with the previous snapshot
+     * @return a result equal to the given result
+     */
+    public static HiscoreResult share(HiscoreResult previous, HiscoreResult result)
+    {
+        if(previous == null || result == null) return result;
+
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        for(HiscoreSkill hiscoreSkill : SKILLS)
+        {
+            Skill skill = result.getSkill(hiscoreSkill);
+            if(skill == null) continue;
+
+            Skill previousSkill = previous.getSkill(hiscoreSkill);
+            skills.put(hiscoreSkill, skill.equals(previousSkill)
+                    ? previousSkill
+                    : canonical(skill));
+        }
+
+        return new HiscoreResult(result.getPlayer(), skills);
+    }
+
+    private static Skill canonical(Skill skill)
+    {
+        if(skill.equals(UNRANKED)) return UNRANKED;
+        if(skill.equals(UNCHANGED)) return UNCHANGED;
+
+        return skill;
+    }
+
+    private static boolean holds(Skill skill, int rank, int level, long experience)
+    {
+        return skill.getRank() == rank && skill.getLevel() == level && skill.getExperience() == experience;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+import net.runelite.api.Experience;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.HiscoreSkillType;
+
+/**
+ * The rate each skill's experience, or each activity's score or boss's kill count, grew at over a recent window,
+ * and projections of when a target would be reached at that rate from the newest snapshot.
+ */
+@Value
+public class SkillRates
+{
+    // Projections further away than this are not made
+    private static final double MAX_PROJECTED_HOURS = 100 * 365 * 24;
+
+    // Instant of the newest snapshot, or null if there are no snapshots
+    Instant instant;
+    // Indexed by HiscoreSkill ordinal
+    @Getter(AccessLevel.NONE)
+    long[] values;
+    @Getter(AccessLevel.NONE)
+    double[] ratesPerHour;
+
+    /**
+     * Returns the experience gained per hour in a skill, or the score or kill count gained per hour in an activity
+     * or boss.
+     *
+     * @param hiscoreSkill the skill
+     * @return the rate per hour, or NaN if there are not enough snapshots ranked in the skill to measure it
+     */
+    public double getRatePerHour(HiscoreSkill hiscoreSkill)
+    {
+        return ratesPerHour[hiscoreSkill.ordinal()];
+    }
+
+    /**
+     * Returns the instant the given experience, score or kill count would be reached at the current rate.
+     *
+     * @param hiscoreSkill the skill
+     * @param target the value to reach
+     * @return the projected instant, the newest snapshot's if it has already been reached, or null if it would not be reached
+     */
+    public Instant projectInstant(HiscoreSkill hiscoreSkill, long target)
+    {
+        long value = values[hiscoreSkill.ordinal()];
+        if(instant == null || value == -1) return null;
+        if(value >= target) return instant;
+
+        double hours = (target - value) / getRatePerHour(hiscoreSkill);
+        if(!(hours > 0) || hours > MAX_PROJECTED_HOURS) return null;
+
+        return instant.plusSeconds((long) (hours * 3600));
+    }
+
+    /**
+     * Returns the instant the next level of the given skill would be reached at the current rate.
+     *
+     * @param hiscoreSkill the skill
+     * @return the projected instant, or null if the skill is not levelled, is at the maximum level or would not level
+     */
+    public Instant projectNextLevel(HiscoreSkill hiscoreSkill)
+    {
+        long experience = values[hiscoreSkill.ordinal()];
+        if(hiscoreSkill.getType() != HiscoreSkillType.SKILL || experience == -1) return null;
+
+        int level = Experience.getLevelForXp((int) experience);
+        if(level >= Experience.MAX_VIRT_LEVEL) return null;
+
+        return projectInstant(hiscoreSkill, Experience.getXpForLevel(level + 1));
+    }
+}
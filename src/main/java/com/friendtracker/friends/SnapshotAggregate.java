@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Values derived from the whole snapshot history of a Friend that are kept up to date as snapshots are added,
+ * such as an {@link ActivityHistogram}.
+ *
+ * A snapshot newer than every other, or an unchanged fetch extending the validity of the newest snapshot, is
+ * counted in place. Any other change to the history, detected by its modification count, leaves the values to be
+ * counted again from the whole history when they are next read.
+ *
+ * Snapshots are counted from their levels and experience, indexed by HiscoreSkill ordinal, so that no HiscoreResult
+ * needs to be built for a snapshot held in memory.
+ */
+abstract class SnapshotAggregate
+{
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+
+    // The history last counted, and its modification count when it was counted
+    private SnapshotHistory history;
+    private int modificationCount;
+    // The newest snapshot counted and the end of its validity
+    private Instant latestInstant;
+    private Instant latestEnd;
+    // The skills of the snapshot being counted
+    private final int[] ranks = new int[SKILLS.length];
+    private final int[] levels = new int[SKILLS.length];
+    private final long[] experiences = new long[SKILLS.length];
+
+    /**
+     * Counts the given history again, unless it has already been counted and is unchanged since.
+     *
+     * @param history the history to count
+     */
+    synchronized void update(SnapshotHistory history)
+    {
+        if(history == this.history && history.getModificationCount() == modificationCount) return;
+
+        synchronized(history)
+        {
+            latestInstant = null;
+            latestEnd = null;
+            reset();
+
+            for(Instant instant : history.instants().tailSet(countFrom(history), true))
+            {
+                if(!history.readSkills(instant, ranks, levels, experiences)) continue;
+
+                Instant end = history.getValidityEnd(instant);
+                count(history, instant, end, levels, experiences);
+                latestInstant = instant;
+                latestEnd = end;
+            }
+
+            this.history = history;
+            this.modificationCount = history.getModificationCount();
+        }
+    }
+
+    /**
+     * Counts a snapshot just added to the given history in place, if the history was counted before it was added.
+     *
+     * @param history the history the snapshot was added to
+     * @param modificationCount the modification count of the history before the snapshot was added
+     * @param instant the instant of the snapshot
+     * @param result the snapshot
+     */
+    synchronized void appended(SnapshotHistory history, int modificationCount, Instant instant, HiscoreResult result)
+    {
+        if(history != this.history || modificationCount != this.modificationCount) return;
+
+        synchronized(history)
+        {
+            // Only the addition may have been made since the history was counted, and only after the newest
+            // snapshot counted
+            if(history.getModificationCount() - modificationCount > 1 ||
+                    (latestInstant != null && !instant.isAfter(latestEnd) && history.containsKey(instant)))
+            {
+                this.history = null;
+                return;
+            }
+
+            this.modificationCount = history.getModificationCount();
+
+            if(!history.containsKey(instant))
+            {
+                // Fetched unchanged, extending the validity of the newest snapshot
+                if(latestInstant == null) return;
+
+                Instant end = history.getValidityEnd(latestInstant);
+                extend(latestInstant, latestEnd, end);
+                latestEnd = end;
+                return;
+            }
+
+            for(HiscoreSkill hiscoreSkill : SKILLS)
+            {
+                Skill skill = result.getSkill(hiscoreSkill);
+                levels[hiscoreSkill.ordinal()] = skill != null ? skill.getLevel() : -1;
+                experiences[hiscoreSkill.ordinal()] = skill != null ? skill.getExperience() : -1;
+            }
+
+            Instant end = history.getValidityEnd(instant);
+            count(history, instant, end, levels, experiences);
+            latestInstant = instant;
+            latestEnd = end;
+        }
+    }
+
+    /**
+     * Leaves the values to be counted again from the whole history when they are next read.
+     */
+    protected void invalidate()
+    {
+        history = null;
+    }
+
+    /**
+     * Returns the instant of the oldest snapshot to count when counting a whole history.
+     *
+     * @param history the history being counted
+     * @return the instant to start counting from
+     */
+    protected Instant countFrom(SnapshotHistory history)
+    {
+        return Instant.MIN;
+    }
+
+    /**
+     * Clears the values before the whole history is counted again.
+     */
+    protected abstract void reset();
+
+    /**
+     * Counts a snapshot newer than every snapshot counted before it. The arrays are reused for the next snapshot.
+     *
+     * @param history the history holding the snapshot
+     * @param instant the instant of the snapshot
+     * @param end the end of the snapshot's validity
+     * @param levels the level of each skill, -1 if unranked
+     * @param experiences the experience of each skill, -1 if unranked
+     */
+    protected abstract void count(SnapshotHistory history, Instant instant, Instant end, int[] levels, long[] experiences);
+
+    /**
+     * Counts the validity of the newest snapshot being extended by an unchanged fetch.
+     *
+     * @param instant the instant of the newest snapshot
+     * @param previousEnd the end of its validity before it was extended
+     * @param end the new end of its validity
+     */
+    protected abstract void extend(Instant instant, Instant previousEnd, Instant end);
+}
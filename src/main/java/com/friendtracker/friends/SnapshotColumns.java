@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Decoded hiscore snapshots held as primitive columns: one rank, level and experience column per
+ * {@link HiscoreSkill}, parallel to the sorted instants. A snapshot costs no objects beyond a reference to its
+ * player name, and a HiscoreResult is only built for it when it is requested.
+ *
+ * A skill missing from a result is held as unranked, rank, level and experience -1, as {@link SnapshotSource}s
+ * decode it. Most activities are unranked for most players and never have experience, so a column is only
+ * allocated once it holds a value other than -1. Experience fits an int for every skill but overall, which has
+ * its own long column.
+ */
+class SnapshotColumns extends InstantColumns
+{
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+    private static final int OVERALL = HiscoreSkill.OVERALL.ordinal();
+    private static final int UNRANKED = -1;
+    // Instant and player reference of a row, and the bytes of each allocated int column and the overall column
+    static final long ROW_BYTES = 12 + 4;
+    static final long INT_COLUMN_BYTES = 4;
+    static final long OVERALL_COLUMN_BYTES = 8;
+
+    private int capacity;
+    private String[] players = new String[0];
+    // HiscoreSkill ordinal -> row -> value, or null while every row holds -1
+    private final int[][] ranks = new int[SKILLS.length][];
+    private final int[][] levels = new int[SKILLS.length][];
+    private final int[][] experiences = new int[SKILLS.length][];
+    private long[] overallExperiences;
+    // Shares unchanged skills between the results built for consecutive rows
+    private final SkillPool skillPool = new SkillPool();
+
+    SnapshotColumns()
+    {
+    }
+
+    SnapshotColumns(SnapshotColumns columns)
+    {
+        super(columns);
+        this.capacity = columns.size();
+        this.players = Arrays.copyOf(columns.players, capacity);
+        this.overallExperiences = copyOf(columns.overallExperiences, capacity);
+
+        for(int skill = 0; skill < SKILLS.length; skill++)
+        {
+            ranks[skill] = copyOf(columns.ranks[skill], capacity);
+            levels[skill] = copyOf(columns.levels[skill], capacity);
+            experiences[skill] = copyOf(columns.experiences[skill], capacity);
+        }
+    }
+
+    @Override
+    protected void resize(int capacity)
+    {
+        this.capacity = capacity;
+        players = Arrays.copyOf(players, capacity);
+        overallExperiences = copyOf(overallExperiences, capacity);
+
+        for(int skill = 0; skill < SKILLS.length; skill++)
+        {
+            ranks[skill] = copyOf(ranks[skill], capacity);
+            levels[skill] = copyOf(levels[skill], capacity);
+            experiences[skill] = copyOf(experiences[skill], capacity);
+        }
+    }
+
+    @Override
+    protected void move(int from, int to, int length)
+    {
+        System.arraycopy(players, from, players, to, length);
+        if(overallExperiences != null) System.arraycopy(overallExperiences, from, overallExperiences, to, length);
+
+        for(int skill = 0; skill < SKILLS.length; skill++)
+        {
+            move(ranks[skill], from, to, length);
+            move(levels[skill], from, to, length);
+            move(experiences[skill], from, to, length);
+        }
+    }
+
+    /**
+     * Stores the given result, replacing any snapshot already held for the instant.
+     */
+    void put(Instant instant, HiscoreResult result)
+    {
+        int row = indexOf(instant);
+        if(row < 0) row = insertRow(instant);
+
+        players[row] = result.getPlayer();
+        for(int skill = 0; skill < SKILLS.length; skill++)
+        {
+            Skill value = result.getSkill(SKILLS[skill]);
+
+            set(ranks, skill, row, value != null ? value.getRank() : UNRANKED);
+            set(levels, skill, row, value != null ? value.getLevel() : UNRANKED);
+
+            long experience = value != null ? value.getExperience() : UNRANKED;
+            if(skill != OVERALL)
+            {
+                set(experiences, skill, row, (int) experience);
+            }
+            else if(overallExperiences != null || experience != UNRANKED)
+            {
+                if(overallExperiences == null)
+                {
+                    overallExperiences = new long[capacity];
+                    Arrays.fill(overallExperiences, UNRANKED);
+                }
+                overallExperiences[row] = experience;
+            }
+        }
+    }
+
+    boolean remove(Instant instant)
+    {
+        int row = indexOf(instant);
+        if(row < 0) return false;
+
+        removeRow(row);
+        players[size()] = null;
+        return true;
+    }
+
+    /**
+     * Builds a HiscoreResult holding the snapshot in the given row. Skills unchanged since the previous result
+     * built are shared with it, so results built for consecutive rows share most of their skills.
+     */
+    HiscoreResult toResult(int row)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        for(int skill = 0; skill < SKILLS.length; skill++)
+        {
+            long experience = skill == OVERALL
+                    ? (overallExperiences != null ? overallExperiences[row] : UNRANKED)
+                    : get(experiences, skill, row);
+
+            skills.put(SKILLS[skill],
+                    skillPool.get(SKILLS[skill], get(ranks, skill, row), get(levels, skill, row), experience));
+        }
+
+        return new HiscoreResult(players[row], skills);
+    }
+
+    /**
+     * Copies the rank, level and experience of every skill in the given row into the given arrays, indexed by
+     * HiscoreSkill ordinal.
+     */
+    void read(int row, int[] ranks, int[] levels, long[] experiences)
+    {
+        for(int skill = 0; skill < SKILLS.length; skill++)
+        {
+            ranks[skill] = get(this.ranks, skill, row);
+            levels[skill] = get(this.levels, skill, row);
+            experiences[skill] = skill == OVERALL
+                    ? (overallExperiences != null ? overallExperiences[row] : UNRANKED)
+                    : get(this.experiences, skill, row);
+        }
+    }
+
+    /**
+     * Estimates the heap held by the allocated columns.
+     *
+     * @return the approximate number of bytes held
+     */
+    long estimateHeapBytes()
+    {
+        long columns = 0;
+        for(int skill = 0; skill < SKILLS.length; skill++)
+        {
+            if(ranks[skill] != null) columns++;
+            if(levels[skill] != null) columns++;
+            if(experiences[skill] != null) columns++;
+        }
+
+        long bytes = capacity * (ROW_BYTES + columns * INT_COLUMN_BYTES);
+        if(overallExperiences != null) bytes += capacity * OVERALL_COLUMN_BYTES;
+
+        return bytes;
+    }
+
+    private void set(int[][] columns, int skill, int row, int value)
+    {
+        if(columns[skill] == null)
+        {
+            if(value == UNRANKED) return;
+
+            columns[skill] = new int[capacity];
+            Arrays.fill(columns[skill], UNRANKED);
+        }
+
+        columns[skill][row] = value;
+    }
+
+    private static int get(int[][] columns, int skill, int row)
+    {
+        return columns[skill] != null ? columns[skill][row] : UNRANKED;
+    }
+
+    private static void move(int[] column, int from, int to, int length)
+    {
+        if(column != null) System.arraycopy(column, from, column, to, length);
+    }
+
+    private static int[] copyOf(int[] column, int capacity)
+    {
+        if(column == null) return null;
+
+        int length = column.length;
+        int[] copy = Arrays.copyOf(column, capacity);
+        if(capacity > length) Arrays.fill(copy, length, capacity, UNRANKED);
+
+        return copy;
+    }
+
+    private static long[] copyOf(long[] column, int capacity)
+    {
+        if(column == null) return null;
+
+        int length = column.length;
+        long[] copy = Arrays.copyOf(column, capacity);
+        if(capacity > length) Arrays.fill(copy, length, capacity, UNRANKED);
+
+        return copy;
+    }
+}
@@ -0,0 +1,753 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * The hiscore snapshots of a Friend, keyed by the instant they were taken.
+ *
+ * Snapshots added since loading are held in {@link SnapshotColumns}, as primitive columns rather than
+ * HiscoreResults. Snapshots loaded from storage can be left encoded in a {@link SnapshotSource}, with only their
+ * instants held in memory. A HiscoreResult is built for a snapshot the first time it is requested and kept in a
+ * small least-recently-used cache. The newest snapshot is never left encoded.
+ *
+ * The oldest snapshots can instead be held in {@link ArchivedSnapshots}, outside of memory entirely. Archived
+ * snapshots are found by binary searching the archive and are decoded into the same cache. The archive is
+ * read-only, so archived snapshots that are removed or replaced are only hidden until the archive is rewritten.
+ *
+ * A snapshot can also be valid for an interval, from the instant it was taken until the last instant the same
+ * result was fetched again, so that unchanged results do not need to be stored repeatedly.
+ */
+public class SnapshotHistory
+{
+    private static final int MAX_DECODED_SNAPSHOTS = 8;
+    // Rough heap cost of a HiscoreResult and of the index entry and data of an encoded snapshot
+    private static final long DECODED_SNAPSHOT_BYTES = 4096;
+    private static final long ENCODED_SNAPSHOT_BYTES = 96;
+
+    private final SnapshotColumns snapshots;
+    // Snapshots that are still encoded in source
+    private final EncodedSnapshotIndex encodedSnapshots;
+    private final SnapshotSource source;
+    // Instant of a snapshot -> last instant the same result was fetched, for snapshots fetched again unchanged.
+    // Overrides the interval of an archived snapshot, where an end equal to the start means no interval.
+    private final TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+    private ArchivedSnapshots archive;
+    // Instants of archived snapshots that have since been removed or replaced
+    private final Set<Instant> removedArchived = new HashSet<>();
+    // Incremented whenever the snapshots or their validity intervals change
+    private int modificationCount;
+    private final Map<Instant, HiscoreResult> decodedSnapshots = new LinkedHashMap<Instant, HiscoreResult>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Instant, HiscoreResult> eldest)
+        {
+            return size() > MAX_DECODED_SNAPSHOTS;
+        }
+    };
+
+    public SnapshotHistory()
+    {
+        this.source = null;
+        this.snapshots = new SnapshotColumns();
+        this.encodedSnapshots = new EncodedSnapshotIndex();
+    }
+
+    public SnapshotHistory(SortedMap<Instant, HiscoreResult> snapshots)
+    {
+        this();
+        snapshots.forEach(this.snapshots::put);
+    }
+
+    public SnapshotHistory(SortedMap<Instant, HiscoreResult> snapshots, Map<Instant, Instant> validUntil)
+    {
+        this(snapshots);
+        validUntil.forEach((start, end) ->
+        {
+            if(this.snapshots.indexOf(start) >= 0) this.validUntil.put(start, end);
+        });
+    }
+
+    /**
+     * Creates a history whose snapshots, other than the given newest snapshot, are decoded on demand.
+     *
+     * @param source the encoded snapshots
+     * @param encodedSnapshots the instant of each encoded snapshot mapped to its index in the source
+     * @param validUntil the end of the validity interval of each snapshot that has one
+     * @param latestInstant the instant of the newest snapshot
+     * @param latestResult the newest snapshot
+     */
+    public SnapshotHistory(SnapshotSource source, NavigableMap<Instant, Integer> encodedSnapshots, Map<Instant, Instant> validUntil,
+                           Instant latestInstant, HiscoreResult latestResult)
+    {
+        this.source = source;
+        this.snapshots = new SnapshotColumns();
+        this.encodedSnapshots = new EncodedSnapshotIndex();
+
+        encodedSnapshots.forEach(this.encodedSnapshots::put);
+        this.validUntil.putAll(validUntil);
+        this.encodedSnapshots.remove(latestInstant);
+        this.snapshots.put(latestInstant, latestResult);
+        this.decodedSnapshots.put(latestInstant, latestResult);
+    }
+
+    private SnapshotHistory(SnapshotHistory history)
+    {
+        this.source = history.source;
+        this.snapshots = new SnapshotColumns(history.snapshots);
+        this.encodedSnapshots = new EncodedSnapshotIndex(history.encodedSnapshots);
+        this.validUntil.putAll(history.validUntil);
+        this.archive = history.archive;
+        this.removedArchived.addAll(history.removedArchived);
+    }
+
+    /**
+     * Replaces the archived snapshots of this history. Snapshots held in memory that are also in the archive are
+     * dropped from memory, other than the newest, so the archive must hold the same results for them.
+     *
+     * @param archive the archived snapshots, or null to detach the current archive
+     */
+    public synchronized void setArchive(ArchivedSnapshots archive)
+    {
+        this.archive = archive != null && archive.size() > 0 ? archive : null;
+        modificationCount++;
+        removedArchived.clear();
+        decodedSnapshots.clear();
+
+        if(this.archive == null) return;
+
+        Instant lastArchived = archive.getInstant(archive.size() - 1);
+        Instant newest = snapshots.lastInstant();
+
+        for(int row = encodedSnapshots.floorIndex(lastArchived); row >= 0; row--)
+        {
+            Instant instant = encodedSnapshots.getInstant(row);
+            if(archiveSearch(instant) < 0) continue;
+
+            encodedSnapshots.remove(instant);
+            validUntil.remove(instant);
+        }
+
+        for(int row = snapshots.floorIndex(lastArchived); row >= 0; row--)
+        {
+            Instant instant = snapshots.getInstant(row);
+            if(archiveSearch(instant) < 0) continue;
+
+            if(instant.equals(newest))
+            {
+                removedArchived.add(instant);
+                continue;
+            }
+
+            snapshots.remove(instant);
+            validUntil.remove(instant);
+        }
+
+        promoteNewest();
+    }
+
+    public synchronized void put(Instant instant, HiscoreResult result)
+    {
+        // A different result ends any interval the new snapshot falls within
+        Instant start = floorInstant(instant);
+        if(start != null && !start.equals(instant) && !intervalEnd(start).isBefore(instant))
+        {
+            if(archiveIndexOf(start) >= 0) validUntil.put(start, start);
+            else validUntil.remove(start);
+        }
+
+        modificationCount++;
+        if(archiveIndexOf(instant) >= 0) removedArchived.add(instant);
+        encodedSnapshots.remove(instant);
+        validUntil.remove(instant);
+        snapshots.put(instant, result);
+        // Keep the given result so that it is shared rather than rebuilt while it is in use
+        decodedSnapshots.put(instant, result);
+    }
+
+    /**
+     * Extends the validity interval of the newest snapshot to the given instant.
+     * The caller is responsible for checking that the result at the given instant is unchanged.
+     *
+     * @param instant the instant the newest snapshot was fetched again
+     * @return whether the interval was extended, which requires the given instant to be after the newest snapshot
+     */
+    public synchronized boolean extendLatest(Instant instant)
+    {
+        Instant latest = snapshots.lastInstant();
+        if(latest == null) return false;
+
+        if(!instant.isAfter(latest) || !instant.isAfter(intervalEnd(latest))) return false;
+
+        validUntil.put(latest, instant);
+        modificationCount++;
+        return true;
+    }
+
+    /**
+     * Returns the instant of the snapshot taken at, or unchanged across, the given instant.
+     *
+     * @param instant the instant to look up
+     * @return the instant of the snapshot valid at the given instant, or null if there is none
+     */
+    public synchronized Instant findValidAt(Instant instant)
+    {
+        Instant start = floorInstant(instant);
+        if(start == null) return null;
+
+        return intervalEnd(start).isBefore(instant) ? null : start;
+    }
+
+    /**
+     * Returns the last instant the snapshot taken at the given instant was fetched unchanged.
+     *
+     * @param instant the instant of the snapshot
+     * @return the end of the snapshot's validity interval, or null if it has none
+     */
+    public synchronized Instant getValidUntil(Instant instant)
+    {
+        Instant end = intervalEnd(instant);
+        return end.equals(instant) ? null : end;
+    }
+
+    /**
+     * Returns the last instant the snapshot taken at the given instant was valid, which is the instant itself for
+     * a snapshot without a validity interval.
+     *
+     * @param start the instant of the snapshot
+     * @return the end of the snapshot's validity
+     */
+    public synchronized Instant getValidityEnd(Instant start)
+    {
+        return intervalEnd(start);
+    }
+
+    /**
+     * Returns the validity interval of every snapshot that has one.
+     *
+     * @return a new map of snapshot instants to the last instant they were valid
+     */
+    public TreeMap<Instant, Instant> validityIntervals()
+    {
+        return validityIntervals(true);
+    }
+
+    /**
+     * Returns the validity interval of every snapshot that has one.
+     *
+     * @param includeArchived whether to include the intervals of archived snapshots
+     * @return a new map of snapshot instants to the last instant they were valid
+     */
+    public synchronized TreeMap<Instant, Instant> validityIntervals(boolean includeArchived)
+    {
+        TreeMap<Instant, Instant> intervals = new TreeMap<>();
+
+        if(includeArchived && archive != null)
+        {
+            for(int i = 0; i < archive.size(); i++)
+            {
+                Instant until = archive.getValidUntil(i);
+                if(until != null) intervals.put(archive.getInstant(i), until);
+            }
+            intervals.keySet().removeAll(removedArchived);
+        }
+
+        validUntil.forEach((start, end) ->
+        {
+            if(!includeArchived && archiveIndexOf(start) >= 0) return;
+
+            if(end.equals(start)) intervals.remove(start);
+            else intervals.put(start, end);
+        });
+
+        return intervals;
+    }
+
+    private Instant intervalEnd(Instant start)
+    {
+        Instant end = validUntil.get(start);
+        if(end != null) return end;
+
+        int archived = archiveIndexOf(start);
+        if(archived >= 0)
+        {
+            Instant until = archive.getValidUntil(archived);
+            if(until != null) return until;
+        }
+
+        return start;
+    }
+
+    /**
+     * Returns the instant of the newest snapshot taken at or before the given instant.
+     *
+     * @param instant the instant to look up
+     * @return the instant of the snapshot, or null if there is none
+     */
+    public synchronized Instant floorInstant(Instant instant)
+    {
+        int row = snapshots.floorIndex(instant);
+        Instant floor = row >= 0 ? snapshots.getInstant(row) : null;
+
+        int encodedRow = encodedSnapshots.floorIndex(instant);
+        Instant encoded = encodedRow >= 0 ? encodedSnapshots.getInstant(encodedRow) : null;
+        if(floor == null || (encoded != null && encoded.isAfter(floor))) floor = encoded;
+
+        int archived = archiveFloorIndex(instant);
+        if(archived >= 0)
+        {
+            Instant archivedInstant = archive.getInstant(archived);
+            if(floor == null || archivedInstant.isAfter(floor)) floor = archivedInstant;
+        }
+
+        return floor;
+    }
+
+    /**
+     * Returns the instant of the oldest snapshot taken at or after the given instant.
+     *
+     * @param instant the instant to look up
+     * @return the instant of the snapshot, or null if there is none
+     */
+    public synchronized Instant ceilingInstant(Instant instant)
+    {
+        int row = snapshots.ceilingIndex(instant);
+        Instant ceiling = row >= 0 ? snapshots.getInstant(row) : null;
+
+        int encodedRow = encodedSnapshots.ceilingIndex(instant);
+        Instant encoded = encodedRow >= 0 ? encodedSnapshots.getInstant(encodedRow) : null;
+        if(ceiling == null || (encoded != null && encoded.isBefore(ceiling))) ceiling = encoded;
+
+        int archived = archiveCeilingIndex(instant);
+        if(archived >= 0)
+        {
+            Instant archivedInstant = archive.getInstant(archived);
+            if(ceiling == null || archivedInstant.isBefore(ceiling)) ceiling = archivedInstant;
+        }
+
+        return ceiling;
+    }
+
+    /**
+     * Binary searches the archive for the given instant.
+     *
+     * @return the index of the instant if archived, otherwise (-(insertion point) - 1)
+     */
+    private int archiveSearch(Instant instant)
+    {
+        int low = 0;
+        int high = archive.size() - 1;
+
+        while(low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int comparison = archive.getInstant(mid).compareTo(instant);
+
+            if(comparison < 0) low = mid + 1;
+            else if(comparison > 0) high = mid - 1;
+            else return mid;
+        }
+
+        return -(low + 1);
+    }
+
+    private int archiveIndexOf(Instant instant)
+    {
+        if(archive == null) return -1;
+
+        int index = archiveSearch(instant);
+        return index >= 0 && !removedArchived.contains(instant) ? index : -1;
+    }
+
+    private int archiveFloorIndex(Instant instant)
+    {
+        if(archive == null) return -1;
+
+        int index = archiveSearch(instant);
+        if(index < 0) index = -index - 2;
+
+        while(index >= 0 && removedArchived.contains(archive.getInstant(index))) index--;
+
+        return index;
+    }
+
+    private int archiveCeilingIndex(Instant instant)
+    {
+        if(archive == null) return -1;
+
+        int index = archiveSearch(instant);
+        if(index < 0) index = -index - 1;
+
+        while(index < archive.size() && removedArchived.contains(archive.getInstant(index))) index++;
+
+        return index < archive.size() ? index : -1;
+    }
+
+    private int archivedSize()
+    {
+        return archive == null ? 0 : archive.size() - removedArchived.size();
+    }
+
+    /**
+     * Returns the instants of every snapshot at or after the given instant, oldest first.
+     */
+    private NavigableSet<Instant> liveInstants(Instant from)
+    {
+        NavigableSet<Instant> instants = new TreeSet<>();
+        addInstantsFrom(snapshots, from, instants);
+        addInstantsFrom(encodedSnapshots, from, instants);
+
+        if(archive != null)
+        {
+            int index = archiveSearch(from);
+            for(int i = index < 0 ? -index - 1 : index; i < archive.size(); i++)
+            {
+                instants.add(archive.getInstant(i));
+            }
+            instants.removeAll(removedArchived);
+        }
+
+        return instants;
+    }
+
+    private static void addInstantsFrom(InstantColumns columns, Instant from, Set<Instant> instants)
+    {
+        int start = columns.ceilingIndex(from);
+        if(start < 0) return;
+
+        for(int row = start; row < columns.size(); row++)
+        {
+            instants.add(columns.getInstant(row));
+        }
+    }
+
+    /**
+     * Removes the snapshot taken at the given instant.
+     *
+     * @param instant the instant of the snapshot
+     * @return whether a snapshot was removed
+     */
+    public synchronized boolean remove(Instant instant)
+    {
+        modificationCount++;
+        decodedSnapshots.remove(instant);
+
+        if(archiveIndexOf(instant) >= 0)
+        {
+            removedArchived.add(instant);
+            validUntil.remove(instant);
+            return true;
+        }
+
+        validUntil.remove(instant);
+
+        if(encodedSnapshots.remove(instant)) return true;
+        if(!snapshots.remove(instant)) return false;
+
+        promoteNewest();
+
+        return true;
+    }
+
+    /**
+     * Keeps the newest snapshot decoded after the newest decoded snapshot has been removed or archived.
+     */
+    private void promoteNewest()
+    {
+        Instant newest = snapshots.lastInstant();
+
+        if(!encodedSnapshots.isEmpty())
+        {
+            int row = encodedSnapshots.size() - 1;
+            Instant newestEncoded = encodedSnapshots.getInstant(row);
+
+            if(newest == null || newestEncoded.isAfter(newest))
+            {
+                snapshots.put(newestEncoded, source.decode(encodedSnapshots.getSourceIndex(row)));
+                encodedSnapshots.remove(newestEncoded);
+                return;
+            }
+        }
+
+        int archived = archive == null ? -1 : archiveFloorIndex(archive.getInstant(archive.size() - 1));
+        if(archived >= 0 && newest == null)
+        {
+            Instant instant = archive.getInstant(archived);
+            Instant until = archive.getValidUntil(archived);
+
+            removedArchived.add(instant);
+            snapshots.put(instant, archive.decode(archived));
+            if(until != null) validUntil.put(instant, until);
+        }
+    }
+
+    public void putAll(SnapshotHistory history)
+    {
+        TreeMap<Instant, Instant> intervals = history.validityIntervals();
+        history.toMap().forEach(this::put);
+
+        synchronized(this)
+        {
+            modificationCount++;
+            intervals.forEach((start, end) ->
+            {
+                if(containsKey(start)) validUntil.put(start, end);
+            });
+        }
+    }
+
+    /**
+     * Returns the snapshot taken at the given instant, decoding it if necessary.
+     *
+     * @param instant the instant of the snapshot
+     * @return the snapshot, or null if there is no snapshot at the given instant
+     */
+    public synchronized HiscoreResult get(Instant instant)
+    {
+        HiscoreResult result = decodedSnapshots.get(instant);
+        if(result != null) return result;
+
+        int row = snapshots.indexOf(instant);
+        if(row >= 0) return decodedSnapshots.computeIfAbsent(instant, key -> snapshots.toResult(row));
+
+        int encodedRow = encodedSnapshots.indexOf(instant);
+        if(encodedRow >= 0) return decodedSnapshots.computeIfAbsent(instant, key -> source.decode(encodedSnapshots.getSourceIndex(encodedRow)));
+
+        int archived = archiveIndexOf(instant);
+        if(archived >= 0) return decodedSnapshots.computeIfAbsent(instant, key -> archive.decode(archived));
+
+        return null;
+    }
+
+    /**
+     * Copies the rank, level and experience of every skill of the snapshot taken at the given instant into the given
+     * arrays, indexed by HiscoreSkill ordinal. Skills missing from the snapshot are read as unranked, -1. A snapshot
+     * held in memory is read without building a HiscoreResult for it.
+     *
+     * @param instant the instant of the snapshot
+     * @param ranks the array to copy ranks into
+     * @param levels the array to copy levels into
+     * @param experiences the array to copy experience into
+     * @return whether there is a snapshot at the given instant
+     */
+    public synchronized boolean readSkills(Instant instant, int[] ranks, int[] levels, long[] experiences)
+    {
+        int row = snapshots.indexOf(instant);
+        if(row >= 0)
+        {
+            snapshots.read(row, ranks, levels, experiences);
+            return true;
+        }
+
+        HiscoreResult result = get(instant);
+        if(result == null) return false;
+
+        for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+        {
+            Skill skill = result.getSkill(hiscoreSkill);
+            int i = hiscoreSkill.ordinal();
+
+            ranks[i] = skill != null ? skill.getRank() : -1;
+            levels[i] = skill != null ? skill.getLevel() : -1;
+            experiences[i] = skill != null ? skill.getExperience() : -1;
+        }
+
+        return true;
+    }
+
+    public synchronized boolean containsKey(Instant instant)
+    {
+        return snapshots.indexOf(instant) >= 0 || encodedSnapshots.indexOf(instant) >= 0 || archiveIndexOf(instant) >= 0;
+    }
+
+    public synchronized int size()
+    {
+        return snapshots.size() + encodedSnapshots.size() + archivedSize();
+    }
+
+    public synchronized boolean isEmpty()
+    {
+        return snapshots.isEmpty() && encodedSnapshots.isEmpty() && archivedSize() == 0;
+    }
+
+    /**
+     * Returns the instant of the newest snapshot without decoding it.
+     *
+     * @return the instant of the newest snapshot, or null if there are no snapshots
+     */
+    public synchronized Instant lastInstant()
+    {
+        return snapshots.lastInstant();
+    }
+
+    /**
+     * Returns the newest snapshot. The newest snapshot is never left encoded or archived.
+     *
+     * @return the newest snapshot, or null if there are no snapshots
+     */
+    public synchronized Map.Entry<Instant, HiscoreResult> lastEntry()
+    {
+        Instant newest = snapshots.lastInstant();
+        if(newest == null) return null;
+
+        return new AbstractMap.SimpleImmutableEntry<>(newest, get(newest));
+    }
+
+    /**
+     * Returns the instants of every snapshot without decoding any of them.
+     *
+     * @return a sorted copy of the instants of every snapshot
+     */
+    public synchronized NavigableSet<Instant> instants()
+    {
+        return liveInstants(Instant.MIN);
+    }
+
+    /**
+     * Returns whether any snapshot held in memory, other than the newest, was taken before the given instant.
+     *
+     * @param cutoff the instant to check against
+     * @return whether there are snapshots that could be archived
+     */
+    public synchronized boolean hasUnarchivedBefore(Instant cutoff)
+    {
+        int count = snapshots.countBefore(cutoff) + encodedSnapshots.countBefore(cutoff);
+        boolean newestBefore = !snapshots.isEmpty() && snapshots.lastInstant().isBefore(cutoff);
+
+        return count > (newestBefore ? 1 : 0);
+    }
+
+    /**
+     * Returns the instants of the snapshots that belong in an archive taken at the given cutoff: every archived
+     * snapshot and every other snapshot, apart from the newest, taken before the cutoff.
+     *
+     * @param cutoff the instant before which snapshots are archived
+     * @return a sorted copy of the instants to archive
+     */
+    public synchronized NavigableSet<Instant> archivableInstants(Instant cutoff)
+    {
+        NavigableSet<Instant> instants = new TreeSet<>(liveInstants(Instant.MIN).headSet(cutoff, false));
+        if(!snapshots.isEmpty()) instants.remove(snapshots.lastInstant());
+
+        // Archived snapshots stay archived even if the cutoff has moved back
+        if(archive != null)
+        {
+            for(int i = 0; i < archive.size(); i++)
+            {
+                instants.add(archive.getInstant(i));
+            }
+            instants.removeAll(removedArchived);
+        }
+
+        return instants;
+    }
+
+    /**
+     * Decodes every snapshot. The decoded snapshots are not retained by this history.
+     *
+     * @return a new map of every snapshot keyed by the instant it was taken
+     */
+    public TreeMap<Instant, HiscoreResult> toMap()
+    {
+        return toMap(true);
+    }
+
+    /**
+     * Decodes every snapshot. The decoded snapshots are not retained by this history.
+     *
+     * @param includeArchived whether to include archived snapshots
+     * @return a new map of snapshots keyed by the instant they were taken
+     */
+    public synchronized TreeMap<Instant, HiscoreResult> toMap(boolean includeArchived)
+    {
+        TreeMap<Instant, HiscoreResult> map = new TreeMap<>();
+
+        if(includeArchived && archive != null)
+        {
+            map.putAll(archive.decodeAll());
+            map.keySet().removeAll(removedArchived);
+        }
+
+        if(!encodedSnapshots.isEmpty())
+        {
+            source.decodeAll().forEach((instant, result) ->
+            {
+                if(encodedSnapshots.indexOf(instant) >= 0) map.put(instant, result);
+            });
+        }
+
+        for(int row = 0; row < snapshots.size(); row++)
+        {
+            Instant instant = snapshots.getInstant(row);
+            HiscoreResult result = decodedSnapshots.get(instant);
+            map.put(instant, result != null ? result : snapshots.toResult(row));
+        }
+
+        return map;
+    }
+
+    /**
+     * Returns a count that changes whenever the snapshots or their validity intervals change, so that values
+     * derived from them can tell when they are out of date.
+     *
+     * @return the number of modifications made to this history
+     */
+    public synchronized int getModificationCount()
+    {
+        return modificationCount;
+    }
+
+    /**
+     * Estimates the heap held by this history. Archived snapshots are not counted as they are held outside of
+     * the heap.
+     *
+     * @return the approximate number of bytes held
+     */
+    public synchronized long estimateHeapBytes()
+    {
+        return snapshots.estimateHeapBytes() +
+                decodedSnapshots.size() * DECODED_SNAPSHOT_BYTES +
+                (encodedSnapshots.size() + validUntil.size() + removedArchived.size()) * ENCODED_SNAPSHOT_BYTES;
+    }
+
+    public synchronized SnapshotHistory copy()
+    {
+        return new SnapshotHistory(this);
+    }
+}
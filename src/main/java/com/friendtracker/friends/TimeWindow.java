@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * An interval of time, from one instant to a later one, to measure gains over.
+ */
+@Value
+public class TimeWindow
+{
+    Instant from;
+    Instant to;
+
+    /**
+     * Returns the given number of consecutive windows of the given period that end at the given instant,
+     * such as each of the last 12 weeks. Each window starts where the one before it ends.
+     *
+     * @param end the instant the last window ends at
+     * @param period the length of each window
+     * @param count the number of windows
+     * @return the windows, oldest first
+     */
+    public static List<TimeWindow> lastPeriods(Instant end, Period period, int count)
+    {
+        List<TimeWindow> windows = new ArrayList<>(count);
+        for(int i = count; i > 0; i--)
+        {
+            windows.add(new TimeWindow(end.minus(period.multipliedBy(i)), end.minus(period.multipliedBy(i - 1))));
+        }
+
+        return windows;
+    }
+}
@@ -32,14 +32,19 @@ import com.friendtracker.config.ComparatorFactory;
 import com.friendtracker.config.ConfigValues;
 import com.friendtracker.friends.Friend;
 import com.friendtracker.friends.FriendManager;
+import com.friendtracker.friends.FriendSummary;
+import com.friendtracker.friends.GainsTable;
 import com.friendtracker.panel.components.FixedWidthPanel;
 import com.friendtracker.panel.components.SearchBox;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.GridLayout;
+import java.time.Clock;
+import java.time.Period;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -63,15 +68,21 @@ public class FriendListPanel extends FixedWidthPanel
     private final FriendTrackerConfig config;
     private final ConfigManager configManager;
     private final ComparatorFactory comparatorFactory;
+    // Read once per redraw for the end of the displayed range
+    private final Clock clock;
     //    private final JButton refreshListBtn = new JButton();
     private final JPanel listWrapper = new JPanel();
 
     public final ArrayList<FriendPanel> friendPanels = new ArrayList<>();
 
+    // Drawn in place of the Friends while the current account is loading
+    private List<FriendSummary> summaries;
 
-    public FriendListPanel(FriendTrackerPlugin plugin, FriendTrackerConfig config, ConfigManager configManager)
+
+    public FriendListPanel(FriendTrackerPlugin plugin, FriendTrackerConfig config, ConfigManager configManager, Clock clock)
     {
         this.plugin = plugin;
+        this.clock = clock;
         this.config = config;
         this.configManager = configManager;
         this.comparatorFactory = new ComparatorFactory(config);
@@ -205,17 +216,62 @@ public class FriendListPanel extends FixedWidthPanel
      * @return the sorted list of Friend objects
      */
     public List<Friend> getFriends()
+    {
+        return getFriends(evaluateGains());
+    }
+
+    private List<Friend> getFriends(GainsTable gains)
+    {
+        return gains.getFriends()
+                .stream()
+                .sorted(comparatorFactory.createFriendComparatorFromConfig(gains))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Measures the gains of every Friend of the current FriendManager over the selected range, all up to the
+     * current instant of this panel's clock.
+     *
+     * @return the gains of every Friend
+     */
+    public GainsTable evaluateGains()
     {
         FriendManager friendManager = plugin.getFriendManager();
+        Period range = config.selectedRange().getPeriod().multipliedBy(config.rangeNumber());
 
-        if(friendManager == null) return new ArrayList<>();
+        return GainsTable.evaluate(friendManager != null ? friendManager.getFriends().values() : Collections.emptyList(),
+                clock, range, config.rangeTolerance().getPeriod());
+    }
 
-        return friendManager.getFriends().values()
-                .stream()
-                .sorted(comparatorFactory.createFriendComparatorFromConfig())
+    /**
+     * Returns the saved summaries of the loading account sorted by the configured criteria.
+     *
+     * @return the sorted list of summaries
+     */
+    public List<FriendSummary> getSummaries()
+    {
+        if(summaries == null) return new ArrayList<>();
+
+        return summaries.stream()
+                .sorted(comparatorFactory.createSummaryComparatorFromConfig())
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Sets the summaries to draw until the current account's Friends are loaded.
+     *
+     * @param summaries the saved summaries of the loading account, or null to draw its Friends
+     */
+    public void setSummaries(List<FriendSummary> summaries)
+    {
+        this.summaries = summaries;
+    }
+
+    public boolean hasSummaries()
+    {
+        return summaries != null;
+    }
+
     public void refresh()
     {
         for(FriendPanel friendPanel : friendPanels)
@@ -231,16 +287,25 @@ public class FriendListPanel extends FixedWidthPanel
         listWrapper.removeAll();
         friendPanels.clear();
 
-        getFriends().forEach(friend ->
+        if(plugin.getFriendManager() == null && summaries != null)
         {
-            FriendPanel friendPanel = friend.generatePanel(plugin, config);
-            listWrapper.add(friendPanel);
-            friendPanels.add(friendPanel);
-        });
+            getSummaries().forEach(summary -> addFriendPanel(new FriendPanel(plugin, config, summary)));
+        }
+        else
+        {
+            GainsTable gains = evaluateGains();
+            getFriends(gains).forEach(friend -> addFriendPanel(friend.generatePanel(plugin, config, gains.get(friend))));
+        }
 
         refresh();
 
         validate();
         repaint();
     }
+
+    private void addFriendPanel(FriendPanel friendPanel)
+    {
+        listWrapper.add(friendPanel);
+        friendPanels.add(friendPanel);
+    }
 }
@@ -27,6 +27,9 @@ package com.friendtracker.panel;
 import com.friendtracker.FriendTrackerConfig;
 import com.friendtracker.FriendTrackerPlugin;
 import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.FriendGains;
+import com.friendtracker.friends.FriendSummary;
+import com.friendtracker.friends.SkillRates;
 import com.friendtracker.panel.components.FixedWidthPanel;
 import com.friendtracker.panel.components.HiscorePanel;
 import com.friendtracker.panel.components.HiscoreUtil;
@@ -35,6 +38,7 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.time.Duration;
 import java.util.List;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -62,6 +66,8 @@ public class FriendPanel extends FixedWidthPanel {
     private final FriendTrackerConfig config;
 
     private final Friend friend;
+    // Set instead of friend while the full data is loading
+    private final FriendSummary summary;
 
     private HiscoreResult displayedResult;
 
@@ -93,10 +99,32 @@ public class FriendPanel extends FixedWidthPanel {
         this.plugin = plugin;
         this.config = config;
         this.friend = friend;
+        this.summary = null;
 
         build();
     }
 
+    /**
+     * Creates a panel showing only the name and gains of a Friend, without a delete option or skill breakdown.
+     *
+     * @param plugin the plugin
+     * @param config the plugin config
+     * @param summary the summary of the Friend
+     */
+    public FriendPanel(FriendTrackerPlugin plugin, FriendTrackerConfig config, FriendSummary summary) {
+        this.plugin = plugin;
+        this.config = config;
+        this.friend = null;
+        this.summary = summary;
+
+        build();
+
+        long xpGained = summary.getXpGained(config.selectedRange(), config.rangeNumber());
+        int kcGained = summary.getKcGained(config.selectedRange(), config.rangeNumber());
+        overallLabel.setText(textHTML(xpGained, kcGained));
+        overallLabel.setToolTipText(toolTipHTML(xpGained, kcGained));
+    }
+
     public void build()
     {
         setLayout(new BorderLayout(0, 1));
@@ -125,7 +153,7 @@ public class FriendPanel extends FixedWidthPanel {
         final JPopupMenu popupMenu = new JPopupMenu();
         popupMenu.setBorder(new EmptyBorder(5, 5, 5, 5));
         popupMenu.add(delete);
-        logTitle.setComponentPopupMenu(popupMenu);
+        if(friend != null) logTitle.setComponentPopupMenu(popupMenu);
 
         SwingUtil.removeButtonDecorations(collapseBtn);
         collapseBtn.setIcon(COLLAPSE_ICON);
@@ -134,10 +162,11 @@ public class FriendPanel extends FixedWidthPanel {
         collapseBtn.setBackground(ColorScheme.DARKER_GRAY_COLOR.darker());
         collapseBtn.setUI(new BasicButtonUI()); // substance breaks the layout
         collapseBtn.addActionListener(ev -> changeCollapse());
+        collapseBtn.setEnabled(friend != null);
         logTitle.add(collapseBtn);
 
         JLabel titleLabel = new JLabel();
-        titleLabel.setText(friend.getName());
+        titleLabel.setText(getFriendName());
         titleLabel.setFont(FontManager.getRunescapeSmallFont());
         titleLabel.setForeground(Color.WHITE);
         // Set a size to make BoxLayout truncate the name
@@ -166,35 +195,65 @@ public class FriendPanel extends FixedWidthPanel {
 
     public void applyHiscoreResult(HiscoreResult result)
     {
-        hiscorePanel.applyHiscoreResult(result);
+        applyHiscoreResult(result, result.getSkill(HiscoreSkill.OVERALL).getExperience(), HiscoreUtil.sumNonSkillKc(result));
+    }
+
+    /**
+     * Shows the given gains, using their totals rather than summing them again from the change in every skill.
+     */
+    public void applyGains(FriendGains gains)
+    {
+        applyHiscoreResult(gains.getChange(), gains.getXpGained(), gains.getKcGained());
+    }
+
+    private void applyHiscoreResult(HiscoreResult result, long xpGained, int kcGained)
+    {
+        hiscorePanel.applyHiscoreResult(result, getSkillRates());
 
-        overallLabel.setText(textHTML(result));
-        overallLabel.setToolTipText(toolTipHTML(result));
+        overallLabel.setText(textHTML(xpGained, kcGained));
+        overallLabel.setToolTipText(toolTipHTML(xpGained, kcGained));
         displayedResult = result;
     }
 
+    private SkillRates getSkillRates()
+    {
+        if(friend == null || config.rateWindowDays() <= 0 || friend.getHiscoreSnapshots().isEmpty()) return null;
+
+        return friend.getSkillRates(Duration.ofDays(config.rateWindowDays()));
+    }
+
     public String textHTML(HiscoreResult result)
+    {
+        return textHTML(result.getSkill(HiscoreSkill.OVERALL).getExperience(), HiscoreUtil.sumNonSkillKc(result));
+    }
+
+    public String textHTML(long xpGained, int kcGained)
     {
         String openingTags = "<html><body style = 'color:#989898'>";
         String closingTags = "</html><body>";
 
         String content = "";
 
-        content += "<p>+" + QuantityFormatter.quantityToStackSize(result.getSkill(HiscoreSkill.OVERALL).getExperience()) + " xp" + "</p>";
-        content += "<p>+" + QuantityFormatter.quantityToStackSize(HiscoreUtil.sumNonSkillKc(result)) + " kc" + "</p>";
+        content += "<p>+" + QuantityFormatter.quantityToStackSize(xpGained) + " xp" + "</p>";
+        content += "<p>+" + QuantityFormatter.quantityToStackSize(kcGained) + " kc" + "</p>";
 
         return openingTags + content + closingTags;
     }
 
     public String toolTipHTML(HiscoreResult result)
+    {
+        return toolTipHTML(result.getSkill(HiscoreSkill.OVERALL).getExperience(), HiscoreUtil.sumNonSkillKc(result));
+    }
+
+    public String toolTipHTML(long xpGained, int kcGained)
     {
         String openingTags = "<html><body style = 'padding: 5px;color:#989898'>";
         String closingTags = "</html><body>";
 
         String content = "";
 
-        content += "<p><span style = 'color:white'>XP:</span> +" + QuantityFormatter.formatNumber(result.getSkill(HiscoreSkill.OVERALL).getExperience()) + "</p>";
-        content += "<p><span style = 'color:white'>KC:</span> +" + QuantityFormatter.formatNumber(HiscoreUtil.sumNonSkillKc(result)) + "</p>";
+        content += "<p><span style = 'color:white'>XP:</span> +" + QuantityFormatter.formatNumber(xpGained) + "</p>";
+        content += "<p><span style = 'color:white'>KC:</span> +" + QuantityFormatter.formatNumber(kcGained) + "</p>";
 
         return openingTags + content + closingTags;
     }
@@ -260,10 +319,15 @@ public class FriendPanel extends FixedWidthPanel {
         }
     }
 
+    private String getFriendName()
+    {
+        return friend != null ? friend.getName() : summary.getName();
+    }
+
     public boolean meetsCriteria()
     {
-        String nameLowercase = friend.getName().toLowerCase();
-        List<String> descriptionLowercase = friend.getPreviousNames();
+        String nameLowercase = getFriendName().toLowerCase();
+        List<String> descriptionLowercase = friend != null ? friend.getPreviousNames() : summary.getPreviousNames();
         return plugin.getFriendTextFilter() == null ||
                 nameLowercase.contains(plugin.getFriendTextFilter()) ||
                 descriptionLowercase.contains(plugin.getFriendTextFilter());
@@ -26,6 +26,7 @@ package com.friendtracker.panel;
 
 import com.friendtracker.FriendTrackerConfig;
 import com.friendtracker.FriendTrackerPlugin;
+import com.friendtracker.friends.FriendSummary;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -90,6 +91,8 @@ public class FriendTrackerPanel extends PluginPanel
 
     private boolean loggedIn = false;
 
+    private boolean loading = false;
+
     private boolean mergeInProgress = false;
 
     public FriendTrackerPanel(@Nullable Client client, FriendTrackerPlugin plugin, FriendTrackerConfig config, ConfigManager configManager)
@@ -98,7 +101,7 @@ public class FriendTrackerPanel extends PluginPanel
         this.config = config;
         this.client = client;
         this.configManager = configManager;
-        this.friendListPanel = new FriendListPanel(plugin, config, configManager);
+        this.friendListPanel = new FriendListPanel(plugin, config, configManager, plugin.getGainsClock());
 
         setBorder(new EmptyBorder(6, 6, 6, 6));
         setBackground(ColorScheme.DARK_GRAY_COLOR);
@@ -255,13 +258,61 @@ public class FriendTrackerPanel extends PluginPanel
 
         if(loggedIn != this.loggedIn)
         {
-            errorPanel.setVisible(!loggedIn);
-            loggedInPanel.setVisible(loggedIn);
-
             this.loggedIn = loggedIn;
+            updateVisibility();
         }
 
         redraw();
     }
 
+    /**
+     * Shows a loading message in place of the friend list while saved data is loaded.
+     * Any summaries shown while loading are cleared.
+     *
+     * @param loading whether saved data is being loaded
+     */
+    public void setLoading(boolean loading)
+    {
+        assert SwingUtilities.isEventDispatchThread();
+
+        friendListPanel.setSummaries(null);
+        this.loading = loading;
+
+        updateVisibility();
+        redraw();
+    }
+
+    /**
+     * Shows the friend list drawn from the given summaries until the loading account's data is loaded.
+     *
+     * @param summaries the saved summaries of the loading account
+     */
+    public void setSummaries(List<FriendSummary> summaries)
+    {
+        assert SwingUtilities.isEventDispatchThread();
+
+        if(!loading) return;
+
+        friendListPanel.setSummaries(summaries);
+        updateVisibility();
+        redraw();
+    }
+
+    private void updateVisibility()
+    {
+        boolean showSummaries = loading && friendListPanel.hasSummaries();
+
+        if(loading)
+        {
+            errorPanel.setContent("Loading friends", "Loading saved friend data...");
+        }
+        else
+        {
+            errorPanel.setContent("No friends found", "Log in to track friends' xp.");
+        }
+
+        errorPanel.setVisible(!loggedIn || (loading && !showSummaries));
+        loggedInPanel.setVisible(loggedIn && (!loading || showSummaries));
+    }
+
 }
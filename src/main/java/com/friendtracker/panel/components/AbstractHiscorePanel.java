@@ -28,6 +28,10 @@
 package com.friendtracker.panel.components;
 
 import com.friendtracker.FriendTrackerPlugin;
+import com.friendtracker.friends.SkillRates;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
@@ -46,6 +50,7 @@ import org.apache.commons.lang3.StringUtils;
 @Slf4j
 public abstract class AbstractHiscorePanel extends FixedWidthPanel
 {
+    private static final DateTimeFormatter PROJECTION_FORMAT = DateTimeFormatter.ofPattern("d MMM yyyy").withZone(ZoneId.systemDefault());
 
     public AbstractHiscorePanel()
     {
@@ -83,9 +88,17 @@ public abstract class AbstractHiscorePanel extends FixedWidthPanel
         return new ImageIcon(ImageUtil.loadImageResource(FriendTrackerPlugin.class, skillIcon));
     }
 
+    /**
+     * Creates the label of the given skill, before its font, text and default tooltip are set.
+     */
+    protected JLabel createSkillLabel(HiscoreSkill skill)
+    {
+        return new JLabel();
+    }
+
     public JLabel getSkillLabel(HiscoreSkill skill, HiscoreSkillType padType)
     {
-        JLabel label = new JLabel();
+        JLabel label = createSkillLabel(skill);
         label.setToolTipText(skill == null ? "Combat" : skill.getName());
         label.setFont(FontManager.getRunescapeSmallFont());
         label.setText(pad("--", padType));
@@ -116,6 +129,15 @@ public abstract class AbstractHiscorePanel extends FixedWidthPanel
      * Builds a html string to display on tooltip (when hovering a skill).
      */
     public String detailsHtml(HiscoreResult result, HiscoreSkill skill)
+    {
+        return detailsHtml(result, skill, null);
+    }
+
+    /**
+     * Builds a html string to display on tooltip (when hovering a skill), including the skill's rate and projected
+     * next level if rates are given.
+     */
+    public String detailsHtml(HiscoreResult result, HiscoreSkill skill, SkillRates rates)
     {
         String openingTags = "<html><body style = 'padding: 5px;color:#989898'>";
         String closingTags = "</html><body>";
@@ -245,6 +267,11 @@ public abstract class AbstractHiscorePanel extends FixedWidthPanel
             }
         }
 
+        if (rates != null && skill != null)
+        {
+            content += buildRateLines(rates, skill);
+        }
+
         // Add a html progress bar to the hover information
         if (skill != null && skill.getType() == HiscoreSkillType.SKILL)
         {
@@ -273,6 +300,34 @@ public abstract class AbstractHiscorePanel extends FixedWidthPanel
         return openingTags + content + closingTags;
     }
 
+    private String buildRateLines(SkillRates rates, HiscoreSkill skill)
+    {
+        double rate = rates.getRatePerHour(skill);
+        if (Double.isNaN(rate))
+        {
+            return "";
+        }
+
+        String content = "";
+        if (skill.getType() == HiscoreSkillType.SKILL || skill == OVERALL)
+        {
+            content += "<p><span style = 'color:white'>XP/hr:</span> " + QuantityFormatter.formatNumber(Math.round(rate)) + "</p>";
+        }
+        else
+        {
+            String name = skill.getType() == HiscoreSkillType.BOSS ? "KC/hr:" : "Score/hr:";
+            content += "<p><span style = 'color:white'>" + name + "</span> " + QuantityFormatter.formatNumber(Math.round(rate * 100) / 100.0) + "</p>";
+        }
+
+        Instant nextLevel = rates.projectNextLevel(skill);
+        if (nextLevel != null)
+        {
+            content += "<p><span style = 'color:white'>Next level:</span> " + PROJECTION_FORMAT.format(nextLevel) + "</p>";
+        }
+
+        return content;
+    }
+
     private String buildMinigameTooltip(Skill s, HiscoreSkill hiscoreSkill)
     {
         String rank = (s.getRank() == -1) ? "Unranked" : QuantityFormatter.formatNumber(s.getRank());
@@ -28,10 +28,12 @@
 package com.friendtracker.panel.components;
 
 import com.friendtracker.data.HiscoreKeys;
+import com.friendtracker.friends.SkillRates;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
 import java.awt.Insets;
+import java.awt.event.MouseEvent;
 import java.util.HashMap;
 import java.util.Map;
 import javax.swing.BorderFactory;
@@ -55,6 +57,10 @@ public class HiscorePanel extends AbstractHiscorePanel
     // Not an enummap because we need null keys for combat
     private final Map<HiscoreSkill, JLabel> skillLabels = new HashMap<>();
 
+    // The result and rates shown, which skill tooltips are built from when they are hovered
+    private HiscoreResult shownResult;
+    private SkillRates shownRates;
+
     public HiscorePanel()
     {
         createPanel();
@@ -134,6 +140,28 @@ public class HiscorePanel extends AbstractHiscorePanel
         c.gridy++;
     }
 
+    /**
+     * Creates a label whose tooltip shows the details of its skill in the result shown, built only when the
+     * tooltip is displayed.
+     */
+    @Override
+    protected JLabel createSkillLabel(HiscoreSkill skill)
+    {
+        return new JLabel()
+        {
+            @Override
+            public String getToolTipText(MouseEvent event)
+            {
+                if (shownResult == null)
+                {
+                    return super.getToolTipText(event);
+                }
+
+                return detailsHtml(shownResult, skill, shownRates);
+            }
+        };
+    }
+
     public JPanel makeSkillPanel(HiscoreSkill skill)
     {
         JLabel label = getSkillLabelWithIcon(skill);
@@ -148,6 +176,16 @@ public class HiscorePanel extends AbstractHiscorePanel
     }
 
     public void applyHiscoreResult(HiscoreResult result)
+    {
+        applyHiscoreResult(result, null);
+    }
+
+    /**
+     * Shows the given result, with each skill's rate and projected next level in its tooltip if rates are given.
+     * The result is kept to build tooltips from, and is only read for the levels shown on the labels until one is
+     * hovered.
+     */
+    public void applyHiscoreResult(HiscoreResult result, SkillRates rates)
     {
         assert SwingUtilities.isEventDispatchThread();
 
@@ -191,9 +229,10 @@ public class HiscorePanel extends AbstractHiscorePanel
                     label.setText(pad(formatLevel(level), skill.getType()));
                 }
             }
-
-            label.setToolTipText(detailsHtml(result, skill));
         }
+
+        shownResult = result;
+        shownRates = rates;
     }
 
 }
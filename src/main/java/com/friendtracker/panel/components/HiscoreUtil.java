@@ -24,10 +24,9 @@
  */
 package com.friendtracker.panel.components;
 
+import com.friendtracker.friends.HiscoreDifference;
 import com.google.common.base.CaseFormat;
-import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.hiscore.HiscoreResult;
 import net.runelite.client.hiscore.HiscoreSkill;
@@ -71,7 +70,8 @@ public class HiscoreUtil
     }
 
     /**
-     * Computes the per-skill difference between two HiscoreResults and returns a new HiscoreResult containing this.
+     * Returns a view of the per-skill difference between two HiscoreResults. The difference of each skill is only
+     * computed when it is read from the view.
      *
      * @param highResult the result to use as the base
      * @param lowResult the result to subtract from the base result
@@ -79,32 +79,11 @@ public class HiscoreUtil
      */
     public static HiscoreResult getDifference(HiscoreResult highResult, HiscoreResult lowResult)
     {
-        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
-        String player = highResult.getPlayer();
-
-        for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
-        {
-            Skill highSkill = highResult.getSkill(hiscoreSkill);
-            Skill lowSkill = lowResult.getSkill(hiscoreSkill);
-
-            Skill skill;
-            if(highSkill != null && lowSkill != null)
-            {
-                skill = getDifference(highSkill, lowSkill);
-            }
-            else
-            {
-                skill = null;
-            }
-
-            skills.put(hiscoreSkill,skill);
-        }
-
-        return new HiscoreResult(player, skills);
+        return new HiscoreDifference(highResult, lowResult);
     }
 
     /**
-     * Computes the per-parameter difference between two Hiscore Skills and returns a new Hiscore Skills containing this.
+     * Computes the per-parameter difference between two Hiscore Skills.
      *
      * @param highSkill the skill to use as the base
      * @param lowSkill the skill to subtract from the base skill
@@ -112,11 +91,7 @@ public class HiscoreUtil
      */
     public static Skill getDifference(Skill highSkill, Skill lowSkill)
     {
-        int rank = (int)skillPropDiff(highSkill.getRank(), lowSkill.getRank());
-        long experience = skillPropDiff(highSkill.getExperience(), lowSkill.getExperience());
-        int level = (int)skillPropDiff(highSkill.getLevel(), lowSkill.getLevel());
-
-        return new Skill(rank, level, experience);
+        return HiscoreDifference.of(highSkill, lowSkill);
     }
 
     /**
@@ -128,9 +103,7 @@ public class HiscoreUtil
      */
     public static long skillPropDiff(long high, long low)
     {
-        long diff = high;
-        diff -= low == -1 ? 0 : low;
-        return diff;
+        return HiscoreDifference.skillPropDiff(high, low);
     }
 
     /**
@@ -147,10 +120,7 @@ public class HiscoreUtil
 
         for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
         {
-            if(hiscoreSkill.getType() == HiscoreSkillType.SKILL ||
-                    hiscoreSkill.getType() == HiscoreSkillType.OVERALL ||
-                    (hiscoreSkill.getName().contains("Clue Scrolls") && !hiscoreSkill.equals(HiscoreSkill.CLUE_SCROLL_ALL))
-            ) continue;
+            if(!isCountedAsKc(hiscoreSkill)) continue;
 
             Skill skill = result.getSkill(hiscoreSkill);
             int level =  skill != null ? skill.getLevel() : 0;
@@ -160,4 +130,18 @@ public class HiscoreUtil
 
         return totalKc;
     }
+
+    /**
+     * Returns whether the level of the given HiscoreSkill counts towards total KC. Every activity and boss counts,
+     * other than the clue scrolls of each tier, which are already counted by all clue scrolls.
+     *
+     * @param hiscoreSkill the skill to check
+     * @return whether the skill counts towards total KC
+     */
+    public static boolean isCountedAsKc(HiscoreSkill hiscoreSkill)
+    {
+        return hiscoreSkill.getType() != HiscoreSkillType.SKILL &&
+                hiscoreSkill.getType() != HiscoreSkillType.OVERALL &&
+                !(hiscoreSkill.getName().contains("Clue Scrolls") && !hiscoreSkill.equals(HiscoreSkill.CLUE_SCROLL_ALL));
+    }
 }
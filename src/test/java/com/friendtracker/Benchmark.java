@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+
+/**
+ * A minimal harness for the benchmarks under the test sources, which are run from their main methods rather than
+ * as tests. Each measurement warms up before timing, then reports the fastest of several timed rounds.
+ */
+public final class Benchmark
+{
+    private static final long ROUND_NANOS = 200_000_000L;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int TIMED_ROUNDS = 5;
+
+    // Keeps the result of every operation reachable so it cannot be optimised away
+    private static volatile int sink;
+
+    private Benchmark()
+    {
+    }
+
+    /**
+     * Measures the mean time the given operation takes.
+     *
+     * @param operation the operation to time, returning any value that depends on its work
+     * @return the nanoseconds taken by each operation in the fastest round
+     */
+    public static double nanosPerOperation(IntSupplier operation)
+    {
+        for(int i = 0; i < WARMUP_ROUNDS; i++)
+        {
+            round(operation);
+        }
+
+        double fastest = Double.MAX_VALUE;
+        for(int i = 0; i < TIMED_ROUNDS; i++)
+        {
+            fastest = Math.min(fastest, round(operation));
+        }
+
+        return fastest;
+    }
+
+    private static double round(IntSupplier operation)
+    {
+        int result = 0;
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+
+        do
+        {
+            result += operation.getAsInt();
+            operations++;
+            elapsed = System.nanoTime() - start;
+        }
+        while(elapsed < ROUND_NANOS);
+
+        sink += result;
+
+        return (double) elapsed / operations;
+    }
+
+    /**
+     * Measures the mean heap the given operation allocates, on HotSpot JVMs that count the bytes each thread
+     * allocates.
+     *
+     * @param operation the operation to measure, returning any value that depends on its work
+     * @param operations the number of times to run the operation
+     * @return the bytes allocated by each operation
+     */
+    public static double bytesPerOperation(IntSupplier operation, int operations)
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        // Warm up so that the allocations of class loading and compilation are not counted
+        int result = 0;
+        for(int i = 0; i < operations; i++)
+        {
+            result += operation.getAsInt();
+        }
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        for(int i = 0; i < operations; i++)
+        {
+            result += operation.getAsInt();
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        sink += result;
+
+        return (double) allocated / operations;
+    }
+
+    /**
+     * Returns the heap in use after collecting garbage, for measuring the size of objects kept reachable across
+     * two calls.
+     *
+     * @return the bytes of heap in use
+     */
+    public static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+
+        // A single collection can leave garbage behind, so collect several times and keep the smallest reading
+        for(int i = 0; i < 5; i++)
+        {
+            System.gc();
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        return used;
+    }
+}
@@ -22,51 +22,49 @@
  * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
-package com.friendtracker.data;
+package com.friendtracker;
 
-import com.friendtracker.panel.components.HiscoreUtil;
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-import java.lang.reflect.Type;
+import java.time.Instant;
 import java.util.EnumMap;
 import java.util.Map;
 import net.runelite.client.hiscore.HiscoreResult;
 import net.runelite.client.hiscore.HiscoreSkill;
-import net.runelite.client.hiscore.HiscoreSkillType;
 import net.runelite.client.hiscore.Skill;
 
-public class HiscoreResultSerializer implements JsonSerializer<HiscoreResult>
+/**
+ * Hiscore results shared by the tests, which only need a player's overall experience and, for gains of kill count,
+ * one boss.
+ */
+public final class HiscoreFixtures
 {
-    @Override
-    public JsonElement serialize(HiscoreResult result, Type type, JsonSerializationContext jsonSerializationContext)
+    public static final Instant START = Instant.parse("2023-01-01T00:00:00Z");
+
+    private HiscoreFixtures()
     {
-        JsonObject jsonObject = new JsonObject();
+    }
 
-        jsonObject.addProperty("player", result.getPlayer());
+    public static HiscoreResult result(long experience)
+    {
+        return result("Zezima", experience);
+    }
 
-        Map<HiscoreSkill, Skill> skills = new EnumMap<>(result.getSkills());
-        Skill skill;
-        Gson gson = new Gson();
+    public static HiscoreResult result(String player, long experience)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        skills.put(HiscoreSkill.OVERALL, new Skill(1, 100, experience));
 
-        // add skills with non-negative xp or level to json
-        for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
-        {
-            skill = skills.getOrDefault(hiscoreSkill, null);
-            // @todo change to test only rank if that is valid
-            if(skill == null ||
-                    (hiscoreSkill.getType() == HiscoreSkillType.SKILL && skill.getExperience() == -1L) ||
-                    (hiscoreSkill.getType() != HiscoreSkillType.SKILL && skill.getLevel() == -1))
-            {
-                skills.remove(hiscoreSkill);
-            }
-        }
+        return new HiscoreResult(player, skills);
+    }
 
-        jsonObject.add("skills", gson.toJsonTree(skills));
+    /**
+     * Returns a result with the given overall experience and Zulrah kill count.
+     */
+    public static HiscoreResult result(long experience, int kc)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        skills.put(HiscoreSkill.OVERALL, new Skill(1, 100, experience));
+        skills.put(HiscoreSkill.ZULRAH, new Skill(1, kc, -1));
 
-        return jsonObject;
+        return new HiscoreResult("Zezima", skills);
     }
-
 }
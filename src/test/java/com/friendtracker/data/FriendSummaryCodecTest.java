@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.config.ConfigValues;
+import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.FriendSummary;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import static com.friendtracker.HiscoreFixtures.START;
+import static com.friendtracker.HiscoreFixtures.result;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class FriendSummaryCodecTest
+{
+    private static final Period TOLERANCE = Period.ofDays(1);
+
+    @Test
+    public void testRoundTripSummariesOfFriends() throws IOException
+    {
+        Friend gaining = new Friend("a", "Zezima");
+        Friend renamed = new Friend("b", "Lynx Titan", "Lynx");
+        Friend unranked = new Friend("c", "Woox");
+        Friend empty = new Friend("d", "Durial321");
+        for(int day = 0; day <= 400; day += 5)
+        {
+            gaining.addSnapshot(START.plus(day, ChronoUnit.DAYS), result(1_000L * day * day, day));
+            // Xp and KC that go down, as after a hiscores reset, must survive the zigzag encoding
+            renamed.addSnapshot(START.plus(day, ChronoUnit.DAYS), result(5_000_000_000L - 1_000L * day, 400 - day));
+        }
+        unranked.addSnapshot(START, result(-1));
+
+        for(int rangeNumber = 1; rangeNumber <= 3; rangeNumber++)
+        {
+            List<FriendSummary> summaries = new ArrayList<>();
+            for(Friend friend : Arrays.asList(gaining, renamed, unranked, empty))
+            {
+                summaries.add(FriendSummary.of(friend, rangeNumber, TOLERANCE, START.plus(400, ChronoUnit.DAYS)));
+            }
+
+            Map<String, FriendSummary> decoded = FriendSummaryCodec.decode(FriendSummaryCodec.encode(summaries));
+
+            assertEquals(Arrays.asList("a", "b", "c", "d"), new ArrayList<>(decoded.keySet()));
+            for(FriendSummary summary : summaries)
+            {
+                assertSummaryEquals(summary, decoded.get(summary.getID()));
+            }
+        }
+    }
+
+    @Test
+    public void testRangesThatNoLongerExistAreSkipped() throws IOException
+    {
+        ConfigValues.RangeOptions[] ranges = ConfigValues.RangeOptions.values();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try(DataOutputStream out = new DataOutputStream(bytes))
+        {
+            out.writeByte(FriendSummaryCodec.FORMAT_VERSION);
+            // A removed range written before the current ones, which are written in reverse
+            SnapshotCodec.writeVarLong(out, ranges.length + 1);
+            out.writeUTF("FORTNIGHT");
+            for(int i = ranges.length - 1; i >= 0; i--)
+            {
+                out.writeUTF(ranges[i].name());
+            }
+
+            SnapshotCodec.writeVarLong(out, 1);
+            out.writeUTF("a");
+            out.writeUTF("Zezima");
+            SnapshotCodec.writeVarLong(out, 0);
+            SnapshotCodec.writeVarLong(out, 1);
+            SnapshotCodec.writeVarLong(out, 1_000);
+            SnapshotCodec.writeVarLong(out, 10);
+            SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(-99));
+            SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(-99));
+            for(int i = ranges.length - 1; i >= 0; i--)
+            {
+                SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(100 + i));
+                SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(i));
+            }
+        }
+
+        FriendSummary decoded = FriendSummaryCodec.decode(bytes.toByteArray()).get("a");
+
+        assertEquals("Zezima", decoded.getName());
+        assertEquals(Collections.emptyList(), decoded.getPreviousNames());
+        for(ConfigValues.RangeOptions range : ranges)
+        {
+            if(range.getPeriod().isZero()) continue;
+
+            assertEquals(100 + range.ordinal(), decoded.getXpGained(range, 1));
+            assertEquals(range.ordinal(), decoded.getKcGained(range, 1));
+        }
+    }
+
+    private static void assertSummaryEquals(FriendSummary expected, FriendSummary actual)
+    {
+        assertEquals(expected.getID(), actual.getID());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getPreviousNames(), actual.getPreviousNames());
+        assertEquals(expected.getRangeNumber(), actual.getRangeNumber());
+        assertEquals(expected.getOverallXp(), actual.getOverallXp());
+        assertEquals(expected.getTotalKc(), actual.getTotalKc());
+
+        for(ConfigValues.RangeOptions range : ConfigValues.RangeOptions.values())
+        {
+            assertEquals(range.name(), expected.getXpGained(range, expected.getRangeNumber()),
+                    actual.getXpGained(range, expected.getRangeNumber()));
+            assertEquals(range.name(), expected.getKcGained(range, expected.getRangeNumber()),
+                    actual.getKcGained(range, expected.getRangeNumber()));
+        }
+    }
+}
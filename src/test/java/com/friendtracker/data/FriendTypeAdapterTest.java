@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.Friend;
+import java.time.Duration;
+import java.util.Map;
+import static com.friendtracker.HiscoreFixtures.START;
+import static com.friendtracker.HiscoreFixtures.result;
+import static com.friendtracker.data.SnapshotCodecTest.assertDecodesTo;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class FriendTypeAdapterTest
+{
+    // Friends as the reflective Gson used before the type adapters wrote them, with unranked skills left out
+    private static final String REFLECTIVE_JSON = "{"
+            + "\"a\":{\"ID\":\"a\",\"name\":\"Zezima\",\"previousNames\":[\"Old Zezima\"],\"hiscoreSnapshots\":{"
+            + "\"2023-01-01T00:00:00Z\":{\"player\":\"Zezima\",\"skills\":{"
+            + "\"OVERALL\":{\"rank\":1,\"level\":100,\"experience\":1000},\"ZULRAH\":{\"rank\":1,\"level\":5,\"experience\":-1}}},"
+            + "\"2023-01-02T00:00:00Z\":{\"player\":\"Zezima\",\"skills\":{"
+            + "\"OVERALL\":{\"rank\":1,\"level\":100,\"experience\":2000},\"ZULRAH\":{\"rank\":1,\"level\":8,\"experience\":-1}}}}},"
+            + "\"b\":{\"ID\":\"b\",\"name\":\"Lynx Titan\",\"previousNames\":[],\"hiscoreSnapshots\":{}}"
+            + "}";
+    // A friend whose results were saved with a field per skill, as HiscoreResult itself once had
+    private static final String PER_SKILL_JSON = "{\"ID\":\"a\",\"name\":\"Zezima\",\"previousNames\":[\"Old Zezima\"],\"hiscoreSnapshots\":{"
+            + "\"2023-01-01T00:00:00Z\":{\"player\":\"Zezima\","
+            + "\"overall\":{\"rank\":1,\"level\":100,\"experience\":1000},\"zulrah\":{\"rank\":1,\"level\":5,\"experience\":-1}}}}";
+
+    @Test
+    public void testReadsReflectiveJson()
+    {
+        Map<String, Friend> friends = TrackerDataStore.GSON.fromJson(REFLECTIVE_JSON, TrackerDataStore.MAP_TYPE);
+
+        Friend expected = new Friend("a", "Zezima", "Old Zezima");
+        expected.addSnapshot(START, result(1_000, 5));
+        expected.addSnapshot(START.plus(Duration.ofDays(1)), result(2_000, 8));
+
+        assertEquals(2, friends.size());
+        assertDecodesTo(expected, friends.get("a"));
+        assertDecodesTo(new Friend("b", "Lynx Titan"), friends.get("b"));
+    }
+
+    @Test
+    public void testReadsPerSkillJson()
+    {
+        Friend expected = new Friend("a", "Zezima", "Old Zezima");
+        expected.addSnapshot(START, result(1_000, 5));
+
+        assertDecodesTo(expected, TrackerDataStore.GSON.fromJson(PER_SKILL_JSON, Friend.class));
+    }
+
+    @Test
+    public void testReadsWhatItWrites()
+    {
+        Friend friend = TrackerDataStore.GSON.fromJson(PER_SKILL_JSON, Friend.class);
+
+        assertDecodesTo(friend, TrackerDataStore.GSON.fromJson(TrackerDataStore.GSON.toJson(friend), Friend.class));
+    }
+}
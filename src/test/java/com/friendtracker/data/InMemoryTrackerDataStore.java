@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.FriendTrackerConfig;
+import com.friendtracker.FriendTrackerPlugin;
+import com.friendtracker.config.ConfigValues;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A TrackerDataStore whose config keys are held in a map, for tests that read and write saved data.
+ */
+class InMemoryTrackerDataStore extends TrackerDataStore
+{
+    // Key -> value, as the ConfigManager would store them
+    final Map<String, String> configuration = new TreeMap<>();
+    // Every key set, in the order it was set
+    final List<String> writtenKeys = new ArrayList<>();
+
+    InMemoryTrackerDataStore(FriendTrackerConfig config, SnapshotJournal snapshotJournal, Clock clock)
+    {
+        super(null, config, snapshotJournal, clock);
+    }
+
+    /**
+     * Returns a config with the given storage mode and archiving disabled, so that loading never schedules a
+     * compaction.
+     */
+    static FriendTrackerConfig config(ConfigValues.StorageOptions storageMode)
+    {
+        return new FriendTrackerConfig()
+        {
+            @Override
+            public ConfigValues.StorageOptions storageMode()
+            {
+                return storageMode;
+            }
+
+            @Override
+            public int archiveAfterDays()
+            {
+                return 0;
+            }
+        };
+    }
+
+    @Override
+    String getConfiguration(String key)
+    {
+        return configuration.get(key);
+    }
+
+    @Override
+    void setConfiguration(String key, Object value)
+    {
+        configuration.put(key, value.toString());
+        writtenKeys.add(key);
+    }
+
+    @Override
+    void unsetConfiguration(String key)
+    {
+        configuration.remove(key);
+    }
+
+    @Override
+    List<String> getConfigurationKeys(String prefix)
+    {
+        List<String> keys = new ArrayList<>();
+        for(String key : configuration.keySet())
+        {
+            String groupKey = FriendTrackerPlugin.CONFIG_GROUP_NAME + "." + key;
+            if(groupKey.startsWith(prefix)) keys.add(groupKey);
+        }
+
+        return keys;
+    }
+}
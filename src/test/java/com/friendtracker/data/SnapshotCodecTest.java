@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.SkillPool;
+import com.friendtracker.friends.SnapshotHistory;
+import com.google.common.base.Strings;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+import static com.friendtracker.HiscoreFixtures.START;
+import static com.friendtracker.HiscoreFixtures.result;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SnapshotCodecTest
+{
+    @Test
+    public void testRoundTripRandomHistories() throws IOException
+    {
+        Random random = new Random(3);
+
+        for(int i = 0; i < 50; i++)
+        {
+            Friend friend = randomFriend(random, random.nextInt(40));
+
+            assertDecodesTo(friend, SnapshotCodec.decode(SnapshotCodec.encode(friend)));
+        }
+    }
+
+    @Test
+    public void testDecodesSnapshotsInAnyOrder() throws IOException
+    {
+        Random random = new Random(5);
+        Friend friend = randomFriend(random, 40);
+        byte[] data = SnapshotCodec.encode(friend);
+
+        List<Instant> instants = new ArrayList<>(friend.getHiscoreSnapshots().instants());
+        List<List<Instant>> orders = new ArrayList<>();
+        orders.add(new ArrayList<>(instants));
+        Collections.reverse(instants);
+        orders.add(new ArrayList<>(instants));
+        Collections.shuffle(instants, random);
+        orders.add(instants);
+
+        for(List<Instant> order : orders)
+        {
+            SnapshotHistory decoded = SnapshotCodec.decode(data).getHiscoreSnapshots();
+
+            for(Instant instant : order)
+            {
+                HiscoreResult expected = friend.getHiscoreSnapshots().get(instant);
+                HiscoreResult result = decoded.get(instant);
+
+                assertEquals(expected.getPlayer(), result.getPlayer());
+                for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+                {
+                    Skill skill = expected.getSkill(hiscoreSkill);
+                    assertEquals(skill != null ? skill : SkillPool.UNRANKED, result.getSkill(hiscoreSkill));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyHistory() throws IOException
+    {
+        Friend friend = new Friend("id", "Zezima", "Old Name");
+
+        Friend decoded = SnapshotCodec.decode(SnapshotCodec.encode(friend));
+
+        assertDecodesTo(friend, decoded);
+        assertTrue(decoded.getHiscoreSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testUnrankedAndMissingSkills() throws IOException
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        skills.put(HiscoreSkill.OVERALL, new Skill(100, 50, 100_000));
+        skills.put(HiscoreSkill.ATTACK, SkillPool.UNRANKED);
+        skills.put(HiscoreSkill.ZULRAH, new Skill(-1, 12, -1));
+        HiscoreResult result = new HiscoreResult("Zezima", skills);
+
+        Friend friend = new Friend("id", "Zezima");
+        friend.addSnapshot(START, result);
+
+        HiscoreResult decoded = SnapshotCodec.decode(SnapshotCodec.encode(friend)).getMostRecentResult();
+
+        assertEquals(new Skill(100, 50, 100_000), decoded.getSkill(HiscoreSkill.OVERALL));
+        assertEquals(new Skill(-1, 12, -1), decoded.getSkill(HiscoreSkill.ZULRAH));
+        // Missing skills are stored as unranked
+        assertEquals(SkillPool.UNRANKED, decoded.getSkill(HiscoreSkill.ATTACK));
+        assertEquals(SkillPool.UNRANKED, decoded.getSkill(HiscoreSkill.DEFENCE));
+    }
+
+    @Test
+    public void testValidityIntervals() throws IOException
+    {
+        TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+        TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+        snapshots.put(START, result("Zezima", 1_000));
+        validUntil.put(START, START.plusSeconds(3600).plusNanos(5));
+        snapshots.put(START.plusSeconds(7200), result("Zezima", 2_000));
+        snapshots.put(START.plusSeconds(9000), result("Zezima", 3_000));
+        validUntil.put(START.plusSeconds(9000), START.plusSeconds(90_000));
+
+        Friend friend = new Friend("id", "Zezima");
+        friend.setHiscoreSnapshots(new SnapshotHistory(snapshots, validUntil));
+
+        Friend decoded = SnapshotCodec.decode(SnapshotCodec.encode(friend));
+
+        assertEquals(validUntil, decoded.getHiscoreSnapshots().validityIntervals());
+        assertDecodesTo(friend, decoded);
+    }
+
+    @Test
+    public void testSkillsWrittenByName() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, SnapshotCodec.FORMAT_VERSION);
+        SnapshotCodec.writeVarLong(out, 0);
+        SnapshotCodec.writeVarLong(out, 1);
+        SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(START.getEpochSecond()));
+        SnapshotCodec.writeVarLong(out, 0);
+        SnapshotCodec.writeVarLong(out, 0);
+        SnapshotCodec.writeVarLong(out, 0);
+        SnapshotCodec.writeVarLong(out, 2);
+        // A skill outside the storage order, then one this version does not know
+        writeSkillByName(out, "ATTACK", 10, 40, 40_000);
+        writeSkillByName(out, "NOT_A_SKILL", 1, 2, 3);
+        out.flush();
+
+        HiscoreResult decoded = SnapshotCodec.decode(bytes.toByteArray()).getMostRecentResult();
+
+        assertEquals(new Skill(10, 40, 40_000), decoded.getSkill(HiscoreSkill.ATTACK));
+        assertEquals(SkillPool.UNRANKED, decoded.getSkill(HiscoreSkill.OVERALL));
+    }
+
+    @Test
+    public void testReadsEarlierVersions() throws IOException
+    {
+        Random random = new Random(7);
+
+        for(int version = 1; version < SnapshotCodec.FORMAT_VERSION; version++)
+        {
+            for(int i = 0; i < 20; i++)
+            {
+                Friend friend = randomFriend(random, random.nextInt(20));
+                if(version == 1)
+                {
+                    // Version 1 has no validity intervals
+                    friend.setHiscoreSnapshots(new SnapshotHistory(friend.getHiscoreSnapshots().toMap()));
+                }
+
+                Friend decoded = SnapshotCodec.decode(encodeLegacy(friend, version));
+
+                assertDecodesTo(friend, decoded);
+                assertDecodesTo(friend, SnapshotCodec.decode(SnapshotCodec.encode(decoded)));
+            }
+        }
+    }
+
+    /**
+     * Asserts that a Friend read back from saved data holds the same names and snapshots as the one saved.
+     */
+    static void assertDecodesTo(Friend expected, Friend decoded)
+    {
+        assertEquals(expected.getID(), decoded.getID());
+        assertEquals(expected.getName(), decoded.getName());
+        assertEquals(expected.getPreviousNames(), decoded.getPreviousNames());
+
+        SnapshotHistory expectedHistory = expected.getHiscoreSnapshots();
+        SnapshotHistory decodedHistory = decoded.getHiscoreSnapshots();
+        assertEquals(expectedHistory.instants(), decodedHistory.instants());
+        assertEquals(expectedHistory.validityIntervals(), decodedHistory.validityIntervals());
+
+        for(Instant instant : expectedHistory.instants())
+        {
+            HiscoreResult expectedResult = expectedHistory.get(instant);
+            HiscoreResult decodedResult = decodedHistory.get(instant);
+
+            assertEquals(expectedResult.getPlayer(), decodedResult.getPlayer());
+            for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+            {
+                Skill skill = expectedResult.getSkill(hiscoreSkill);
+                assertEquals(skill != null ? skill : SkillPool.UNRANKED, decodedResult.getSkill(hiscoreSkill));
+            }
+        }
+    }
+
+    private static Friend randomFriend(Random random, int snapshotCount)
+    {
+        Friend friend = new Friend("id" + random.nextInt(), "Player " + random.nextInt(100));
+        if(random.nextBoolean()) friend.getPreviousNames().add("Old " + random.nextInt(100));
+
+        TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+        TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        Instant instant = START;
+
+        for(int i = 0; i < snapshotCount; i++)
+        {
+            instant = instant.plusSeconds(random.nextInt(200_000) + 1).plusNanos(random.nextInt(1_000_000_000));
+
+            for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+            {
+                int roll = random.nextInt(10);
+                if(roll == 0) skills.remove(hiscoreSkill);
+                else if(roll == 1) skills.put(hiscoreSkill, SkillPool.UNRANKED);
+                else if(roll < 5 || !skills.containsKey(hiscoreSkill))
+                {
+                    skills.put(hiscoreSkill, new Skill(random.nextInt(2_000_000), random.nextInt(99) + 1, random.nextInt(200_000_000)));
+                }
+            }
+
+            String player = random.nextInt(4) == 0 ? null : random.nextInt(4) == 0 ? "Alt " + random.nextInt(3) : friend.getName();
+            snapshots.put(instant, new HiscoreResult(player, new EnumMap<>(skills)));
+
+            if(random.nextInt(3) == 0)
+            {
+                instant = instant.plusSeconds(random.nextInt(100_000)).plusNanos(random.nextInt(1_000_000_000));
+                validUntil.put(snapshots.lastKey(), instant);
+            }
+        }
+
+        friend.setHiscoreSnapshots(new SnapshotHistory(snapshots, validUntil));
+
+        return friend;
+    }
+
+    /**
+     * Encodes the given Friend as a version before the name dictionary, writing the player name in every snapshot.
+     */
+    private static byte[] encodeLegacy(Friend friend, int version) throws IOException
+    {
+        assertFalse(version >= SnapshotCodec.FORMAT_VERSION);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(version);
+        out.writeUTF(friend.getID());
+        out.writeUTF(friend.getName());
+        SnapshotCodec.writeVarLong(out, friend.getPreviousNames().size());
+        for(String previousName : friend.getPreviousNames())
+        {
+            out.writeUTF(previousName);
+        }
+
+        TreeMap<Instant, HiscoreResult> snapshots = friend.getHiscoreSnapshots().toMap();
+        Map<Instant, Instant> validUntil = friend.getHiscoreSnapshots().validityIntervals();
+        SnapshotCodec.SkillDeltas skills = new SnapshotCodec.SkillDeltas();
+        long previousSeconds = 0;
+
+        SnapshotCodec.writeVarLong(out, snapshots.size());
+        for(Map.Entry<Instant, HiscoreResult> entry : snapshots.entrySet())
+        {
+            Instant instant = entry.getKey();
+            SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(instant.getEpochSecond() - previousSeconds));
+            SnapshotCodec.writeVarLong(out, instant.getNano());
+            out.writeUTF(Strings.nullToEmpty(entry.getValue().getPlayer()));
+            previousSeconds = instant.getEpochSecond();
+
+            if(version > 1)
+            {
+                Instant until = validUntil.get(instant);
+                if(until == null)
+                {
+                    SnapshotCodec.writeVarLong(out, 0);
+                }
+                else
+                {
+                    SnapshotCodec.writeVarLong(out, until.getEpochSecond() - instant.getEpochSecond() + 1);
+                    SnapshotCodec.writeVarLong(out, until.getNano());
+                }
+            }
+
+            skills.write(out, entry.getValue());
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeHeader(DataOutputStream out, int version) throws IOException
+    {
+        out.writeByte(version);
+        out.writeUTF("id");
+        out.writeUTF("Zezima");
+        SnapshotCodec.writeVarLong(out, 0);
+    }
+
+    private static void writeSkillByName(DataOutputStream out, String name, long rank, long level, long experience) throws IOException
+    {
+        SnapshotCodec.writeVarLong(out, 0);
+        out.writeUTF(name);
+        SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(rank + 1));
+        SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(level + 1));
+        SnapshotCodec.writeVarLong(out, SnapshotCodec.zigzag(experience + 1));
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.config.ConfigValues;
+import com.friendtracker.friends.Friend;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
+import static com.friendtracker.HiscoreFixtures.START;
+import static com.friendtracker.HiscoreFixtures.result;
+import static com.friendtracker.data.SnapshotCodecTest.assertDecodesTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotJournalTest
+{
+    private static final long ACCOUNT = 42L;
+
+    private File journalDir;
+    private File accountDir;
+    private ScheduledExecutorService executor;
+    private SnapshotJournal journal;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        journalDir = Files.createTempDirectory("friend-tracker").toFile();
+        accountDir = new File(journalDir, Long.toString(ACCOUNT));
+        executor = Executors.newSingleThreadScheduledExecutor();
+        journal = new SnapshotJournal(executor, InMemoryTrackerDataStore.config(ConfigValues.StorageOptions.FILE), Clock.systemUTC(), journalDir);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        executor.shutdownNow();
+
+        try(Stream<Path> paths = Files.walk(journalDir.toPath()))
+        {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testReplayAppliesTheJournalOverTheBase() throws IOException
+    {
+        Friend zezima = friend("a", "Zezima", 1_000);
+        journal.writeBase(TrackerDataStore.GSON, ACCOUNT, friends(zezima, friend("b", "Lynx Titan", 5_000)));
+
+        Friend renamed = friend("a", "Zezima2", 1_000);
+        renamed.addSnapshot(START.plusSeconds(60), result(1_500));
+        Friend added = friend("c", "Woox", 2_000);
+
+        journal.append(TrackerDataStore.GSON, ACCOUNT, Arrays.asList(
+                JournalRecord.friend(renamed),
+                JournalRecord.snapshot("a", START.plusSeconds(60), result(1_500)),
+                JournalRecord.remove("b"),
+                JournalRecord.friend(added),
+                JournalRecord.snapshot("c", START, result(2_000))));
+        // A record left partially written by a crash
+        Files.write(new File(accountDir, "journal.log").toPath(), "{\"type\":\"SNAP".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        Map<String, Friend> loaded = journal.load(TrackerDataStore.GSON, ACCOUNT);
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "c")), loaded.keySet());
+        assertDecodesTo(renamed, loaded.get("a"));
+        assertDecodesTo(added, loaded.get("c"));
+    }
+
+    @Test
+    public void testForEachVisitsTheSameFriendsAsLoad() throws IOException
+    {
+        journal.writeBase(TrackerDataStore.GSON, ACCOUNT, friends(friend("a", "Zezima", 1_000), friend("b", "Lynx Titan", 5_000)));
+        journal.append(TrackerDataStore.GSON, ACCOUNT, Arrays.asList(
+                JournalRecord.snapshot("a", START.plusSeconds(60), result(1_500)),
+                JournalRecord.remove("b"),
+                JournalRecord.friend(friend("c", "Woox", 2_000)),
+                JournalRecord.snapshot("c", START, result(2_000)),
+                // Re-added after its removal
+                JournalRecord.friend(friend("b", "Lynx Titan", 6_000)),
+                JournalRecord.snapshot("b", START.plusSeconds(120), result(6_000))));
+        Map<String, Friend> expected = journal.load(TrackerDataStore.GSON, ACCOUNT);
+
+        Map<String, Friend> visited = new HashMap<>();
+        journal.forEach(TrackerDataStore.GSON, ACCOUNT, friend -> assertNull(visited.put(friend.getID(), friend)));
+
+        assertEquals(expected.keySet(), visited.keySet());
+        for(Friend friend : expected.values())
+        {
+            assertDecodesTo(friend, visited.get(friend.getID()));
+        }
+    }
+
+    @Test
+    public void testCompactionFoldsTheJournalIntoTheBase() throws IOException
+    {
+        journal.writeBase(TrackerDataStore.GSON, ACCOUNT, friends(friend("a", "Zezima", 1_000)));
+        journal.append(TrackerDataStore.GSON, ACCOUNT, Collections.singletonList(JournalRecord.snapshot("a", START.plusSeconds(60), result(1_500))));
+        Map<String, Friend> expected = journal.load(TrackerDataStore.GSON, ACCOUNT);
+
+        journal.compact(TrackerDataStore.GSON, ACCOUNT);
+
+        assertFalse(new File(accountDir, "journal.log").exists());
+        assertFalse(new File(accountDir, "journal.compacting").exists());
+        assertDecodesTo(expected.get("a"), journal.load(TrackerDataStore.GSON, ACCOUNT).get("a"));
+    }
+
+    @Test
+    public void testCompactionIsDiscardedWhenTheBaseIsReplacedWhileCompacting() throws IOException
+    {
+        journal.writeBase(TrackerDataStore.GSON, ACCOUNT, friends(friend("a", "Zezima", 1_000)));
+        journal.append(TrackerDataStore.GSON, ACCOUNT, Collections.singletonList(JournalRecord.snapshot("a", START.plusSeconds(60), result(1_500))));
+
+        // Replaces the base file while the compaction is replaying the journal, outside the journal's lock
+        Friend replacement = friend("b", "Lynx Titan", 5_000);
+        Gson gson = TrackerDataStore.GSON.newBuilder()
+                .registerTypeAdapterFactory(onRead(JournalRecord.class, () -> journal.writeBase(TrackerDataStore.GSON, ACCOUNT, friends(replacement))))
+                .create();
+
+        journal.compact(gson, ACCOUNT);
+
+        Map<String, Friend> loaded = journal.load(TrackerDataStore.GSON, ACCOUNT);
+        assertEquals(Collections.singleton("b"), loaded.keySet());
+        assertDecodesTo(replacement, loaded.get("b"));
+    }
+
+    @Test
+    public void testDeleteStaleKeepsOnlyTheCurrentArchive() throws IOException
+    {
+        assertTrue(accountDir.mkdirs());
+        File[] archives = new File[3];
+        for(int i = 0; i < archives.length; i++)
+        {
+            archives[i] = new File(accountDir, "archive." + (i + 1) + ".dat");
+            assertTrue(archives[i].createNewFile());
+        }
+
+        SnapshotArchive.deleteStale(accountDir, archives[2]);
+
+        assertFalse(archives[0].exists());
+        assertFalse(archives[1].exists());
+        assertTrue(archives[2].exists());
+
+        // Writing a new base file holds every snapshot, so no archive is current
+        journal.writeBase(TrackerDataStore.GSON, ACCOUNT, friends(friend("a", "Zezima", 1_000)));
+
+        assertFalse(archives[2].exists());
+    }
+
+    /**
+     * Returns a factory that runs the given action once, before the first value of the given type is read.
+     */
+    private static TypeAdapterFactory onRead(Class<?> type, Runnable action)
+    {
+        boolean[] ran = {false};
+
+        return new TypeAdapterFactory()
+        {
+            @Override
+            public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken)
+            {
+                if(typeToken.getRawType() != type) return null;
+
+                TypeAdapter<T> delegate = gson.getDelegateAdapter(this, typeToken);
+                return new TypeAdapter<T>()
+                {
+                    @Override
+                    public void write(JsonWriter out, T value) throws IOException
+                    {
+                        delegate.write(out, value);
+                    }
+
+                    @Override
+                    public T read(JsonReader in) throws IOException
+                    {
+                        if(!ran[0])
+                        {
+                            ran[0] = true;
+                            action.run();
+                        }
+
+                        return delegate.read(in);
+                    }
+                };
+            }
+        };
+    }
+
+    private static Friend friend(String id, String name, long experience)
+    {
+        Friend friend = new Friend(id, name);
+        friend.addSnapshot(START, result(experience));
+
+        return friend;
+    }
+
+    private static Map<String, Friend> friends(Friend... friends)
+    {
+        Map<String, Friend> map = new HashMap<>();
+        for(Friend friend : friends)
+        {
+            map.put(friend.getID(), friend);
+        }
+
+        return map;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.FriendTrackerConfig;
+import com.friendtracker.config.ConfigValues;
+import com.friendtracker.friends.Friend;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import static com.friendtracker.HiscoreFixtures.result;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SnapshotRetentionTest
+{
+    private static final Instant NOW = Instant.parse("2024-06-15T12:30:00Z");
+    // Older than every range, so that it is the Friend's oldest snapshot
+    private static final Instant OLDEST = Instant.parse("2020-01-01T00:00:00Z");
+
+    @Test
+    public void testKeepsEverySnapshotOfTheLastTwoDays()
+    {
+        Friend friend = friend();
+        addSnapshots(friend, Instant.parse("2024-06-13T00:00:00Z"), NOW, Duration.ofMinutes(10));
+
+        assertTrue(retention(ConfigValues.RangeOptions.ALL).findDiscardable(friend, NOW).isEmpty());
+    }
+
+    @Test
+    public void testKeepsOneSnapshotPerHourForFourteenDaysThenOnePerDay()
+    {
+        Friend friend = friend();
+        // Fourteen days before today, then the day before that
+        addSnapshots(friend, Instant.parse("2024-06-01T00:00:00Z"), Instant.parse("2024-06-01T23:59:00Z"), Duration.ofMinutes(10));
+        addSnapshots(friend, Instant.parse("2024-05-31T00:00:00Z"), Instant.parse("2024-05-31T23:59:00Z"), Duration.ofMinutes(10));
+
+        Set<Instant> expected = new HashSet<>();
+        for(Instant instant : friend.getHiscoreSnapshots().instants())
+        {
+            if(instant.equals(OLDEST) || instant.equals(NOW)) continue;
+
+            Duration interval = instant.isBefore(Instant.parse("2024-06-01T00:00:00Z")) ? Duration.ofDays(1) : Duration.ofHours(1);
+            if(instant.getEpochSecond() % interval.getSeconds() != 0) expected.add(instant);
+        }
+
+        assertEquals(expected, retention(ConfigValues.RangeOptions.ALL).findDiscardable(friend, NOW));
+    }
+
+    @Test
+    public void testKeepsTheSnapshotsTheYearRangeStartsFrom()
+    {
+        Friend friend = friend();
+        // The day the year range starts on, which is in the daily tier, and the day before it, which is not
+        addSnapshots(friend, Instant.parse("2023-06-15T00:00:00Z"), Instant.parse("2023-06-16T23:59:00Z"), Duration.ofHours(1));
+
+        Set<Instant> expected = new HashSet<>();
+        for(int hour = 1; hour < 24; hour++)
+        {
+            expected.add(Instant.parse("2023-06-15T00:00:00Z").plus(Duration.ofHours(hour)));
+            // The year range measures from midnight at the start of the day and from 13:00 now
+            if(hour != 13) expected.add(Instant.parse("2023-06-16T00:00:00Z").plus(Duration.ofHours(hour)));
+        }
+
+        assertEquals(expected, retention(ConfigValues.RangeOptions.ALL).findDiscardable(friend, NOW));
+    }
+
+    @Test
+    public void testKeepsRangeStartsFromTheStartOfTheDay()
+    {
+        Friend friend = friend();
+        addSnapshots(friend, Instant.parse("2023-06-15T00:00:00Z"), Instant.parse("2023-06-15T12:00:00Z"), Duration.ofHours(1));
+
+        Set<Instant> expected = new HashSet<>();
+        for(int hour = 1; hour < 12; hour++)
+        {
+            expected.add(Instant.parse("2023-06-15T00:00:00Z").plus(Duration.ofHours(hour)));
+        }
+
+        // From the start of the day the year range measures from 12:00, which is within a day of its start
+        assertEquals(expected, retention(ConfigValues.RangeOptions.DAY).findDiscardable(friend, NOW));
+    }
+
+    @Test
+    public void testKeepsOldestAndNewestSnapshots()
+    {
+        Friend friend = new Friend("a", "Zezima");
+        friend.addSnapshot(Instant.parse("2020-01-02T01:00:00Z"), result(1_000));
+        friend.addSnapshot(Instant.parse("2020-01-02T02:00:00Z"), result(2_000));
+        friend.addSnapshot(Instant.parse("2020-01-02T03:00:00Z"), result(3_000));
+
+        assertEquals(new HashSet<>(Arrays.asList(Instant.parse("2020-01-02T02:00:00Z"))),
+                retention(ConfigValues.RangeOptions.ALL).findDiscardable(friend, NOW));
+
+        friend.getHiscoreSnapshots().remove(Instant.parse("2020-01-02T02:00:00Z"));
+        assertTrue(retention(ConfigValues.RangeOptions.ALL).findDiscardable(friend, NOW).isEmpty());
+    }
+
+    private static Friend friend()
+    {
+        Friend friend = new Friend("a", "Zezima");
+        friend.addSnapshot(OLDEST, result(0));
+        friend.addSnapshot(NOW, result(1_000_000));
+
+        return friend;
+    }
+
+    private static void addSnapshots(Friend friend, Instant from, Instant to, Duration step)
+    {
+        for(Instant instant = from; !instant.isAfter(to) && instant.isBefore(NOW); instant = instant.plus(step))
+        {
+            // Every snapshot differs, so none are merged into the validity interval of the one before
+            friend.addSnapshot(instant, result(instant.getEpochSecond() - OLDEST.getEpochSecond()));
+        }
+    }
+
+    private static SnapshotRetention retention(ConfigValues.RangeOptions tolerance)
+    {
+        FriendTrackerConfig config = new FriendTrackerConfig()
+        {
+            @Override
+            public ConfigValues.RangeOptions rangeTolerance()
+            {
+                return tolerance;
+            }
+        };
+
+        return new SnapshotRetention(config, null, null, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.FriendChanges;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+import static com.friendtracker.HiscoreFixtures.START;
+import static com.friendtracker.HiscoreFixtures.result;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrackerDataBackupTest
+{
+    private static final long ACCOUNT = 42L;
+    private static final long OTHER_ACCOUNT = 7L;
+
+    private File file;
+    private final Map<String, Friend> saved = new HashMap<>();
+    private final Map<String, Friend> otherSaved = new LinkedHashMap<>();
+    private boolean otherFails;
+    // "<imported ID>><saved ID>" for each merge into a saved Friend of the other account
+    private final List<String> merged = new ArrayList<>();
+    // Imported ID -> the manifest saved with it, for each Friend added to the other account
+    private final Map<String, List<String>> added = new LinkedHashMap<>();
+    private final TrackerDataStore store = new TrackerDataStore(null, null, null, Clock.systemUTC())
+    {
+        @Override
+        public boolean forEachSavedFriend(long accountHash, FriendVisitor visitor) throws IOException
+        {
+            Map<String, Friend> friends = accountHash == ACCOUNT ? saved : accountHash == OTHER_ACCOUNT ? otherSaved : null;
+            if(friends == null) return false;
+            if(accountHash == OTHER_ACCOUNT && otherFails) throw new IOException("Unreadable");
+
+            for(Friend friend : friends.values())
+            {
+                visitor.visit(friend);
+            }
+
+            return true;
+        }
+
+        @Override
+        public void mergeIntoSavedFriend(long accountHash, Friend savedFriend, Friend friend)
+        {
+            assertEquals(OTHER_ACCOUNT, accountHash);
+            merged.add(friend.getID() + ">" + savedFriend.getID());
+        }
+
+        @Override
+        public void addSavedFriend(long accountHash, Friend friend, List<String> friendIDs)
+        {
+            assertEquals(OTHER_ACCOUNT, accountHash);
+            added.put(friend.getID(), new ArrayList<>(friendIDs));
+        }
+
+        @Override
+        public void saveFriendData(FriendChanges changes)
+        {
+        }
+    };
+    private final TrackerDataBackup backup = new TrackerDataBackup(store);
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("friend-tracker", ".gz");
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void testExportThenImport() throws IOException
+    {
+        Friend friend = new Friend("a", "Zezima");
+        friend.addSnapshot(START, result(1_000));
+        saved.put(friend.getID(), friend);
+        saved.put("b", new Friend("b", "Lynx Titan"));
+
+        assertEquals(2, backup.export(file, Arrays.asList(ACCOUNT, 99L)));
+
+        List<Friend> imported = new ArrayList<>();
+        TrackerDataBackup.ImportSummary summary = backup.importFrom(file, ACCOUNT, imported::add);
+
+        assertEquals(1, summary.getAccounts());
+        assertEquals(2, summary.getFriends());
+        assertEquals(2, imported.size());
+        for(Friend importedFriend : imported)
+        {
+            Friend expected = saved.get(importedFriend.getID());
+            assertEquals(expected.getName(), importedFriend.getName());
+            assertEquals(expected.getHiscoreSnapshots().instants(), importedFriend.getHiscoreSnapshots().instants());
+        }
+    }
+
+    @Test
+    public void testOtherAccountMergesFollowTheMergeCandidateRules() throws IOException
+    {
+        otherSaved.put("a", friend("a", "Zezima", START, 100));
+        otherSaved.put("b", friend("b", "Lynx Titan", START, 500));
+
+        writeBackup(OTHER_ACCOUNT, out ->
+        {
+            // Merged by ID, whatever its result
+            writeFriend(out, friend("a", "Zezima", START.plusSeconds(60), 150));
+            // Only "a" has a lower total level
+            writeFriend(out, friend("c", "Zezima", START.plusSeconds(120), 200));
+            // Both saved Friends are valid candidates
+            writeFriend(out, friend("d", "Zezima", START.plusSeconds(180), 1_000));
+            // "a" was a valid candidate before "c" was merged into it
+            writeFriend(out, friend("e", "Zezima", START.plusSeconds(240), 170));
+            // No saved or added Friend is a valid candidate
+            writeFriend(out, friend("f", "Zezima", START.plusSeconds(300), 50));
+        });
+
+        TrackerDataBackup.ImportSummary summary = backup.importFrom(file, ACCOUNT, friend -> fail("Not the current account"));
+
+        assertEquals(1, summary.getAccounts());
+        assertEquals(4, summary.getFriends());
+        assertEquals(1, summary.getSkipped());
+        assertEquals(Arrays.asList("a>a", "c>a"), merged);
+        assertEquals(Arrays.asList("e", "f"), new ArrayList<>(added.keySet()));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "e")), new HashSet<>(added.get("e")));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "e", "f")), new HashSet<>(added.get("f")));
+    }
+
+    @Test
+    public void testOtherAccountThatFailsToLoadIsSkipped() throws IOException
+    {
+        otherSaved.put("a", friend("a", "Zezima", START, 100));
+        otherFails = true;
+
+        writeBackup(OTHER_ACCOUNT, out ->
+        {
+            writeFriend(out, friend("a", "Zezima", START.plusSeconds(60), 150));
+            writeFriend(out, friend("b", "Lynx Titan", START.plusSeconds(60), 50));
+        });
+
+        TrackerDataBackup.ImportSummary summary = backup.importFrom(file, ACCOUNT, friend -> fail("Not the current account"));
+
+        assertEquals(0, summary.getFriends());
+        assertEquals(2, summary.getSkipped());
+        assertTrue(merged.isEmpty());
+        assertTrue(added.isEmpty());
+    }
+
+    @Test
+    public void testInvalidFriendLengthFailsAsIOException() throws IOException
+    {
+        writeBackup(out ->
+        {
+            out.writeByte(2);
+            SnapshotCodec.writeVarLong(out, -1);
+        });
+        assertImportFails();
+
+        writeBackup(out ->
+        {
+            out.writeByte(2);
+            SnapshotCodec.writeVarLong(out, Integer.MAX_VALUE);
+        });
+        assertImportFails();
+    }
+
+    @Test
+    public void testTruncatedOrMalformedFriendFailsAsIOException() throws IOException
+    {
+        writeBackup(out ->
+        {
+            out.writeByte(2);
+            SnapshotCodec.writeVarLong(out, 100);
+            out.write(new byte[10]);
+        });
+        assertImportFails();
+
+        writeBackup(out ->
+        {
+            // A Friend whose name dictionary size overflows an int when decoded
+            out.writeByte(2);
+            SnapshotCodec.writeVarLong(out, 13);
+            out.writeByte(SnapshotCodec.FORMAT_VERSION);
+            out.writeUTF("a");
+            out.writeUTF("b");
+            out.writeByte(0);
+            SnapshotCodec.writeVarLong(out, 0x80000000L);
+        });
+        assertImportFails();
+    }
+
+    private interface Frames
+    {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void writeBackup(Frames frames) throws IOException
+    {
+        writeBackup(ACCOUNT, frames);
+    }
+
+    private void writeBackup(long accountHash, Frames frames) throws IOException
+    {
+        try(DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file.toPath()))))
+        {
+            out.writeInt(0x46544242);
+            out.writeByte(1);
+            out.writeByte(1);
+            out.writeLong(accountHash);
+            frames.write(out);
+            out.writeByte(0);
+        }
+    }
+
+    private static void writeFriend(DataOutputStream out, Friend friend) throws IOException
+    {
+        byte[] data = SnapshotCodec.encode(friend);
+        out.writeByte(2);
+        SnapshotCodec.writeVarLong(out, data.length);
+        out.write(data);
+    }
+
+    /**
+     * Returns a Friend with one snapshot of the given total level, which merge candidates are compared by.
+     */
+    private static Friend friend(String id, String name, Instant instant, int totalLevel)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        skills.put(HiscoreSkill.OVERALL, new Skill(1, totalLevel, 0));
+
+        Friend friend = new Friend(id, name);
+        friend.addSnapshot(instant, new HiscoreResult(name, skills));
+
+        return friend;
+    }
+
+    private void assertImportFails()
+    {
+        try
+        {
+            backup.importFrom(file, ACCOUNT, friend -> {});
+            fail("Expected the import to fail");
+        }
+        catch(IOException e)
+        {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.data;
+
+import com.friendtracker.config.ConfigValues;
+import com.friendtracker.friends.Friend;
+import com.friendtracker.friends.FriendManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
+import static com.friendtracker.HiscoreFixtures.START;
+import static com.friendtracker.HiscoreFixtures.result;
+import static com.friendtracker.data.SnapshotCodecTest.assertDecodesTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrackerDataStoreTest
+{
+    private static final long ACCOUNT = 42L;
+    private static final long OTHER_ACCOUNT = 7L;
+    // A friend as the reflective Gson of schema versions 0 and 1 wrote it
+    private static final String LEGACY_FRIEND_JSON = "{\"ID\":\"a\",\"name\":\"Zezima\",\"previousNames\":[\"Old Zezima\"],"
+            + "\"hiscoreSnapshots\":{"
+            + "\"2023-01-01T00:00:00Z\":{\"player\":\"Zezima\",\"skills\":{\"OVERALL\":{\"rank\":1,\"level\":100,\"experience\":1000}}},"
+            + "\"2023-01-02T00:00:00Z\":{\"player\":\"Zezima\",\"skills\":{\"OVERALL\":{\"rank\":1,\"level\":100,\"experience\":2000}}}}}";
+
+    private File journalDir;
+    private ScheduledExecutorService executor;
+    private SnapshotJournal journal;
+    private InMemoryTrackerDataStore store;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        journalDir = Files.createTempDirectory("friend-tracker").toFile();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        journal = new SnapshotJournal(executor, InMemoryTrackerDataStore.config(ConfigValues.StorageOptions.FILE), Clock.systemUTC(), journalDir);
+        store = new InMemoryTrackerDataStore(InMemoryTrackerDataStore.config(ConfigValues.StorageOptions.CONFIG), journal, Clock.systemUTC());
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        executor.shutdownNow();
+
+        try(Stream<Path> paths = Files.walk(journalDir.toPath()))
+        {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testSwitchingStorageCopiesEveryAccountBothWays() throws IOException
+    {
+        FriendManager friendManager = new FriendManager(ACCOUNT);
+        friendManager.add(friend("a", "Zezima", 1_000));
+        friendManager.add(friend("b", "Lynx Titan", 5_000));
+        store.saveFriendData(friendManager.takeChanges());
+
+        FriendManager otherFriendManager = new FriendManager(OTHER_ACCOUNT);
+        otherFriendManager.add(friend("c", "Woox", 2_000));
+        store.saveFriendData(otherFriendManager.takeChanges());
+
+        store.switchStorage(ConfigValues.StorageOptions.FILE);
+
+        assertEquals(ConfigValues.StorageOptions.FILE, store.getStorageMode());
+        assertTrue(journal.exists(ACCOUNT));
+        assertTrue(journal.exists(OTHER_ACCOUNT));
+
+        // Changes saved to the journal are copied back, not left behind in the config
+        Friend refreshed = new Friend("a", "Zezima");
+        refreshed.addSnapshot(START.plusSeconds(60), result(1_500));
+        friendManager.merge(refreshed, "a");
+        friendManager.remove(friendManager.getFriends().get("b"));
+        store.saveFriendData(friendManager.takeChanges());
+
+        store.switchStorage(ConfigValues.StorageOptions.CONFIG);
+
+        assertEquals(ConfigValues.StorageOptions.CONFIG, store.getStorageMode());
+        Map<String, Friend> friends = store.loadFriendData(ACCOUNT).get();
+        assertEquals(Collections.singleton("a"), friends.keySet());
+        assertDecodesTo(friendManager.getFriends().get("a"), friends.get("a"));
+        assertNull(store.configuration.get(ACCOUNT + "_Friend_b"));
+        assertDecodesTo(otherFriendManager.getFriends().get("c"), store.loadFriendData(OTHER_ACCOUNT).get().get("c"));
+    }
+
+    @Test
+    public void testSwitchIsAbandonedIfAnyAccountCannotBeRead() throws IOException
+    {
+        FriendManager friendManager = new FriendManager(ACCOUNT);
+        friendManager.add(friend("a", "Zezima", 1_000));
+        store.saveFriendData(friendManager.takeChanges());
+
+        FriendManager otherFriendManager = new FriendManager(OTHER_ACCOUNT);
+        otherFriendManager.add(friend("c", "Woox", 2_000));
+        store.saveFriendData(otherFriendManager.takeChanges());
+        // Accounts are copied in order of their hash, so the other account would be copied before this one fails
+        store.configuration.put(ACCOUNT + "_Friend_a", "not codec data");
+
+        try
+        {
+            store.switchStorage(ConfigValues.StorageOptions.FILE);
+            fail("Expected the switch to fail");
+        }
+        catch(IOException e)
+        {
+            // Expected
+        }
+
+        assertEquals(ConfigValues.StorageOptions.CONFIG, store.getStorageMode());
+        assertFalse(journal.exists(ACCOUNT));
+        assertFalse(journal.exists(OTHER_ACCOUNT));
+    }
+
+    @Test
+    public void testSavingWritesOnlyTheChangedFriends() throws IOException
+    {
+        FriendManager friendManager = new FriendManager(ACCOUNT);
+        friendManager.add(friend("a", "Zezima", 1_000));
+        friendManager.add(friend("b", "Lynx Titan", 5_000));
+        store.saveFriendData(friendManager.takeChanges());
+        store.writtenKeys.clear();
+
+        Friend refreshed = new Friend("a", "Zezima");
+        refreshed.addSnapshot(START.plusSeconds(60), result(1_500));
+        friendManager.merge(refreshed, "a");
+        store.saveFriendData(friendManager.takeChanges());
+
+        assertTrue(store.writtenKeys.contains(ACCOUNT + "_Friend_a"));
+        assertFalse(store.writtenKeys.contains(ACCOUNT + "_Friend_b"));
+        // Membership is unchanged, so the manifest is left as it is
+        assertFalse(store.writtenKeys.contains(ACCOUNT + "_FriendManifest"));
+        assertDecodesTo(friendManager.getFriends().get("a"), store.loadFriendData(ACCOUNT).get().get("a"));
+        store.writtenKeys.clear();
+
+        friendManager.remove(friendManager.getFriends().get("b"));
+        store.saveFriendData(friendManager.takeChanges());
+
+        assertFalse(store.writtenKeys.contains(ACCOUNT + "_Friend_a"));
+        assertTrue(store.writtenKeys.contains(ACCOUNT + "_FriendManifest"));
+        assertEquals("[\"a\"]", store.configuration.get(ACCOUNT + "_FriendManifest"));
+        assertNull(store.configuration.get(ACCOUNT + "_Friend_b"));
+    }
+
+    @Test
+    public void testLegacySingleKeyIsMigratedToShards() throws IOException
+    {
+        Map<String, Friend> legacyFriends = new TreeMap<>();
+        legacyFriends.put("a", friend("a", "Zezima", 1_000));
+        legacyFriends.put("b", friend("b", "Lynx Titan", 5_000));
+        store.configuration.put(ACCOUNT + "_FriendData", TrackerDataStore.GSON.toJson(legacyFriends, TrackerDataStore.MAP_TYPE));
+
+        Map<String, Friend> friends = store.loadFriendData(ACCOUNT).get();
+
+        assertEquals(legacyFriends.keySet(), friends.keySet());
+        assertDecodesTo(legacyFriends.get("a"), friends.get("a"));
+        assertDecodesTo(legacyFriends.get("b"), friends.get("b"));
+        assertNull(store.configuration.get(ACCOUNT + "_FriendData"));
+        assertNotNull(store.configuration.get(ACCOUNT + "_Friend_a"));
+        assertNotNull(store.configuration.get(ACCOUNT + "_Friend_b"));
+
+        // Read back from the shards once the legacy key is gone
+        assertDecodesTo(legacyFriends.get("b"), store.loadFriendData(ACCOUNT).get().get("b"));
+    }
+
+    @Test
+    public void testEachSchemaMigrationRecordsItsVersion() throws IOException
+    {
+        List<String> versions = new ArrayList<>();
+        store = new InMemoryTrackerDataStore(InMemoryTrackerDataStore.config(ConfigValues.StorageOptions.CONFIG), journal, Clock.systemUTC())
+        {
+            @Override
+            void setConfiguration(String key, Object value)
+            {
+                super.setConfiguration(key, value);
+                if(key.equals(ACCOUNT + "_SchemaVersion")) versions.add(value.toString());
+            }
+        };
+        // Version 0, every friend as JSON in a single key
+        store.configuration.put(ACCOUNT + "_FriendData", "{\"a\":" + LEGACY_FRIEND_JSON + "}");
+
+        Map<String, Friend> friends = store.loadFriendData(ACCOUNT).get();
+
+        assertEquals(Arrays.asList("1", "2"), versions);
+        assertEquals(String.valueOf(TrackerDataStore.SCHEMA_VERSION), store.configuration.get(ACCOUNT + "_SchemaVersion"));
+        assertNull(store.configuration.get(ACCOUNT + "_FriendData"));
+        assertFalse(store.configuration.get(ACCOUNT + "_Friend_a").startsWith("{"));
+        assertDecodesTo(legacyFriend(), friends.get("a"));
+    }
+
+    @Test
+    public void testJsonShardsAreMigratedToCodecData() throws IOException
+    {
+        // Version 1, a manifest and a JSON key per friend, saved before the version was recorded
+        store.configuration.put(ACCOUNT + "_FriendManifest", "[\"a\"]");
+        store.configuration.put(ACCOUNT + "_Friend_a", LEGACY_FRIEND_JSON);
+
+        Map<String, Friend> friends = store.loadFriendData(ACCOUNT).get();
+
+        assertEquals(String.valueOf(TrackerDataStore.SCHEMA_VERSION), store.configuration.get(ACCOUNT + "_SchemaVersion"));
+        assertFalse(store.configuration.get(ACCOUNT + "_Friend_a").startsWith("{"));
+        assertDecodesTo(legacyFriend(), friends.get("a"));
+    }
+
+    private static Friend legacyFriend()
+    {
+        Friend friend = new Friend("a", "Zezima", "Old Zezima");
+        friend.addSnapshot(START, result(1_000));
+        friend.addSnapshot(START.plus(Duration.ofDays(1)), result(2_000));
+
+        return friend;
+    }
+
+    private static Friend friend(String id, String name, long experience)
+    {
+        Friend friend = new Friend(id, name);
+        friend.addSnapshot(START, result(experience));
+
+        return friend;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import net.runelite.client.hiscore.HiscoreResult;
+import static com.friendtracker.HiscoreFixtures.result;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ActivityHistogramTest
+{
+    private static final LocalDate START = LocalDate.of(2023, 3, 1);
+    private static final List<ZoneId> ZONES = Arrays.asList(ZoneOffset.UTC, ZoneId.of("America/New_York"),
+            ZoneId.of("Asia/Kolkata"), ZoneId.of("Pacific/Chatham"));
+
+    @Test
+    public void testSpreadTotalsMatchGains()
+    {
+        for(ZoneId zone : ZONES)
+        {
+            Random random = new Random(22);
+
+            for(int i = 0; i < 20; i++)
+            {
+                // Histograms counted in place as snapshots are added, and counted again from the whole history
+                Friend friend = new Friend("id", "Zezima");
+                friend.getActivityHistogram(zone);
+                List<Instant> starts = addRandomSnapshots(random, friend, zone, random.nextInt(15) + 2);
+
+                Friend recounted = new Friend("id", "Zezima");
+                recounted.setHiscoreSnapshots(friend.getHiscoreSnapshots().copy());
+
+                assertMatchesGains(friend, friend.getActivityHistogram(zone), starts);
+                assertMatchesGains(friend, recounted.getActivityHistogram(zone), starts);
+            }
+        }
+    }
+
+    @Test
+    public void testDaysStartInZone()
+    {
+        ZoneId zone = ZoneId.of("Asia/Kolkata");
+        Friend friend = new Friend("id", "Zezima");
+
+        // From 20:00 to 04:00 in Kolkata, which is 14:30 to 22:30 of a single day in UTC
+        friend.addSnapshot(LocalDateTime.of(2023, 6, 1, 20, 0).atZone(zone).toInstant(), result(0, 0));
+        friend.addSnapshot(LocalDateTime.of(2023, 6, 2, 4, 0).atZone(zone).toInstant(), result(8_000, 10));
+
+        ActivityHistogram local = friend.getActivityHistogram(zone);
+        assertEquals(4_000, local.getXpGained(LocalDate.of(2023, 6, 1)));
+        assertEquals(4_000, local.getXpGained(LocalDate.of(2023, 6, 2)));
+        assertEquals(5, local.getKcGained(LocalDate.of(2023, 6, 1)));
+        assertEquals(5, local.getKcGained(LocalDate.of(2023, 6, 2)));
+
+        ActivityHistogram utc = friend.getActivityHistogram(ZoneOffset.UTC);
+        assertEquals(8_000, utc.getXpGained(LocalDate.of(2023, 6, 1)));
+        assertEquals(0, utc.getXpGained(LocalDate.of(2023, 6, 2)));
+        assertEquals(10, utc.getKcGained(LocalDate.of(2023, 6, 1)));
+    }
+
+    @Test
+    public void testDaylightSavingDay()
+    {
+        ZoneId zone = ZoneId.of("America/New_York");
+        Friend friend = new Friend("id", "Zezima");
+
+        // 12 March 2023 is 23 hours long in New York, and the gains span one hour before it and all of it
+        friend.addSnapshot(LocalDateTime.of(2023, 3, 11, 23, 0).atZone(zone).toInstant(), result(0, 0));
+        friend.addSnapshot(LocalDateTime.of(2023, 3, 13, 0, 0).atZone(zone).toInstant(), result(2_400, 24));
+
+        ActivityHistogram histogram = friend.getActivityHistogram(zone);
+        assertEquals(2_400 / 24, histogram.getXpGained(LocalDate.of(2023, 3, 11)));
+        assertEquals(2_400 - 2_400 / 24, histogram.getXpGained(LocalDate.of(2023, 3, 12)));
+        assertEquals(1, histogram.getKcGained(LocalDate.of(2023, 3, 11)));
+        assertEquals(23, histogram.getKcGained(LocalDate.of(2023, 3, 12)));
+        assertEquals(0, histogram.getXpGained(LocalDate.of(2023, 3, 13)));
+    }
+
+    /**
+     * Checks the gains spread between each pair of consecutive snapshots add up to the gains measured between them,
+     * and the gains spread since each snapshot add up to the gains measured since it.
+     */
+    private static void assertMatchesGains(Friend friend, ActivityHistogram histogram, List<Instant> starts)
+    {
+        SnapshotHistory history = friend.getHiscoreSnapshots();
+        ZoneId zone = histogram.getZone();
+        LocalDate end = histogram.getLastDay() != null ? histogram.getLastDay().plusDays(1) : START;
+
+        for(int i = 0; i < starts.size(); i++)
+        {
+            Instant start = starts.get(i);
+            LocalDate firstDay = history.getValidityEnd(start).atZone(zone).toLocalDate();
+
+            assertEquals(friend.xpGainedSince(start, Period.ZERO), histogram.getXpGained(firstDay, end));
+            assertEquals(friend.kcGainedSince(start, Period.ZERO), histogram.getKcGained(firstDay, end));
+
+            if(i + 1 == starts.size()) continue;
+
+            Instant next = starts.get(i + 1);
+            LocalDate lastDay = next.atZone(zone).toLocalDate().plusDays(1);
+
+            assertEquals(friend.xpGainedSince(start, Period.ZERO) - friend.xpGainedSince(next, Period.ZERO),
+                    histogram.getXpGained(firstDay, lastDay));
+            assertEquals(friend.kcGainedSince(start, Period.ZERO) - friend.kcGainedSince(next, Period.ZERO),
+                    histogram.getKcGained(firstDay, lastDay));
+        }
+    }
+
+    /**
+     * Adds snapshots that each stay valid past midnight, through an unchanged fetch the next day, so the days the
+     * gains between two snapshots are spread across are not shared with the gains of any other pair.
+     *
+     * @return the instants the snapshots were taken
+     */
+    private static List<Instant> addRandomSnapshots(Random random, Friend friend, ZoneId zone, int count)
+    {
+        List<Instant> starts = new ArrayList<>();
+        LocalDate day = START;
+        long xp = random.nextInt(1_000_000);
+        int kc = random.nextInt(100);
+
+        for(int i = 0; i < count; i++)
+        {
+            Instant start = day.atStartOfDay(zone).toInstant().plusSeconds(random.nextInt(86_000));
+            HiscoreResult result = result(xp, kc);
+            friend.addSnapshot(start, result);
+            starts.add(start);
+
+            day = day.plusDays(1);
+            friend.addSnapshot(day.atStartOfDay(zone).toInstant().plusSeconds(random.nextInt(40_000) + 1), result);
+
+            day = day.plusDays(random.nextInt(4) + 1);
+            xp += random.nextInt(500_000) + 1;
+            kc += random.nextInt(20);
+        }
+
+        return starts;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import static com.friendtracker.HiscoreFixtures.START;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class EncodedSnapshotIndexTest
+{
+    @Test
+    public void testRandomPutsAndRemovesMatchSortedMap()
+    {
+        Random random = new Random(4);
+        EncodedSnapshotIndex index = new EncodedSnapshotIndex();
+        TreeMap<Instant, Integer> expected = new TreeMap<>();
+
+        for(int i = 0; i < 2_000; i++)
+        {
+            Instant instant = START.plusSeconds(random.nextInt(300)).plusNanos(random.nextInt(3));
+
+            if(random.nextInt(3) == 0)
+            {
+                assertEquals(expected.remove(instant) != null, index.remove(instant));
+            }
+            else
+            {
+                expected.put(instant, i);
+                index.put(instant, i);
+            }
+        }
+
+        assertIndexEquals(expected, index);
+
+        // Floor, ceiling and count agree with the map on, between and beyond the rows, including instants that
+        // differ only in their nanos
+        for(int i = -2; i < 310; i++)
+        {
+            for(int nanos = 0; nanos < 4; nanos++)
+            {
+                Instant instant = START.plusSeconds(i).plusNanos(nanos);
+
+                assertEquals(expected.floorKey(instant), instantAt(index, index.floorIndex(instant)));
+                assertEquals(expected.ceilingKey(instant), instantAt(index, index.ceilingIndex(instant)));
+                assertEquals(expected.headMap(instant).size(), index.countBefore(instant));
+                assertEquals(expected.containsKey(instant), index.indexOf(instant) >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void testCopyGrowsIndependently()
+    {
+        EncodedSnapshotIndex index = new EncodedSnapshotIndex();
+        TreeMap<Instant, Integer> expected = new TreeMap<>();
+        for(int i = 0; i < 5; i++)
+        {
+            index.put(START.plusSeconds(i), i);
+            expected.put(START.plusSeconds(i), i);
+        }
+
+        EncodedSnapshotIndex copy = new EncodedSnapshotIndex(index);
+        TreeMap<Instant, Integer> expectedCopy = new TreeMap<>(expected);
+        for(int i = 5; i < 20; i++)
+        {
+            copy.put(START.minusSeconds(i), -i);
+            expectedCopy.put(START.minusSeconds(i), -i);
+        }
+        copy.remove(START);
+        expectedCopy.remove(START);
+
+        assertIndexEquals(expected, index);
+        assertIndexEquals(expectedCopy, copy);
+    }
+
+    private static void assertIndexEquals(TreeMap<Instant, Integer> expected, EncodedSnapshotIndex index)
+    {
+        assertEquals(expected.size(), index.size());
+
+        int row = 0;
+        for(Map.Entry<Instant, Integer> entry : expected.entrySet())
+        {
+            assertEquals(entry.getKey(), index.getInstant(row));
+            assertEquals(entry.getValue().intValue(), index.getSourceIndex(row));
+            row++;
+        }
+    }
+
+    private static Instant instantAt(InstantColumns columns, int row)
+    {
+        return row >= 0 ? columns.getInstant(row) : null;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.util.Arrays;
+import java.util.Collections;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+import static com.friendtracker.HiscoreFixtures.START;
+import static com.friendtracker.HiscoreFixtures.result;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class FriendManagerTest
+{
+    @Test
+    public void testRestoredChangesAreTakenAgain()
+    {
+        FriendManager friendManager = new FriendManager(1L);
+        Friend friend = new Friend("a", "Zezima");
+        friend.addSnapshot(START, result(1_000));
+        friendManager.add(friend);
+        Friend removed = new Friend("b", "Lynx Titan");
+        friendManager.add(removed);
+        friendManager.takeChanges();
+
+        friendManager.remove(removed);
+        friendManager.addSnapshot("Zezima", START.plusSeconds(60), result(2_000));
+        FriendChanges failed = friendManager.takeChanges();
+        assertFalse(friendManager.isDirty());
+
+        friendManager.addSnapshot("Zezima", START.plusSeconds(120), result(3_000));
+        friendManager.restoreChanges(failed);
+        FriendChanges retried = friendManager.takeChanges();
+
+        assertEquals(Collections.singleton("b"), retried.getRemovedFriendIDs());
+        assertEquals(Collections.singletonList("a"), retried.getFriendIDs());
+        assertNotNull(retried.getChangedFriends().get("a"));
+        assertEquals(Arrays.asList(START.plusSeconds(60), START.plusSeconds(120)), retried.getUnsavedSnapshots("a"));
+    }
+
+    @Test
+    public void testRestoreSkipsLaterDiscardsAndRemovals()
+    {
+        FriendManager friendManager = new FriendManager(1L);
+        Friend friend = new Friend("a", "Zezima");
+        friend.addSnapshot(START.minusSeconds(60), result(500));
+        Friend other = new Friend("b", "Lynx Titan");
+        other.addSnapshot(START.minusSeconds(60), result(500));
+        friendManager.add(friend);
+        friendManager.add(other);
+        friendManager.takeChanges();
+
+        friendManager.addSnapshot("Zezima", START, result(1_000));
+        friendManager.addSnapshot("Zezima", START.plusSeconds(60), result(2_000));
+        friendManager.addSnapshot("Lynx Titan", START, result(1_000));
+        FriendChanges failed = friendManager.takeChanges();
+
+        friendManager.discardSnapshots("a", Collections.singletonList(START));
+        friendManager.remove(other);
+        friendManager.restoreChanges(failed);
+        FriendChanges retried = friendManager.takeChanges();
+
+        assertEquals(Collections.singletonList(START.plusSeconds(60)), retried.getUnsavedSnapshots("a"));
+        assertEquals(Collections.singletonList(START), retried.getDiscardedSnapshots("a"));
+        assertFalse(retried.getChangedFriends().containsKey("b"));
+        assertTrue(retried.getUnsavedSnapshots("b").isEmpty());
+        assertTrue(retried.getRemovedFriendIDs().contains("b"));
+    }
+
+    @Test
+    public void testSharedSnapshotIsOnlyAddedWhereValidToMerge()
+    {
+        FriendManager friendManager = new FriendManager(1L);
+        Friend friend = new Friend("a", "Zezima");
+        friend.addSnapshot(START, result(1_000));
+        // The name has since been taken by a player with less attack xp
+        HiscoreResult renamedResult = result(5_000);
+        renamedResult.getSkills().put(HiscoreSkill.ATTACK, new Skill(1, 99, 13_034_431));
+        Friend renamed = new Friend("b", "zezima");
+        renamed.addSnapshot(START, renamedResult);
+        Friend unmeasured = new Friend("c", "Zezima");
+        friendManager.add(friend);
+        friendManager.add(renamed);
+        friendManager.add(unmeasured);
+        friendManager.takeChanges();
+
+        assertEquals(1, friendManager.addSnapshot("Zezima", START.plusSeconds(60), result(2_000)));
+
+        FriendChanges changes = friendManager.takeChanges();
+        assertEquals(Collections.singleton("a"), changes.getChangedFriends().keySet());
+        assertEquals(Collections.singletonList(START.plusSeconds(60)), changes.getUnsavedSnapshots("a"));
+        assertEquals(1, renamed.getHiscoreSnapshots().size());
+        assertTrue(unmeasured.getHiscoreSnapshots().isEmpty());
+    }
+}
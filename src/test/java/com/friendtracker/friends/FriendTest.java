@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+import static com.friendtracker.HiscoreFixtures.START;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Test;
+
+public class FriendTest
+{
+    private static final List<Period> PERIODS = Arrays.asList(Period.ofDays(1), Period.ofDays(7), Period.ofDays(30), Period.ofDays(365));
+    private static final List<Period> TOLERANCES = Arrays.asList(Period.ZERO, Period.ofDays(1), Period.ofDays(7));
+
+    @Test
+    public void testGainsBetweenMatchesGainsInTheLast()
+    {
+        Random random = new Random(11);
+
+        for(int i = 0; i < 50; i++)
+        {
+            Friend friend = randomFriend(random, random.nextInt(30) + 1);
+            Instant now = friend.getHiscoreSnapshots().lastInstant();
+
+            List<TimeWindow> windows = new ArrayList<>();
+            for(Period period : PERIODS)
+            {
+                windows.add(new TimeWindow(now.minus(period), now));
+            }
+
+            for(Period tolerance : TOLERANCES)
+            {
+                Map<TimeWindow, SkillGains> gains = friend.gainsBetween(windows, tolerance);
+
+                for(int w = 0; w < windows.size(); w++)
+                {
+                    TimeWindow window = windows.get(w);
+                    FriendGains expected = friend.gainsInTheLast(PERIODS.get(w), tolerance, now);
+                    SkillGains actual = gains.get(window);
+                    assertNotNull(window + " within " + tolerance, actual);
+
+                    assertEquals(expected.getXpGained(), actual.getXpGained());
+                    assertEquals(expected.getKcGained(), actual.getKcGained());
+                    for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+                    {
+                        assertEquals(expected.getChange().getSkill(hiscoreSkill).getRank(), actual.getRank(hiscoreSkill));
+                        assertEquals(expected.getChange().getSkill(hiscoreSkill).getLevel(), actual.getLevel(hiscoreSkill));
+                        assertEquals(expected.getChange().getSkill(hiscoreSkill).getExperience(), actual.getExperience(hiscoreSkill));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Friend randomFriend(Random random, int snapshotCount)
+    {
+        Friend friend = new Friend("id", "Zezima");
+        Instant instant = START;
+        long experience = 1_000;
+        int kc = 0;
+        int rank = 10_000;
+
+        for(int i = 0; i < snapshotCount; i++)
+        {
+            // Gaps from an hour to a few weeks, with some fetches unchanged
+            instant = instant.plus(Duration.ofHours(1 + random.nextInt(24 * 21)));
+            if(random.nextBoolean()) experience += random.nextInt(100_000);
+            if(random.nextBoolean()) kc += random.nextInt(10);
+            if(random.nextBoolean()) rank -= random.nextInt(100);
+
+            friend.addSnapshot(instant, result(experience, kc, rank));
+        }
+
+        return friend;
+    }
+
+    /**
+     * Returns a result with every skill, as fetched results have, of which the overall experience and rank and the
+     * Zulrah kill count are given.
+     */
+    private static HiscoreResult result(long experience, int kc, int rank)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+        {
+            skills.put(hiscoreSkill, SkillPool.UNRANKED);
+        }
+        skills.put(HiscoreSkill.OVERALL, new Skill(rank, 100, experience));
+        skills.put(HiscoreSkill.ZULRAH, new Skill(1, kc, -1));
+
+        return new HiscoreResult("Zezima", skills);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+import static com.friendtracker.HiscoreFixtures.result;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class GainsTableTest
+{
+    private static final Instant NOW = Instant.parse("2023-06-15T12:00:00Z");
+    private static final Clock CLOCK = Clock.fixed(NOW, ZoneOffset.UTC);
+    private static final Period TOLERANCE = Period.ofDays(1);
+
+    private final Friend zezima = new Friend("a", "Zezima");
+    private final Friend lynx = new Friend("b", "Lynx Titan");
+
+    public GainsTableTest()
+    {
+        zezima.addSnapshot(NOW.minus(Duration.ofDays(8)), result(1_000, 10));
+        zezima.addSnapshot(NOW.minus(Duration.ofDays(2)), result(5_000, 15));
+        zezima.addSnapshot(NOW.minus(Duration.ofHours(1)), result(6_000, 20));
+
+        lynx.addSnapshot(NOW.minus(Duration.ofDays(30)), result(100_000, 0));
+        lynx.addSnapshot(NOW.minus(Duration.ofDays(1)), result(200_000, 1));
+        lynx.addSnapshot(NOW.minus(Duration.ofHours(1)), result(400_000, 3));
+    }
+
+    @Test
+    public void testWeek()
+    {
+        GainsTable table = GainsTable.evaluate(Arrays.asList(zezima, lynx), CLOCK, Period.ofWeeks(1), TOLERANCE);
+
+        assertEquals(NOW, table.getInstant());
+        assertEquals(Arrays.asList(zezima, lynx), table.getFriends());
+
+        // The snapshot eight days ago was the last before the week began, and within a day of it
+        assertEquals(5_000, table.getXpGained(zezima));
+        assertEquals(10, table.getKcGained(zezima));
+        assertEquals(new Skill(0, 0, 5_000), table.get(zezima).getChange().getSkill(HiscoreSkill.OVERALL));
+
+        // Lynx Titan has no snapshot within a day of the week beginning, so falls back to the first after it
+        assertEquals(200_000, table.getXpGained(lynx));
+        assertEquals(2, table.getKcGained(lynx));
+    }
+
+    @Test
+    public void testDay()
+    {
+        GainsTable table = GainsTable.evaluate(Arrays.asList(zezima, lynx), CLOCK, Period.ofDays(1), Period.ZERO);
+
+        // Zezima's snapshot two days ago is outside the tolerance, so the first after the day began is used
+        assertEquals(0, table.getXpGained(zezima));
+        // Lynx Titan has a snapshot exactly when the day began
+        assertEquals(200_000, table.getXpGained(lynx));
+        assertEquals(2, table.getKcGained(lynx));
+    }
+
+    @Test
+    public void testAllTime()
+    {
+        GainsTable table = GainsTable.evaluate(Arrays.asList(zezima, lynx), CLOCK, Period.ZERO, TOLERANCE);
+
+        assertEquals(6_000, table.getXpGained(zezima));
+        assertEquals(20, table.getKcGained(zezima));
+        assertEquals(400_000, table.getXpGained(lynx));
+    }
+
+    @Test
+    public void testMatchesGainsSinceClockInstant()
+    {
+        for(Period range : Arrays.asList(Period.ofDays(1), Period.ofDays(3), Period.ofWeeks(1), Period.ofDays(30)))
+        {
+            GainsTable table = GainsTable.evaluate(Arrays.asList(zezima, lynx), CLOCK, range, TOLERANCE);
+
+            for(Friend friend : Arrays.asList(zezima, lynx))
+            {
+                assertEquals(friend.xpGainedSince(NOW.minus(range), TOLERANCE), table.getXpGained(friend));
+                assertEquals(friend.kcGainedSince(NOW.minus(range), TOLERANCE), table.getKcGained(friend));
+                assertEquals(friend.xpGainedInTheLast(range, TOLERANCE, NOW), table.getXpGained(friend));
+            }
+        }
+    }
+
+    @Test
+    public void testLaterClock()
+    {
+        // Five days on, the week begins at Zezima's second snapshot
+        Clock later = Clock.offset(CLOCK, Duration.ofDays(5));
+        GainsTable table = GainsTable.evaluate(Arrays.asList(zezima, lynx), later, Period.ofWeeks(1), TOLERANCE);
+
+        assertEquals(NOW.plus(Duration.ofDays(5)), table.getInstant());
+        assertEquals(1_000, table.getXpGained(zezima));
+        assertEquals(5, table.getKcGained(zezima));
+    }
+
+    @Test
+    public void testEndOfMinuteIsNeverBeforeSnapshotsTakenDuringIt()
+    {
+        Clock clock = Clock.fixed(NOW.plusSeconds(30), ZoneOffset.UTC);
+        Clock gainsClock = GainsTable.endOfMinute(clock);
+        zezima.addSnapshotNow(clock, result(7_000, 25));
+
+        assertEquals(NOW.plusSeconds(60), gainsClock.instant());
+        assertEquals(gainsClock.instant(), GainsTable.endOfMinute(Clock.fixed(NOW.plusMillis(59_999), ZoneOffset.UTC)).instant());
+
+        // The window ends after the snapshot just taken, so measures up to it
+        Instant end = gainsClock.instant();
+        TimeWindow day = new TimeWindow(end.minus(Duration.ofDays(1)), end);
+        assertEquals(NOW.plusSeconds(30), zezima.gainsBetween(Arrays.asList(day), TOLERANCE).get(day).getTo());
+    }
+
+    @Test
+    public void testUnmeasuredFriend()
+    {
+        GainsTable table = GainsTable.evaluate(Arrays.asList(zezima), CLOCK, Period.ofWeeks(1), TOLERANCE);
+
+        assertEquals(null, table.get(lynx));
+        assertEquals(0, table.getXpGained(lynx));
+        assertEquals(0, table.getKcGained(lynx));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import com.friendtracker.Benchmark;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntSupplier;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Times and measures the allocation of {@link HiscoreDifference} against the copied difference it replaced, both
+ * to build a difference and to read a skill from it. Reading a skill allocates a Skill unless the difference is
+ * unranked or unchanged, so the reads are measured for a changed, an unchanged and an unranked skill.
+ *
+ * <p>Run from its main method with the test classpath.</p>
+ */
+public class HiscoreDifferenceBenchmark
+{
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+    private static final int OPERATIONS = 100_000;
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(1);
+        HiscoreResult low = result(random);
+        HiscoreResult high = result(random);
+        // Attack changes, Strength is unchanged and Zulrah is unranked in both results
+        high.getSkills().put(HiscoreSkill.STRENGTH, low.getSkill(HiscoreSkill.STRENGTH));
+        high.getSkills().put(HiscoreSkill.ZULRAH, SkillPool.UNRANKED);
+        low.getSkills().put(HiscoreSkill.ZULRAH, SkillPool.UNRANKED);
+
+        HiscoreResult copied = copiedDifference(high, low);
+        HiscoreDifference lazy = new HiscoreDifference(high, low);
+
+        System.out.printf("%-24s %14s %14s %14s %14s%n", "operation", "copied ns/op", "lazy ns/op", "copied B/op", "lazy B/op");
+        print("build",
+                () -> copiedDifference(high, low).getPlayer().length(),
+                () -> new HiscoreDifference(high, low).getPlayer().length());
+        for(HiscoreSkill hiscoreSkill : new HiscoreSkill[]{HiscoreSkill.ATTACK, HiscoreSkill.STRENGTH, HiscoreSkill.ZULRAH})
+        {
+            print("read " + hiscoreSkill.name().toLowerCase(),
+                    () -> copied.getSkill(hiscoreSkill).getLevel(),
+                    () -> lazy.getSkill(hiscoreSkill).getLevel());
+        }
+        print("build and read overall",
+                () -> copiedDifference(high, low).getSkill(HiscoreSkill.OVERALL).getLevel(),
+                () -> new HiscoreDifference(high, low).getSkill(HiscoreSkill.OVERALL).getLevel());
+    }
+
+    private static void print(String operation, IntSupplier copied, IntSupplier lazy)
+    {
+        System.out.printf("%-24s %14.1f %14.1f %14.1f %14.1f%n", operation,
+                Benchmark.nanosPerOperation(copied), Benchmark.nanosPerOperation(lazy),
+                Benchmark.bytesPerOperation(copied, OPERATIONS), Benchmark.bytesPerOperation(lazy, OPERATIONS));
+    }
+
+    /**
+     * The difference as it was built before {@link HiscoreDifference}, with a new Skill for every skill.
+     */
+    private static HiscoreResult copiedDifference(HiscoreResult highResult, HiscoreResult lowResult)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+
+        for(HiscoreSkill hiscoreSkill : SKILLS)
+        {
+            Skill highSkill = highResult.getSkill(hiscoreSkill);
+            Skill lowSkill = lowResult.getSkill(hiscoreSkill);
+
+            skills.put(hiscoreSkill, highSkill != null && lowSkill != null
+                    ? new Skill((int) HiscoreDifference.skillPropDiff(highSkill.getRank(), lowSkill.getRank()),
+                            (int) HiscoreDifference.skillPropDiff(highSkill.getLevel(), lowSkill.getLevel()),
+                            HiscoreDifference.skillPropDiff(highSkill.getExperience(), lowSkill.getExperience()))
+                    : null);
+        }
+
+        return new HiscoreResult(highResult.getPlayer(), skills);
+    }
+
+    private static HiscoreResult result(Random random)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        for(HiscoreSkill hiscoreSkill : SKILLS)
+        {
+            skills.put(hiscoreSkill, new Skill(random.nextInt(100_000), random.nextInt(99) + 1, random.nextInt(13_034_431)));
+        }
+
+        return new HiscoreResult("Zezima", skills);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class HiscoreDifferenceTest
+{
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+
+    @Test
+    public void testEqualsTheCopiedDifference()
+    {
+        Random random = new Random(13);
+
+        for(int i = 0; i < 100; i++)
+        {
+            HiscoreResult high = randomResult(random);
+            HiscoreResult low = randomResult(random);
+
+            HiscoreResult expected = copiedDifference(high, low);
+            HiscoreDifference actual = new HiscoreDifference(high, low);
+
+            assertEquals(expected, actual);
+            assertEquals(actual, expected);
+            assertEquals(expected.hashCode(), actual.hashCode());
+            for(HiscoreSkill hiscoreSkill : SKILLS)
+            {
+                assertEquals(hiscoreSkill.name(), expected.getSkill(hiscoreSkill), actual.getSkill(hiscoreSkill));
+            }
+        }
+    }
+
+    @Test
+    public void testComputesOnlyTheSkillsRead()
+    {
+        Random random = new Random(17);
+        CountingMap highSkills = new CountingMap(randomResult(random).getSkills());
+        CountingMap lowSkills = new CountingMap(randomResult(random).getSkills());
+
+        HiscoreDifference difference = new HiscoreDifference(new HiscoreResult("Zezima", highSkills),
+                new HiscoreResult("Zezima", lowSkills));
+        assertTrue(highSkills.reads.isEmpty());
+        assertTrue(lowSkills.reads.isEmpty());
+
+        difference.getSkill(HiscoreSkill.ATTACK);
+        difference.getSkill(HiscoreSkill.ZULRAH);
+        difference.getSkill(HiscoreSkill.ATTACK);
+
+        Map<Object, Integer> expected = new HashMap<>();
+        expected.put(HiscoreSkill.ATTACK, 2);
+        expected.put(HiscoreSkill.ZULRAH, 1);
+        assertEquals(expected, highSkills.reads);
+        assertEquals(expected, lowSkills.reads);
+    }
+
+    /**
+     * The difference as it was built before {@link HiscoreDifference}: every skill of both results subtracted up
+     * front into a new map.
+     */
+    private static HiscoreResult copiedDifference(HiscoreResult highResult, HiscoreResult lowResult)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+
+        for(HiscoreSkill hiscoreSkill : SKILLS)
+        {
+            Skill highSkill = highResult.getSkill(hiscoreSkill);
+            Skill lowSkill = lowResult.getSkill(hiscoreSkill);
+
+            Skill skill = null;
+            if(highSkill != null && lowSkill != null)
+            {
+                skill = new Skill(
+                        (int) copiedPropDiff(highSkill.getRank(), lowSkill.getRank()),
+                        (int) copiedPropDiff(highSkill.getLevel(), lowSkill.getLevel()),
+                        copiedPropDiff(highSkill.getExperience(), lowSkill.getExperience()));
+            }
+
+            skills.put(hiscoreSkill, skill);
+        }
+
+        return new HiscoreResult(highResult.getPlayer(), skills);
+    }
+
+    private static long copiedPropDiff(long high, long low)
+    {
+        return high - (low == -1 ? 0 : low);
+    }
+
+    /**
+     * Returns a result in which most skills are ranked, some unranked and a few missing.
+     */
+    private static HiscoreResult randomResult(Random random)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+
+        for(HiscoreSkill hiscoreSkill : SKILLS)
+        {
+            int roll = random.nextInt(10);
+            if(roll == 0) continue;
+
+            skills.put(hiscoreSkill, roll < 3
+                    ? SkillPool.UNRANKED
+                    : new Skill(random.nextInt(100_000), random.nextInt(99) + 1, random.nextInt(13_034_431)));
+        }
+
+        return new HiscoreResult("Zezima", skills);
+    }
+
+    /**
+     * A skills map that counts the reads of each skill.
+     */
+    private static class CountingMap extends HashMap<HiscoreSkill, Skill>
+    {
+        private final Map<Object, Integer> reads = new HashMap<>();
+
+        CountingMap(Map<HiscoreSkill, Skill> skills)
+        {
+            super(skills);
+        }
+
+        @Override
+        public Skill get(Object key)
+        {
+            reads.merge(key, 1, Integer::sum);
+            return super.get(key);
+        }
+    }
+}
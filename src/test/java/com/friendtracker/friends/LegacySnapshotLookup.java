@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.time.Period;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * The snapshot lookup {@link Friend#getSnapshotInstantAt} replaced, kept as an oracle for tests and benchmarks. It
+ * collects the bounds of every validity interval from the tolerance onwards into a sorted set and streams over it
+ * once for each rule.
+ */
+class LegacySnapshotLookup
+{
+    private final NavigableMap<Instant, ?> snapshots;
+    private final Map<Instant, Instant> validUntil;
+
+    /**
+     * @param snapshots the snapshots of the history keyed by the instant they were taken
+     * @param validUntil the last instant each snapshot with a validity interval was fetched unchanged
+     */
+    LegacySnapshotLookup(NavigableMap<Instant, ?> snapshots, Map<Instant, Instant> validUntil)
+    {
+        this.snapshots = snapshots;
+        this.validUntil = validUntil;
+    }
+
+    Optional<Instant> getSnapshotInstantAt(Instant instant, Period tolerance)
+    {
+        Optional<Instant> target;
+
+        // The snapshot at the given instant, or unchanged across it
+        target = snapshots.keySet().stream()
+                .filter(start -> start.compareTo(instant) <= 0 && intervalEnd(start).compareTo(instant) >= 0)
+                .max(Comparator.naturalOrder());
+
+        if(target.isPresent()) return target;
+
+        // Each bound of a validity interval maps to the instant of its snapshot
+        NavigableMap<Instant, Instant> bounds = validityBounds(instant.minus(tolerance));
+        NavigableSet<Instant> hiscoreSet = bounds.navigableKeySet();
+
+        // The snapshot closest to the given Instant greater than it within the configured tolerance
+        target = hiscoreSet.stream()
+                .filter(inst -> inst.compareTo(instant) >= 0 && inst.compareTo(instant.plus(tolerance)) <= 0)
+                .min(Comparator.naturalOrder());
+
+        if(target.isPresent()) return target.map(bounds::get);
+
+        // The snapshot closest to the given Instant less than it within the configured tolerance
+        target = hiscoreSet.stream()
+                .filter(inst -> inst.compareTo(instant) <= 0)
+                .max(Comparator.naturalOrder());
+
+        if(target.isPresent()) return target.map(bounds::get);
+
+        // The snapshot closest to the given Instant greater than it
+        return hiscoreSet.stream()
+                .filter(inst -> inst.compareTo(instant) >= 0)
+                .min(Comparator.naturalOrder())
+                .map(bounds::get);
+    }
+
+    private NavigableMap<Instant, Instant> validityBounds(Instant from)
+    {
+        // The snapshot before the given instant may be valid until after it
+        Instant first = snapshots.floorKey(from);
+        if(first == null) first = from;
+
+        NavigableMap<Instant, Instant> bounds = new TreeMap<>();
+        for(Instant start : snapshots.tailMap(first, true).keySet())
+        {
+            bounds.put(start, start);
+            bounds.putIfAbsent(intervalEnd(start), start);
+        }
+
+        return bounds.tailMap(from, true);
+    }
+
+    private Instant intervalEnd(Instant start)
+    {
+        return validUntil.getOrDefault(start, start);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.HiscoreSkillType;
+import net.runelite.client.hiscore.Skill;
+import static com.friendtracker.HiscoreFixtures.START;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RateTrackerTest
+{
+    // The skills fitted: overall and a skill by experience, a boss by kill count
+    private static final HiscoreSkill[] FITTED = {HiscoreSkill.OVERALL, HiscoreSkill.ATTACK, HiscoreSkill.ZULRAH};
+
+    @Test
+    public void testMatchesDirectFitAsSnapshotsAreAdded()
+    {
+        Random random = new Random(23);
+
+        for(Duration window : new Duration[]{Duration.ofHours(6), Duration.ofDays(1), Duration.ofDays(7)})
+        {
+            for(int i = 0; i < 10; i++)
+            {
+                Friend friend = new Friend("id", "Zezima");
+                Instant instant = START;
+                long[] values = {10_000_000, 500_000, 50};
+
+                for(int snapshot = 0; snapshot < 200; snapshot++)
+                {
+                    instant = instant.plusSeconds(random.nextInt(4 * 3_600) + 1);
+
+                    // Unchanged fetches extend the validity of the newest snapshot, which may already be extended
+                    if(snapshot > 0 && random.nextInt(3) == 0)
+                    {
+                        friend.addSnapshot(instant, friend.getHiscoreSnapshots().lastEntry().getValue());
+                    }
+                    else
+                    {
+                        for(int skill = 0; skill < values.length; skill++)
+                        {
+                            values[skill] += random.nextInt(3) == 0 ? 0 : random.nextInt(skill == 2 ? 5 : 50_000);
+                        }
+                        friend.addSnapshot(instant, result(values, random.nextInt(10) == 0));
+                    }
+
+                    assertMatchesDirectFit(friend, window);
+                }
+
+                // Fitted again from the whole history
+                Friend refitted = new Friend("id", "Zezima");
+                refitted.setHiscoreSnapshots(friend.getHiscoreSnapshots().copy());
+                assertMatchesDirectFit(refitted, window);
+            }
+        }
+    }
+
+    @Test
+    public void testOriginRebase()
+    {
+        // Snapshots every half hour for four days move the window far past the first origin many times over
+        Friend friend = new Friend("id", "Zezima");
+        Duration window = Duration.ofHours(2);
+        long[] values = {10_000_000, 500_000, 50};
+
+        for(int snapshot = 0; snapshot < 200; snapshot++)
+        {
+            values[0] += 1_000 + snapshot;
+            values[1] += snapshot % 3 == 0 ? 0 : 500;
+            values[2] += snapshot % 4 == 0 ? 1 : 0;
+            friend.addSnapshot(START.plusSeconds(snapshot * 1_800L), result(values, false));
+
+            assertMatchesDirectFit(friend, window);
+        }
+    }
+
+    @Test
+    public void testSubtractsSnapshotsLeavingWindow()
+    {
+        Friend friend = new Friend("id", "Zezima");
+        Duration window = Duration.ofHours(2);
+
+        // A burst of fast gains, then slow gains once the burst has left the window
+        friend.addSnapshot(START, result(new long[]{0, 0, 0}, false));
+        friend.addSnapshot(START.plusSeconds(3_600), result(new long[]{100_000, 0, 0}, false));
+        assertEquals(100_000, friend.getSkillRates(window).getRatePerHour(HiscoreSkill.OVERALL), 1e-6);
+
+        friend.addSnapshot(START.plusSeconds(4 * 3_600), result(new long[]{100_100, 0, 0}, false));
+        friend.addSnapshot(START.plusSeconds(5 * 3_600), result(new long[]{100_200, 0, 0}, false));
+        assertEquals(100, friend.getSkillRates(window).getRatePerHour(HiscoreSkill.OVERALL), 1e-6);
+
+        // Fetched unchanged for an hour more, so the player was idle for half the window
+        friend.addSnapshot(START.plusSeconds(6 * 3_600), result(new long[]{100_200, 0, 0}, false));
+        assertMatchesDirectFit(friend, window);
+        assertTrue(friend.getSkillRates(window).getRatePerHour(HiscoreSkill.OVERALL) < 100);
+    }
+
+    /**
+     * Checks the rates against a least-squares fit made directly over the observations in the window: each
+     * snapshot taken within the window before the newest, when it was taken and, if fetched again unchanged, at the
+     * end of its validity.
+     */
+    private static void assertMatchesDirectFit(Friend friend, Duration window)
+    {
+        SnapshotHistory history = friend.getHiscoreSnapshots();
+        SkillRates rates = friend.getSkillRates(window);
+        Instant newest = history.lastInstant();
+
+        for(HiscoreSkill hiscoreSkill : FITTED)
+        {
+            List<double[]> observations = new ArrayList<>();
+            for(Instant instant : history.instants().tailSet(newest.minus(window), true))
+            {
+                long value = value(hiscoreSkill, history.get(instant));
+                if(value == -1) continue;
+
+                Instant end = history.getValidityEnd(instant);
+                observations.add(new double[]{hours(instant), value});
+                if(!end.equals(instant)) observations.add(new double[]{hours(end), value});
+            }
+
+            double expected = slope(observations);
+            double actual = rates.getRatePerHour(hiscoreSkill);
+            String message = hiscoreSkill + " at " + newest + " over " + window;
+
+            // The running sums cancel values in the millions, so a flat rate may be off by a fraction of a unit
+            if(Double.isNaN(expected)) assertTrue(message, Double.isNaN(actual));
+            else assertEquals(message, expected, actual, 1e-6 * Math.max(1_000, Math.abs(expected)));
+        }
+    }
+
+    /**
+     * Returns the slope of the least-squares line through the given time and value pairs, summed about their means.
+     */
+    private static double slope(List<double[]> observations)
+    {
+        if(observations.size() < 2) return Double.NaN;
+
+        double meanTime = 0;
+        double meanValue = 0;
+        for(double[] observation : observations)
+        {
+            meanTime += observation[0] / observations.size();
+            meanValue += observation[1] / observations.size();
+        }
+
+        double covariance = 0;
+        double variance = 0;
+        for(double[] observation : observations)
+        {
+            covariance += (observation[0] - meanTime) * (observation[1] - meanValue);
+            variance += (observation[0] - meanTime) * (observation[0] - meanTime);
+        }
+
+        return variance > 0 ? covariance / variance : Double.NaN;
+    }
+
+    private static double hours(Instant instant)
+    {
+        return Duration.between(START, instant).getSeconds() / 3600.0;
+    }
+
+    private static long value(HiscoreSkill hiscoreSkill, HiscoreResult result)
+    {
+        Skill skill = result.getSkill(hiscoreSkill);
+        if(skill == null) return -1;
+
+        return hiscoreSkill.getType() == HiscoreSkillType.BOSS ? skill.getLevel() : skill.getExperience();
+    }
+
+    /**
+     * Returns a result holding the given overall xp, Attack xp and Zulrah kill count, with Attack unranked if asked.
+     */
+    private static HiscoreResult result(long[] values, boolean attackUnranked)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        skills.put(HiscoreSkill.OVERALL, new Skill(1, 100, values[0]));
+        skills.put(HiscoreSkill.ATTACK, attackUnranked ? SkillPool.UNRANKED : new Skill(1, 50, values[1]));
+        skills.put(HiscoreSkill.ZULRAH, new Skill(1, (int) values[2], -1));
+
+        return new HiscoreResult("Zezima", skills);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import com.friendtracker.data.SnapshotCodec;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+import static com.friendtracker.HiscoreFixtures.START;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+public class SkillPoolTest
+{
+    @Test
+    public void testPoolReusesPreviousSkill()
+    {
+        SkillPool pool = new SkillPool();
+
+        Skill first = pool.get(HiscoreSkill.ATTACK, 10, 50, 100_000);
+        assertSame(first, pool.get(HiscoreSkill.ATTACK, 10, 50, 100_000));
+
+        Skill changed = pool.get(HiscoreSkill.ATTACK, 9, 50, 101_000);
+        assertNotSame(first, changed);
+        assertEquals(new Skill(9, 50, 101_000), changed);
+        assertSame(changed, pool.get(HiscoreSkill.ATTACK, 9, 50, 101_000));
+
+        // Each skill keeps its own previous instance
+        assertNotSame(changed, pool.get(HiscoreSkill.DEFENCE, 9, 50, 101_000));
+    }
+
+    @Test
+    public void testCanonicalSkills()
+    {
+        assertSame(SkillPool.UNRANKED, SkillPool.of(-1, -1, -1));
+        assertSame(SkillPool.UNCHANGED, SkillPool.of(0, 0, 0));
+        assertSame(SkillPool.UNRANKED, new SkillPool().get(HiscoreSkill.ZULRAH, -1, -1, -1));
+        assertEquals(new Skill(-1, 5, -1), SkillPool.of(-1, 5, -1));
+    }
+
+    @Test
+    public void testDecodedSnapshotsShareUnchangedSkills() throws IOException
+    {
+        TreeMap<Instant, HiscoreResult> snapshots = randomHistory(new Random(19), 50);
+        Friend friend = new Friend("id", "Zezima");
+        friend.setHiscoreSnapshots(new SnapshotHistory(snapshots));
+
+        TreeMap<Instant, HiscoreResult> decoded = SnapshotCodec.decode(SnapshotCodec.encode(friend)).getHiscoreSnapshots().toMap();
+        assertEquals(snapshots, decoded);
+
+        // The newest snapshot is decoded on its own with the Friend, so only the series before it is shared
+        Instant newest = snapshots.lastKey();
+        assertShared(snapshots.headMap(newest), decoded.headMap(newest));
+        assertCanonical(decoded.values());
+    }
+
+    @Test
+    public void testColumnSnapshotsShareUnchangedSkills()
+    {
+        TreeMap<Instant, HiscoreResult> snapshots = randomHistory(new Random(20), 50);
+        SnapshotHistory history = new SnapshotHistory(snapshots);
+
+        TreeMap<Instant, HiscoreResult> results = history.toMap();
+        assertShared(snapshots, results);
+        assertCanonical(results.values());
+    }
+
+    @Test
+    public void testSharedResultsShareUnchangedSkills()
+    {
+        List<HiscoreResult> snapshots = new ArrayList<>(randomHistory(new Random(21), 50).values());
+
+        List<HiscoreResult> shared = new ArrayList<>();
+        HiscoreResult previous = null;
+        for(HiscoreResult result : snapshots)
+        {
+            previous = SkillPool.share(previous, result);
+            shared.add(previous);
+        }
+
+        // The first result has nothing to share with, so is kept as it is
+        assertSame(snapshots.get(0), shared.get(0));
+        assertShared(snapshots, shared);
+    }
+
+    private static void assertShared(SortedMap<Instant, HiscoreResult> expected, SortedMap<Instant, HiscoreResult> actual)
+    {
+        assertEquals(expected.keySet(), actual.keySet());
+        assertShared(new ArrayList<>(expected.values()), new ArrayList<>(actual.values()));
+    }
+
+    /**
+     * Checks each actual result equals the expected one and shares the Skill of every skill unchanged since the
+     * previous result.
+     */
+    private static void assertShared(List<HiscoreResult> expected, List<HiscoreResult> actual)
+    {
+        assertEquals(expected, actual);
+
+        for(int i = 1; i < actual.size(); i++)
+        {
+            for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+            {
+                Skill skill = actual.get(i).getSkill(hiscoreSkill);
+                Skill previous = actual.get(i - 1).getSkill(hiscoreSkill);
+
+                if(skill.equals(previous)) assertSame(hiscoreSkill + " of snapshot " + i, previous, skill);
+            }
+        }
+    }
+
+    /**
+     * Checks every unranked skill of the given results is the canonical instance.
+     */
+    private static void assertCanonical(Collection<HiscoreResult> results)
+    {
+        for(HiscoreResult result : results)
+        {
+            for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+            {
+                Skill skill = result.getSkill(hiscoreSkill);
+                if(skill.equals(SkillPool.UNRANKED)) assertSame(SkillPool.UNRANKED, skill);
+            }
+        }
+    }
+
+    /**
+     * Returns snapshots with every skill present, where a few skills change between consecutive snapshots and
+     * each snapshot is built from new Skill objects.
+     */
+    private static TreeMap<Instant, HiscoreResult> randomHistory(Random random, int snapshotCount)
+    {
+        TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+        Skill[] current = new Skill[HiscoreSkill.values().length];
+        for(int i = 0; i < current.length; i++)
+        {
+            current[i] = random.nextBoolean() ? new Skill(-1, -1, -1) : new Skill(random.nextInt(100_000) + 1, 50, 100_000);
+        }
+
+        for(int i = 0; i < snapshotCount; i++)
+        {
+            for(int change = 0; change < 4; change++)
+            {
+                int skill = random.nextInt(current.length);
+                current[skill] = random.nextInt(4) == 0
+                        ? new Skill(-1, -1, -1)
+                        : new Skill(random.nextInt(100_000) + 1, 50, random.nextInt(1_000_000));
+            }
+
+            Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+            for(HiscoreSkill hiscoreSkill : HiscoreSkill.values())
+            {
+                Skill skill = current[hiscoreSkill.ordinal()];
+                skills.put(hiscoreSkill, new Skill(skill.getRank(), skill.getLevel(), skill.getExperience()));
+            }
+
+            snapshots.put(START.plusSeconds(i * 3_600L), new HiscoreResult("Zezima", skills));
+        }
+
+        return snapshots;
+    }
+}
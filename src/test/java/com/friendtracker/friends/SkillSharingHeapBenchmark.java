@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import com.friendtracker.Benchmark;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.HiscoreSkillType;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Measures the heap retained by the decoded views of 50 friends with 500 snapshots each, where a few skills change
+ * between consecutive snapshots. The views are built once with their own Skill objects for every snapshot, as
+ * they were before {@link SkillPool}, and once by {@link SnapshotHistory#toMap}, which shares unchanged skills.
+ *
+ * <p>Run from its main method with the test classpath. Run it with a fixed heap (-Xms1g -Xmx1g) for stable
+ * figures.</p>
+ */
+public class SkillSharingHeapBenchmark
+{
+    private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+    private static final HiscoreSkill[] SKILLS = HiscoreSkill.values();
+    private static final int FRIENDS = 50;
+    private static final int SNAPSHOTS = 500;
+
+    public static void main(String[] args)
+    {
+        List<Friend> friends = new ArrayList<>();
+        Random random = new Random(1);
+        for(int i = 0; i < FRIENDS; i++)
+        {
+            friends.add(randomFriend(random, "Player " + i));
+        }
+
+        long before = Benchmark.usedHeap();
+        List<TreeMap<Instant, HiscoreResult>> unshared = new ArrayList<>();
+        for(Friend friend : friends)
+        {
+            TreeMap<Instant, HiscoreResult> view = new TreeMap<>();
+            friend.getHiscoreSnapshots().toMap(false).forEach((instant, result) -> view.put(instant, copy(result)));
+            unshared.add(view);
+        }
+        long unsharedBytes = Benchmark.usedHeap() - before;
+        unshared.clear();
+
+        before = Benchmark.usedHeap();
+        List<TreeMap<Instant, HiscoreResult>> shared = new ArrayList<>();
+        for(Friend friend : friends)
+        {
+            shared.add(friend.getHiscoreSnapshots().toMap(false));
+        }
+        long sharedBytes = Benchmark.usedHeap() - before;
+
+        // Reading the views afterwards keeps them reachable while they are measured
+        System.out.printf("decoded views of %d friends x %d snapshots: unshared %.1f MB, shared %.1f MB (%.1fx)%n",
+                shared.size(), SNAPSHOTS, unsharedBytes / 1e6, sharedBytes / 1e6, (double) unsharedBytes / sharedBytes);
+    }
+
+    /**
+     * Returns a Friend whose snapshots have every skill ranked and a quarter of activities ranked, with four
+     * skills changing between consecutive snapshots.
+     */
+    private static Friend randomFriend(Random random, String name)
+    {
+        Skill[] current = new Skill[SKILLS.length];
+        for(HiscoreSkill skill : SKILLS)
+        {
+            if(skill.getType() == HiscoreSkillType.SKILL || skill.getType() == HiscoreSkillType.OVERALL)
+            {
+                current[skill.ordinal()] = new Skill(1_000 + random.nextInt(100_000), 1 + random.nextInt(99), 100_000 + random.nextInt(1_000));
+            }
+            else if(skill.ordinal() % 4 == 0)
+            {
+                current[skill.ordinal()] = new Skill(1_000 + random.nextInt(100_000), 1 + random.nextInt(500), -1);
+            }
+            else
+            {
+                current[skill.ordinal()] = SkillPool.UNRANKED;
+            }
+        }
+
+        Friend friend = new Friend("id " + name, name);
+        for(int i = 0; i < SNAPSHOTS; i++)
+        {
+            for(int change = 0; change < 4; change++)
+            {
+                int skill = random.nextInt(SKILLS.length);
+                Skill value = current[skill];
+                if(value.getRank() < 0) continue;
+
+                current[skill] = new Skill(value.getRank() - 1, value.getLevel(), value.getExperience() < 0 ? -1 : value.getExperience() + 500);
+            }
+
+            Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+            for(HiscoreSkill skill : SKILLS)
+            {
+                skills.put(skill, current[skill.ordinal()]);
+            }
+            friend.addSnapshot(START.plusSeconds(i * 3_600L), new HiscoreResult(name, skills));
+        }
+
+        return friend;
+    }
+
+    private static HiscoreResult copy(HiscoreResult result)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        for(HiscoreSkill skill : SKILLS)
+        {
+            Skill value = result.getSkill(skill);
+            skills.put(skill, new Skill(value.getRank(), value.getLevel(), value.getExperience()));
+        }
+
+        return new HiscoreResult(result.getPlayer(), skills);
+    }
+}
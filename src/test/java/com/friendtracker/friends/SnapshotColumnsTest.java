@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.HiscoreSkillType;
+import net.runelite.client.hiscore.Skill;
+import static com.friendtracker.HiscoreFixtures.START;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SnapshotColumnsTest
+{
+    @Test
+    public void testRandomPutsAndRemovesMatchSortedMap()
+    {
+        Random random = new Random(18);
+        SnapshotColumns columns = new SnapshotColumns();
+        TreeMap<Instant, HiscoreResult> expected = new TreeMap<>();
+
+        for(int i = 0; i < 2_000; i++)
+        {
+            Instant instant = START.plusSeconds(random.nextInt(500)).plusNanos(random.nextInt(3));
+
+            if(random.nextInt(3) == 0)
+            {
+                assertEquals(expected.remove(instant) != null, columns.remove(instant));
+            }
+            else
+            {
+                HiscoreResult result = randomResult(random);
+                expected.put(instant, result);
+                columns.put(instant, result);
+            }
+
+            if(i % 50 == 0) assertColumnsEqual(expected, columns);
+        }
+
+        assertColumnsEqual(expected, columns);
+    }
+
+    @Test
+    public void testInsertAndRemoveShiftRows()
+    {
+        SnapshotColumns columns = new SnapshotColumns();
+        HiscoreResult first = result(1, 10);
+        HiscoreResult middle = result(2, 20);
+        HiscoreResult last = result(3, 30);
+
+        columns.put(START.plusSeconds(2), last);
+        columns.put(START, first);
+        columns.put(START.plusSeconds(1), middle);
+
+        assertEquals(3, columns.size());
+        assertEquals(START, columns.getInstant(0));
+        assertEquals(first, columns.toResult(0));
+        assertEquals(middle, columns.toResult(1));
+        assertEquals(last, columns.toResult(2));
+
+        assertTrue(columns.remove(START.plusSeconds(1)));
+        assertFalse(columns.remove(START.plusSeconds(1)));
+
+        assertEquals(2, columns.size());
+        assertEquals(first, columns.toResult(0));
+        assertEquals(START.plusSeconds(2), columns.getInstant(1));
+        assertEquals(last, columns.toResult(1));
+
+        assertTrue(columns.remove(START));
+        assertEquals(last, columns.toResult(0));
+        assertEquals(START.plusSeconds(2), columns.lastInstant());
+    }
+
+    @Test
+    public void testGrowthKeepsRows()
+    {
+        Random random = new Random(2);
+        SnapshotColumns columns = new SnapshotColumns();
+        TreeMap<Instant, HiscoreResult> expected = new TreeMap<>();
+
+        // Descending inserts shift every row each time, through every doubling of the capacity
+        for(int i = 1_000; i > 0; i--)
+        {
+            HiscoreResult result = randomResult(random);
+            expected.put(START.plusSeconds(i), result);
+            columns.put(START.plusSeconds(i), result);
+        }
+
+        assertColumnsEqual(expected, columns);
+    }
+
+    @Test
+    public void testLateColumnsReadUnrankedForEarlierRows()
+    {
+        SnapshotColumns columns = new SnapshotColumns();
+        HiscoreResult unranked = result(-1, -1);
+        HiscoreResult ranked = result(5, 500);
+
+        columns.put(START, unranked);
+        columns.put(START.plusSeconds(2), unranked);
+        long unallocated = columns.estimateHeapBytes();
+
+        // The ranked row allocates its columns between two rows already held
+        columns.put(START.plusSeconds(1), ranked);
+        assertTrue(columns.estimateHeapBytes() > unallocated);
+
+        assertEquals(unranked, columns.toResult(0));
+        assertEquals(ranked, columns.toResult(1));
+        assertEquals(unranked, columns.toResult(2));
+    }
+
+    @Test
+    public void testCopyBackfillsUnrankedWhenGrown()
+    {
+        Random random = new Random(3);
+        SnapshotColumns columns = new SnapshotColumns();
+        TreeMap<Instant, HiscoreResult> expected = new TreeMap<>();
+
+        for(int i = 0; i < 5; i++)
+        {
+            HiscoreResult result = result(i + 1, 100 * i);
+            expected.put(START.plusSeconds(i), result);
+            columns.put(START.plusSeconds(i), result);
+        }
+
+        // The copy is trimmed to its rows, so the next put grows every column copied, and the rows it adds are
+        // unranked in any column they do not set
+        SnapshotColumns copy = new SnapshotColumns(columns);
+        TreeMap<Instant, HiscoreResult> expectedCopy = new TreeMap<>(expected);
+
+        for(int i = 5; i < 20; i++)
+        {
+            HiscoreResult result = i % 2 == 0 ? result(-1, -1) : randomResult(random);
+            expectedCopy.put(START.plusSeconds(i), result);
+            copy.put(START.plusSeconds(i), result);
+        }
+
+        assertColumnsEqual(expectedCopy, copy);
+        assertColumnsEqual(expected, columns);
+    }
+
+    @Test
+    public void testMissingSkillsReadUnranked()
+    {
+        SnapshotColumns columns = new SnapshotColumns();
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        skills.put(HiscoreSkill.ATTACK, new Skill(10, 50, 100_000));
+        columns.put(START, new HiscoreResult("Zezima", skills));
+
+        HiscoreResult result = columns.toResult(0);
+
+        assertEquals(new Skill(10, 50, 100_000), result.getSkill(HiscoreSkill.ATTACK));
+        assertEquals(SkillPool.UNRANKED, result.getSkill(HiscoreSkill.OVERALL));
+        assertEquals(SkillPool.UNRANKED, result.getSkill(HiscoreSkill.DEFENCE));
+    }
+
+    @Test
+    public void testOverallExperienceBeyondIntRange()
+    {
+        SnapshotColumns columns = new SnapshotColumns();
+        Map<HiscoreSkill, Skill> skills = unranked();
+        skills.put(HiscoreSkill.OVERALL, new Skill(1, 2_277, 4_600_000_000L));
+        HiscoreResult result = new HiscoreResult("Zezima", skills);
+
+        columns.put(START, result);
+
+        assertEquals(result, columns.toResult(0));
+    }
+
+    private static void assertColumnsEqual(TreeMap<Instant, HiscoreResult> expected, SnapshotColumns columns)
+    {
+        assertEquals(expected.size(), columns.size());
+        assertEquals(expected.isEmpty() ? null : expected.lastKey(), columns.lastInstant());
+
+        int[] ranks = new int[HiscoreSkill.values().length];
+        int[] levels = new int[ranks.length];
+        long[] experiences = new long[ranks.length];
+        int row = 0;
+
+        for(Map.Entry<Instant, HiscoreResult> entry : expected.entrySet())
+        {
+            assertEquals(entry.getKey(), columns.getInstant(row));
+            assertEquals(row, columns.indexOf(entry.getKey()));
+            assertEquals(entry.getValue(), columns.toResult(row));
+
+            columns.read(row, ranks, levels, experiences);
+            for(HiscoreSkill skill : HiscoreSkill.values())
+            {
+                Skill value = entry.getValue().getSkill(skill);
+                assertEquals(value.getRank(), ranks[skill.ordinal()]);
+                assertEquals(value.getLevel(), levels[skill.ordinal()]);
+                assertEquals(value.getExperience(), experiences[skill.ordinal()]);
+            }
+
+            row++;
+        }
+    }
+
+    /**
+     * Returns a result with every skill and activity present, about half of them unranked.
+     */
+    private static HiscoreResult randomResult(Random random)
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+
+        for(HiscoreSkill skill : HiscoreSkill.values())
+        {
+            if(random.nextBoolean())
+            {
+                skills.put(skill, SkillPool.UNRANKED);
+            }
+            else if(skill.getType() == HiscoreSkillType.SKILL || skill.getType() == HiscoreSkillType.OVERALL)
+            {
+                skills.put(skill, new Skill(random.nextInt(2_000_000) + 1, random.nextInt(99) + 1, random.nextInt(200_000_000)));
+            }
+            else
+            {
+                skills.put(skill, new Skill(random.nextInt(2_000_000) + 1, random.nextInt(5_000), -1));
+            }
+        }
+
+        String player = random.nextInt(4) == 0 ? null : "Player " + random.nextInt(3);
+
+        return new HiscoreResult(player, skills);
+    }
+
+    /**
+     * Returns a result where only Attack has the given rank and experience.
+     */
+    private static HiscoreResult result(int rank, long experience)
+    {
+        Map<HiscoreSkill, Skill> skills = unranked();
+        if(rank >= 0) skills.put(HiscoreSkill.ATTACK, new Skill(rank, 50, experience));
+
+        return new HiscoreResult("Zezima", skills);
+    }
+
+    private static Map<HiscoreSkill, Skill> unranked()
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        for(HiscoreSkill skill : HiscoreSkill.values())
+        {
+            skills.put(skill, SkillPool.UNRANKED);
+        }
+
+        return skills;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import com.friendtracker.Benchmark;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.HiscoreSkillType;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Measures the heap retained by in-memory snapshots held as a TreeMap of HiscoreResults, as SnapshotHistory held
+ * them before {@link SnapshotColumns}, and held by SnapshotHistory now. Each of 200 friends has 500 snapshots
+ * with every skill ranked and a quarter of activities ranked.
+ *
+ * <p>Run from its main method with the test classpath. Run it with a fixed heap (-Xms1g -Xmx1g) for stable
+ * figures.</p>
+ */
+public class SnapshotHeapBenchmark
+{
+    private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+    private static final int FRIENDS = 200;
+    private static final int SNAPSHOTS = 500;
+
+    public static void main(String[] args)
+    {
+        long before = Benchmark.usedHeap();
+        List<TreeMap<Instant, HiscoreResult>> maps = new ArrayList<>();
+        forEachSnapshot((friend, instant, result) ->
+        {
+            if(friend == maps.size()) maps.add(new TreeMap<>());
+            maps.get(friend).put(instant, result);
+        });
+        long mapBytes = Benchmark.usedHeap() - before;
+        maps.clear();
+
+        before = Benchmark.usedHeap();
+        List<SnapshotHistory> histories = new ArrayList<>();
+        forEachSnapshot((friend, instant, result) ->
+        {
+            if(friend == histories.size()) histories.add(new SnapshotHistory());
+            histories.get(friend).put(instant, result);
+        });
+        long columnBytes = Benchmark.usedHeap() - before;
+
+        // Reading the histories afterwards keeps them reachable while they are measured
+        System.out.printf("%d friends x %d snapshots: TreeMap %.1f MB, columns %.1f MB (%.1fx)%n",
+                histories.size(), SNAPSHOTS, mapBytes / 1e6, columnBytes / 1e6, (double) mapBytes / columnBytes);
+    }
+
+    private interface SnapshotConsumer
+    {
+        void accept(int friend, Instant instant, HiscoreResult result);
+    }
+
+    /**
+     * Generates the same snapshots on every call, each built with its own Skill objects as fetched results are.
+     */
+    private static void forEachSnapshot(SnapshotConsumer consumer)
+    {
+        Random random = new Random(1);
+
+        for(int friend = 0; friend < FRIENDS; friend++)
+        {
+            for(int i = 0; i < SNAPSHOTS; i++)
+            {
+                Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+                for(HiscoreSkill skill : HiscoreSkill.values())
+                {
+                    if(skill.getType() == HiscoreSkillType.SKILL || skill.getType() == HiscoreSkillType.OVERALL)
+                    {
+                        skills.put(skill, new Skill(random.nextInt(2_000_000) + 1, random.nextInt(99) + 1, random.nextInt(200_000_000)));
+                    }
+                    else if(skill.ordinal() % 4 == 0)
+                    {
+                        skills.put(skill, new Skill(random.nextInt(2_000_000) + 1, random.nextInt(5_000), -1));
+                    }
+                    else
+                    {
+                        skills.put(skill, new Skill(-1, -1, -1));
+                    }
+                }
+
+                consumer.accept(friend, START.plusSeconds(i * 3_600L), new HiscoreResult("Player " + friend, skills));
+            }
+        }
+    }
+}
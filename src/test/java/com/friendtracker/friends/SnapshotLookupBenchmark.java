@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import com.friendtracker.Benchmark;
+import java.time.Instant;
+import java.time.Period;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import net.runelite.client.hiscore.Skill;
+
+/**
+ * Times {@link Friend#getSnapshotInstantAt} against the {@link LegacySnapshotLookup} it replaced, on histories of
+ * 10, 1,000 and 100,000 snapshots taken hourly with a third of them staying valid for a while afterwards.
+ *
+ * <p>Run from its main method with the test classpath.</p>
+ */
+public class SnapshotLookupBenchmark
+{
+    private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+    private static final int[] SIZES = {10, 1_000, 100_000};
+    private static final int TARGETS = 1024;
+
+    public static void main(String[] args)
+    {
+        System.out.printf("%10s %16s %16s%n", "snapshots", "legacy ns/op", "current ns/op");
+
+        for(int size : SIZES)
+        {
+            Random random = new Random(size);
+            TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+            TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+            HiscoreResult result = result();
+
+            Instant instant = START;
+            for(int i = 0; i < size; i++)
+            {
+                instant = instant.plusSeconds(3_600);
+                snapshots.put(instant, result);
+                if(random.nextInt(3) == 0) validUntil.put(instant, instant.plusSeconds(random.nextInt(3_000)));
+            }
+
+            // Targets spread over the history and a week either side of it
+            long span = instant.getEpochSecond() - START.getEpochSecond() + 14 * 86_400;
+            Instant[] targets = new Instant[TARGETS];
+            for(int i = 0; i < TARGETS; i++)
+            {
+                targets[i] = START.minusSeconds(7 * 86_400).plusSeconds((long) (random.nextDouble() * span));
+            }
+
+            Friend friend = new Friend("id", "Zezima");
+            friend.setHiscoreSnapshots(new SnapshotHistory(snapshots, validUntil));
+            LegacySnapshotLookup legacy = new LegacySnapshotLookup(snapshots, validUntil);
+            Period tolerance = Period.ofDays(1);
+
+            int[] next = new int[1];
+            double legacyNanos = Benchmark.nanosPerOperation(() ->
+                    legacy.getSnapshotInstantAt(targets[next[0]++ & (TARGETS - 1)], tolerance).hashCode());
+            double currentNanos = Benchmark.nanosPerOperation(() ->
+                    friend.getSnapshotInstantAt(targets[next[0]++ & (TARGETS - 1)], tolerance).hashCode());
+
+            System.out.printf("%10d %16.0f %16.0f%n", size, legacyNanos, currentNanos);
+        }
+    }
+
+    private static HiscoreResult result()
+    {
+        Map<HiscoreSkill, Skill> skills = new EnumMap<>(HiscoreSkill.class);
+        skills.put(HiscoreSkill.OVERALL, new Skill(1, 100, 1_000));
+
+        return new HiscoreResult("Zezima", skills);
+    }
+}
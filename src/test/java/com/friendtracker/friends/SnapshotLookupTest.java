@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2022, James Shelton <https://github.com/JamesShelton140>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.friendtracker.friends;
+
+import com.friendtracker.data.SnapshotCodec;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+import net.runelite.client.hiscore.HiscoreResult;
+import net.runelite.client.hiscore.HiscoreSkill;
+import static com.friendtracker.HiscoreFixtures.START;
+import static com.friendtracker.HiscoreFixtures.result;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class SnapshotLookupTest
+{
+    private static final List<Period> TOLERANCES = Arrays.asList(Period.ZERO, Period.ofDays(1), Period.ofDays(7));
+
+    @Test
+    public void testMatchesLegacyLookupOverRandomHistories() throws IOException
+    {
+        Random random = new Random(17);
+
+        for(int i = 0; i < 200; i++)
+        {
+            TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+            TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+            randomHistory(random, random.nextInt(30), snapshots, validUntil);
+
+            assertMatchesLegacy(random, snapshots, validUntil);
+        }
+    }
+
+    @Test
+    public void testMatchesLegacyLookupAfterRemovals() throws IOException
+    {
+        Random random = new Random(71);
+
+        for(int i = 0; i < 100; i++)
+        {
+            TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+            TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+            randomHistory(random, random.nextInt(30) + 1, snapshots, validUntil);
+
+            List<Friend> friends = friends(snapshots, validUntil);
+            for(Instant instant : new ArrayList<>(snapshots.keySet()))
+            {
+                if(random.nextInt(3) != 0) continue;
+
+                snapshots.remove(instant);
+                validUntil.remove(instant);
+                friends.forEach(friend -> friend.getHiscoreSnapshots().remove(instant));
+            }
+
+            assertMatches(random, snapshots, validUntil, friends);
+        }
+    }
+
+    @Test
+    public void testEmptyHistory() throws IOException
+    {
+        TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+        TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+
+        for(Friend friend : friends(snapshots, validUntil))
+        {
+            for(Period tolerance : TOLERANCES)
+            {
+                assertFalse(friend.getSnapshotInstantAt(START, tolerance).isPresent());
+            }
+        }
+
+        assertMatchesLegacy(new Random(1), snapshots, validUntil);
+    }
+
+    @Test
+    public void testEverySnapshotBeforeOrAfterTarget() throws IOException
+    {
+        TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+        TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+        snapshots.put(START, result(1_000));
+        snapshots.put(START.plusSeconds(86_400), result(2_000));
+        validUntil.put(START.plusSeconds(86_400), START.plusSeconds(2 * 86_400));
+
+        for(Friend friend : friends(snapshots, validUntil))
+        {
+            // Everything after the target falls back to the oldest snapshot, however far away
+            assertEquals(Optional.of(START), friend.getSnapshotInstantAt(START.minusSeconds(30 * 86_400), Period.ZERO));
+
+            // Everything before the target only counts within the tolerance of its validity end
+            Instant after = START.plusSeconds(4 * 86_400);
+            assertEquals(Optional.of(START.plusSeconds(86_400)), friend.getSnapshotInstantAt(after, Period.ofDays(2)));
+            assertFalse(friend.getSnapshotInstantAt(after, Period.ofDays(1)).isPresent());
+        }
+
+        assertMatchesLegacy(new Random(2), snapshots, validUntil);
+    }
+
+    @Test
+    public void testExactHits() throws IOException
+    {
+        Random random = new Random(5);
+        TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+        TreeMap<Instant, Instant> validUntil = new TreeMap<>();
+        randomHistory(random, 20, snapshots, validUntil);
+
+        for(Friend friend : friends(snapshots, validUntil))
+        {
+            for(Instant instant : snapshots.keySet())
+            {
+                for(Period tolerance : TOLERANCES)
+                {
+                    assertEquals(Optional.of(instant), friend.getSnapshotInstantAt(instant, tolerance));
+                    assertEquals(Optional.of(instant), friend.getSnapshotInstantAt(validUntil.getOrDefault(instant, instant), tolerance));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnchangedResultExtendsTheNewestSnapshot()
+    {
+        Friend friend = new Friend("id", "Zezima");
+        friend.addSnapshot(START, result(1_000));
+        friend.addSnapshot(START.plusSeconds(3_600), result(1_000));
+        friend.addSnapshot(START.plusSeconds(7_200), result(1_000));
+
+        assertEquals(Collections.singleton(START), friend.getHiscoreSnapshots().instants());
+        assertEquals(START.plusSeconds(7_200), friend.getHiscoreSnapshots().getValidUntil(START));
+    }
+
+    @Test
+    public void testChangedResultStartsANewSnapshot()
+    {
+        Friend friend = new Friend("id", "Zezima");
+        friend.addSnapshot(START, result(1_000));
+        friend.addSnapshot(START.plusSeconds(3_600), result(1_000));
+        friend.addSnapshot(START.plusSeconds(7_200), result(2_000));
+
+        assertEquals(Arrays.asList(START, START.plusSeconds(7_200)), new ArrayList<>(friend.getHiscoreSnapshots().instants()));
+        assertEquals(START.plusSeconds(3_600), friend.getHiscoreSnapshots().getValidUntil(START));
+        assertNull(friend.getHiscoreSnapshots().getValidUntil(START.plusSeconds(7_200)));
+        assertEquals(2_000, friend.getMostRecentResult().getSkill(HiscoreSkill.OVERALL).getExperience());
+    }
+
+    @Test
+    public void testLookupMeasuresFromTheEndOfAnExtendedSnapshot()
+    {
+        Friend friend = new Friend("id", "Zezima");
+        friend.addSnapshot(START, result(1_000));
+        friend.addSnapshot(START.plusSeconds(20 * 3_600), result(1_000));
+        friend.addSnapshot(START.plusSeconds(100 * 3_600), result(2_000));
+
+        // Within the interval the unchanged snapshot was seen over
+        assertEquals(Optional.of(START), friend.getSnapshotInstantAt(START.plusSeconds(10 * 3_600), Period.ZERO));
+        // Thirty hours after it was first seen but within a day of when it was last seen
+        assertEquals(Optional.of(START), friend.getSnapshotInstantAt(START.plusSeconds(30 * 3_600), Period.ofDays(1)));
+        // Beyond the tolerance of when it was last seen, so the next snapshot is used
+        assertEquals(Optional.of(START.plusSeconds(100 * 3_600)), friend.getSnapshotInstantAt(START.plusSeconds(50 * 3_600), Period.ofDays(1)));
+    }
+
+    /**
+     * Checks the lookup on every form a history can take against the legacy lookup over the same snapshots.
+     */
+    private static void assertMatchesLegacy(Random random, TreeMap<Instant, HiscoreResult> snapshots,
+                                            TreeMap<Instant, Instant> validUntil) throws IOException
+    {
+        assertMatches(random, snapshots, validUntil, friends(snapshots, validUntil));
+    }
+
+    private static void assertMatches(Random random, TreeMap<Instant, HiscoreResult> snapshots,
+                                      TreeMap<Instant, Instant> validUntil, List<Friend> friends)
+    {
+        LegacySnapshotLookup legacy = new LegacySnapshotLookup(snapshots, validUntil);
+
+        List<Period> tolerances = new ArrayList<>(TOLERANCES);
+        tolerances.add(Period.ofDays(random.nextInt(30)));
+
+        for(Instant instant : targets(random, snapshots, validUntil))
+        {
+            for(Period tolerance : tolerances)
+            {
+                Optional<Instant> expected = legacy.getSnapshotInstantAt(instant, tolerance);
+
+                for(Friend friend : friends)
+                {
+                    assertEquals(instant + " within " + tolerance, expected, friend.getSnapshotInstantAt(instant, tolerance));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns instants on, next to and between the bounds of every validity interval, and beyond either end.
+     */
+    private static List<Instant> targets(Random random, TreeMap<Instant, HiscoreResult> snapshots, TreeMap<Instant, Instant> validUntil)
+    {
+        List<Instant> targets = new ArrayList<>();
+        targets.add(START.minusSeconds(40 * 86_400));
+        targets.add(START);
+
+        for(Instant start : snapshots.keySet())
+        {
+            Instant end = validUntil.getOrDefault(start, start);
+            for(Instant bound : Arrays.asList(start, end))
+            {
+                targets.add(bound);
+                targets.add(bound.minusNanos(1));
+                targets.add(bound.plusNanos(1));
+                targets.add(bound.minus(Period.ofDays(1)));
+                targets.add(bound.plus(Period.ofDays(1)));
+            }
+            targets.add(end.plusSeconds(random.nextInt(10 * 86_400)));
+        }
+
+        Instant last = snapshots.isEmpty() ? START : validUntil.getOrDefault(snapshots.lastKey(), snapshots.lastKey());
+        targets.add(last.plusSeconds(40 * 86_400));
+
+        return targets;
+    }
+
+    /**
+     * Returns Friends holding the given history in memory, encoded and with its older half archived.
+     */
+    private static List<Friend> friends(TreeMap<Instant, HiscoreResult> snapshots, TreeMap<Instant, Instant> validUntil) throws IOException
+    {
+        Friend inMemory = new Friend("id", "Zezima");
+        inMemory.setHiscoreSnapshots(new SnapshotHistory(snapshots, validUntil));
+
+        Friend encoded = SnapshotCodec.decode(SnapshotCodec.encode(inMemory));
+
+        Friend archived = new Friend("id", "Zezima");
+        SnapshotHistory history = new SnapshotHistory(snapshots, validUntil);
+        List<Instant> archivedInstants = new ArrayList<>(snapshots.keySet()).subList(0, snapshots.size() / 2);
+        history.setArchive(new TestArchive(archivedInstants, snapshots, validUntil));
+        archived.setHiscoreSnapshots(history);
+
+        return new ArrayList<>(Arrays.asList(inMemory, encoded, archived));
+    }
+
+    /**
+     * Fills the given maps with snapshots up to ten days apart, a third of which stay valid for a while afterwards.
+     */
+    private static void randomHistory(Random random, int snapshotCount, TreeMap<Instant, HiscoreResult> snapshots,
+                                      TreeMap<Instant, Instant> validUntil)
+    {
+        Instant instant = START;
+
+        for(int i = 0; i < snapshotCount; i++)
+        {
+            instant = instant.plusSeconds(random.nextInt(10 * 86_400) + 1);
+            snapshots.put(instant, result(i));
+
+            if(random.nextInt(3) == 0)
+            {
+                instant = instant.plusSeconds(random.nextInt(5 * 86_400) + 1);
+                validUntil.put(snapshots.lastKey(), instant);
+            }
+        }
+    }
+
+    private static class TestArchive implements ArchivedSnapshots
+    {
+        private final List<Instant> instants;
+        private final TreeMap<Instant, HiscoreResult> snapshots = new TreeMap<>();
+        private final Map<Instant, Instant> validUntil;
+
+        TestArchive(List<Instant> instants, TreeMap<Instant, HiscoreResult> snapshots, Map<Instant, Instant> validUntil)
+        {
+            this.instants = new ArrayList<>(instants);
+            this.validUntil = new TreeMap<>(validUntil);
+            instants.forEach(instant -> this.snapshots.put(instant, snapshots.get(instant)));
+        }
+
+        @Override
+        public int size()
+        {
+            return instants.size();
+        }
+
+        @Override
+        public Instant getInstant(int index)
+        {
+            return instants.get(index);
+        }
+
+        @Override
+        public Instant getValidUntil(int index)
+        {
+            return validUntil.get(instants.get(index));
+        }
+
+        @Override
+        public HiscoreResult decode(int index)
+        {
+            return snapshots.get(instants.get(index));
+        }
+
+        @Override
+        public TreeMap<Instant, HiscoreResult> decodeAll()
+        {
+            return new TreeMap<>(snapshots);
+        }
+    }
+}